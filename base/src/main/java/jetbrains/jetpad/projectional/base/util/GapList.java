@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.base.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * List backed by a gap buffer: the free space of the array is kept at the position of the last modification,
+ * so a series of insertions and removals near one place costs O(1) each instead of shifting the tail every time.
+ * Moving the gap costs O(distance).
+ *
+ * If items of a list are unique, they can remember their position in the buffer (see {@link #positionChanged})
+ * which makes indexOf and contains O(1).
+ */
+public class GapList<ItemT> extends AbstractList<ItemT> implements RandomAccess {
+  private static final int MIN_CAPACITY = 8;
+  private static final Object[] EMPTY = new Object[0];
+
+  private Object[] myItems = EMPTY;
+  private int myGapStart;
+  private int myGapEnd;
+
+  @Override
+  public ItemT get(int index) {
+    checkIndex(index, size());
+    return item(rawIndex(index));
+  }
+
+  @Override
+  public ItemT set(int index, ItemT item) {
+    checkIndex(index, size());
+    int raw = rawIndex(index);
+    ItemT result = item(raw);
+    myItems[raw] = item;
+    positionChanged(result, -1);
+    positionChanged(item, raw);
+    return result;
+  }
+
+  @Override
+  public void add(int index, ItemT item) {
+    checkIndex(index, size() + 1);
+    ensureGap();
+    moveGap(index);
+    myItems[myGapStart] = item;
+    positionChanged(item, myGapStart);
+    myGapStart++;
+    modCount++;
+  }
+
+  @Override
+  public ItemT remove(int index) {
+    checkIndex(index, size());
+    moveGap(index);
+    ItemT result = item(myGapEnd);
+    myItems[myGapEnd] = null;
+    myGapEnd++;
+    positionChanged(result, -1);
+    modCount++;
+    return result;
+  }
+
+  @Override
+  public int size() {
+    return myItems.length - (myGapEnd - myGapStart);
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    int raw = positionOf(o);
+    if (raw >= 0 && raw < myItems.length && (raw < myGapStart || raw >= myGapEnd) && myItems[raw] == o) {
+      return raw < myGapStart ? raw : raw - (myGapEnd - myGapStart);
+    }
+    return super.indexOf(o);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) != -1;
+  }
+
+  /**
+   * Called when an item gets a new position in the buffer, or -1 when it's removed
+   */
+  protected void positionChanged(ItemT item, int position) {
+  }
+
+  /**
+   * Last position reported to {@link #positionChanged} for the item, or -1 if it's unknown
+   */
+  protected int positionOf(Object item) {
+    return -1;
+  }
+
+  private ItemT item(int raw) {
+    return (ItemT) myItems[raw];
+  }
+
+  private int rawIndex(int index) {
+    return index < myGapStart ? index : index + (myGapEnd - myGapStart);
+  }
+
+  private void checkIndex(int index, int bound) {
+    if (index < 0 || index >= bound) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+  }
+
+  private void ensureGap() {
+    if (myGapStart < myGapEnd) return;
+
+    int size = myItems.length;
+    int capacity = Math.max(MIN_CAPACITY, size * 2);
+    Object[] items = new Object[capacity];
+    int tail = size - myGapEnd;
+    System.arraycopy(myItems, 0, items, 0, myGapStart);
+    System.arraycopy(myItems, myGapEnd, items, capacity - tail, tail);
+    myItems = items;
+    myGapEnd = capacity - tail;
+    for (int i = myGapEnd; i < capacity; i++) {
+      positionChanged(item(i), i);
+    }
+  }
+
+  private void moveGap(int index) {
+    if (index == myGapStart) return;
+
+    int gap = myGapEnd - myGapStart;
+    if (index < myGapStart) {
+      int count = myGapStart - index;
+      System.arraycopy(myItems, index, myItems, myGapEnd - count, count);
+      myGapStart = index;
+      myGapEnd -= count;
+      for (int i = myGapEnd; i < myGapEnd + count; i++) {
+        positionChanged(item(i), i);
+      }
+    } else {
+      int count = index - myGapStart;
+      System.arraycopy(myItems, myGapEnd, myItems, myGapStart, count);
+      for (int i = myGapStart; i < myGapStart + count; i++) {
+        positionChanged(item(i), i);
+      }
+      myGapStart = index;
+      myGapEnd += count;
+    }
+    Arrays.fill(myItems, myGapStart, myGapStart + gap, null);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.base.util;
+
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.collections.CollectionListener;
+import jetbrains.jetpad.model.collections.list.ObservableList;
+import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.event.ListenerCaller;
+import jetbrains.jetpad.model.event.Listeners;
+
+/**
+ * {@link GapList} which can be used instead of ObservableArrayList for long lists edited in the middle.
+ * As in ObservableArrayList, set is a removal followed by an addition.
+ */
+public class ObservableGapList<ItemT> extends GapList<ItemT> implements ObservableList<ItemT> {
+  private Listeners<CollectionListener<ItemT>> myListeners;
+
+  @Override
+  public ItemT set(int index, ItemT item) {
+    ItemT result = remove(index);
+    add(index, item);
+    return result;
+  }
+
+  @Override
+  public void add(int index, ItemT item) {
+    super.add(index, item);
+    fire(new CollectionItemEvent<>(item, index, true), true);
+  }
+
+  @Override
+  public ItemT remove(int index) {
+    ItemT result = super.remove(index);
+    fire(new CollectionItemEvent<>(result, index, false), false);
+    return result;
+  }
+
+  private void fire(final CollectionItemEvent<ItemT> event, final boolean added) {
+    if (myListeners == null) return;
+    myListeners.fire(new ListenerCaller<CollectionListener<ItemT>>() {
+      @Override
+      public void call(CollectionListener<ItemT> l) {
+        if (added) {
+          l.onItemAdded(event);
+        } else {
+          l.onItemRemoved(event);
+        }
+      }
+    });
+  }
+
+  @Override
+  public Registration addListener(CollectionListener<ItemT> l) {
+    if (myListeners == null) {
+      myListeners = new Listeners<>();
+    }
+    return myListeners.add(l);
+  }
+
+  @Override
+  public Registration addHandler(final EventHandler<? super CollectionItemEvent<? extends ItemT>> handler) {
+    return addListener(new CollectionListener<ItemT>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<? extends ItemT> event) {
+        handler.onEvent(event);
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends ItemT> event) {
+        handler.onEvent(event);
+      }
+    });
+  }
+}
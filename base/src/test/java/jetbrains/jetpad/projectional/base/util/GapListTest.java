@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.base.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GapListTest {
+  @Test
+  public void addAndRemoveInMiddle() {
+    GapList<String> list = new GapList<>();
+    list.addAll(Arrays.asList("a", "b", "c", "d"));
+
+    list.add(2, "x");
+    list.add(3, "y");
+    list.remove(1);
+
+    assertEquals(Arrays.asList("a", "x", "y", "c", "d"), list);
+  }
+
+  @Test
+  public void sameAsArrayList() {
+    Random random = new Random(42);
+    List<Integer> expected = new ArrayList<>();
+    GapList<Integer> list = new GapList<>();
+
+    for (int i = 0; i < 5000; i++) {
+      if (expected.isEmpty() || random.nextInt(3) != 0) {
+        int index = random.nextInt(expected.size() + 1);
+        expected.add(index, i);
+        list.add(index, i);
+      } else if (random.nextBoolean()) {
+        int index = random.nextInt(expected.size());
+        assertEquals(expected.remove(index), list.remove(index));
+      } else {
+        int index = random.nextInt(expected.size());
+        assertEquals(expected.set(index, -i), list.set(index, -i));
+      }
+    }
+
+    assertEquals(expected, list);
+  }
+
+  @Test
+  public void indexOfThroughPositions() {
+    PositionTrackingList list = new PositionTrackingList();
+    List<String> expected = new ArrayList<>();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 1000; i++) {
+      int index = random.nextInt(expected.size() + 1);
+      String item = "i" + i;
+      expected.add(index, item);
+      list.add(index, item);
+      if (i % 3 == 0) {
+        String removed = expected.remove(random.nextInt(expected.size()));
+        list.remove(removed);
+        assertFalse(list.contains(removed));
+      }
+    }
+
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(i, list.indexOf(expected.get(i)));
+    }
+    assertTrue(list.lookups > 0);
+    assertEquals(-1, list.indexOf("absent"));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void addOutOfBounds() {
+    new GapList<String>().add(1, "a");
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getOutOfBounds() {
+    GapList<String> list = new GapList<>();
+    list.add("a");
+    list.get(1);
+  }
+
+  private static class PositionTrackingList extends GapList<String> {
+    private Map<String, Integer> myPositions = new HashMap<>();
+    private int lookups;
+
+    @Override
+    protected void positionChanged(String item, int position) {
+      if (position == -1) {
+        myPositions.remove(item);
+      } else {
+        myPositions.put(item, position);
+      }
+    }
+
+    @Override
+    protected int positionOf(Object item) {
+      lookups++;
+      Integer result = myPositions.get(item);
+      return result == null ? -1 : result;
+    }
+  }
+}
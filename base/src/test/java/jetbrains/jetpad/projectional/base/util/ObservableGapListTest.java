@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.base.util;
+
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.collections.CollectionListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ObservableGapListTest {
+  private ObservableGapList<String> list = new ObservableGapList<>();
+  private List<String> events = new ArrayList<>();
+
+  {
+    list.addListener(new CollectionListener<String>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<? extends String> event) {
+        events.add("+" + event.getItem() + "@" + event.getIndex());
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends String> event) {
+        events.add("-" + event.getItem() + "@" + event.getIndex());
+      }
+    });
+  }
+
+  @Test
+  public void addAndRemove() {
+    list.add("a");
+    list.add(0, "b");
+    list.remove(1);
+
+    assertEquals(Arrays.asList("+a@0", "+b@0", "-a@1"), events);
+  }
+
+  @Test
+  public void setIsRemoveAndAdd() {
+    list.addAll(Arrays.asList("a", "b"));
+    events.clear();
+
+    list.set(1, "c");
+
+    assertEquals(Arrays.asList("-b@1", "+c@1"), events);
+    assertEquals(Arrays.asList("a", "c"), list);
+  }
+}
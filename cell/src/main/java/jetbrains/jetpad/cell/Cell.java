@@ -17,6 +17,7 @@ package jetbrains.jetpad.cell;
 
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.base.animation.Animation;
 import jetbrains.jetpad.base.animation.Animations;
@@ -31,7 +32,6 @@ import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.CollectionListener;
-import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.composite.*;
 import jetbrains.jetpad.model.event.EventHandler;
@@ -41,7 +41,7 @@ import jetbrains.jetpad.model.property.BaseReadableProperty;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.model.property.ReadableProperty;
-import jetbrains.jetpad.model.util.ListMap;
+import jetbrains.jetpad.projectional.base.util.GapList;
 import jetbrains.jetpad.values.Color;
 
 import java.util.*;
@@ -71,6 +71,9 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   public static final CellPropertySpec<Boolean> HAS_WARNING = new CellPropertySpec<>("hasWarning", false);
 
 
+  private static final Object NULL_VALUE = new Object();
+  private static final Supplier<?>[] NO_SUPPLIERS = new Supplier<?>[0];
+
   public static boolean isPopupProp(CellPropertySpec<?> prop) {
     return POPUP_SPECS.contains(prop);
   }
@@ -82,7 +85,12 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   private Cell myParent;
   private Cell myNext;
   private Cell myPrev;
-  private ListMap<CellPropertySpec<?>, Object> myProperties;
+  private int myPositionInParent = -1;
+  //explicitly set values indexed by CellPropertySpec.getIndex(), null slot means not set, NULL_VALUE means null
+  private Object[] myProperties;
+  //suppliers of trait provided defaults indexed by CellPropertySpec.getIndex(), null slot means not computed yet
+  private Supplier<?>[][] myTraitDefaults;
+  private TraitDispatchTable myDispatchTable;
   private Listeners<CellListener> myListeners;
 
   protected Cell() {
@@ -229,8 +237,9 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
 
   private <EventT extends Event> void dispatchStep(EventT e, CellEventSpec<EventT> spec) {
     if (spec == CellEventSpec.KEY_PRESSED || spec == CellEventSpec.KEY_RELEASED || spec == CellEventSpec.KEY_TYPED) {
+      CellTrait[] traits = dispatchTable().get(spec);
       for (EventPriority p : EventPriority.values()) {
-        for (CellTrait t : myCellTraits) {
+        for (CellTrait t : traits) {
           if (p == EventPriority.LOW) {
             if (spec == CellEventSpec.KEY_PRESSED) {
               t.onKeyPressedLowPriority(this, (KeyEvent) e);
@@ -252,7 +261,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
         }
       }
     } else {
-      for (CellTrait t : myCellTraits) {
+      for (CellTrait t : dispatchTable().get(spec)) {
         spec.dispatch(this, e, t);
         if (e.isConsumed()) return;
       }
@@ -260,7 +269,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   public <EventT extends Event> void dispatch(EventT e, CellTraitEventSpec<EventT> spec) {
-    for (CellTrait t : myCellTraits) {
+    for (CellTrait t : dispatchTable().get(spec)) {
       t.onCellTraitEvent(this, spec, e);
       if (e.isConsumed()) return;
     }
@@ -270,12 +279,25 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     }
   }
 
+  private TraitDispatchTable dispatchTable() {
+    if (myDispatchTable == null) {
+      myDispatchTable = new TraitDispatchTable(myCellTraits);
+    }
+    return myDispatchTable;
+  }
+
+  private void traitsChanged() {
+    myTraitDefaults = null;
+    myDispatchTable = null;
+  }
+
   public Registration addTrait(final CellTrait trait) {
     Runnable r = createFiringRunnable(trait);
     CellTrait[] newTraits = new CellTrait[myCellTraits.length + 1];
     newTraits[0] = trait;
     System.arraycopy(myCellTraits, 0, newTraits, 1, myCellTraits.length);
     myCellTraits = newTraits;
+    traitsChanged();
     r.run();
     return new Registration() {
       @Override
@@ -286,6 +308,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
         System.arraycopy(myCellTraits, 0, newTraits, 0, index);
         System.arraycopy(myCellTraits, index + 1, newTraits, index, myCellTraits.length - index - 1);
         myCellTraits = newTraits;
+        traitsChanged();
         r.run();
       }
     };
@@ -426,10 +449,17 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   public <ValueT> ValueT get(CellPropertySpec<ValueT> prop) {
-    if (myProperties == null || !myProperties.containsKey(prop)) {
+    Object value = getExplicit(prop);
+    if (value == null) {
       return getDefaultValue(prop);
     }
-    return (ValueT) myProperties.get(prop);
+    return value == NULL_VALUE ? null : (ValueT) value;
+  }
+
+  private Object getExplicit(CellPropertySpec<?> prop) {
+    int index = prop.getIndex();
+    if (myProperties == null || index >= myProperties.length) return null;
+    return myProperties[index];
   }
 
   public <ValueT> Registration set(final CellPropertySpec<ValueT> prop, ValueT value) {
@@ -441,16 +471,18 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
 
     beforePropertySet(prop, event);
 
+    int index = prop.getIndex();
     if (Objects.equal(value, getDefaultValue(prop))) {
-      myProperties.remove(prop);
-      if (myProperties.isEmpty()) {
-        myProperties = null;
+      if (myProperties != null && index < myProperties.length) {
+        myProperties[index] = null;
       }
     } else {
       if (myProperties == null) {
-        myProperties = new ListMap<>();
+        myProperties = new Object[index + 1];
+      } else if (index >= myProperties.length) {
+        myProperties = Arrays.copyOf(myProperties, index + 1);
       }
-      myProperties.put(prop, value);
+      myProperties[index] = value == null ? NULL_VALUE : value;
     }
 
     firePropertyChange(prop, event);
@@ -486,8 +518,8 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   private <ValueT> ValueT getDefaultValue(CellPropertySpec<ValueT> prop) {
-    for (CellTrait t : myCellTraits) {
-      Object result = t.get(this, prop);
+    for (Supplier<?> s : getTraitDefaults(prop)) {
+      Object result = s.get();
       if (result == CellTrait.NULL) return null;
       if (result != null) {
         return (ValueT) result;
@@ -497,6 +529,30 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     return prop.getDefault(this);
   }
 
+  private Supplier<?>[] getTraitDefaults(CellPropertySpec<?> prop) {
+    int index = prop.getIndex();
+    if (myTraitDefaults == null) {
+      if (myCellTraits.length == 0) return NO_SUPPLIERS;
+      myTraitDefaults = new Supplier<?>[index + 1][];
+    } else if (index >= myTraitDefaults.length) {
+      myTraitDefaults = Arrays.copyOf(myTraitDefaults, index + 1);
+    }
+
+    Supplier<?>[] result = myTraitDefaults[index];
+    if (result == null) {
+      List<Supplier<?>> suppliers = new ArrayList<>(1);
+      for (CellTrait t : myCellTraits) {
+        Supplier<?> s = t.getSupplier(this, prop);
+        if (s != null) {
+          suppliers.add(s);
+        }
+      }
+      result = suppliers.isEmpty() ? NO_SUPPLIERS : suppliers.toArray(new Supplier<?>[suppliers.size()]);
+      myTraitDefaults[index] = result;
+    }
+    return result;
+  }
+
   public <ValueT> ValueT get(CellTraitPropertySpec<ValueT> prop) {
     ValueT result = getRaw(prop);
     if (result != null) return result;
@@ -504,7 +560,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   public <ValueT> ValueT getRaw(CellTraitPropertySpec<ValueT> prop) {
-    for (CellTrait t : myCellTraits) {
+    for (CellTrait t : dispatchTable().get(prop)) {
       Object result = t.get(this, prop);
       if (result == CellTrait.NULL) return null;
       if (result != null) {
@@ -550,9 +606,9 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     if (myProperties == null) return Collections.emptyList();
     List<Cell> result = new ArrayList<>();
     for (CellPropertySpec<Cell> ps : POPUP_SPECS) {
-      Cell cell = (Cell) myProperties.get(ps);
-      if (cell != null) {
-        result.add(cell);
+      Object cell = getExplicit(ps);
+      if (cell != null && cell != NULL_VALUE) {
+        result.add((Cell) cell);
       }
     }
     return result;
@@ -726,7 +782,24 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     return className + "@" + Integer.toHexString(hashCode());
   }
 
-  private class ChildList extends ObservableArrayList<Cell> {
+  private class ChildList extends GapList<Cell> {
+    @Override
+    protected void positionChanged(Cell item, int position) {
+      item.myPositionInParent = position;
+    }
+
+    @Override
+    protected int positionOf(Object item) {
+      return item instanceof Cell ? ((Cell) item).myPositionInParent : -1;
+    }
+
+    @Override
+    public Cell set(int index, Cell item) {
+      Cell result = remove(index);
+      add(index, item);
+      return result;
+    }
+
     @Override
     public void add(final int index, final Cell item) {
       if (item.getParent() != null) {
@@ -836,6 +909,17 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
       return myChildren.size();
     }
 
+    @Override
+    public int indexOf(Object o) {
+      if (myChildren == null) return -1;
+      return myChildren.indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) != -1;
+    }
+
     @Override
     public Cell set(int index, Cell element) {
       if (myChildren == null) {
@@ -18,6 +18,13 @@ package jetbrains.jetpad.cell;
 import com.google.common.base.Function;
 
 public class CellPropertySpec<ValueT> {
+  private static int ourCount;
+
+  private static synchronized int nextIndex() {
+    return ourCount++;
+  }
+
+  private final int myIndex = nextIndex();
   private String myName;
   private Function<Cell, ValueT> myDefaultValue;
 
@@ -39,6 +46,13 @@ public class CellPropertySpec<ValueT> {
     myDefaultValue = defaultValue;
   }
 
+  /**
+   * Dense index of this spec which is used as a slot number in cells
+   */
+  int getIndex() {
+    return myIndex;
+  }
+
   @Override
   public String toString() {
     return myName;
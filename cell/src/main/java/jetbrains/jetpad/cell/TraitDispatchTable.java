@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell;
+
+import jetbrains.jetpad.cell.event.CellEventSpec;
+import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.cell.trait.CellTraitEventSpec;
+import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Traits of a cell which handle a particular event or trait property spec, in dispatch order.
+ * Computed lazily for each spec and valid until the traits of the cell change.
+ */
+class TraitDispatchTable {
+  private final CellTrait[] myTraits;
+  private final Map<Object, CellTrait[]> myHandlers = new HashMap<>();
+
+  TraitDispatchTable(CellTrait[] traits) {
+    myTraits = traits;
+  }
+
+  CellTrait[] get(CellEventSpec<?> spec) {
+    CellTrait[] result = myHandlers.get(spec);
+    if (result == null) {
+      List<CellTrait> handlers = new ArrayList<>();
+      for (CellTrait t : myTraits) {
+        if (contains(t.getHandledEvents(), spec)) {
+          handlers.add(t);
+        }
+      }
+      result = put(spec, handlers);
+    }
+    return result;
+  }
+
+  CellTrait[] get(CellTraitEventSpec<?> spec) {
+    CellTrait[] result = myHandlers.get(spec);
+    if (result == null) {
+      List<CellTrait> handlers = new ArrayList<>();
+      for (CellTrait t : myTraits) {
+        if (contains(t.getHandledTraitEvents(), spec)) {
+          handlers.add(t);
+        }
+      }
+      result = put(spec, handlers);
+    }
+    return result;
+  }
+
+  CellTrait[] get(CellTraitPropertySpec<?> spec) {
+    CellTrait[] result = myHandlers.get(spec);
+    if (result == null) {
+      List<CellTrait> handlers = new ArrayList<>();
+      for (CellTrait t : myTraits) {
+        if (contains(t.getHandledProperties(), spec)) {
+          handlers.add(t);
+        }
+      }
+      result = put(spec, handlers);
+    }
+    return result;
+  }
+
+  private boolean contains(Set<?> specs, Object spec) {
+    return specs == null || specs.contains(spec);
+  }
+
+  private CellTrait[] put(Object spec, List<CellTrait> handlers) {
+    CellTrait[] result;
+    if (handlers.size() == myTraits.length) {
+      result = myTraits;
+    } else if (handlers.isEmpty()) {
+      result = CellTrait.EMPTY_ARRAY;
+    } else {
+      result = handlers.toArray(new CellTrait[handlers.size()]);
+    }
+    myHandlers.put(spec, result);
+    return result;
+  }
+}
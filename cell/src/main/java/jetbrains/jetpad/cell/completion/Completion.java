@@ -17,6 +17,7 @@ package jetbrains.jetpad.cell.completion;
 
 import jetbrains.jetpad.base.Async;
 import jetbrains.jetpad.base.Handler;
+import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.base.SimpleAsync;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
@@ -57,6 +58,38 @@ public class Completion {
     return allItems;
   }
 
+  /**
+   * Both sync and async completion of a cell. A streaming request passes sync items as the first batch, and then
+   * the batches of async completion as they arrive.
+   */
+  public static AsyncCompletionSupplier allCompletion(final Cell cell) {
+    return new AsyncCompletionSupplier() {
+      @Override
+      public Async<List<CompletionItem>> get(CompletionParameters cp) {
+        return allCompletion(cell, cp);
+      }
+
+      @Override
+      public Registration get(CompletionParameters cp, String text, CompletionBatchHandler handler) {
+        List<CompletionItem> syncCompletion = cell.get(COMPLETION).get(cp);
+        if (!syncCompletion.isEmpty()) {
+          handler.onBatch(syncCompletion);
+        }
+        return cell.get(ASYNC_COMPLETION).get(cp, text, handler);
+      }
+
+      @Override
+      public boolean isTextDependent() {
+        return cell.get(ASYNC_COMPLETION).isTextDependent();
+      }
+
+      @Override
+      public boolean isEmpty(CompletionParameters cp) {
+        return isCompletionEmpty(cell, cp);
+      }
+    };
+  }
+
   public static boolean isCompletionEmpty(Cell cell, CompletionParameters params) {
     return cell.get(Completion.COMPLETION).isEmpty(params) && cell.get(Completion.ASYNC_COMPLETION).isEmpty(params);
   }
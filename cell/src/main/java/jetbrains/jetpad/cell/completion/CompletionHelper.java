@@ -20,6 +20,7 @@ import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.completion.CompletionItem;
 import jetbrains.jetpad.completion.CompletionParameters;
 import jetbrains.jetpad.completion.CompletionSupplier;
+import jetbrains.jetpad.completion.IndexedCompletionSupplier;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -45,6 +46,8 @@ public class CompletionHelper {
   private CompletionSupplier mySupplier;
   private CompletionParameters myParameters;
   private List<CompletionItem> myCachedItems;
+  private String myCachedPrefix;
+  private List<CompletionItem> myCachedPrefixed;
 
   public CompletionHelper(CompletionSupplier supplier, CompletionParameters params) {
     mySupplier = supplier;
@@ -63,6 +66,10 @@ public class CompletionHelper {
   }
 
   public List<CompletionItem> prefixedBy(String prefix) {
+    if (mySupplier instanceof IndexedCompletionSupplier) {
+      return new ArrayList<>(indexedPrefixedBy(prefix));
+    }
+
     List<CompletionItem> result = new ArrayList<>();
     for (CompletionItem item : getItems()) {
       if (item.isMatchPrefix(prefix)) {
@@ -72,9 +79,27 @@ public class CompletionHelper {
     return result;
   }
 
+  private List<CompletionItem> indexedPrefixedBy(String prefix) {
+    if (myCachedPrefixed == null || !prefix.equals(myCachedPrefix)) {
+      myCachedPrefixed = ((IndexedCompletionSupplier) mySupplier).prefixedBy(myParameters, prefix);
+      myCachedPrefix = prefix;
+    }
+    return myCachedPrefixed;
+  }
+
+  /**
+   * Items which can match text, both matching and strictly prefixed ones are among them
+   */
+  private List<CompletionItem> candidates(String text) {
+    if (mySupplier instanceof IndexedCompletionSupplier) {
+      return indexedPrefixedBy(text);
+    }
+    return getItems();
+  }
+
   public List<CompletionItem> strictlyPrefixedBy(String prefix) {
     List<CompletionItem> result = new ArrayList<>();
-    for (CompletionItem item : getItems()) {
+    for (CompletionItem item : candidates(prefix)) {
       if (item.isStrictMatchPrefix(prefix)) {
         result.add(item);
       }
@@ -84,7 +109,7 @@ public class CompletionHelper {
 
   public List<CompletionItem> matches(String text) {
     List<CompletionItem> result = new ArrayList<>();
-    for (CompletionItem item : getItems()) {
+    for (CompletionItem item : candidates(text)) {
       if (item.isMatch(text)) {
         result.add(item);
       }
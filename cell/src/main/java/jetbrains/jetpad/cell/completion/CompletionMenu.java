@@ -15,8 +15,10 @@
  */
 package jetbrains.jetpad.cell.completion;
 
+import com.google.common.collect.ImmutableSet;
 import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.completion.CompletionItem;
 import jetbrains.jetpad.completion.CompletionMenuModel;
@@ -33,6 +35,7 @@ import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.values.Color;
 
 import java.util.Arrays;
+import java.util.Set;
 
 class CompletionMenu {
   static Cell createCell(CompletionMenuModel model, Handler<CompletionItem> completer, CompositeRegistration reg) {
@@ -101,6 +104,11 @@ class CompletionMenu {
       super(source, new HorizontalCell());
       getTarget().children().add(myText = new TextCell());
       getTarget().addTrait(new CellTrait() {
+        @Override
+        public Set<CellEventSpec<?>> getHandledEvents() {
+          return ImmutableSet.<CellEventSpec<?>>of(CellEventSpec.MOUSE_PRESSED);
+        }
+
         @Override
         public void onMousePressed(Cell cell, MouseEvent event) {
           CompletionMenuModelMapper parentMapper = (CompletionMenuModelMapper) getParent();
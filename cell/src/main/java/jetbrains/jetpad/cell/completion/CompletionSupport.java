@@ -30,6 +30,7 @@ import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.model.event.CompositeRegistration;
+import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyBinding;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
@@ -72,12 +73,12 @@ public class CompletionSupport {
               throw new IllegalStateException();
             }
 
-            showPopup(cell, cell.frontPopup(), Completion.allCompletion(cell, new BaseCompletionParameters() {
+            showPopup(cell, cell.frontPopup(), Completion.allCompletion(cell), new BaseCompletionParameters() {
               @Override
               public boolean isMenu() {
                 return true;
               }
-            }), restoreState);
+            }, restoreState);
           }
 
           @Override
@@ -129,7 +130,21 @@ public class CompletionSupport {
     };
   }
 
-  public static void showCompletion(final TextCell textCell, Async<List<CompletionItem>> items, final Registration removeOnClose, final Runnable restoreState) {
+  public static void showCompletion(TextCell textCell, final Async<List<CompletionItem>> items, Registration removeOnClose, Runnable restoreState) {
+    showCompletion(textCell, new AsyncCompletionSupplier() {
+      @Override
+      public Async<List<CompletionItem>> get(CompletionParameters cp) {
+        return items;
+      }
+    }, CompletionParameters.EMPTY, removeOnClose, restoreState);
+  }
+
+  /**
+   * Shows completion menu whose items are streamed from supplier. Batches are added to the menu as they arrive.
+   * A request is cancelled when the menu is closed, and, if supplier is text dependent, restarted when the text changes.
+   */
+  public static void showCompletion(final TextCell textCell, final AsyncCompletionSupplier supplier, final CompletionParameters cp,
+                                    final Registration removeOnClose, final Runnable restoreState) {
     if (!textCell.focused().get()) {
       throw new IllegalArgumentException();
     }
@@ -240,17 +255,45 @@ public class CompletionSupport {
     textCell.bottomPopup().set(completionCell);
     completionCell.showSlide(150);
 
-    items.onSuccess(new Handler<List<CompletionItem>>() {
+    final Value<Registration> request = new Value<>(Registration.EMPTY);
+    final Runnable startRequest = new Runnable() {
       @Override
-      public void handle(List<CompletionItem> items) {
-        menuModel.loading.set(false);
-        menuModel.items.addAll(items);
+      public void run() {
+        request.get().remove();
+        menuModel.items.clear();
+        menuModel.loading.set(true);
+        request.set(supplier.get(cp, Strings.nullToEmpty(prefixText.get()), new CompletionBatchHandler() {
+          @Override
+          public void onBatch(List<CompletionItem> items) {
+            menuModel.addItems(items);
+          }
+
+          @Override
+          public void onDone() {
+            menuModel.loading.set(false);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            menuModel.loading.set(true);
+          }
+        }));
       }
-    });
-    items.onFailure(new Handler<Throwable>() {
+    };
+    startRequest.run();
+    if (supplier.isTextDependent()) {
+      reg.add(menuModel.text.addHandler(new EventHandler<PropertyChangeEvent<String>>() {
+        @Override
+        public void onEvent(PropertyChangeEvent<String> event) {
+          startRequest.run();
+        }
+      }));
+    }
+    reg.add(new Registration() {
       @Override
-      public void handle(Throwable item) {
-        menuModel.loading.set(true);
+      public void remove() {
+        request.get().remove();
+        request.set(Registration.EMPTY);
       }
     });
   }
@@ -258,7 +301,8 @@ public class CompletionSupport {
   private static TextCell showPopup(
       Cell cell,
       Property<Cell> targetPopup,
-      Async<List<CompletionItem>> items,
+      AsyncCompletionSupplier items,
+      CompletionParameters cp,
       Runnable onDeactivate) {
     CellContainer container = cell.cellContainer().get();
     final HorizontalCell popup = new HorizontalCell();
@@ -278,7 +322,7 @@ public class CompletionSupport {
     targetPopup.set(popup);
     final Runnable state = container.saveState();
     textCell.focus();
-    showCompletion(textCell, items, new Registration() {
+    showCompletion(textCell, items, cp, new Registration() {
       @Override
       public void remove() {
         popup.removeFromParent();
@@ -20,11 +20,18 @@ import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.event.ListenerCaller;
 import jetbrains.jetpad.model.event.Listeners;
 import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
 
 public class IndentCell extends Cell {
+  /**
+   * If set on a root indent cell, only cells in lines near the visible part of the editor are mapped,
+   * the rest are shown as placeholders of estimated size. Should be set before the cell is mapped.
+   */
+  public static final CellPropertySpec<Boolean> VIRTUALIZED = new CellPropertySpec<>("virtualized", false);
+
   private boolean myIndented;
   private Listeners<IndentContainerCellListener> myListeners;
 
@@ -40,6 +47,10 @@ public class IndentCell extends Cell {
     return myIndented;
   }
 
+  public Property<Boolean> virtualized() {
+    return getProp(VIRTUALIZED);
+  }
+
   public boolean isRootIndent() {
     if (cellContainer() == null) return false;
     Cell parent = getParent();
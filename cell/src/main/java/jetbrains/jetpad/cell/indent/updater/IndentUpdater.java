@@ -27,12 +27,15 @@ import java.util.*;
 public class IndentUpdater<TargetT> {
   private Cell myRoot;
   private Map<Cell, TargetT> myNewLineToLine = new HashMap<>();
+  private Map<TargetT, Cell> myLineToNewLine = new HashMap<>();
+  private Set<TargetT> myIndentedLines = new HashSet<>();
   private Map<Cell, CellWrapper<TargetT>> myWrappers = new HashMap<>();
   private TargetT myTarget;
   private IndentUpdaterTarget<TargetT> myIndentUpdaterTarget;
   private Cell myJustBecameInvisible;
   private Map<Cell, Registration> myChildRegistrations = new HashMap<>();
   private boolean myInitialized;
+  private int myLineIndexHint;
 
   private Set<Cell> myAttached = new HashSet<>();
 
@@ -122,52 +125,30 @@ public class IndentUpdater<TargetT> {
     setAttached(child, true);
 
     Position insertAt = new Position(this, child);
-    Position prevNewLinePos = prevNewLine(insertAt.prev());
+    Location location = locate(insertAt);
 
     if (isCell(child)) {
       CellWrapper<TargetT> wrapper = myIndentUpdaterTarget.wrap(child);
       myWrappers.put(child, wrapper);
-
-      if (prevNewLinePos == null) {
-        Position first = new Position(this, firstLeaf(myRoot));
-        children(children(myTarget).get(0)).add(first.deltaTo(insertAt), wrapper.item());
-      } else {
-        TargetT targetLine = myNewLineToLine.get(prevNewLinePos.get());
-        int indentDelta = indent(prevNewLinePos.get()) > 0 ? 1 : 0;
-        children(targetLine).add(prevNewLinePos.deltaTo(insertAt) - 1 + indentDelta, wrapper.item());
-      }
+      children(location.line).add(location.index, wrapper.item());
     } else if (child instanceof NewLineCell) {
-      Position nextNewLinePos = nextNewLine(insertAt.next());
-
       TargetT newLine = myIndentUpdaterTarget.newLine();
       int indent = indent(child);
 
       if (indent > 0) {
         TargetT indentItem = myIndentUpdaterTarget.newIndent(indent);
         children(newLine).add(indentItem);
+        myIndentedLines.add(newLine);
       }
 
       myNewLineToLine.put(child, newLine);
+      myLineToNewLine.put(newLine, child);
 
-      if (prevNewLinePos == null) {
-        children(myTarget).add(1, newLine);
-      } else {
-        TargetT prevLine = myNewLineToLine.get(prevNewLinePos.get());
+      int lineIndex = lineIndex(location.line) + 1;
+      children(myTarget).add(lineIndex, newLine);
+      myLineIndexHint = lineIndex;
 
-        //this is optimization for the initalization case
-        int prevLineIndex = children(myTarget).lastIndexOf(prevLine);
-        children(myTarget).add(prevLineIndex + 1, newLine);
-      }
-
-      Iterator<Position> positions = nextNewLinePos == null ? toEnd(insertAt.next()) : range(insertAt.next(), nextNewLinePos);
-      while (positions.hasNext()) {
-        Cell part = positions.next().get();
-        if (!isCell(part)) continue;
-        CellWrapper<TargetT> wrapper = myWrappers.get(part);
-        TargetT item = wrapper.item();
-        removeFromParent(item);
-        children(newLine).add(item);
-      }
+      moveItems(location.line, location.index, newLine);
     }
   }
 
@@ -178,117 +159,105 @@ public class IndentUpdater<TargetT> {
       throw new IllegalStateException("child " + child + " is already detached");
     }
 
-    Position removeAt = new Position(this, child);
-    Position prevNewLinePos = prevNewLine(removeAt.prev());
-
     if (isCell(child)) {
-      if (prevNewLinePos == null) {
-        Position first = new Position(this, firstLeaf(myRoot));
-        children(children(myTarget).get(0)).remove(first.deltaTo(removeAt));
-      } else {
-        TargetT line = myNewLineToLine.get(prevNewLinePos.get());
-        children(line).remove(prevNewLinePos.deltaTo(removeAt) - 1 + (indent(child) > 0 ? 1 : 0));
-      }
-      myWrappers.remove(child).remove();
+      CellWrapper<TargetT> wrapper = myWrappers.remove(child);
+      removeFromParent(wrapper.item());
+      wrapper.remove();
     } else if (child instanceof NewLineCell) {
       TargetT lineCell = myNewLineToLine.remove(child);
 
       if (lineCell == null) {
         throw new IllegalStateException();
       }
+      myLineToNewLine.remove(lineCell);
 
-      if (indent(child) > 0) {
+      if (myIndentedLines.remove(lineCell)) {
         children(lineCell).remove(0);
       }
 
-      removeFromParent(lineCell);
-
-      TargetT mergeWith;
-      if (prevNewLinePos == null) {
-        mergeWith = children(myTarget).get(0);
-      } else {
-        mergeWith = myNewLineToLine.get(prevNewLinePos.get());
-      }
+      int lineIndex = lineIndex(lineCell);
+      TargetT mergeWith = children(myTarget).get(lineIndex - 1);
+      children(myTarget).remove(lineIndex);
+      myLineIndexHint = lineIndex - 1;
 
-      for (TargetT c : new ArrayList<>(children(lineCell))) {
-        removeFromParent(c);
-        children(mergeWith).add(c);
-      }
+      moveItems(lineCell, 0, mergeWith);
     }
 
     setAttached(child, false);
   }
 
-  private void removeFromParent(TargetT c) {
-    children(myIndentUpdaterTarget.parent(c)).remove(c);
-  }
-
-  private Position prevNewLine(Position from) {
-    Position current = from;
+  /**
+   * Finds a line and an index in it where an item for a position should be. A line contains items of cells
+   * which are between its new line and the next one, so it's enough to look at the nearest preceding cell or
+   * new line instead of counting positions from the line start.
+   */
+  private Location locate(Position pos) {
+    Position current = pos.prev();
     while (current != null) {
-      if (current.get() instanceof NewLineCell) {
-        return current;
+      Cell cell = current.get();
+      if (cell instanceof NewLineCell) {
+        TargetT line = myNewLineToLine.get(cell);
+        return new Location(line, myIndentedLines.contains(line) ? 1 : 0);
+      }
+      CellWrapper<TargetT> wrapper = myWrappers.get(cell);
+      if (wrapper != null) {
+        TargetT item = wrapper.item();
+        TargetT line = myIndentUpdaterTarget.parent(item);
+        return new Location(line, children(line).indexOf(item) + 1);
       }
       current = current.prev();
     }
-    return null;
+    return new Location(children(myTarget).get(0), 0);
   }
 
-  private Position nextNewLine(Position from) {
-    Position current = from;
-    while (current != null) {
-      if (current.get() instanceof NewLineCell) {
-        return current;
+  /**
+   * Looks for a line starting from the line of the previous update and going in both directions, since
+   * consecutive updates usually touch neighbouring lines, e.g. the last lines during initialization.
+   */
+  private int lineIndex(TargetT line) {
+    List<TargetT> lines = children(myTarget);
+    int size = lines.size();
+    int hint = Math.min(myLineIndexHint, size - 1);
+    for (int distance = 0; hint - distance >= 0 || hint + distance < size; distance++) {
+      int next = hint + distance;
+      if (next < size && lines.get(next) == line) {
+        return next;
+      }
+      int prev = hint - distance;
+      if (distance > 0 && prev >= 0 && lines.get(prev) == line) {
+        return prev;
       }
-      current = current.next();
     }
-    return null;
+    throw new IllegalStateException("line " + line + " isn't found");
   }
 
-  private Iterator<Position> toEnd(final Position pos) {
-    return new Iterator<Position>() {
-      private Position myCurrent = pos;
-
-      @Override
-      public boolean hasNext() {
-        return myCurrent != null;
-      }
-
-      @Override
-      public Position next() {
-        Position result = myCurrent;
-        myCurrent = myCurrent.next();
-        return result;
-      }
-
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    };
+  private void moveItems(TargetT from, int fromIndex, TargetT to) {
+    List<TargetT> source = children(from);
+    List<TargetT> moved = new ArrayList<>(source.subList(fromIndex, source.size()));
+    for (int i = source.size() - 1; i >= fromIndex; i--) {
+      source.remove(i);
+    }
+    children(to).addAll(moved);
   }
 
-  private Iterator<Position> range(final Position from, final Position to) {
-    return new Iterator<Position>() {
-      private Position myCurrent = from;
-
-      @Override
-      public boolean hasNext() {
-        return !myCurrent.equals(to);
-      }
+  private void removeFromParent(TargetT c) {
+    children(myIndentUpdaterTarget.parent(c)).remove(c);
+  }
 
-      @Override
-      public Position next() {
-        Position result = myCurrent;
-        myCurrent = myCurrent.next();
-        return result;
+  private Cell prevNewLine(Position from) {
+    Position current = from;
+    while (current != null) {
+      Cell cell = current.get();
+      if (cell instanceof NewLineCell) {
+        return cell;
       }
-
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
+      CellWrapper<TargetT> wrapper = myWrappers.get(cell);
+      if (wrapper != null) {
+        return myLineToNewLine.get(myIndentUpdaterTarget.parent(wrapper.item()));
       }
-    };
+      current = current.prev();
+    }
+    return null;
   }
 
   private int indent(Cell part) {
@@ -296,8 +265,8 @@ public class IndentUpdater<TargetT> {
     Cell current = part.getParent();
     Cell prevCurrent = part;
     while (current != myRoot) {
-      Position prevNewLine = prevNewLine(new Position(this, prevCurrent));
-      if (isIndented(current) && prevNewLine != null && prevNewLine.get().getParent() == current) {
+      Cell prevNewLine = prevNewLine(new Position(this, prevCurrent));
+      if (isIndented(current) && prevNewLine != null && prevNewLine.getParent() == current) {
         result++;
       }
 
@@ -307,14 +276,6 @@ public class IndentUpdater<TargetT> {
     return result;
   }
 
-  private Cell firstLeaf(Cell item) {
-    if (isCell(item) || item.children().isEmpty()) return item;
-    for (Cell child : item.children()) {
-      if (isVisible(child)) return firstLeaf(child);
-    }
-    throw new IllegalStateException();
-  }
-
   Cell root() {
     return myRoot;
   }
@@ -375,4 +336,14 @@ public class IndentUpdater<TargetT> {
 
   protected void onVisibilityChanged(Cell cell, PropertyChangeEvent<Boolean> event) {
   }
-}
\ No newline at end of file
+
+  private class Location {
+    final TargetT line;
+    final int index;
+
+    Location(TargetT line, int index) {
+      this.line = line;
+      this.index = index;
+    }
+  }
+}
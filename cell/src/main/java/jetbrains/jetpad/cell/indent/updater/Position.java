@@ -16,9 +16,6 @@
 package jetbrains.jetpad.cell.indent.updater;
 
 import jetbrains.jetpad.cell.Cell;
-import jetbrains.jetpad.model.composite.Composites;
-
-import java.util.Iterator;
 
 class Position {
   private IndentUpdater<?> myUpdater;
@@ -45,20 +42,6 @@ class Position {
     return myCell;
   }
 
-  int deltaTo(Position to) {
-    if (to.myCell == myCell) return 0;
-    if (Composites.isBefore(myCell, to.myCell)) {
-      int count = 0;
-      for (Cell p : nextLeaves(myCell)) {
-        count++;
-        if (p == to.myCell) break;
-      }
-      return count;
-    } else {
-      return -to.deltaTo(this);
-    }
-  }
-
   private Cell next(Cell item) {
     Cell next = nextVisibleLeaf(item);
     if (next == null) return null;
@@ -91,35 +74,6 @@ class Position {
     return upperMostCell;
   }
 
-  private Iterable<Cell> nextLeaves(final Cell item) {
-    return new Iterable<Cell>() {
-      @Override
-      public Iterator<Cell> iterator() {
-        return new Iterator<Cell>() {
-          private Cell myCurrentLeaf = item;
-          private Cell myNextLeaf = Position.this.next(item);
-
-          @Override
-          public boolean hasNext() {
-            return myNextLeaf != null;
-          }
-
-          @Override
-          public Cell next() {
-            myCurrentLeaf = myNextLeaf;
-            myNextLeaf = Position.this.next(myCurrentLeaf);
-            return myCurrentLeaf;
-          }
-
-          @Override
-          public void remove() {
-            throw new UnsupportedOperationException();
-          }
-        };
-      }
-    };
-  }
-
   private Cell nextVisibleLeaf(Cell item) {
     Cell root = myUpdater.root();
     Cell current = nextLeaf(item, root);
@@ -70,12 +70,12 @@ public class TextEditingTrait extends TextNavigationTrait {
         if (isActive()) {
           throw new IllegalStateException();
         }
-        CompletionSupport.showCompletion(cell, Completion.allCompletion(cell, new BaseCompletionParameters() {
+        CompletionSupport.showCompletion(cell, Completion.allCompletion(cell), new BaseCompletionParameters() {
           @Override
           public boolean isMenu() {
             return true;
           }
-        }), Registration.EMPTY, restoreState);
+        }, Registration.EMPTY, restoreState);
       }
 
       @Override
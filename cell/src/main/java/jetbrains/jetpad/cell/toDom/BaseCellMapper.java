@@ -20,7 +20,6 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.user.client.DOM;
-import com.google.gwt.user.client.Timer;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.toUtil.CounterSpec;
@@ -238,19 +237,12 @@ abstract class BaseCellMapper<SourceT extends Cell> extends Mapper<SourceT, Elem
     if (event.getNewValue() != null) {
       if (myPopupMappers == null) {
         myPopupMappers = createChildSet();
-        final Timer timer = new Timer() {
+        myPopupUpdateReg = myContext.popupPositions.add(new Runnable() {
           @Override
           public void run() {
             updatePopupPositions();
           }
-        };
-        timer.scheduleRepeating(50);
-        myPopupUpdateReg = new Registration() {
-          @Override
-          public void remove() {
-            timer.cancel();
-          }
-        };
+        });
       }
 
       BaseCellMapper<?> pm = createMapper(event.getNewValue());
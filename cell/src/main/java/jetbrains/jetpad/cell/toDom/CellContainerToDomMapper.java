@@ -252,6 +252,7 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
             }
 
             refreshLineHighlight();
+            myCellToDomContext.popupPositions.schedule();
           }
 
           @Override
@@ -261,6 +262,7 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
             mapper.childAdded(change);
 
             refreshLineHighlight();
+            myCellToDomContext.popupPositions.schedule();
           }
 
           @Override
@@ -270,6 +272,7 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
             mapper.childRemoved(change);
 
             refreshLineHighlight();
+            myCellToDomContext.popupPositions.schedule();
           }
         });
       }
@@ -301,6 +304,16 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
     return (Mapper<? extends Cell, ? extends Element>) rootMapper().getDescendantMapper(cell);
   }
 
+  private IndentRootCellMapper indentRootMapper(Cell cell) {
+    for (Cell current = cell; current != null; current = current.getParent()) {
+      if (current instanceof IndentCell && ((IndentCell) current).isRootIndent()) {
+        Mapper<?, ?> mapper = getMapper(current);
+        return mapper instanceof IndentRootCellMapper ? (IndentRootCellMapper) mapper : null;
+      }
+    }
+    return null;
+  }
+
   private Element getElement(Cell cell) {
     Mapper<? extends Cell, ? extends Element> mapper = getMapper(cell);
     if (mapper == null) {
@@ -313,13 +326,13 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
     return new CellContainerPeer() {
       @Override
       public int getCaretAt(TextCell tv, int x) {
-        TextCellMapper textMapper = (TextCellMapper) getMapper(tv);
+        TextCellMapper textMapper = (TextCellMapper) materializedMapper(tv);
         return textMapper.getCaretAt(x);
       }
 
       @Override
       public int getCaretOffset(TextCell tv, int caret) {
-        TextCellMapper textMapper = (TextCellMapper) getMapper(tv);
+        TextCellMapper textMapper = (TextCellMapper) materializedMapper(tv);
         return textMapper.getCaretOffset(caret);
       }
 
@@ -341,7 +354,12 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
           }  else if (cell instanceof IndentCell) {
             return Cells.indentBounds((IndentCell) cell);
           } else {
-            throw new IllegalStateException();
+            IndentRootCellMapper indentMapper = indentRootMapper(cell);
+            Rectangle placeholder = indentMapper != null ? indentMapper.placeholderBounds(cell) : null;
+            if (placeholder == null) {
+              throw new IllegalStateException();
+            }
+            return placeholder;
           }
         } else {
           Element target = getElement(cell);
@@ -356,9 +374,18 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
 
       @Override
       public void scrollTo(Rectangle rect, Cell cell) {
+        materializedMapper(cell);
         Scrolling.scrollTo(rect, getElement(cell));
       }
 
+      private Mapper<? extends Cell, ? extends Element> materializedMapper(Cell cell) {
+        Mapper<? extends Cell, ? extends Element> mapper = getMapper(cell);
+        if (mapper != null) return mapper;
+
+        IndentRootCellMapper indentMapper = indentRootMapper(cell);
+        return indentMapper == null ? null : indentMapper.materialize(cell);
+      }
+
       @Override
       public Cell findCell(Cell root, Vector loc) {
         Element e = elementAt(loc.x - myScrollLeft, loc.y - myScrollTop);
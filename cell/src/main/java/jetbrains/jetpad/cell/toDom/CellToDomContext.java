@@ -16,6 +16,7 @@
 package jetbrains.jetpad.cell.toDom;
 
 import com.google.gwt.dom.client.Element;
+import jetbrains.jetpad.cell.toUtil.PopupPositionScheduler;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.ValueProperty;
 
@@ -27,6 +28,8 @@ class CellToDomContext {
   final Element rootElement;
   final Element focusElement;
   final boolean eventsDisabled;
+  final PopupPositionScheduler popupPositions = new DomPopupPositionScheduler();
+  final DomViewportScheduler viewport = new DomViewportScheduler();
   private final Map<Element, BaseCellMapper<?>> myMappers = new HashMap<>();
 
   CellToDomContext(Element rootElement, boolean eventsDisabled) {
@@ -15,17 +15,21 @@
  */
 package jetbrains.jetpad.cell.toDom;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.query.client.Function;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.dom.DomCell;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.mapper.Synchronizers;
 import jetbrains.jetpad.model.property.WritableProperty;
 
+import java.util.Set;
+
 import static com.google.gwt.query.client.GQuery.$;
 
 class DomCellMapper extends BaseCellMapper<DomCell> {
@@ -77,6 +81,11 @@ class DomCellMapper extends BaseCellMapper<DomCell> {
     }));
 
     conf.add(Synchronizers.forRegistration(getSource().addTrait(new CellTrait() {
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return ImmutableSet.<CellEventSpec<?>>of(CellEventSpec.FOCUS_GAINED, CellEventSpec.FOCUS_LOST);
+      }
+
       @Override
       public void onFocusGained(Cell cell, FocusEvent event) {
         if (getSource().node.get() != null) {
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.toDom;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Window;
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.cell.toUtil.PopupPositionScheduler;
+
+class DomPopupPositionScheduler extends PopupPositionScheduler {
+  private static native JavaScriptObject addScrollListener(DomPopupPositionScheduler scheduler) /*-{
+    var listener = $entry(function() {
+      scheduler.@jetbrains.jetpad.cell.toUtil.PopupPositionScheduler::schedule()();
+    });
+    $doc.addEventListener('scroll', listener, true);
+    return listener;
+  }-*/;
+
+  private static native void removeScrollListener(JavaScriptObject listener) /*-{
+    $doc.removeEventListener('scroll', listener, true);
+  }-*/;
+
+  @Override
+  protected void requestUpdate(final Runnable update) {
+    AnimationScheduler.get().requestAnimationFrame(new AnimationScheduler.AnimationCallback() {
+      @Override
+      public void execute(double timestamp) {
+        update.run();
+      }
+    });
+  }
+
+  @Override
+  protected Registration listenToChanges() {
+    //scroll events don't bubble, so we capture them on the document to learn about scrolling of any element
+    final JavaScriptObject scrollListener = addScrollListener(this);
+    final HandlerRegistration resizeReg = Window.addResizeHandler(new ResizeHandler() {
+      @Override
+      public void onResize(ResizeEvent event) {
+        schedule();
+      }
+    });
+
+    return new Registration() {
+      @Override
+      public void remove() {
+        removeScrollListener(scrollListener);
+        resizeReg.removeHandler();
+      }
+    };
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.toDom;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Window;
+import jetbrains.jetpad.base.Registration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs updates of virtualized content when its visible part can change, i.e. when the page or any scroller is
+ * scrolled, the window is resized, or an update is requested explicitly. Requests are coalesced until the next
+ * animation frame. It's independent of popup positioning, so changes which only move popups don't update viewports.
+ */
+class DomViewportScheduler {
+  private static native JavaScriptObject addScrollListener(DomViewportScheduler scheduler) /*-{
+    var listener = $entry(function() {
+      scheduler.@jetbrains.jetpad.cell.toDom.DomViewportScheduler::schedule()();
+    });
+    $doc.addEventListener('scroll', listener, true);
+    return listener;
+  }-*/;
+
+  private static native void removeScrollListener(JavaScriptObject listener) /*-{
+    $doc.removeEventListener('scroll', listener, true);
+  }-*/;
+
+  private final List<Runnable> myUpdaters = new ArrayList<>();
+  private JavaScriptObject myScrollListener;
+  private HandlerRegistration myResizeReg;
+  private boolean myScheduled;
+
+  Registration add(final Runnable updater) {
+    if (myUpdaters.isEmpty()) {
+      //scroll events don't bubble, so we capture them on the document to learn about scrolling of any element
+      myScrollListener = addScrollListener(this);
+      myResizeReg = Window.addResizeHandler(new ResizeHandler() {
+        @Override
+        public void onResize(ResizeEvent event) {
+          schedule();
+        }
+      });
+    }
+    myUpdaters.add(updater);
+
+    return new Registration() {
+      @Override
+      public void remove() {
+        if (!myUpdaters.remove(updater)) return;
+        if (myUpdaters.isEmpty()) {
+          removeScrollListener(myScrollListener);
+          myScrollListener = null;
+          myResizeReg.removeHandler();
+          myResizeReg = null;
+        }
+      }
+    };
+  }
+
+  void schedule() {
+    if (myScheduled || myUpdaters.isEmpty()) return;
+    myScheduled = true;
+    AnimationScheduler.get().requestAnimationFrame(new AnimationScheduler.AnimationCallback() {
+      @Override
+      public void execute(double timestamp) {
+        myScheduled = false;
+        for (Runnable updater : new ArrayList<>(myUpdaters)) {
+          updater.run();
+        }
+      }
+    });
+  }
+}
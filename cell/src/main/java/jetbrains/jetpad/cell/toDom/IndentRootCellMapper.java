@@ -20,10 +20,10 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.user.client.DOM;
-import com.google.gwt.user.client.Timer;
 import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
 import jetbrains.jetpad.cell.CellPropertySpec;
 import jetbrains.jetpad.cell.indent.IndentCell;
 import jetbrains.jetpad.cell.indent.IndentContainerCellListener;
@@ -32,29 +32,52 @@ import jetbrains.jetpad.cell.indent.updater.IndentUpdater;
 import jetbrains.jetpad.cell.indent.updater.IndentUpdaterTarget;
 import jetbrains.jetpad.cell.toUtil.CounterUtil;
 import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.mapper.Mapper;
 import jetbrains.jetpad.mapper.MappingContext;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.composite.Composites;
+import jetbrains.jetpad.model.event.CompositeRegistration;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.projectional.domUtil.DomTextEditor;
+import jetbrains.jetpad.projectional.domUtil.DomUtil;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
+  private static final int MIN_OVERSCAN = 200;
+  private static final Vector DEFAULT_ESTIMATE = new Vector(30, 15);
+
   private Set<BaseCellMapper<?>> myCellMappers;
   private IndentUpdater<Node> myIndentUpdater;
   private Registration myRegistration;
-  private Timer myPositionUpdater;
-  private Map<Mapper<?, ?>, Runnable> myPositionUpdaters = new HashMap<>();
+  private Map<Mapper<?, ?>, Registration> myPositionUpdaters = new HashMap<>();
+
+  private boolean myVirtualized;
+  private Map<Node, VirtualCellWrapper> myItemToWrapper;
+  private Map<Cell, VirtualCellWrapper> myCellToWrapper;
+  private Set<VirtualCellWrapper> myMaterialized;
+  private VirtualCellWrapper myFocusedWrapper;
+  private Registration myUpdateRegistration = Registration.EMPTY;
+  private long myMeasuredWidth;
+  private long myMeasuredHeight;
+  private int myMeasuredCount;
 
   IndentRootCellMapper(IndentCell source, CellToDomContext ctx) {
     super(source, ctx, DOM.createDiv());
     myCellMappers = createChildSet();
+    myVirtualized = source.get(IndentCell.VIRTUALIZED);
+    if (myVirtualized) {
+      myItemToWrapper = new HashMap<>();
+      myCellToWrapper = new HashMap<>();
+      myMaterialized = new HashSet<>();
+    }
 
     myIndentUpdater = new IndentUpdater<Node>(
       getSource(),
@@ -77,6 +100,10 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
 
         @Override
         public CellWrapper<Node> wrap(final Cell cell) {
+          if (myVirtualized) {
+            return new VirtualCellWrapper(cell);
+          }
+
           final BaseCellMapper<?> mapper = createMapper(cell);
           myCellMappers.add(mapper);
           CounterUtil.updateOnAdd(getSource(), cell, mapper);
@@ -115,7 +142,7 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
         @Override
         public Element parent(Node item) {
           if (item instanceof Element) {
-            return item.getParentElement().getParentElement();
+            return line(item);
           } else {
             throw new IllegalStateException();
           }
@@ -152,21 +179,29 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
       @Override
       public void childAdded(CollectionItemEvent<Cell> event) {
         myIndentUpdater.childAdded(event.getItem());
+        getContext().popupPositions.schedule();
+        scheduleViewportUpdate();
       }
 
       @Override
       public void childRemoved(CollectionItemEvent<Cell> event) {
         myIndentUpdater.childRemoved(event.getItem());
+        getContext().popupPositions.schedule();
+        scheduleViewportUpdate();
       }
 
       @Override
-      public void propertyChanged(Cell cell, final CellPropertySpec<?> prop, final PropertyChangeEvent<?> event) {
+      public void propertyChanged(final Cell cell, final CellPropertySpec<?> prop, final PropertyChangeEvent<?> event) {
+        getContext().popupPositions.schedule();
+        scheduleViewportUpdate();
+
         if (CounterUtil.isCounterProp(prop)) {
           iterateLeaves(cell, new Handler<Cell>() {
             @Override
             public void handle(Cell item) {
               BaseCellMapper<?> mapper = (BaseCellMapper<?>) getDescendantMapper(item);
               if (mapper == null) {
+                if (myVirtualized) return;
                 throw new IllegalStateException();
               }
 
@@ -182,10 +217,7 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
             myCellMappers.remove(popupMapper);
             popupMapper.getTarget().removeFromParent();
 
-            myPositionUpdaters.remove(popupMapper);
-            if (myPositionUpdaters.isEmpty()) {
-              myPositionUpdater.cancel();
-            }
+            myPositionUpdaters.remove(popupMapper).remove();
           }
 
           if (popupChangeEvent.getNewValue() != null) {
@@ -193,7 +225,6 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
             myCellMappers.add(popupMapper);
 
             final PopupPositioner positioner = new PopupPositioner(getContext());
-            final Rectangle bounds = cell.getBounds();
 
             final Element popupElement = popupMapper.getTarget();
             popupElement.getStyle().setPosition(Style.Position.ABSOLUTE);
@@ -202,6 +233,7 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
             Runnable updater = new Runnable() {
               @Override
               public void run() {
+                Rectangle bounds = cell.getBounds();
                 if (prop == Cell.BOTTOM_POPUP) {
                   positioner.positionBottom(bounds, popupElement);
                 } else if (prop == Cell.FRONT_POPUP) {
@@ -215,11 +247,7 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
             };
 
             updater.run();
-
-            if (myPositionUpdaters.isEmpty()) {
-              myPositionUpdater.scheduleRepeating(50);
-            }
-            myPositionUpdaters.put(popupMapper, updater);
+            myPositionUpdaters.put(popupMapper, getContext().popupPositions.add(updater));
           }
         } else if (prop == Cell.VISIBLE) {
           myIndentUpdater.visibilityChanged(cell, (PropertyChangeEvent<Boolean>) event);
@@ -238,25 +266,260 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
       }
     });
 
-    myPositionUpdater = new Timer() {
-      @Override
-      public void run() {
-        for (Runnable r : myPositionUpdaters.values()) {
-          r.run();
+    if (myVirtualized) {
+      CellContainer cellContainer = getSource().cellContainer().get();
+      myRegistration = new CompositeRegistration(myRegistration, cellContainer.focusedCell.addHandler(new EventHandler<PropertyChangeEvent<Cell>>() {
+        @Override
+        public void onEvent(PropertyChangeEvent<Cell> event) {
+          focusChanged(event.getNewValue());
         }
-      }
-    };
+      }));
+      focusChanged(cellContainer.focusedCell.get());
+
+      //lines are mapped when the page or a scroller is scrolled, the scheduler listens to this and coalesces updates
+      myUpdateRegistration = getContext().viewport.add(new Runnable() {
+        @Override
+        public void run() {
+          update();
+        }
+      });
+      scheduleViewportUpdate();
+    }
   }
 
   @Override
   protected void onDetach() {
+    myUpdateRegistration.remove();
+    myUpdateRegistration = Registration.EMPTY;
+
     List<Cell> children = getSource().children();
     for (int i = children.size() - 1; i >= 0; i--) {
       Cell c = children.get(i);
       myIndentUpdater.childRemoved(c);
     }
-    myPositionUpdater.cancel();
+    for (Registration reg : myPositionUpdaters.values()) {
+      reg.remove();
+    }
+    myPositionUpdaters.clear();
     myRegistration.remove();
     super.onDetach();
   }
-}
\ No newline at end of file
+
+  private void focusChanged(Cell focused) {
+    myFocusedWrapper = null;
+    for (Cell current = focused; current != null && current != getSource(); current = current.getParent()) {
+      VirtualCellWrapper wrapper = myCellToWrapper.get(current);
+      if (wrapper != null) {
+        myFocusedWrapper = wrapper;
+        materializeAround(wrapper);
+        break;
+      }
+    }
+    scheduleViewportUpdate();
+  }
+
+  private void scheduleViewportUpdate() {
+    if (myVirtualized) {
+      getContext().viewport.schedule();
+    }
+  }
+
+  /**
+   * Mapper of a cell which is shown as a placeholder is created on demand, e.g. when we need a caret position in it
+   */
+  BaseCellMapper<?> materialize(Cell cell) {
+    if (!myVirtualized) return null;
+    for (Cell current = cell; current != null && current != getSource(); current = current.getParent()) {
+      VirtualCellWrapper wrapper = myCellToWrapper.get(current);
+      if (wrapper != null) {
+        materializeAround(wrapper);
+        return (BaseCellMapper<?>) getDescendantMapper(cell);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Bounds of a placeholder of a cell which doesn't have a mapper
+   */
+  Rectangle placeholderBounds(Cell cell) {
+    if (!myVirtualized) return null;
+    for (Cell current = cell; current != null && current != getSource(); current = current.getParent()) {
+      VirtualCellWrapper wrapper = myCellToWrapper.get(current);
+      if (wrapper != null) {
+        Element item = wrapper.item();
+        return new Rectangle(item.getAbsoluteLeft(), item.getAbsoluteTop(), item.getOffsetWidth(), item.getOffsetHeight());
+      }
+    }
+    return null;
+  }
+
+  private void update() {
+    Rectangle visible = DomUtil.visiblePart(getTarget());
+    int top = Integer.MAX_VALUE;
+    int bottom = Integer.MIN_VALUE;
+    if (visible != null) {
+      int overscan = Math.max(MIN_OVERSCAN, visible.dimension.y);
+      top = visible.origin.y - overscan;
+      bottom = visible.origin.y + visible.dimension.y + overscan;
+    }
+
+    //the whole line with the focused cell stays mapped, so moving the caret along it doesn't need new mappers
+    Element focusedLine = myFocusedWrapper == null ? null : line(myFocusedWrapper.item());
+    for (VirtualCellWrapper wrapper : new ArrayList<>(myMaterialized)) {
+      Element line = line(wrapper.item());
+      if (wrapper == myFocusedWrapper || line == null || line == focusedLine) continue;
+      int lineTop = line.getAbsoluteTop();
+      if (lineTop + line.getOffsetHeight() <= top || lineTop >= bottom) {
+        wrapper.dematerialize();
+      }
+    }
+
+    boolean changed = false;
+    List<Node> lines = divWrappedElementChildren(getTarget());
+    for (int i = firstLineBelow(lines, top); i < lines.size(); i++) {
+      Element line = (Element) lines.get(i);
+      if (line.getAbsoluteTop() >= bottom) break;
+      changed |= materializeLine(line);
+    }
+
+    if (changed) {
+      getContext().popupPositions.schedule();
+    }
+  }
+
+  private int firstLineBelow(List<Node> lines, int y) {
+    int low = 0;
+    int high = lines.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      Element line = (Element) lines.get(mid);
+      if (line.getAbsoluteTop() + line.getOffsetHeight() <= y) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private Element line(Node item) {
+    Element wrapperDiv = item.getParentElement();
+    return wrapperDiv == null ? null : wrapperDiv.getParentElement();
+  }
+
+  private void materializeAround(VirtualCellWrapper wrapper) {
+    Element line = line(wrapper.item());
+    if (line != null) {
+      materializeLine(line);
+    } else if (!wrapper.isMaterialized()) {
+      wrapper.materialize();
+    }
+  }
+
+  private boolean materializeLine(Element line) {
+    boolean changed = false;
+    for (Node item : new ArrayList<>(divWrappedElementChildren(line))) {
+      VirtualCellWrapper wrapper = myItemToWrapper.get(item);
+      if (wrapper != null && !wrapper.isMaterialized()) {
+        wrapper.materialize();
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private Vector estimateSize() {
+    if (myMeasuredCount == 0) return DEFAULT_ESTIMATE;
+    return new Vector((int) (myMeasuredWidth / myMeasuredCount), (int) (myMeasuredHeight / myMeasuredCount));
+  }
+
+  private class VirtualCellWrapper implements CellWrapper<Node> {
+    private final Cell myCell;
+    private final Element myPlaceholder = DOM.createDiv();
+    private final Registration myVisibilityReg;
+    private BaseCellMapper<?> myMapper;
+
+    VirtualCellWrapper(final Cell cell) {
+      myCell = cell;
+      myPlaceholder.getStyle().setDisplay(Style.Display.INLINE_BLOCK);
+      setPlaceholderSize(estimateSize());
+      myItemToWrapper.put(myPlaceholder, this);
+      myCellToWrapper.put(cell, this);
+      myVisibilityReg = cell.visible().addHandler(new EventHandler<PropertyChangeEvent<Boolean>>() {
+        @Override
+        public void onEvent(PropertyChangeEvent<Boolean> event) {
+          myIndentUpdater.visibilityChanged(cell, event);
+        }
+      });
+      scheduleViewportUpdate();
+    }
+
+    @Override
+    public Element item() {
+      return myMapper != null ? myMapper.getTarget() : myPlaceholder;
+    }
+
+    boolean isMaterialized() {
+      return myMapper != null;
+    }
+
+    void materialize() {
+      myMapper = createMapper(myCell);
+      myCellMappers.add(myMapper);
+      CounterUtil.updateOnAdd(getSource(), myCell, myMapper);
+
+      replace(myPlaceholder, myMapper.getTarget());
+      myItemToWrapper.remove(myPlaceholder);
+      myItemToWrapper.put(myMapper.getTarget(), this);
+      myMaterialized.add(this);
+    }
+
+    void dematerialize() {
+      Element target = myMapper.getTarget();
+      Vector size = new Vector(target.getOffsetWidth(), target.getOffsetHeight());
+      myMeasuredWidth += size.x;
+      myMeasuredHeight += size.y;
+      myMeasuredCount++;
+      setPlaceholderSize(size);
+
+      replace(target, myPlaceholder);
+      myItemToWrapper.remove(target);
+      myItemToWrapper.put(myPlaceholder, this);
+      myMaterialized.remove(this);
+
+      CounterUtil.updateOnRemove(getSource(), myCell, myMapper);
+      myCellMappers.remove(myMapper);
+      myMapper = null;
+    }
+
+    @Override
+    public void remove() {
+      myItemToWrapper.remove(item());
+      myCellToWrapper.remove(myCell);
+      myMaterialized.remove(this);
+      myVisibilityReg.remove();
+      if (myFocusedWrapper == this) {
+        myFocusedWrapper = null;
+      }
+
+      if (myMapper != null) {
+        CounterUtil.updateOnRemove(getSource(), myCell, myMapper);
+        myCellMappers.remove(myMapper);
+        myMapper = null;
+      }
+    }
+
+    private void setPlaceholderSize(Vector size) {
+      Style style = myPlaceholder.getStyle();
+      style.setWidth(size.x, Style.Unit.PX);
+      style.setHeight(size.y, Style.Unit.PX);
+    }
+
+    private void replace(Element item, Element with) {
+      Element wrapperDiv = item.getParentElement();
+      if (wrapperDiv == null) return;
+      wrapperDiv.replaceChild(with, item);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.toUtil;
+
+import jetbrains.jetpad.base.Registration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps popups next to the cells they are attached to. Instead of polling positions, an update is requested when
+ * something which can move an anchor happens, e.g. a cell changes or a scroller is scrolled. All requests made
+ * before the update runs are coalesced, so every updater is called at most once per update.
+ */
+public abstract class PopupPositionScheduler {
+  private final List<Runnable> myUpdaters = new ArrayList<>();
+  private Registration mySourcesRegistration;
+  private boolean myScheduled;
+
+  public Registration add(final Runnable updater) {
+    if (myUpdaters.isEmpty()) {
+      mySourcesRegistration = listenToChanges();
+    }
+    myUpdaters.add(updater);
+
+    return new Registration() {
+      @Override
+      public void remove() {
+        if (!myUpdaters.remove(updater)) return;
+        if (myUpdaters.isEmpty()) {
+          mySourcesRegistration.remove();
+          mySourcesRegistration = null;
+        }
+      }
+    };
+  }
+
+  public void schedule() {
+    if (myScheduled || myUpdaters.isEmpty()) return;
+    myScheduled = true;
+    requestUpdate(new Runnable() {
+      @Override
+      public void run() {
+        myScheduled = false;
+        update();
+      }
+    });
+  }
+
+  public void update() {
+    for (Runnable updater : new ArrayList<>(myUpdaters)) {
+      updater.run();
+    }
+  }
+
+  /**
+   * Should run update later, e.g. in the next animation frame
+   */
+  protected abstract void requestUpdate(Runnable update);
+
+  /**
+   * Subscribes to the changes which can move anchors regardless of cells, e.g. window scrolling. Called when the first
+   * updater is added, and the result is removed when the last one is removed.
+   */
+  protected abstract Registration listenToChanges();
+}
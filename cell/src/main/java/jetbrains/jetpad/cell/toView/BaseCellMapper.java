@@ -25,6 +25,7 @@ import jetbrains.jetpad.mapper.Mapper;
 import jetbrains.jetpad.mapper.MappingContext;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.collections.set.ObservableSet;
+import jetbrains.jetpad.model.event.CompositeRegistration;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.projectional.view.View;
@@ -162,12 +163,20 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
     if (event.getNewValue() != null) {
       if (myPopupMappers == null) {
         myPopupMappers = createChildSet();
-        myPopupUpdateReg = getTarget().bounds().addHandler(new EventHandler<PropertyChangeEvent<Rectangle>>() {
-          @Override
-          public void onEvent(PropertyChangeEvent<Rectangle> event) {
-            updatePopupPositions(getSource());
-          }
-        });
+        myPopupUpdateReg = new CompositeRegistration(
+          myContext.popupPositions().add(new Runnable() {
+            @Override
+            public void run() {
+              updatePopupPositions(getSource());
+            }
+          }),
+          getTarget().bounds().addHandler(new EventHandler<PropertyChangeEvent<Rectangle>>() {
+            @Override
+            public void onEvent(PropertyChangeEvent<Rectangle> event) {
+              myContext.popupPositions().schedule();
+            }
+          })
+        );
       }
 
       BaseCellMapper<?, ?> pm = createMapper(event.getNewValue());
@@ -191,7 +200,7 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
   }
 
   protected void refreshPopupPosition(Cell target, Cell popup, PopupPositionUpdater updater) {
-    if (popup == null) return;
+    if (popup == null || getTarget().container() == null) return;
     BaseCellMapper<?, ?> popupMapper = (BaseCellMapper<?, ?>) getDescendantMapper(popup);
     updater.update(target.getBounds(), getTarget().container().visibleRect(), popupMapper.getTarget());
   }
@@ -119,10 +119,12 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
               myContext.containerFocused().set(event.getNewValue());
               for (TextCell cell : myWithCaret) {
                 BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+                if (mapper == null) continue;
                 mapper.refreshProperties();
               }
               for (Cell cell : myHighlighted) {
                 BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+                if (mapper == null) continue;
                 mapper.refreshProperties();
               }
             }
@@ -139,13 +141,13 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
     return new CellContainerPeer() {
       @Override
       public int getCaretAt(TextCell tv, int x) {
-        TextView textView = (TextView) rootMapper.getDescendantMapper(tv).getTarget();
+        TextView textView = (TextView) materializedMapper(tv).getTarget();
         return textView.getCaretAt(x);
       }
 
       @Override
       public int getCaretOffset(TextCell tv, int caret) {
-        Mapper<? super TextCell, ?> mapper = rootMapper.getDescendantMapper(tv);
+        Mapper<? super TextCell, ?> mapper = materializedMapper(tv);
 
         if (mapper == null) {
           throw new UnsupportedOperationException();
@@ -173,7 +175,12 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
             IndentCell indentCell = (IndentCell) cell;
             return Cells.indentBounds(indentCell);
           } else {
-            throw new IllegalStateException();
+            IndentRootCellMapper indentMapper = indentRootMapper(cell);
+            Rectangle placeholder = indentMapper != null ? indentMapper.placeholderBounds(cell) : null;
+            if (placeholder == null) {
+              throw new IllegalStateException();
+            }
+            return placeholder;
           }
         }
         return descendantMapper.getTarget().bounds().get();
@@ -181,7 +188,7 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
 
       @Override
       public void scrollTo(Rectangle rect, Cell cell) {
-        BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper.getDescendantMapper(cell);
+        BaseCellMapper<?, ?> mapper = materializedMapper(cell);
         if (mapper == null) return;
         mapper.getTarget().scrollTo(rect);
       }
@@ -195,6 +202,19 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
         return findCellFor(view);
       }
 
+      private BaseCellMapper<?, ?> materializedMapper(Cell cell) {
+        BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper.getDescendantMapper(cell);
+        if (mapper != null) return mapper;
+
+        IndentRootCellMapper indentMapper = indentRootMapper(cell);
+        if (indentMapper == null) return null;
+        mapper = indentMapper.materialize(cell);
+        if (mapper != null) {
+          getTarget().container().root().validate();
+        }
+        return mapper;
+      }
+
       private Cell findCellFor(View v) {
         BaseCellMapper<?, ?> result = myContext.getMapper(v);
         if (result != null) return result.getSource();
@@ -286,6 +306,16 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
     return (RootCellMapper) getDescendantMapper(getSource().root);
   }
 
+  private IndentRootCellMapper indentRootMapper(Cell cell) {
+    for (Cell current = cell; current != null; current = current.getParent()) {
+      if (current instanceof IndentCell && ((IndentCell) current).isRootIndent()) {
+        Mapper<?, ?> mapper = rootMapper().getDescendantMapper(current);
+        return mapper instanceof IndentRootCellMapper ? (IndentRootCellMapper) mapper : null;
+      }
+    }
+    return null;
+  }
+
   private ViewTrait createRedistpatchTrait() {
     final View targetView = myTargetView;
     final CellContainer cellContainer = getSource();
@@ -377,6 +407,8 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
     return new CellContainerAdapter() {
       @Override
       public void onCellPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
+        myContext.popupPositions().schedule();
+
         BaseCellMapper<?, ?> target = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
         if (target == null) return;
 
@@ -416,6 +448,8 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
 
       @Override
       public void onChildAdded(Cell parent, CollectionItemEvent<Cell> change) {
+        myContext.popupPositions().schedule();
+
         BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
         if (parentMapper == null) return;
 
@@ -426,6 +460,8 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
 
       @Override
       public void onChildRemoved(Cell parent, CollectionItemEvent<Cell> change) {
+        myContext.popupPositions().schedule();
+
         BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
         if (parentMapper == null) return;
 
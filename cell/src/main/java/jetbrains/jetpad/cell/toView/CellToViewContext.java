@@ -15,6 +15,7 @@
  */
 package jetbrains.jetpad.cell.toView;
 
+import jetbrains.jetpad.cell.toUtil.PopupPositionScheduler;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.ValueProperty;
 import jetbrains.jetpad.projectional.view.View;
@@ -28,11 +29,13 @@ class CellToViewContext {
   private View myPopupView;
   private Property<Boolean> myContainerFocused = new ValueProperty<>(false);
   private Map<View, BaseCellMapper<?, ?>> myMappers = new HashMap<>();
+  private PopupPositionScheduler myPopupPositions;
 
   CellToViewContext(View rootView, View targetView, View popupView) {
     myRootView = rootView;
     myTargetView = targetView;
     myPopupView = popupView;
+    myPopupPositions = new ViewPopupPositionScheduler(targetView);
   }
 
   View rootView() {
@@ -47,6 +50,10 @@ class CellToViewContext {
     return myPopupView;
   }
 
+  PopupPositionScheduler popupPositions() {
+    return myPopupPositions;
+  }
+
   Property<Boolean> containerFocused() {
     return myContainerFocused;
   }
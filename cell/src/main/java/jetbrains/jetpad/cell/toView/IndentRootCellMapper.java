@@ -19,6 +19,7 @@ import com.google.common.base.Strings;
 import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
 import jetbrains.jetpad.cell.CellPropertySpec;
 import jetbrains.jetpad.cell.indent.IndentCell;
 import jetbrains.jetpad.cell.indent.IndentContainerCellListener;
@@ -26,27 +27,72 @@ import jetbrains.jetpad.cell.indent.updater.CellWrapper;
 import jetbrains.jetpad.cell.indent.updater.IndentUpdater;
 import jetbrains.jetpad.cell.indent.updater.IndentUpdaterTarget;
 import jetbrains.jetpad.cell.toUtil.CounterUtil;
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.mapper.MappingContext;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.set.ObservableSet;
 import jetbrains.jetpad.model.composite.Composites;
+import jetbrains.jetpad.model.event.CompositeRegistration;
+import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
-import jetbrains.jetpad.projectional.view.HorizontalView;
-import jetbrains.jetpad.projectional.view.TextView;
-import jetbrains.jetpad.projectional.view.VerticalView;
-import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
+  private static final int MIN_OVERSCAN = 200;
+  private static final Vector DEFAULT_ESTIMATE = new Vector(30, 15);
+
   private IndentUpdater<View> myIndentUpdater;
   private ObservableSet<BaseCellMapper<?, ?>> myCellMappers;
   private Registration myRegistration;
+  private Map<BaseCellMapper<?, ?>, Registration> myPopupPositionRegs = new HashMap<>();
 
-  IndentRootCellMapper(IndentCell source, CellToViewContext ctx) {
-    super(source, new VerticalView(), ctx);
+  private boolean myVirtualized;
+  private Map<View, VirtualCellWrapper> myItemToWrapper;
+  private Map<Cell, VirtualCellWrapper> myCellToWrapper;
+  private Set<VirtualCellWrapper> myMaterialized;
+  private VirtualCellWrapper myFocusedWrapper;
+  private Registration myContainerRegistration = Registration.EMPTY;
+  private boolean myUpdateScheduled;
+  private long myMeasuredWidth;
+  private long myMeasuredHeight;
+  private int myMeasuredCount;
+
+  IndentRootCellMapper(IndentCell source, final CellToViewContext ctx) {
+    super(source, new VerticalView() {
+      @Override
+      protected void onAttach() {
+        super.onAttach();
+        IndentRootCellMapper mapper = (IndentRootCellMapper) ctx.getMapper(this);
+        if (mapper != null) {
+          mapper.containerAttached();
+        }
+      }
+
+      @Override
+      protected void onDetach() {
+        IndentRootCellMapper mapper = (IndentRootCellMapper) ctx.getMapper(this);
+        if (mapper != null) {
+          mapper.containerDetached();
+        }
+        super.onDetach();
+      }
+    }, ctx);
 
     myCellMappers = createChildSet();
+    myVirtualized = source.get(IndentCell.VIRTUALIZED);
+    if (myVirtualized) {
+      myItemToWrapper = new HashMap<>();
+      myCellToWrapper = new HashMap<>();
+      myMaterialized = new HashSet<>();
+    }
 
     myIndentUpdater = new IndentUpdater<View>(getSource(), getTarget(),
       new IndentUpdaterTarget<View>() {
@@ -64,6 +110,10 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
 
         @Override
         public CellWrapper<View> wrap(final Cell cell) {
+          if (myVirtualized) {
+            return new VirtualCellWrapper(cell);
+          }
+
           final BaseCellMapper<?, ?> mapper = createMapper(cell);
 
           CounterUtil.updateOnAdd(getSource(), cell, mapper);
@@ -141,6 +191,7 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
             public void handle(Cell item) {
               BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) getDescendantMapper(item);
               if (mapper == null) {
+                if (myVirtualized) return;
                 throw new IllegalStateException();
               }
               if (CounterUtil.update(mapper, prop, event)) {
@@ -166,10 +217,26 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
         }
       }
     });
+
+    if (myVirtualized) {
+      final CellContainer cellContainer = getSource().cellContainer().get();
+      myRegistration = new CompositeRegistration(myRegistration, cellContainer.focusedCell.addHandler(new EventHandler<PropertyChangeEvent<Cell>>() {
+        @Override
+        public void onEvent(PropertyChangeEvent<Cell> event) {
+          focusChanged(event.getNewValue());
+        }
+      }));
+      focusChanged(cellContainer.focusedCell.get());
+      if (getTarget().isAttached()) {
+        containerAttached();
+      }
+    }
   }
 
   @Override
   protected void onDetach() {
+    containerDetached();
+
     List<Cell> children = getSource().children();
     for (int i = children.size() - 1; i >= 0; i--) {
       Cell c = children.get(i);
@@ -177,15 +244,188 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
     }
 
     myRegistration.remove();
+    for (Registration reg : myPopupPositionRegs.values()) {
+      reg.remove();
+    }
+    myPopupPositionRegs.clear();
 
     super.onDetach();
   }
 
-  private void updateIndentCellPopup(Cell targetCell ,PropertyChangeEvent<Cell> event) {
+  private void containerAttached() {
+    if (!myVirtualized) return;
+
+    myContainerRegistration.remove();
+    myContainerRegistration = getTarget().container().addListener(new ViewContainerAdapter() {
+      @Override
+      public void onPropertySet(View view, ViewPropertySpec<?> prop, PropertyChangeEvent<?> event) {
+        if (prop == ScrollView.OFFSET) {
+          scheduleUpdate();
+        }
+      }
+
+      @Override
+      public void onVisibleRectChanged() {
+        scheduleUpdate();
+      }
+    });
+    scheduleUpdate();
+  }
+
+  private void containerDetached() {
+    myContainerRegistration.remove();
+    myContainerRegistration = Registration.EMPTY;
+  }
+
+  private void focusChanged(Cell focused) {
+    myFocusedWrapper = null;
+    for (Cell current = focused; current != null && current != getSource(); current = current.getParent()) {
+      VirtualCellWrapper wrapper = myCellToWrapper.get(current);
+      if (wrapper != null) {
+        myFocusedWrapper = wrapper;
+        materializeAround(wrapper);
+        break;
+      }
+    }
+    scheduleUpdate();
+  }
+
+  /**
+   * Mapper of a cell which is shown as a placeholder is created on demand, e.g. when we need a caret position in it
+   */
+  BaseCellMapper<?, ?> materialize(Cell cell) {
+    if (!myVirtualized) return null;
+    for (Cell current = cell; current != null && current != getSource(); current = current.getParent()) {
+      VirtualCellWrapper wrapper = myCellToWrapper.get(current);
+      if (wrapper != null) {
+        materializeAround(wrapper);
+        return (BaseCellMapper<?, ?>) getDescendantMapper(cell);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Bounds of a placeholder of a cell which doesn't have a mapper
+   */
+  Rectangle placeholderBounds(Cell cell) {
+    if (!myVirtualized) return null;
+    for (Cell current = cell; current != null && current != getSource(); current = current.getParent()) {
+      VirtualCellWrapper wrapper = myCellToWrapper.get(current);
+      if (wrapper != null) {
+        return wrapper.item().bounds().get();
+      }
+    }
+    return null;
+  }
+
+  private void scheduleUpdate() {
+    if (myUpdateScheduled || !getTarget().isAttached()) return;
+    myUpdateScheduled = true;
+    //we invalidate the target so the update always happens after the current change, when the layout is known
+    getTarget().invalidate();
+    getTarget().container().whenValid(new Runnable() {
+      @Override
+      public void run() {
+        myUpdateScheduled = false;
+        if (cellToViewContext().getMapper(getTarget()) == IndentRootCellMapper.this && getTarget().isAttached()) {
+          update();
+        }
+      }
+    });
+  }
+
+  private void update() {
+    Rectangle visible = visibleRect();
+    int top = Integer.MAX_VALUE;
+    int bottom = Integer.MIN_VALUE;
+    if (visible != null) {
+      int overscan = Math.max(MIN_OVERSCAN, visible.dimension.y);
+      top = visible.origin.y - overscan;
+      bottom = visible.origin.y + visible.dimension.y + overscan;
+    }
+
+    //the whole line with the focused cell stays mapped, so moving the caret along it doesn't need new mappers
+    View focusedLine = myFocusedWrapper == null ? null : myFocusedWrapper.item().getParent();
+    for (VirtualCellWrapper wrapper : new ArrayList<>(myMaterialized)) {
+      View lineView = wrapper.item().getParent();
+      if (wrapper == myFocusedWrapper || lineView == null || lineView == focusedLine) continue;
+      Rectangle line = lineView.bounds().get();
+      if (line.origin.y + line.dimension.y <= top || line.origin.y >= bottom) {
+        wrapper.dematerialize();
+      }
+    }
+
+    boolean changed = false;
+    List<View> lines = getTarget().children();
+    for (int i = firstLineBelow(lines, top); i < lines.size(); i++) {
+      View line = lines.get(i);
+      if (line.bounds().get().origin.y >= bottom) break;
+      changed |= materializeLine(line);
+    }
+
+    if (changed) {
+      scheduleUpdate();
+    }
+  }
+
+  private Rectangle visibleRect() {
+    Rectangle result = getTarget().container().visibleRect();
+    for (View current = getTarget().getParent(); current != null && result != null; current = current.getParent()) {
+      if (current instanceof ScrollView && ((ScrollView) current).scroll().get()) {
+        result = result.intersect(current.bounds().get());
+      }
+    }
+    return result;
+  }
+
+  private int firstLineBelow(List<View> lines, int y) {
+    int low = 0;
+    int high = lines.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      Rectangle bounds = lines.get(mid).bounds().get();
+      if (bounds.origin.y + bounds.dimension.y <= y) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void materializeAround(VirtualCellWrapper wrapper) {
+    View line = wrapper.item().getParent();
+    if (line != null) {
+      materializeLine(line);
+    } else if (!wrapper.isMaterialized()) {
+      wrapper.materialize();
+    }
+  }
+
+  private boolean materializeLine(View line) {
+    boolean changed = false;
+    for (View item : new ArrayList<>(line.children())) {
+      VirtualCellWrapper wrapper = myItemToWrapper.get(item);
+      if (wrapper != null && !wrapper.isMaterialized()) {
+        wrapper.materialize();
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private Vector estimateSize() {
+    if (myMeasuredCount == 0) return DEFAULT_ESTIMATE;
+    return new Vector((int) (myMeasuredWidth / myMeasuredCount), (int) (myMeasuredHeight / myMeasuredCount));
+  }
+
+  private void updateIndentCellPopup(final Cell targetCell ,PropertyChangeEvent<Cell> event) {
     if (event.getOldValue() != null) {
       BaseCellMapper<?, ?> popupMapper = (BaseCellMapper<?, ?>) getDescendantMapper(event.getOldValue());
       Composites.<View>removeFromParent(popupMapper.getTarget());
       myCellMappers.remove(popupMapper);
+      myPopupPositionRegs.remove(popupMapper).remove();
     }
 
     if (event.getNewValue() != null) {
@@ -193,6 +433,89 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
       myCellMappers.add(popupMapper);
       cellToViewContext().popupView().children().add(popupMapper.getTarget());
       updatePopupPositions(targetCell);
+      myPopupPositionRegs.put(popupMapper, cellToViewContext().popupPositions().add(new Runnable() {
+        @Override
+        public void run() {
+          updatePopupPositions(targetCell);
+        }
+      }));
+    }
+  }
+
+  private class VirtualCellWrapper implements CellWrapper<View> {
+    private final Cell myCell;
+    private final RectView myPlaceholder = new RectView();
+    private BaseCellMapper<?, ?> myMapper;
+
+    VirtualCellWrapper(Cell cell) {
+      myCell = cell;
+      myPlaceholder.background().set(null);
+      myPlaceholder.dimension().set(estimateSize());
+      myItemToWrapper.put(myPlaceholder, this);
+      myCellToWrapper.put(cell, this);
+      scheduleUpdate();
+    }
+
+    @Override
+    public View item() {
+      return myMapper != null ? myMapper.getTarget() : myPlaceholder;
+    }
+
+    boolean isMaterialized() {
+      return myMapper != null;
+    }
+
+    void materialize() {
+      myMapper = createMapper(myCell);
+      CounterUtil.updateOnAdd(getSource(), myCell, myMapper);
+      myCellMappers.add(myMapper);
+
+      replace(myPlaceholder, myMapper.getTarget());
+      myItemToWrapper.remove(myPlaceholder);
+      myItemToWrapper.put(myMapper.getTarget(), this);
+      myMaterialized.add(this);
+    }
+
+    void dematerialize() {
+      View target = myMapper.getTarget();
+      Vector size = target.bounds().get().dimension;
+      myMeasuredWidth += size.x;
+      myMeasuredHeight += size.y;
+      myMeasuredCount++;
+      myPlaceholder.dimension().set(size);
+
+      replace(target, myPlaceholder);
+      myItemToWrapper.remove(target);
+      myItemToWrapper.put(myPlaceholder, this);
+      myMaterialized.remove(this);
+
+      CounterUtil.updateOnRemove(getSource(), myCell, myMapper);
+      myCellMappers.remove(myMapper);
+      myMapper = null;
+    }
+
+    @Override
+    public void remove() {
+      myItemToWrapper.remove(item());
+      myCellToWrapper.remove(myCell);
+      myMaterialized.remove(this);
+      if (myFocusedWrapper == this) {
+        myFocusedWrapper = null;
+      }
+
+      if (myMapper != null) {
+        CounterUtil.updateOnRemove(getSource(), myCell, myMapper);
+        myCellMappers.remove(myMapper);
+        myMapper = null;
+      }
+    }
+
+    private void replace(View item, View with) {
+      if (item.getParent() == null) return;
+      List<View> line = item.getParent().children();
+      int index = line.indexOf(item);
+      line.remove(index);
+      line.add(index, with);
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.toView;
+
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.cell.toUtil.PopupPositionScheduler;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.projectional.view.ScrollView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.ViewContainerAdapter;
+import jetbrains.jetpad.projectional.view.ViewPropertySpec;
+
+class ViewPopupPositionScheduler extends PopupPositionScheduler {
+  private View myView;
+
+  ViewPopupPositionScheduler(View view) {
+    myView = view;
+  }
+
+  @Override
+  protected void requestUpdate(Runnable update) {
+    ViewContainer container = myView.container();
+    if (container == null) {
+      update.run();
+      return;
+    }
+    //popups are positioned after the change which caused the update is laid out
+    myView.invalidate();
+    container.whenValid(update);
+  }
+
+  @Override
+  protected Registration listenToChanges() {
+    ViewContainer container = myView.container();
+    if (container == null) return Registration.EMPTY;
+
+    return container.addListener(new ViewContainerAdapter() {
+      @Override
+      public void onPropertySet(View view, ViewPropertySpec<?> prop, PropertyChangeEvent<?> event) {
+        if (prop == ScrollView.OFFSET) {
+          schedule();
+        }
+      }
+
+      @Override
+      public void onVisibleRectChanged() {
+        schedule();
+      }
+    });
+  }
+}
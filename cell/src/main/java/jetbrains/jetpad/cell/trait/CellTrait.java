@@ -16,11 +16,13 @@
 package jetbrains.jetpad.cell.trait;
 
 import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.event.*;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.event.FocusEvent;
 
@@ -33,6 +35,28 @@ public abstract class CellTrait {
   public static final Object NULL = new Object();
   public static final CellTrait[] EMPTY_ARRAY = new CellTrait[0];
 
+  /**
+   * Events which this trait handles, null if it can handle any event. A cell doesn't dispatch other events
+   * to the trait. The result is cached by cells, so it shouldn't change.
+   */
+  public Set<CellEventSpec<?>> getHandledEvents() {
+    return null;
+  }
+
+  /**
+   * Same as {@link #getHandledEvents()} for {@link #onCellTraitEvent(Cell, CellTraitEventSpec, Event)}
+   */
+  public Set<CellTraitEventSpec<?>> getHandledTraitEvents() {
+    return null;
+  }
+
+  /**
+   * Specs for which {@link #get(Cell, CellTraitPropertySpec)} can return a value, null if it can be any spec
+   */
+  public Set<CellTraitPropertySpec<?>> getHandledProperties() {
+    return null;
+  }
+
   public void onPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
   }
 
@@ -109,20 +133,29 @@ public abstract class CellTrait {
     return result;
   }
 
-  public final Object get(Cell cell, final CellPropertySpec<?> spec) {
-    final Value<Object> result = new Value<>();
+  public final Object get(Cell cell, CellPropertySpec<?> spec) {
+    Supplier<?> supplier = getSupplier(cell, spec);
+    return supplier == null ? null : supplier.get();
+  }
+
+  /**
+   * Supplier of a value which this trait provides for spec, null if the trait doesn't provide it.
+   * A cell caches suppliers of its traits, so the set of provided properties shouldn't change while a trait is added.
+   */
+  public final Supplier<?> getSupplier(Cell cell, final CellPropertySpec<?> spec) {
+    final Value<Supplier<?>> result = new Value<>();
     provideProperties(cell, new PropertyCollector() {
       @Override
       public <ValueT> void add(CellPropertySpec<ValueT> prop, Supplier<ValueT> supplier) {
         if (prop == spec) {
-          result.set(supplier.get());
+          result.set(supplier);
         }
       }
 
       @Override
       public <ValueT> void add(CellPropertySpec<ValueT> prop, ValueT val) {
         if (prop == spec) {
-          result.set(val);
+          result.set(Suppliers.ofInstance(val));
         }
       }
     });
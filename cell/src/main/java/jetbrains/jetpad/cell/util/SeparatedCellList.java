@@ -55,6 +55,18 @@ public abstract class SeparatedCellList extends AbstractList<Cell> {
     }
   }
 
+  @Override
+  public Cell set(int index, Cell element) {
+    Cell result = myBaseList.set(index * 2, element);
+    if (index > 0) {
+      myBaseList.set(index * 2 - 1, createSeparator(get(index - 1), element));
+    }
+    if (index + 1 < size()) {
+      myBaseList.set(index * 2 + 1, createSeparator(element, get(index + 1)));
+    }
+    return result;
+  }
+
   @Override
   public Cell remove(int index) {
     if (index == 0) {
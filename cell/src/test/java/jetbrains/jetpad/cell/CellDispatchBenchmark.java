@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell;
+
+import com.google.common.collect.ImmutableSet;
+import jetbrains.jetpad.cell.event.CellEventSpec;
+import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.MouseEvent;
+
+import java.util.Set;
+
+/**
+ * Measures dispatch of a key stroke from a leaf cell through all its ancestors, with traits which
+ * declare the events they handle and with traits which don't.
+ * Run with: java ... CellDispatchBenchmark [depth] [keyStrokeCount]
+ */
+public class CellDispatchBenchmark {
+  public static void main(String[] args) {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+    int keyStrokeCount = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+    for (int round = 0; round < 3; round++) {
+      System.out.println("Round " + round);
+      for (int traitCount : new int[] {1, 4, 16, 64}) {
+        long undeclared = measure(createLeaf(depth, traitCount, false), keyStrokeCount);
+        long declared = measure(createLeaf(depth, traitCount, true), keyStrokeCount);
+        System.out.println("  depth=" + depth + " traits=" + traitCount + " keyStrokes=" + keyStrokeCount
+          + " undeclared=" + undeclared / 1000000 + "ms declared=" + declared / 1000000 + "ms");
+      }
+    }
+  }
+
+  private static Cell createLeaf(int depth, int traitCount, boolean declareEvents) {
+    Cell current = new HorizontalCell();
+    addTraits(current, traitCount, declareEvents);
+    for (int i = 0; i < depth; i++) {
+      Cell child = new HorizontalCell();
+      addTraits(child, traitCount, declareEvents);
+      current.children().add(child);
+      current = child;
+    }
+    return current;
+  }
+
+  private static void addTraits(Cell cell, int traitCount, final boolean declareEvents) {
+    for (int i = 0; i < traitCount; i++) {
+      cell.addTrait(new CellTrait() {
+        @Override
+        public Set<CellEventSpec<?>> getHandledEvents() {
+          if (!declareEvents) return null;
+          return ImmutableSet.<CellEventSpec<?>>of(CellEventSpec.MOUSE_PRESSED);
+        }
+
+        @Override
+        public void onMousePressed(Cell cell, MouseEvent event) {
+          event.consume();
+        }
+      });
+    }
+  }
+
+  private static long measure(Cell leaf, int keyStrokeCount) {
+    long start = System.nanoTime();
+    for (int i = 0; i < keyStrokeCount; i++) {
+      leaf.dispatch(new KeyEvent(Key.A), CellEventSpec.KEY_PRESSED);
+      leaf.dispatch(new KeyEvent(Key.A), CellEventSpec.KEY_TYPED);
+      leaf.dispatch(new KeyEvent(Key.A), CellEventSpec.KEY_RELEASED);
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -15,10 +15,15 @@
  */
 package jetbrains.jetpad.cell;
 
+import com.google.common.collect.ImmutableSet;
 import jetbrains.jetpad.base.Value;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.MouseEvent;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.model.property.Property;
@@ -26,6 +31,7 @@ import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -261,6 +267,59 @@ public class CellTest {
     assertEquals("abc", cell.get(testProp));
   }
 
+  @Test
+  public void traitDefaultsUpdatedOnTraitChange() {
+    TextCell cell = new TextCell();
+    assertNull(cell.get(TestTrait.NAME));
+
+    Registration reg = cell.addTrait(new TestTrait());
+    assertEquals("xxx", cell.get(TestTrait.NAME));
+
+    reg.remove();
+    assertNull(cell.get(TestTrait.NAME));
+  }
+
+  @Test
+  public void explicitValueOverridesTraitDefault() {
+    TextCell cell = new TextCell();
+    cell.addTrait(new TestTrait());
+
+    cell.set(TestTrait.NAME, null);
+    assertNull(cell.get(TestTrait.NAME));
+
+    cell.set(TestTrait.NAME, "xxx");
+    assertEquals("xxx", cell.get(TestTrait.NAME));
+  }
+
+  @Test
+  public void eventsNotDispatchedToTraitsWhichDontHandleThem() {
+    TextCell cell = new TextCell();
+    final Value<Integer> keyPresses = new Value<>(0);
+    final Value<Integer> mousePresses = new Value<>(0);
+    cell.addTrait(new CellTrait() {
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return ImmutableSet.<CellEventSpec<?>>of(CellEventSpec.MOUSE_PRESSED);
+      }
+
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        keyPresses.set(keyPresses.get() + 1);
+      }
+
+      @Override
+      public void onMousePressed(Cell cell, MouseEvent event) {
+        mousePresses.set(mousePresses.get() + 1);
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.A), CellEventSpec.KEY_PRESSED);
+    cell.dispatch(new MouseEvent(0, 0), CellEventSpec.MOUSE_PRESSED);
+
+    assertEquals(0, (int) keyPresses.get());
+    assertEquals(1, (int) mousePresses.get());
+  }
+
   static class TestTrait extends CellTrait {
     static final CellPropertySpec<String> NAME = new CellPropertySpec<>("name");
 
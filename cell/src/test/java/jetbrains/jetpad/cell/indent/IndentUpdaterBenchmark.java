@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.indent;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.toView.CellContainerToViewMapper;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jetbrains.jetpad.cell.util.CellFactory.*;
+
+/**
+ * Builds a large indented document mapped to views and measures edits near its top: splitting and merging
+ * lines with a new line and inserting and removing a leaf.
+ * Run with: java ... IndentUpdaterBenchmark [lineCount] [editCount]
+ */
+public class IndentUpdaterBenchmark {
+  public static void main(String[] args) {
+    int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int editCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    for (int round = 0; round < 3; round++) {
+      System.out.println("Round " + round);
+
+      ViewContainer viewContainer = new ViewContainer();
+      CellContainer cellContainer = new CellContainer();
+      CellContainerToViewMapper mapper = new CellContainerToViewMapper(
+          cellContainer, viewContainer.root(), viewContainer.contentRoot(), viewContainer.decorationRoot());
+      mapper.attachRoot();
+
+      IndentCell root = new IndentCell();
+      List<Cell> blocks = new ArrayList<>();
+      for (int i = 0; i < lineCount / 2; i++) {
+        blocks.add(indent(true, newLine(), text("x" + i), text("="), indent(true, newLine(), text("y" + i))));
+      }
+
+      long start = System.nanoTime();
+      root.children().addAll(blocks);
+      cellContainer.root.children().add(root);
+      long build = System.nanoTime() - start;
+
+      IndentCell top = (IndentCell) blocks.get(1);
+      start = System.nanoTime();
+      for (int i = 0; i < editCount; i++) {
+        top.children().add(2, newLine());
+        top.children().remove(2);
+      }
+      long split = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < editCount; i++) {
+        top.children().add(2, text("z"));
+        top.children().remove(2);
+      }
+      long insert = System.nanoTime() - start;
+
+      System.out.println("  lines=" + lineCount + " build=" + build / 1000000 + "ms"
+        + " splitAndMerge x" + editCount + "=" + split / 1000000 + "ms"
+        + " insertAndRemove x" + editCount + "=" + insert / 1000000 + "ms");
+
+      mapper.detachRoot();
+    }
+  }
+}
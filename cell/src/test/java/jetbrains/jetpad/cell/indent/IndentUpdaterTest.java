@@ -179,6 +179,28 @@ public class IndentUpdaterTest {
     assertTarget("[['a'], ['  ', 'c']]");
   }
 
+  @Test
+  public void insertInIndentedLine() {
+    IndentCell list = indent(true, newLine(), text("b"), text("c"));
+    children.addAll(Arrays.asList(text("a"), list));
+
+    list.children().add(2, text("z"));
+
+    assertTarget("[['a'], ['  ', 'b', 'z', 'c']]");
+  }
+
+  @Test
+  public void splitAndMergeIndentedLine() {
+    IndentCell list = indent(true, newLine(), text("b"), text("c"), newLine(), text("d"));
+    children.addAll(Arrays.asList(text("a"), list));
+
+    list.children().add(2, newLine());
+    assertTarget("[['a'], ['  ', 'b'], ['  ', 'c'], ['  ', 'd']]");
+
+    list.children().remove(2);
+    assertTarget("[['a'], ['  ', 'b', 'c'], ['  ', 'd']]");
+  }
+
   @Test
   public void collectionRemove() {
     children.addAll(Arrays.asList(text("a"), indent(newLine(), text("b"), newLine()), text("c")));
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.toUtil;
+
+import jetbrains.jetpad.base.Registration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PopupPositionSchedulerTest {
+  private final List<Runnable> requests = new ArrayList<>();
+  private int listening;
+  private int sourcesAdded;
+
+  private final PopupPositionScheduler scheduler = new PopupPositionScheduler() {
+    @Override
+    protected void requestUpdate(Runnable update) {
+      requests.add(update);
+    }
+
+    @Override
+    protected Registration listenToChanges() {
+      listening++;
+      sourcesAdded++;
+      return new Registration() {
+        @Override
+        public void remove() {
+          listening--;
+        }
+      };
+    }
+  };
+
+  @Test
+  public void schedulesAreCoalesced() {
+    Counter first = new Counter();
+    Counter second = new Counter();
+    scheduler.add(first);
+    scheduler.add(second);
+
+    scheduler.schedule();
+    scheduler.schedule();
+    scheduler.schedule();
+    runRequests();
+
+    assertEquals(1, first.count);
+    assertEquals(1, second.count);
+  }
+
+  @Test
+  public void scheduleAfterUpdateRunsAgain() {
+    Counter updater = new Counter();
+    scheduler.add(updater);
+
+    scheduler.schedule();
+    runRequests();
+    scheduler.schedule();
+    runRequests();
+
+    assertEquals(2, updater.count);
+  }
+
+  @Test
+  public void nothingIsScheduledWithoutUpdaters() {
+    scheduler.schedule();
+
+    assertEquals(0, requests.size());
+  }
+
+  @Test
+  public void sourcesAreListenedWhileThereAreUpdaters() {
+    Registration first = scheduler.add(new Counter());
+    assertEquals(1, listening);
+
+    Registration second = scheduler.add(new Counter());
+    assertEquals(1, sourcesAdded);
+
+    first.remove();
+    assertEquals(1, listening);
+
+    second.remove();
+    assertEquals(0, listening);
+  }
+
+  @Test
+  public void sourcesAreListenedAgainAfterLastRemoval() {
+    scheduler.add(new Counter()).remove();
+    scheduler.add(new Counter());
+
+    assertEquals(2, sourcesAdded);
+    assertEquals(1, listening);
+  }
+
+  @Test
+  public void removedUpdaterIsNotCalled() {
+    Counter updater = new Counter();
+    Registration reg = scheduler.add(updater);
+    scheduler.add(new Counter());
+
+    scheduler.schedule();
+    reg.remove();
+    runRequests();
+
+    assertEquals(0, updater.count);
+  }
+
+  private void runRequests() {
+    List<Runnable> toRun = new ArrayList<>(requests);
+    requests.clear();
+    for (Runnable r : toRun) {
+      r.run();
+    }
+  }
+
+  private static class Counter implements Runnable {
+    private int count;
+
+    @Override
+    public void run() {
+      count++;
+    }
+  }
+}
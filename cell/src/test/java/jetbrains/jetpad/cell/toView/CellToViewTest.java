@@ -15,16 +15,26 @@
  */
 package jetbrains.jetpad.cell.toView;
 
+import jetbrains.jetpad.cell.indent.IndentCell;
+import jetbrains.jetpad.cell.indent.NewLineCell;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.view.CellView;
 import jetbrains.jetpad.event.MouseEvent;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.view.ScrollView;
+import jetbrains.jetpad.projectional.view.TextView;
+import jetbrains.jetpad.projectional.view.View;
 import jetbrains.jetpad.projectional.view.ViewContainer;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class CellToViewTest {
   private ViewContainer targetViewContainer = new ViewContainer();
@@ -53,6 +63,115 @@ public class CellToViewTest {
     assertFalse(cellView.isAttached());
   }
 
+  @Test
+  public void virtualizedIndentMapsOnlyVisibleLines() {
+    virtualizedIndent();
+
+    int textViews = countTextViews(cellView);
+    assertTrue(textViews > 0);
+    assertTrue(textViews < 1000);
+    assertNotNull(findTextView(cellView, "a0"));
+    assertNull(findTextView(cellView, "a500"));
+  }
+
+  @Test
+  public void scrolledLinesAreMapped() {
+    virtualizedIndent();
+
+    scroll(5000);
+
+    assertNotNull(findTextView(cellView, "a500"));
+    assertNotNull(findTextView(cellView, "b500"));
+    assertNull(findTextView(cellView, "a0"));
+  }
+
+  @Test
+  public void placeholderHasMeasuredSize() {
+    IndentCell indent = virtualizedIndent();
+    Cell cell = indent.children().get(0);
+    Vector size = cell.getBounds().dimension;
+
+    scroll(5000);
+
+    assertNull(findTextView(cellView, "a0"));
+    assertEquals(size, cell.getBounds().dimension);
+  }
+
+  @Test
+  public void caretQueryMapsCell() {
+    IndentCell indent = virtualizedIndent();
+    scroll(5000);
+    TextCell cell = (TextCell) indent.children().get(0);
+    assertNull(findTextView(cellView, "a0"));
+
+    assertTrue(cell.getCaretOffset(1) > 0);
 
+    assertNotNull(findTextView(cellView, "a0"));
+  }
+
+  @Test
+  public void lineWithFocusedCellStaysMapped() {
+    IndentCell indent = virtualizedIndent();
+    Cell cell = indent.children().get(0);
+    cell.focusable().set(true);
+    cell.focus();
+    validate();
+
+    scroll(5000);
+
+    assertNotNull(findTextView(cellView, "a0"));
+    assertNotNull(findTextView(cellView, "b0"));
+    assertNull(findTextView(cellView, "a1"));
+  }
+
+  private IndentCell virtualizedIndent() {
+    ScrollView scrollView = new ScrollView();
+    scrollView.maxDimension().set(new Vector(200, 100));
+    scrollView.scroll().set(true);
+    targetViewContainer.contentRoot().children().remove(cellView);
+    scrollView.children().add(cellView);
+    targetViewContainer.contentRoot().children().add(scrollView);
+
+    IndentCell indent = new IndentCell();
+    indent.virtualized().set(true);
+    for (int i = 0; i < 1000; i++) {
+      indent.children().add(new TextCell("a" + i));
+      indent.children().add(new TextCell("b" + i));
+      indent.children().add(new NewLineCell());
+    }
+    cellView.cell.set(indent);
+    validate();
+    return indent;
+  }
+
+  private void scroll(int y) {
+    ((ScrollView) cellView.getParent()).offset().set(new Vector(0, -y));
+    validate();
+  }
+
+  private void validate() {
+    //an update of mapped lines changes the layout, which can schedule one more update
+    for (int i = 0; i < 5; i++) {
+      targetViewContainer.root().validate();
+    }
+  }
+
+  private TextView findTextView(View view, String text) {
+    if (view instanceof TextView && text.equals(((TextView) view).text().get())) {
+      return (TextView) view;
+    }
+    for (View child : view.children()) {
+      TextView result = findTextView(child, text);
+      if (result != null) return result;
+    }
+    return null;
+  }
 
-}
\ No newline at end of file
+  private int countTextViews(View view) {
+    int result = view instanceof TextView ? 1 : 0;
+    for (View child : view.children()) {
+      result += countTextViews(child);
+    }
+    return result;
+  }
+}
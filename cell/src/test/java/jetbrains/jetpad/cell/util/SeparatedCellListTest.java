@@ -92,6 +92,15 @@ public class SeparatedCellListTest {
     assertList("x, x+z, z");
   }
 
+  @Test
+  public void replaceInMiddle() {
+    init("x", "y", "z");
+
+    separatedList.set(1, new TextCell("a"));
+
+    assertList("x, x+a, a, a+z, z");
+  }
+
   private void init(String... items) {
     for (String i : items) {
       separatedList.add(new TextCell(i));
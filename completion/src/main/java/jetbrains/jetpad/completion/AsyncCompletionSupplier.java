@@ -17,6 +17,9 @@ package jetbrains.jetpad.completion;
 
 import jetbrains.jetpad.base.Async;
 import jetbrains.jetpad.base.Asyncs;
+import jetbrains.jetpad.base.Handler;
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.base.Value;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +39,45 @@ public abstract class AsyncCompletionSupplier {
 
   public abstract Async<List<CompletionItem>> get(CompletionParameters cp);
 
+  /**
+   * Streaming request: items are passed to handler in batches as soon as they are found. Removing the returned
+   * registration cancels the request, nothing is passed to handler after that. By default the result of
+   * {@link #get(CompletionParameters)} is passed as a single batch.
+   *
+   * @param text text being completed, suppliers which filter items by it should return true from {@link #isTextDependent()}
+   */
+  public Registration get(CompletionParameters cp, String text, final CompletionBatchHandler handler) {
+    final Value<Boolean> cancelled = new Value<>(false);
+    get(cp).onResult(new Handler<List<CompletionItem>>() {
+      @Override
+      public void handle(List<CompletionItem> items) {
+        if (cancelled.get()) return;
+        handler.onBatch(items);
+        handler.onDone();
+      }
+    }, new Handler<Throwable>() {
+      @Override
+      public void handle(Throwable t) {
+        if (cancelled.get()) return;
+        handler.onFailure(t);
+      }
+    });
+    return new Registration() {
+      @Override
+      public void remove() {
+        cancelled.set(true);
+      }
+    };
+  }
+
+  /**
+   * Whether items of a streaming request depend on the text being completed, so the request is restarted
+   * when the text changes
+   */
+  public boolean isTextDependent() {
+    return false;
+  }
+
   public boolean isEmpty(CompletionParameters cp) {
     return false;
   }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import java.util.*;
+
+/**
+ * Completion items indexed by their matching text. {@link SimpleCompletionItem}s are kept sorted by matching text,
+ * so items matched by a prefix are found with a binary search. Other items can match arbitrary text, they are
+ * checked one by one. Found simple items are still checked with their own matching methods, so subclasses may
+ * narrow matching, but they aren't found by a text which their matching text doesn't start with.
+ */
+public final class CompletionIndex {
+  /**
+   * Order of completion menu: exact matches go first, other items are ordered by their visible text
+   */
+  public static Comparator<CompletionItem> order(final String text) {
+    return new Comparator<CompletionItem>() {
+      @Override
+      public int compare(CompletionItem c1, CompletionItem c2) {
+        boolean m1 = c1.isMatch(text);
+        boolean m2 = c2.isMatch(text);
+        if (m1 && !m2) {
+          return -1;
+        }
+        if (!m1 && m2) {
+          return 1;
+        }
+        return c1.visibleText(text).compareTo(c2.visibleText(text));
+      }
+    };
+  }
+
+  private final List<SimpleCompletionItem> mySorted = new ArrayList<>();
+  private final List<CompletionItem> myOther = new ArrayList<>();
+  private final Map<CompletionItem, Integer> myOrder = new IdentityHashMap<>();
+  private int myNextOrder;
+  private final Comparator<CompletionItem> myInsertionOrder = new Comparator<CompletionItem>() {
+    @Override
+    public int compare(CompletionItem i1, CompletionItem i2) {
+      return myOrder.get(i1) - myOrder.get(i2);
+    }
+  };
+
+  public CompletionIndex() {
+  }
+
+  public CompletionIndex(Collection<? extends CompletionItem> items) {
+    for (CompletionItem item : items) {
+      myOrder.put(item, myNextOrder++);
+      if (item instanceof SimpleCompletionItem) {
+        mySorted.add((SimpleCompletionItem) item);
+      } else {
+        myOther.add(item);
+      }
+    }
+    Collections.sort(mySorted, new Comparator<SimpleCompletionItem>() {
+      @Override
+      public int compare(SimpleCompletionItem i1, SimpleCompletionItem i2) {
+        return i1.matchingText().compareTo(i2.matchingText());
+      }
+    });
+  }
+
+  public void add(CompletionItem item) {
+    myOrder.put(item, myNextOrder++);
+    if (item instanceof SimpleCompletionItem) {
+      SimpleCompletionItem simple = (SimpleCompletionItem) item;
+      mySorted.add(lowerBound(simple.matchingText(), false), simple);
+    } else {
+      myOther.add(item);
+    }
+  }
+
+  public boolean remove(CompletionItem item) {
+    if (myOrder.remove(item) == null) return false;
+    if (!(item instanceof SimpleCompletionItem)) {
+      return myOther.remove(item);
+    }
+
+    SimpleCompletionItem simple = (SimpleCompletionItem) item;
+    String text = simple.matchingText();
+    for (int i = lowerBound(text, false); i < mySorted.size() && mySorted.get(i).matchingText().equals(text); i++) {
+      if (mySorted.get(i) == item) {
+        mySorted.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return mySorted.size() + myOther.size();
+  }
+
+  /**
+   * All items in the order they were added
+   */
+  public List<CompletionItem> items() {
+    List<CompletionItem> result = new ArrayList<>(size());
+    result.addAll(mySorted);
+    result.addAll(myOther);
+    Collections.sort(result, myInsertionOrder);
+    return result;
+  }
+
+  /**
+   * Items for which {@link CompletionItem#isMatchPrefix(String)} is true, in no particular order
+   */
+  public List<CompletionItem> prefixedBy(String prefix) {
+    List<CompletionItem> result = new ArrayList<>();
+    int end = lowerBound(prefix, true);
+    for (int i = lowerBound(prefix, false); i < end; i++) {
+      SimpleCompletionItem item = mySorted.get(i);
+      if (item.isMatchPrefix(prefix)) {
+        result.add(item);
+      }
+    }
+    for (CompletionItem item : myOther) {
+      if (item.isMatchPrefix(prefix)) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Items for which {@link CompletionItem#isMatch(String)} is true, in the order they were added
+   */
+  public List<CompletionItem> matches(String text) {
+    List<CompletionItem> result = new ArrayList<>();
+    for (int i = lowerBound(text, false); i < mySorted.size() && mySorted.get(i).matchingText().equals(text); i++) {
+      SimpleCompletionItem item = mySorted.get(i);
+      if (item.isMatch(text)) {
+        result.add(item);
+      }
+    }
+    for (CompletionItem item : myOther) {
+      if (item.isMatch(text)) {
+        result.add(item);
+      }
+    }
+    Collections.sort(result, myInsertionOrder);
+    return result;
+  }
+
+  /**
+   * Index of the first item whose matching text isn't less than text, or, if afterPrefix is set, of the first item
+   * after the ones starting with text
+   */
+  private int lowerBound(String text, boolean afterPrefix) {
+    int low = 0;
+    int high = mySorted.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      String key = mySorted.get(mid).matchingText();
+      boolean before = afterPrefix ? key.startsWith(text) || key.compareTo(text) < 0 : key.compareTo(text) < 0;
+      if (before) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
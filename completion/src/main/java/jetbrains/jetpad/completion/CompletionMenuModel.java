@@ -15,73 +15,215 @@
  */
 package jetbrains.jetpad.completion;
 
-import com.google.common.base.Function;
+import jetbrains.jetpad.model.collections.CollectionAdapter;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.EventHandler;
-import jetbrains.jetpad.model.property.*;
-import jetbrains.jetpad.model.transform.Transformers;
+import jetbrains.jetpad.model.property.Property;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.model.property.ValueProperty;
 
-import java.util.Comparator;
+import java.util.*;
 
+/**
+ * Items matching text are kept in visibleItems in {@link CompletionIndex#order(String)}. Items which are added
+ * while the menu is shown, e.g. by a streaming supplier, are inserted into their positions without sorting
+ * everything again. A batch added with {@link #addItems(List)} is merged into visibleItems in one pass.
+ *
+ * When text is extended, only the visible items are filtered again since prefix matching can only narrow
+ * the result. Sort keys are computed once per item and text, and visibleItems is changed by removing and inserting
+ * only the items which differ, with the selection updated once per change.
+ */
 public class CompletionMenuModel {
   public final Property<String> text = new ValueProperty<>();
   public final ObservableList<CompletionItem> items = new ObservableArrayList<>();
   public final Property<CompletionItem> selectedItem = new ValueProperty<>();
   public final Property<Boolean> loading = new ValueProperty<>(false);
 
-  public final ObservableList<CompletionItem> visibleItems;
+  public final ObservableList<CompletionItem> visibleItems = new ObservableArrayList<>();
+
+  private String myFilterText = "";
+  private final Map<CompletionItem, SortKey> mySortKeys = new IdentityHashMap<>();
+  private final Comparator<CompletionItem> myOrder = new Comparator<CompletionItem>() {
+    @Override
+    public int compare(CompletionItem c1, CompletionItem c2) {
+      SortKey k1 = sortKey(c1);
+      SortKey k2 = sortKey(c2);
+      if (k1.myMatch != k2.myMatch) {
+        return k1.myMatch ? -1 : 1;
+      }
+      return k1.myText.compareTo(k2.myText);
+    }
+  };
+  private boolean myUpdating;
+  private boolean myAddingBatch;
 
   {
-    visibleItems = Transformers.filter(new Function<CompletionItem, ReadableProperty<Boolean>>() {
+    items.addListener(new CollectionAdapter<CompletionItem>() {
       @Override
-      public ReadableProperty<Boolean> apply(final CompletionItem input) {
-        return new DerivedProperty<Boolean>(text) {
-          @Override
-          public Boolean doGet() {
-            return input.isMatchPrefix(text.get() == null ? "" : text.get());
-          }
-
-          @Override
-          public String getPropExpr() {
-            return "isMatchPrefix(" + text.getPropExpr() + ", " + input + ")";
-          }
-        };
-      }
-    }).andThen(
-      Transformers.sortBy(new Function<CompletionItem, ReadableProperty<CompletionItem>>() {
-        @Override
-        public ReadableProperty<CompletionItem> apply(final CompletionItem input) {
-          return Properties.constant(input);
+      public void onItemAdded(CollectionItemEvent<? extends CompletionItem> event) {
+        if (myAddingBatch) return;
+        CompletionItem item = event.getItem();
+        if (item.isMatchPrefix(myFilterText)) {
+          visibleItems.add(insertionIndex(item), item);
         }
-      }, new Comparator<CompletionItem>() {
-        @Override
-        public int compare(CompletionItem c1, CompletionItem c2) {
-          String mt = text.get() == null ? "" : text.get();
-          String t1 = c1.visibleText(mt);
-          String t2 = c2.visibleText(mt);
-          if (c1.isMatch(mt) && !c2.isMatch(mt)) {
-            return -1;
-          }
-          if (!c1.isMatch(mt) && c2.isMatch(mt)) {
-            return 1;
-          }
-          return t1.compareTo(t2);
-        }
-      })
-    ).transform(items).getTarget();
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends CompletionItem> event) {
+        visibleItems.remove(event.getItem());
+        mySortKeys.remove(event.getItem());
+      }
+    });
+
+    text.addHandler(new EventHandler<PropertyChangeEvent<String>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<String> event) {
+        updateVisibleItems();
+      }
+    });
 
     visibleItems.addHandler(new EventHandler<CollectionItemEvent<? extends CompletionItem>>() {
       @Override
       public void onEvent(CollectionItemEvent<? extends CompletionItem> event) {
-        if (visibleItems.isEmpty()) {
-          selectedItem.set(null);
+        if (myUpdating) return;
+        updateSelection();
+      }
+    });
+  }
+
+  /**
+   * Adds items, the visible ones are sorted and merged into visibleItems, and the selection is updated once
+   */
+  public void addItems(List<? extends CompletionItem> batch) {
+    myAddingBatch = true;
+    try {
+      items.addAll(batch);
+    } finally {
+      myAddingBatch = false;
+    }
+
+    List<CompletionItem> added = new ArrayList<>();
+    for (CompletionItem item : batch) {
+      if (item.isMatchPrefix(myFilterText)) {
+        added.add(item);
+      }
+    }
+    if (added.isEmpty()) return;
+    Collections.sort(added, myOrder);
+
+    List<CompletionItem> merged = new ArrayList<>(visibleItems.size() + added.size());
+    int i = 0;
+    for (CompletionItem item : added) {
+      while (i < visibleItems.size() && myOrder.compare(visibleItems.get(i), item) <= 0) {
+        merged.add(visibleItems.get(i++));
+      }
+      merged.add(item);
+    }
+    merged.addAll(visibleItems.subList(i, visibleItems.size()));
+
+    myUpdating = true;
+    try {
+      setVisibleItems(merged);
+    } finally {
+      myUpdating = false;
+    }
+    updateSelection();
+  }
+
+  private void updateSelection() {
+    if (visibleItems.isEmpty()) {
+      selectedItem.set(null);
+    } else {
+      selectedItem.set(visibleItems.get(0));
+    }
+  }
+
+  private SortKey sortKey(CompletionItem item) {
+    SortKey result = mySortKeys.get(item);
+    if (result == null) {
+      result = new SortKey(item.isMatch(myFilterText), item.visibleText(myFilterText));
+      mySortKeys.put(item, result);
+    }
+    return result;
+  }
+
+  private void updateVisibleItems() {
+    String newText = text.get() == null ? "" : text.get();
+    boolean narrowing = newText.startsWith(myFilterText);
+    myFilterText = newText;
+    mySortKeys.clear();
+
+    List<CompletionItem> newVisible = new ArrayList<>();
+    for (CompletionItem item : narrowing ? visibleItems : items) {
+      if (item.isMatchPrefix(newText)) {
+        newVisible.add(item);
+      }
+    }
+    //when narrowing, items are mostly in order already, which is cheap to sort
+    Collections.sort(newVisible, myOrder);
+
+    myUpdating = true;
+    try {
+      setVisibleItems(newVisible);
+    } finally {
+      myUpdating = false;
+    }
+    updateSelection();
+  }
+
+  private void setVisibleItems(List<CompletionItem> newVisible) {
+    if (isSubsequence(newVisible, visibleItems)) {
+      int j = newVisible.size() - 1;
+      for (int i = visibleItems.size() - 1; i >= 0; i--) {
+        if (j >= 0 && visibleItems.get(i) == newVisible.get(j)) {
+          j--;
         } else {
-          selectedItem.set(visibleItems.get(0));
+          visibleItems.remove(i);
         }
       }
-    });
+    } else if (isSubsequence(visibleItems, newVisible)) {
+      int i = 0;
+      for (CompletionItem item : newVisible) {
+        if (i >= visibleItems.size() || visibleItems.get(i) != item) {
+          visibleItems.add(i, item);
+        }
+        i++;
+      }
+    } else {
+      visibleItems.clear();
+      visibleItems.addAll(newVisible);
+    }
+  }
+
+  private boolean isSubsequence(List<CompletionItem> sub, List<CompletionItem> list) {
+    if (sub.size() > list.size()) return false;
+    int j = 0;
+    for (int i = 0; i < list.size() && j < sub.size(); i++) {
+      if (list.get(i) == sub.get(j)) {
+        j++;
+      }
+    }
+    return j == sub.size();
+  }
+
+  /**
+   * Position after the visible items which don't go after item, so items which are equal in the order keep
+   * the order they were added in
+   */
+  private int insertionIndex(CompletionItem item) {
+    int low = 0;
+    int high = visibleItems.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myOrder.compare(visibleItems.get(mid), item) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
   }
 
   public void up() {
@@ -107,4 +249,14 @@ public class CompletionMenuModel {
       selectedItem.set(visibleItems.get(index + 1));
     }
   }
+
+  private static class SortKey {
+    private final boolean myMatch;
+    private final String myText;
+
+    private SortKey(boolean match, String text) {
+      myMatch = match;
+      myText = text;
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import java.util.List;
+
+/**
+ * Supplier which keeps its items in a {@link CompletionIndex}, so items matching a prefix can be found
+ * without going through all of them
+ */
+public abstract class IndexedCompletionSupplier extends CompletionSupplier {
+  /**
+   * Items of {@link #get(CompletionParameters)} for which {@link CompletionItem#isMatchPrefix(String)} is true
+   */
+  public abstract List<CompletionItem> prefixedBy(CompletionParameters cp, String prefix);
+}
@@ -17,6 +17,10 @@ package jetbrains.jetpad.completion;
 
 import javax.annotation.Nonnull;
 
+/**
+ * Item which matches a fixed text. {@link CompletionIndex} looks such items up by their matching text, so an override
+ * of matching which accepts other texts isn't seen by the index.
+ */
 public abstract class SimpleCompletionItem extends BaseCompletionItem {
   private String myMatchingText;
   private String myVisibleText;
@@ -41,6 +45,10 @@ public abstract class SimpleCompletionItem extends BaseCompletionItem {
     return myVisibleText;
   }
 
+  String matchingText() {
+    return myMatchingText;
+  }
+
   @Override
   public boolean isStrictMatchPrefix(String text) {
     return myMatchingText.startsWith(text) && !isMatch(text);
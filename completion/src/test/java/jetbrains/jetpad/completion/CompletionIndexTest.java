@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import jetbrains.jetpad.base.Runnables;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionIndexTest {
+  private CompletionIndex index = new CompletionIndex(Arrays.asList(
+      createItem("for"), createItem("foreach"), createItem("if"), createItem("fo"), createItem("+"), createNumberItem()));
+
+  @Test
+  public void prefixedBy() {
+    assertEquals(new HashSet<>(Arrays.asList("fo", "for", "foreach")), texts(index.prefixedBy("fo")));
+  }
+
+  @Test
+  public void prefixedByIncludesUnindexed() {
+    assertEquals(new HashSet<>(Arrays.asList("number")), texts(index.prefixedBy("12")));
+  }
+
+  @Test
+  public void matches() {
+    List<CompletionItem> matches = index.matches("for");
+    assertEquals(1, matches.size());
+    assertTrue(matches.get(0).isMatch("for"));
+  }
+
+  @Test
+  public void overriddenMatchingIsRespected() {
+    index.add(new SimpleCompletionItem("forall") {
+      @Override
+      public boolean isStrictMatchPrefix(String text) {
+        return false;
+      }
+
+      @Override
+      public boolean isMatch(String text) {
+        return false;
+      }
+
+      @Override
+      public Runnable complete(String text) {
+        return Runnables.EMPTY;
+      }
+    });
+
+    assertEquals(new HashSet<>(Arrays.asList("for", "foreach")), texts(index.prefixedBy("for")));
+    assertTrue(index.matches("forall").isEmpty());
+  }
+
+  @Test
+  public void addAndRemove() {
+    CompletionItem item = createItem("form");
+    index.add(item);
+    assertEquals(new HashSet<>(Arrays.asList("for", "foreach", "form")), texts(index.prefixedBy("for")));
+
+    assertTrue(index.remove(item));
+    assertEquals(new HashSet<>(Arrays.asList("for", "foreach")), texts(index.prefixedBy("for")));
+  }
+
+  @Test
+  public void itemsKeepOrder() {
+    assertEquals(Arrays.asList("for", "foreach", "if", "fo", "+", "number"), visibleTexts(index.items()));
+  }
+
+  private HashSet<String> texts(List<CompletionItem> items) {
+    return new HashSet<>(visibleTexts(items));
+  }
+
+  private List<String> visibleTexts(List<CompletionItem> items) {
+    List<String> result = new ArrayList<>();
+    for (CompletionItem item : items) {
+      result.add(item.visibleText(""));
+    }
+    return result;
+  }
+
+  private CompletionItem createItem(String text) {
+    return new SimpleCompletionItem(text) {
+      @Override
+      public Runnable complete(String text) {
+        return Runnables.EMPTY;
+      }
+    };
+  }
+
+  private CompletionItem createNumberItem() {
+    return new BaseCompletionItem() {
+      @Override
+      public String visibleText(String text) {
+        return "number";
+      }
+
+      @Override
+      public boolean isStrictMatchPrefix(String text) {
+        return false;
+      }
+
+      @Override
+      public boolean isMatch(String text) {
+        return text.matches("[0-9]+");
+      }
+
+      @Override
+      public Runnable complete(String text) {
+        return Runnables.EMPTY;
+      }
+    };
+  }
+}
@@ -16,10 +16,15 @@
 package jetbrains.jetpad.completion;
 
 import jetbrains.jetpad.base.Runnables;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
@@ -58,6 +63,75 @@ public class CompletionMenuTest {
     assertSelected("aaa");
   }
 
+  @Test
+  public void addedItemsAreInsertedInOrder() {
+    model.text.set("a");
+    model.items.addAll(Arrays.asList(createItem("ab"), createItem("a"), createItem("ccc")));
+
+    assertEquals(Arrays.asList("a", "aa", "aaa", "ab"), visibleTexts());
+    assertSelected("a");
+  }
+
+  @Test
+  public void batchIsMergedWithOneSelectionChange() {
+    model.text.set("a");
+    final List<CompletionItem> selected = new ArrayList<>();
+    model.selectedItem.addHandler(new EventHandler<PropertyChangeEvent<CompletionItem>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<CompletionItem> event) {
+        selected.add(event.getNewValue());
+      }
+    });
+
+    model.addItems(Arrays.asList(createItem("ab"), createItem("a0"), createItem("ccc"), createItem("a")));
+
+    assertEquals(Arrays.asList("a", "a0", "aa", "aaa", "ab"), visibleTexts());
+    assertEquals(7, model.items.size());
+    assertEquals(1, selected.size());
+    assertSelected("a");
+  }
+
+  @Test
+  public void removedItemIsHidden() {
+    model.items.remove(2);
+    assertEquals(Arrays.asList("aaa", "bbb"), visibleTexts());
+  }
+
+  @Test
+  public void narrowingRemovesOnlyFilteredItems() {
+    model.text.set("a");
+    final List<CollectionItemEvent<? extends CompletionItem>> events = new ArrayList<>();
+    model.visibleItems.addHandler(new EventHandler<CollectionItemEvent<? extends CompletionItem>>() {
+      @Override
+      public void onEvent(CollectionItemEvent<? extends CompletionItem> event) {
+        events.add(event);
+      }
+    });
+
+    model.text.set("aaa");
+
+    assertEquals(1, events.size());
+    assertEquals(Arrays.asList("aaa"), visibleTexts());
+    assertSelected("aaa");
+  }
+
+  @Test
+  public void wideningInsertsItems() {
+    model.text.set("aaa");
+    model.text.set("");
+
+    assertEquals(Arrays.asList("aa", "aaa", "bbb"), visibleTexts());
+    assertSelected("aa");
+  }
+
+  private List<String> visibleTexts() {
+    List<String> result = new ArrayList<>();
+    for (CompletionItem item : model.visibleItems) {
+      result.add(item.visibleText(""));
+    }
+    return result;
+  }
+
   private void assertSelected(String text) {
     assertEquals(text, model.selectedItem.get().visibleText(""));
   }
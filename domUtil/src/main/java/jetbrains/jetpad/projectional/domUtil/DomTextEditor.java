@@ -311,7 +311,7 @@ public class DomTextEditor {
     if (isDefaultFont()) {
       return caretOffset * ourCharWidth;
     } else {
-      return TextMetricsCalculator.calculateAprox(getFont(), myText.substring(0, caretOffset)).dimension().x;
+      return TextMetricsCalculator.cache().caretOffset(getFont(), myText, caretOffset);
     }
   }
 
@@ -319,7 +319,7 @@ public class DomTextEditor {
     if (isDefaultFont()) {
       return ourLineHeight;
     } else {
-      return TextMetricsCalculator.calculateAprox(getFont(), "x").dimension().y;
+      return TextMetricsCalculator.cache().height(getFont());
     }
   }
 
@@ -341,9 +341,9 @@ public class DomTextEditor {
 
       return pos;
     } else {
-      for (int i = 0; i <= myText.length(); i++) {
-        int len = TextMetricsCalculator.calculateAprox(getFont(), myText.substring(0, i)).dimension().x;
-        if (len >= caretOffset) return i;
+      int[] widths = TextMetricsCalculator.cache().prefixWidths(getFont(), myText);
+      for (int i = 0; i < widths.length; i++) {
+        if (widths[i] >= caretOffset) return i;
       }
       return myText.length();
     }
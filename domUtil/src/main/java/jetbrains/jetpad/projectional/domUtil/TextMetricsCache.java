@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.domUtil;
+
+import jetbrains.jetpad.values.Font;
+import jetbrains.jetpad.values.FontFamily;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Platform independent cache of text measurements. Height and base line are kept per font, widths of
+ * recently measured strings and their prefixes are kept in bounded LRU maps, so that converting between caret
+ * positions and offsets doesn't measure anything for a text which was laid out before.
+ *
+ * For monospaced fonts widths of printable ASCII strings are derived from the width of a char. It's measured on
+ * a long sample and kept fractional, since measured widths are truncated, and a truncated width of a single char
+ * would make offsets drift along a line.
+ */
+public abstract class TextMetricsCache {
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static final String CHAR_WIDTH_SAMPLE;
+  static {
+    StringBuilder sample = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sample.append('x');
+    }
+    CHAR_WIDTH_SAMPLE = sample.toString();
+  }
+
+  private final Map<Key, FontMetrics> myFonts = new HashMap<>();
+  private final Map<Key, Integer> myWidths;
+  private final Map<Key, int[]> myPrefixWidths;
+
+  protected TextMetricsCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  protected TextMetricsCache(int capacity) {
+    myWidths = new LruMap<>(capacity);
+    myPrefixWidths = new LruMap<>(capacity);
+  }
+
+  protected abstract int measureWidth(Font font, String text);
+
+  protected abstract int measureHeight(Font font);
+
+  protected abstract int measureBaseLine(Font font);
+
+  public int height(Font font) {
+    return metrics(font).height;
+  }
+
+  public int baseLine(Font font) {
+    FontMetrics metrics = metrics(font);
+    if (metrics.baseLine == null) {
+      metrics.baseLine = measureBaseLine(font);
+    }
+    return metrics.baseLine;
+  }
+
+  public int width(Font font, String text) {
+    if (text == null || text.isEmpty()) return 0;
+    FontMetrics metrics = metrics(font);
+    if (metrics.isUniform() && isAscii(text)) {
+      return metrics.width(text.length());
+    }
+
+    Key key = new Key(font, text);
+    Integer result = myWidths.get(key);
+    if (result == null) {
+      result = measureWidth(font, text);
+      myWidths.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return array of length text.length() + 1 where i-th element is the width of text.substring(0, i)
+   */
+  public int[] prefixWidths(Font font, String text) {
+    if (text == null) {
+      text = "";
+    }
+    FontMetrics metrics = metrics(font);
+    boolean uniform = metrics.isUniform() && isAscii(text);
+    Key key = uniform ? null : new Key(font, text);
+    int[] result = uniform ? null : myPrefixWidths.get(key);
+    if (result != null) return result;
+
+    result = new int[text.length() + 1];
+    for (int i = 1; i <= text.length(); i++) {
+      result[i] = uniform ? metrics.width(i) : measureWidth(font, text.substring(0, i));
+    }
+    if (!uniform) {
+      myPrefixWidths.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return x offset of the caret which stands before the pos-th char
+   */
+  public int caretOffset(Font font, String text, int pos) {
+    if (text == null || pos <= 0) return 0;
+    FontMetrics metrics = metrics(font);
+    if (metrics.isUniform() && isAscii(text)) {
+      return metrics.width(pos);
+    }
+    return prefixWidths(font, text)[pos];
+  }
+
+  /**
+   * @return caret position closest to x offset, i.e. the first position whose char's middle is at or after offset
+   */
+  public int caretAt(Font font, String text, int offset) {
+    if (text == null) return 0;
+    int[] widths = prefixWidths(font, text);
+    int low = 0;
+    int high = text.length();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if ((widths[mid] + widths[mid + 1]) / 2 >= offset) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  public void clear() {
+    myFonts.clear();
+    myWidths.clear();
+    myPrefixWidths.clear();
+  }
+
+  private FontMetrics metrics(Font font) {
+    Key key = new Key(font, null);
+    FontMetrics result = myFonts.get(key);
+    if (result == null) {
+      double charWidth = -1;
+      if (font.getFamily() == FontFamily.MONOSPACED) {
+        charWidth = (double) measureWidth(font, CHAR_WIDTH_SAMPLE) / CHAR_WIDTH_SAMPLE.length();
+      }
+      result = new FontMetrics(measureHeight(font), charWidth);
+      myFonts.put(key, result);
+    }
+    return result;
+  }
+
+  private static boolean isAscii(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < ' ' || c > '~') return false;
+    }
+    return true;
+  }
+
+  private static class FontMetrics {
+    final int height;
+    final double charWidth;
+    Integer baseLine;
+
+    FontMetrics(int height, double charWidth) {
+      this.height = height;
+      this.charWidth = charWidth;
+    }
+
+    boolean isUniform() {
+      return charWidth >= 0;
+    }
+
+    int width(int length) {
+      return (int) Math.round(length * charWidth);
+    }
+  }
+
+  private static class Key {
+    private final FontFamily myFamily;
+    private final int mySize;
+    private final boolean myBold;
+    private final boolean myItalic;
+    private final String myText;
+
+    Key(Font font, String text) {
+      myFamily = font.getFamily();
+      mySize = font.getSize();
+      myBold = font.isBold();
+      myItalic = font.isItalic();
+      myText = text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return myFamily.equals(key.myFamily) && mySize == key.mySize && myBold == key.myBold && myItalic == key.myItalic
+        && (myText == null ? key.myText == null : myText.equals(key.myText));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = myFamily.hashCode();
+      result = 31 * result + mySize;
+      result = 31 * result + (myBold ? 1 : 0);
+      result = 31 * result + (myItalic ? 1 : 0);
+      result = 31 * result + (myText != null ? myText.hashCode() : 0);
+      return result;
+    }
+  }
+
+  private static class LruMap<KeyT, ValueT> extends LinkedHashMap<KeyT, ValueT> {
+    private final int myCapacity;
+
+    LruMap(int capacity) {
+      super(16, 0.75f, true);
+      myCapacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<KeyT, ValueT> eldest) {
+      return size() > myCapacity;
+    }
+  }
+}
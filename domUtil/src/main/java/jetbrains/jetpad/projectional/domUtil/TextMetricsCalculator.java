@@ -23,8 +23,15 @@ import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.values.Font;
 import jetbrains.jetpad.values.FontFamily;
 
+import java.util.HashMap;
+import java.util.Map;
+
 
 public class TextMetricsCalculator {
+  private static Context2d ourContext;
+  private static TextMetricsCache ourCache;
+  private static final Map<String, Integer> ourBaseLines = new HashMap<>();
+
   public static String getFontName(FontFamily family) {
     if (family == FontFamily.MONOSPACED) {
       return "monospace";
@@ -33,16 +40,33 @@ public class TextMetricsCalculator {
     }
   }
 
-  public static TextMetrics calculateAprox(final Font font, String text) {
-    Canvas canvas = Canvas.createIfSupported();
-    if (canvas == null) {
-      throw new IllegalStateException();
+  /**
+   * Shared cache of measurements made with a canvas
+   */
+  public static TextMetricsCache cache() {
+    if (ourCache == null) {
+      ourCache = new TextMetricsCache() {
+        @Override
+        protected int measureWidth(Font font, String text) {
+          return textWidth(font, text);
+        }
+
+        @Override
+        protected int measureHeight(Font font) {
+          return adjustHeight(font.getSize());
+        }
+
+        @Override
+        protected int measureBaseLine(Font font) {
+          return fontBaseLine(font);
+        }
+      };
     }
-    Context2d ctx = canvas.getContext2d();
-    ctx.setFont(getFontString(font));
-    final int width = (int) ctx.measureText(normalize(text)).getWidth();
-    int height = adjustHeight(font.getSize());
-    final Vector dimension = new Vector(width, height);
+    return ourCache;
+  }
+
+  public static TextMetrics calculateAprox(final Font font, String text) {
+    final Vector dimension = new Vector(textWidth(font, text), adjustHeight(font.getSize()));
     return new TextMetrics() {
       @Override
       public Vector dimension() {
@@ -57,17 +81,7 @@ public class TextMetricsCalculator {
   }
 
   public static TextMetrics calculate(final Font font, String text) {
-    Canvas canvas = Canvas.createIfSupported();
-    if (canvas == null) {
-      throw new IllegalStateException();
-    }
-    Context2d ctx = canvas.getContext2d();
-    ctx.setFont(getFontString(font));
-    final int width = (int) ctx.measureText(normalize(text)).getWidth();
-
-    int height = adjustHeight(font.getSize());
-    final Vector dimension = new Vector(width, height);
-
+    final Vector dimension = new Vector(textWidth(font, text), adjustHeight(font.getSize()));
     final int baseLine = fontBaseLine(font);
     return new TextMetrics() {
       @Override
@@ -82,6 +96,18 @@ public class TextMetricsCalculator {
     };
   }
 
+  private static int textWidth(Font font, String text) {
+    if (ourContext == null) {
+      Canvas canvas = Canvas.createIfSupported();
+      if (canvas == null) {
+        throw new IllegalStateException();
+      }
+      ourContext = canvas.getContext2d();
+    }
+    ourContext.setFont(getFontString(font));
+    return (int) ourContext.measureText(normalize(text)).getWidth();
+  }
+
   private static int adjustHeight(int height) {
     String agent = Window.Navigator.getUserAgent().toLowerCase();
     if (agent.contains("firefox")) {
@@ -91,6 +117,16 @@ public class TextMetricsCalculator {
   }
 
   private static int fontBaseLine(Font font) {
+    String fontString = getFontString(font);
+    Integer result = ourBaseLines.get(fontString);
+    if (result == null) {
+      result = measureBaseLine(font);
+      ourBaseLines.put(fontString, result);
+    }
+    return result;
+  }
+
+  private static int measureBaseLine(Font font) {
     int allCharsHeight = measureFontRange(font, allCharsString()).height();
     int capsHeight = measureFontRange(font, allCharsString().toUpperCase()).height();
     int descent = allCharsHeight - capsHeight;
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.domUtil;
+
+import jetbrains.jetpad.values.Font;
+import jetbrains.jetpad.values.FontFamily;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TextMetricsCacheTest {
+  private static final Font MONOSPACED = new Font(FontFamily.MONOSPACED, 10);
+  private static final Font SERIF = new Font(FontFamily.SERIF, 10);
+
+  private int myMeasurements;
+  private TextMetricsCache myCache = new TextMetricsCache(2) {
+    @Override
+    protected int measureWidth(Font font, String text) {
+      myMeasurements++;
+      int result = 0;
+      for (int i = 0; i < text.length(); i++) {
+        result += text.charAt(i) == 'i' ? 2 : 6;
+      }
+      return result;
+    }
+
+    @Override
+    protected int measureHeight(Font font) {
+      return 10;
+    }
+
+    @Override
+    protected int measureBaseLine(Font font) {
+      return 7;
+    }
+  };
+
+  @Test
+  public void monospacedWidthsAreDerived() {
+    assertEquals(30, myCache.width(MONOSPACED, "hello"));
+    assertEquals(18, myCache.caretOffset(MONOSPACED, "hello", 3));
+    assertEquals(1, myMeasurements);
+  }
+
+  @Test
+  public void fractionalMonospacedWidthDoesNotDrift() {
+    TextMetricsCache cache = new TextMetricsCache() {
+      @Override
+      protected int measureWidth(Font font, String text) {
+        return (int) (text.length() * 7.6);
+      }
+
+      @Override
+      protected int measureHeight(Font font) {
+        return 10;
+      }
+
+      @Override
+      protected int measureBaseLine(Font font) {
+        return 7;
+      }
+    };
+
+    assertEquals(76, cache.width(MONOSPACED, "abcdefghij"));
+    assertEquals(8, cache.caretOffset(MONOSPACED, "abcdefghij", 1));
+    assertEquals(760, cache.prefixWidths(MONOSPACED, repeat("abcdefghij", 10))[100]);
+  }
+
+  @Test
+  public void widthsAreCached() {
+    assertEquals(8, myCache.width(SERIF, "hi"));
+    assertEquals(8, myCache.width(SERIF, "hi"));
+    assertEquals(1, myMeasurements);
+  }
+
+  @Test
+  public void widthCacheIsBounded() {
+    myCache.width(SERIF, "a");
+    myCache.width(SERIF, "b");
+    myCache.width(SERIF, "c");
+    myCache.width(SERIF, "a");
+    assertEquals(4, myMeasurements);
+  }
+
+  @Test
+  public void prefixWidths() {
+    assertArrayEquals(new int[] {0, 6, 8, 10}, myCache.prefixWidths(SERIF, "hii"));
+    assertEquals(8, myCache.caretOffset(SERIF, "hii", 2));
+    assertEquals(3, myMeasurements);
+  }
+
+  @Test
+  public void caretAt() {
+    assertEquals(0, myCache.caretAt(SERIF, "hii", 0));
+    assertEquals(1, myCache.caretAt(SERIF, "hii", 7));
+    assertEquals(2, myCache.caretAt(SERIF, "hii", 9));
+    assertEquals(3, myCache.caretAt(SERIF, "hii", 100));
+    assertEquals(2, myCache.caretAt(MONOSPACED, "hello", 12));
+  }
+
+  private static String repeat(String text, int times) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      result.append(text);
+    }
+    return result.toString();
+  }
+}
@@ -22,6 +22,7 @@ public final class Grammar {
   private NonTerminal myStart;
   private Map<String, Symbol> mySymbols = new HashMap<>();
   private Set<Terminal> myTerminals = new LinkedHashSet<>();
+  private List<Terminal> myTerminalList = new ArrayList<>();
   private Set<NonTerminal> myNonTerminals = new LinkedHashSet<>();
   private Set<Rule> myRules = new LinkedHashSet<>();
 
@@ -44,8 +45,9 @@ public final class Grammar {
     checkName(name);
 
     try {
-      Terminal result = new Terminal(this, name);
+      Terminal result = new Terminal(this, name, myTerminals.size());
       myTerminals.add(result);
+      myTerminalList.add(result);
       mySymbols.put(name, result);
       return result;
     } finally {
@@ -56,7 +58,7 @@ public final class Grammar {
   public NonTerminal newNonTerminal(String name) {
     checkName(name);
 
-    NonTerminal result = new NonTerminal(this, name);
+    NonTerminal result = new NonTerminal(this, name, myNonTerminals.size());
     myNonTerminals.add(result);
     mySymbols.put(name, result);
 
@@ -99,7 +101,7 @@ public final class Grammar {
         }
       }
 
-      Rule result = new Rule(this, head, symbols);
+      Rule result = new Rule(this, myRules.size(), head, symbols);
       myRules.add(result);
       head.addRule(result);
       return result;
@@ -112,6 +114,10 @@ public final class Grammar {
     return Collections.unmodifiableSet(myTerminals);
   }
 
+  public Terminal getTerminal(int index) {
+    return myTerminalList.get(index);
+  }
+
   public Set<NonTerminal> getNonTerminals() {
     return Collections.unmodifiableSet(myNonTerminals);
   }
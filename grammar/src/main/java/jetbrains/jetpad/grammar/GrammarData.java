@@ -17,145 +17,194 @@ package jetbrains.jetpad.grammar;
 
 import java.util.*;
 
+/**
+ * Nullable, FIRST and FOLLOW sets of a grammar. Sets of terminals are bitsets indexed with terminal indices.
+ * Each set is computed with a worklist over the dependency graph between non terminals, so a non terminal is
+ * revisited only when a set it depends on has changed.
+ */
 class GrammarData {
   private Grammar myGrammar;
+  private NonTerminal[] myNonTerminals;
+  private int myWords;
+
+  private boolean[] myNullable;
+  private long[][] myFirst;
+  private long[][] myFollow;
 
-  private Set<NonTerminal> myNullable = new HashSet<>();
-  private Map<NonTerminal, Set<Terminal>> myFirst = new LinkedHashMap<>();
-  private Map<NonTerminal, Set<Terminal>> myFollow = new LinkedHashMap<>();
+  private List<Set<Terminal>> myFirstSets;
+  private List<Set<Terminal>> myFollowSets;
 
   GrammarData(Grammar grammar) {
     myGrammar = grammar;
+    myNonTerminals = grammar.getNonTerminals().toArray(new NonTerminal[0]);
+    myWords = TerminalBits.words(grammar.getTerminals().size());
+    myFirstSets = new ArrayList<>(Collections.<Set<Terminal>>nCopies(myNonTerminals.length, null));
+    myFollowSets = new ArrayList<>(Collections.<Set<Terminal>>nCopies(myNonTerminals.length, null));
 
-    calculateCanBeEmpty();
+    calculateNullable();
     calculateFirst();
     calculateFollow();
   }
 
   boolean isNullable(NonTerminal nt) {
-    return myNullable.contains(nt);
+    return myNullable[nt.getIndex()];
+  }
+
+  long[] getFirstBits(NonTerminal nt) {
+    return myFirst[nt.getIndex()];
+  }
+
+  long[] getFollowBits(NonTerminal nt) {
+    return myFollow[nt.getIndex()];
   }
 
   Set<Terminal> getFirst(NonTerminal nt) {
-    return Collections.unmodifiableSet(myFirst.get(nt));
+    Set<Terminal> result = myFirstSets.get(nt.getIndex());
+    if (result == null) {
+      result = TerminalBits.toSet(myGrammar, myFirst[nt.getIndex()]);
+      myFirstSets.set(nt.getIndex(), result);
+    }
+    return result;
   }
 
   Set<Terminal> getFollow(NonTerminal nt) {
-    return Collections.unmodifiableSet(myFollow.get(nt));
+    Set<Terminal> result = myFollowSets.get(nt.getIndex());
+    if (result == null) {
+      result = TerminalBits.toSet(myGrammar, myFollow[nt.getIndex()]);
+      myFollowSets.set(nt.getIndex(), result);
+    }
+    return result;
   }
 
-  private void calculateCanBeEmpty() {
-    boolean hasChanges = true;
-
-    while (hasChanges) {
-      hasChanges = false;
-      for (NonTerminal nt : myGrammar.getNonTerminals()) {
-        if (myNullable.contains(nt)) continue;
-
-        for (Rule rule : nt.getRules()) {
-          boolean canBeEmpty = true;
-          for (Symbol s : rule.getSymbols()) {
-            if (s instanceof Terminal) {
-              canBeEmpty = false;
-              break;
-            }
-
-            if (s instanceof NonTerminal && !myNullable.contains((NonTerminal) s)) {
-              canBeEmpty = false;
-              break;
-            }
-          }
-
-          if (canBeEmpty) {
-            myNullable.add(nt);
-            hasChanges = true;
-          }
+  private void calculateNullable() {
+    myNullable = new boolean[myNonTerminals.length];
+
+    List<List<Rule>> occurrences = newLists();
+    Map<Rule, Integer> remaining = new HashMap<>();
+    Queue<NonTerminal> queue = new LinkedList<>();
+    for (Rule rule : myGrammar.getRules()) {
+      int count = 0;
+      boolean hasTerminals = false;
+      for (Symbol s : rule.getSymbols()) {
+        if (s instanceof Terminal) {
+          hasTerminals = true;
+          break;
+        }
+        count++;
+      }
+      if (hasTerminals) continue;
+
+      if (count == 0) {
+        makeNullable(rule.getHead(), queue);
+      } else {
+        remaining.put(rule, count);
+        for (Symbol s : rule.getSymbols()) {
+          occurrences.get(s.getIndex()).add(rule);
         }
       }
     }
+
+    while (!queue.isEmpty()) {
+      NonTerminal nt = queue.poll();
+      for (Rule rule : occurrences.get(nt.getIndex())) {
+        int count = remaining.get(rule) - 1;
+        remaining.put(rule, count);
+        if (count == 0) {
+          makeNullable(rule.getHead(), queue);
+        }
+      }
+    }
+  }
+
+  private void makeNullable(NonTerminal nt, Queue<NonTerminal> queue) {
+    if (myNullable[nt.getIndex()]) return;
+    myNullable[nt.getIndex()] = true;
+    queue.add(nt);
   }
 
   private void calculateFirst() {
-    for (NonTerminal nt : myGrammar.getNonTerminals()) {
-      myFirst.put(nt, new LinkedHashSet<Terminal>());
+    myFirst = new long[myNonTerminals.length][myWords];
+
+    // FIRST(nt) includes FIRST(d) for each d in dependants.get(nt)
+    List<List<NonTerminal>> dependants = newLists();
+    for (Rule rule : myGrammar.getRules()) {
+      NonTerminal head = rule.getHead();
+      for (Symbol s : rule.getSymbols()) {
+        if (s instanceof Terminal) {
+          TerminalBits.add(myFirst[head.getIndex()], s.getIndex());
+          break;
+        }
+        dependants.get(s.getIndex()).add(head);
+        if (!myNullable[s.getIndex()]) break;
+      }
     }
 
-    boolean hasChanges = true;
-
-    while (hasChanges) {
-      hasChanges = false;
-      for (NonTerminal nt : myGrammar.getNonTerminals()) {
-        Set<Terminal> first = myFirst.get(nt);
-        for (Rule rule : nt.getRules()) {
-          for (Symbol s : rule.getSymbols()) {
-            if (s instanceof Terminal) {
-              Terminal term = (Terminal) s;
-              hasChanges |= first.add(term);
-              break;
-            }
-
-            if (s instanceof NonTerminal) {
-              NonTerminal nonTerminal = (NonTerminal) s;
-              hasChanges |= first.addAll(myFirst.get(nonTerminal));
-              if (!myNullable.contains(nonTerminal)) {
-                break;
-              }
-            }
-          }
+    propagate(myFirst, dependants);
+  }
+
+  private void calculateFollow() {
+    myFollow = new long[myNonTerminals.length][myWords];
+    TerminalBits.add(myFollow[myGrammar.getStart().getIndex()], myGrammar.getEnd().getIndex());
+
+    // FOLLOW(nt) is included in FOLLOW(d) for each d in dependants.get(nt)
+    List<List<NonTerminal>> dependants = newLists();
+    for (Rule rule : myGrammar.getRules()) {
+      List<Symbol> symbols = rule.getSymbols();
+      boolean nullableSuffix = true;
+      long[] suffixFirst = new long[myWords];
+      for (int i = symbols.size() - 1; i >= 0; i--) {
+        Symbol s = symbols.get(i);
+        if (s instanceof Terminal) {
+          suffixFirst = new long[myWords];
+          TerminalBits.add(suffixFirst, s.getIndex());
+          nullableSuffix = false;
+          continue;
+        }
+
+        long[] follow = myFollow[s.getIndex()];
+        TerminalBits.addAll(follow, suffixFirst);
+        if (nullableSuffix) {
+          dependants.get(rule.getHead().getIndex()).add((NonTerminal) s);
+        }
+
+        if (myNullable[s.getIndex()]) {
+          suffixFirst = suffixFirst.clone();
+          TerminalBits.addAll(suffixFirst, myFirst[s.getIndex()]);
+        } else {
+          suffixFirst = myFirst[s.getIndex()];
+          nullableSuffix = false;
         }
       }
     }
+
+    propagate(myFollow, dependants);
   }
 
-  private void calculateFollow() {
-    for (NonTerminal nt : myGrammar.getNonTerminals()) {
-      myFollow.put(nt, new LinkedHashSet<Terminal>());
+  private void propagate(long[][] sets, List<List<NonTerminal>> dependants) {
+    boolean[] queued = new boolean[myNonTerminals.length];
+    Queue<NonTerminal> queue = new LinkedList<>();
+    for (NonTerminal nt : myNonTerminals) {
+      queue.add(nt);
+      queued[nt.getIndex()] = true;
     }
 
-    boolean hasChanges = true;
-    myFollow.get(myGrammar.getStart()).add(myGrammar.getEnd());
-
-    while (hasChanges) {
-      hasChanges = false;
-
-      for (NonTerminal nt : myGrammar.getNonTerminals()) {
-        for (Rule rule : nt.getRules()) {
-          List<Symbol> symbols = rule.getSymbols();
-          for (int i = 0; i < symbols.size(); i++) {
-            Symbol s = symbols.get(i);
-            for (int d = 1; d < symbols.size() - i; d++) {
-              Symbol next = symbols.get(i + d);
-              if (s instanceof NonTerminal && next != null) {
-                NonTerminal nonTerminal = (NonTerminal) s;
-                Set<Terminal> follow = myFollow.get(nonTerminal);
-                if (next instanceof Terminal) {
-                  hasChanges |= follow.add((Terminal) next);
-                  break;
-                } else if (next instanceof NonTerminal) {
-                  hasChanges |= follow.addAll(myFirst.get((NonTerminal) next));
-                  if (!myNullable.contains((NonTerminal) next)) {
-                    break;
-                  }
-                }
-              }
-            }
-          }
-
-          for (int i = symbols.size() - 1; i >= 0; i--) {
-            Symbol s = symbols.get(i);
-
-            if (s instanceof Terminal) {
-              break;
-            }
-
-            if (s instanceof NonTerminal) {
-              NonTerminal nonTerminal = (NonTerminal) s;
-              hasChanges |= myFollow.get(nonTerminal).addAll(myFollow.get(nt));
-              if (!myNullable.contains(nonTerminal)) break;
-            }
-          }
+    while (!queue.isEmpty()) {
+      NonTerminal nt = queue.poll();
+      queued[nt.getIndex()] = false;
+      for (NonTerminal dependant : dependants.get(nt.getIndex())) {
+        if (TerminalBits.addAll(sets[dependant.getIndex()], sets[nt.getIndex()]) && !queued[dependant.getIndex()]) {
+          queue.add(dependant);
+          queued[dependant.getIndex()] = true;
         }
       }
     }
   }
-}
\ No newline at end of file
+
+  private <ValueT> List<List<ValueT>> newLists() {
+    List<List<ValueT>> result = new ArrayList<>(myNonTerminals.length);
+    for (int i = 0; i < myNonTerminals.length; i++) {
+      result.add(new ArrayList<ValueT>());
+    }
+    return result;
+  }
+}
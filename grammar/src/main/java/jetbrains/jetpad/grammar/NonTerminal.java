@@ -20,8 +20,8 @@ import java.util.*;
 public class NonTerminal extends Symbol {
   private Set<Rule> myRules = new LinkedHashSet<>();
 
-  NonTerminal(Grammar grammar, String name) {
-    super(grammar, name);
+  NonTerminal(Grammar grammar, String name, int index) {
+    super(grammar, name, index);
   }
 
   void addRule(Rule rule) {
@@ -47,4 +47,18 @@ public class NonTerminal extends Symbol {
   public Set<Terminal> getFollow() {
     return getGrammar().getGrammarData().getFollow(this);
   }
+
+  /**
+   * Adds FIRST of this non terminal to a bitset created with {@link TerminalBits#create(Grammar)}
+   */
+  public void addFirstTo(long[] bits) {
+    TerminalBits.addAll(bits, getGrammar().getGrammarData().getFirstBits(this));
+  }
+
+  /**
+   * Adds FOLLOW of this non terminal to a bitset created with {@link TerminalBits#create(Grammar)}
+   */
+  public void addFollowTo(long[] bits) {
+    TerminalBits.addAll(bits, getGrammar().getGrammarData().getFollowBits(this));
+  }
 }
\ No newline at end of file
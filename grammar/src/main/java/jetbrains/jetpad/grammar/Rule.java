@@ -24,13 +24,15 @@ public class Rule {
   private NonTerminal myHead;
   private List<Symbol> mySymbols;
   private Grammar myGrammar;
+  private int myIndex;
 
   private Associativity myAssociativity;
   private Integer myPriority;
   private RuleHandler myHandler;
 
-  Rule(Grammar grammar, NonTerminal head, Symbol... symbols) {
+  Rule(Grammar grammar, int index, NonTerminal head, Symbol... symbols) {
     myGrammar = grammar;
+    myIndex = index;
     myHead = head;
     mySymbols = new ArrayList<>(Arrays.asList(symbols));
   }
@@ -47,6 +49,10 @@ public class Rule {
     return myGrammar;
   }
 
+  public int getIndex() {
+    return myIndex;
+  }
+
   public Associativity getAssociativity() {
     return myAssociativity;
   }
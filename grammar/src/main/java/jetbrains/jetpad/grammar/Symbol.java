@@ -18,16 +18,26 @@ package jetbrains.jetpad.grammar;
 public abstract class Symbol {
   private String myName;
   private Grammar myGrammar;
+  private int myIndex;
 
-  protected Symbol(Grammar grammar, String name) {
+  protected Symbol(Grammar grammar, String name, int index) {
     myName = name;
     myGrammar = grammar;
+    myIndex = index;
   }
 
   public Grammar getGrammar() {
     return myGrammar;
   }
 
+  /**
+   * Dense index of this symbol among the grammar's symbols of the same kind, i.e. terminals and
+   * non terminals are numbered independently starting from 0 in order of their declaration
+   */
+  public int getIndex() {
+    return myIndex;
+  }
+
   @Override
   public String toString() {
     return myName;
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Operations on sets of terminals stored as long[] bitsets indexed with {@link Terminal#getIndex()}
+ */
+public final class TerminalBits {
+  public static long[] create(Grammar grammar) {
+    return new long[words(grammar.getTerminals().size())];
+  }
+
+  static int words(int size) {
+    return (size + 63) >> 6;
+  }
+
+  public static void add(long[] bits, int index) {
+    bits[index >> 6] |= 1L << index;
+  }
+
+  public static boolean contains(long[] bits, int index) {
+    return (bits[index >> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * @return whether target has changed
+   */
+  public static boolean addAll(long[] target, long[] source) {
+    boolean changed = false;
+    for (int i = 0; i < source.length; i++) {
+      long value = target[i] | source[i];
+      if (value != target[i]) {
+        target[i] = value;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @return the first index which is greater or equal to from and is in bits, or -1 if there's no such index
+   */
+  public static int next(long[] bits, int from) {
+    int word = from >> 6;
+    if (word >= bits.length) return -1;
+    long current = bits[word] & (-1L << from);
+    while (true) {
+      if (current != 0) {
+        return (word << 6) + Long.numberOfTrailingZeros(current);
+      }
+      if (++word == bits.length) return -1;
+      current = bits[word];
+    }
+  }
+
+  public static Set<Terminal> toSet(Grammar grammar, long[] bits) {
+    Set<Terminal> result = new LinkedHashSet<>();
+    for (int i = next(bits, 0); i != -1; i = next(bits, i + 1)) {
+      result.add(grammar.getTerminal(i));
+    }
+    return Collections.unmodifiableSet(result);
+  }
+
+  private TerminalBits() {
+  }
+}
@@ -27,6 +27,7 @@ import static java.util.Collections.singleton;
 public abstract class BaseLRTableGenerator<ItemT extends LRItem<ItemT>> {
   private Grammar myGrammar;
   private Map<Set<ItemT>, Set<ItemT>> myClosureCache = new HashMap<>();
+  private LRStatesBuilder myStatesBuilder;
 
   public BaseLRTableGenerator(Grammar grammar) {
     myGrammar = grammar;
@@ -38,16 +39,58 @@ public abstract class BaseLRTableGenerator<ItemT extends LRItem<ItemT>> {
 
   protected abstract void addFinal(LRState<ItemT> state, ItemT item);
 
+  /**
+   * Name of the algorithm, tables generated by different algorithms for the same grammar may differ.
+   * It's a part of the fingerprint of saved tables, so it should be a constant which doesn't depend on class names.
+   */
+  public abstract String getKind();
+
+  /**
+   * Called when all states and transitions are created, before actions are added
+   */
+  protected void statesGenerated(List<LRState<ItemT>> states) {
+  }
+
+  /**
+   * Sets a strategy which builds states and transitions between them, e.g. {@link ParallelLRStatesBuilder}.
+   * States built by any strategy are the same and numbered in the same way as with the default sequential one.
+   */
+  public void setStatesBuilder(LRStatesBuilder builder) {
+    myStatesBuilder = builder;
+  }
+
   protected List<LRState<ItemT>> generateStates() {
     NonTerminal initial = grammar().getStart();
     if (initial.getRules().size() != 1) {
       throw new IllegalStateException("There should be one rule from inital non terminal");
     }
 
+    List<LRState<ItemT>> states = myStatesBuilder != null ? myStatesBuilder.build(this) : buildStates();
+
+    statesGenerated(new ArrayList<>(states));
+
+    for (LRState<ItemT> state : states) {
+      for (ItemT item : state.getItems()) {
+        if (item.isFinal()) {
+          addFinal(state, item);
+        } else {
+          Symbol s = item.getNextSymbol();
+          LRState<ItemT> nextState = state.getState(s);
+          if (nextState != null && s instanceof Terminal) {
+            state.addRecord(s, new LRActionRecord<>(item, LRParserAction.shift(nextState)));
+          }
+        }
+      }
+    }
+
+    return new ArrayList<>(states);
+  }
+
+  private List<LRState<ItemT>> buildStates() {
     Map<Set<ItemT>, LRState<ItemT>> states = new LinkedHashMap<>();
 
-    int index = 0;
-    LRState<ItemT> init = new LRState<>(index++, closure(singleton(initialItem())));
+    LRState<ItemT> init = initialState();
+    int index = 1;
     Set<LRState<ItemT>> newItems = new LinkedHashSet<>();
     newItems.add(init);
     states.put(init.getItems(), init);
@@ -73,32 +116,25 @@ public abstract class BaseLRTableGenerator<ItemT extends LRItem<ItemT>> {
       }
     }
 
-    for (LRState<ItemT> state : states.values()) {
-      for (ItemT item : state.getItems()) {
-        if (item.isFinal()) {
-          addFinal(state, item);
-        } else {
-          Symbol s = item.getNextSymbol();
-          LRState<ItemT> nextState = state.getState(s);
-          if (nextState != null && s instanceof Terminal) {
-            state.addRecord(s, new LRActionRecord<>(item, LRParserAction.shift(nextState)));
-          }
-        }
-      }
-    }
-
     return new ArrayList<>(states.values());
   }
 
-  private Map<Symbol, Set<ItemT>> splitSet(Set<ItemT> items) {
-    Map<Symbol, Set<ItemT>> result = new HashMap<>();
+  LRState<ItemT> initialState() {
+    return new LRState<>(0, closure(singleton(initialItem())));
+  }
+
+  /**
+   * Ordered collections make state numbering depend only on the grammar, not on identity hash codes
+   */
+  Map<Symbol, Set<ItemT>> splitSet(Set<ItemT> items) {
+    Map<Symbol, Set<ItemT>> result = new LinkedHashMap<>();
     for (ItemT item : items) {
       if (item.isFinal()) continue;
 
       Symbol symbol = item.getNextSymbol();
       Set<ItemT> target = result.get(symbol);
       if (target == null) {
-        target = new HashSet<>();
+        target = new LinkedHashSet<>();
         result.put(symbol, target);
       }
       target.add(item.getNextItem());
@@ -107,11 +143,23 @@ public abstract class BaseLRTableGenerator<ItemT extends LRItem<ItemT>> {
   }
 
   public LRParserTable generateTable() {
+    return generateTable(false);
+  }
+
+  /**
+   * Generates a table for {@link jetbrains.jetpad.grammar.parser.GLRParser}. Conflicts which can't be resolved
+   * with priorities and associativity are kept as cells with several actions instead of failing.
+   */
+  public LRParserTable generateGLRTable() {
+    return generateTable(true);
+  }
+
+  private LRParserTable generateTable(boolean keepConflicts) {
     checkGrammar();
 
     final List<LRState<ItemT>> states = generateStates();
 
-    LRParserTable result = new LRParserTable(grammar());
+    LRParserTable result = new LRParserTable(grammar(), getKind());
 
     Map<LRState<ItemT>, LRParserState> statesMap = new HashMap<>();
     statesMap.put(states.get(0), result.getInitialState());
@@ -137,30 +185,55 @@ public abstract class BaseLRTableGenerator<ItemT extends LRItem<ItemT>> {
 
         if (!state.hasRecords(s)) continue;
 
-        LRActionRecord<ItemT> rec = state.getRecord(t);
-
-        LRParserAction<LRParserState> action;
-        if (rec.getAction() instanceof LRParserAction.Shift<?>) {
-          LRParserAction.Shift<LRState<ItemT>> shift = (LRParserAction.Shift<LRState<ItemT>>) rec.getAction();
-          action = LRParserAction.shift(statesMap.get(shift.getState()));
-        } else if (rec.getAction() instanceof LRParserAction.Reduce<?>) {
-          LRParserAction.Reduce<LRState<ItemT>> reduce = (LRParserAction.Reduce<LRState<ItemT>>) rec.getAction();
-          action = LRParserAction.reduce(reduce.getRule());
-        } else if (rec.getAction() instanceof LRParserAction.Accept<?>) {
-          action = LRParserAction.accept();
-        } else if (rec.getAction() instanceof LRParserAction.Error<?>) {
-          action = LRParserAction.error();
+        if (keepConflicts && state.hasAmbiguity(t)) {
+          List<LRParserAction<LRParserState>> actions = new ArrayList<>();
+          for (LRActionRecord<ItemT> rec : state.getMergedRecords(t)) {
+            actions.add(toParserAction(rec, statesMap));
+          }
+          lrState.addConflictingActions(t, actions);
         } else {
-          throw new IllegalStateException();
+          lrState.addAction(t, toParserAction(state.getRecord(t), statesMap));
         }
-
-        lrState.addAction(t, action);
       }
     }
 
     return result;
   }
 
+  private LRParserAction<LRParserState> toParserAction(LRActionRecord<ItemT> rec, Map<LRState<ItemT>, LRParserState> statesMap) {
+    if (rec.getAction() instanceof LRParserAction.Shift<?>) {
+      LRParserAction.Shift<LRState<ItemT>> shift = (LRParserAction.Shift<LRState<ItemT>>) rec.getAction();
+      return LRParserAction.shift(statesMap.get(shift.getState()));
+    } else if (rec.getAction() instanceof LRParserAction.Reduce<?>) {
+      LRParserAction.Reduce<LRState<ItemT>> reduce = (LRParserAction.Reduce<LRState<ItemT>>) rec.getAction();
+      return LRParserAction.reduce(reduce.getRule());
+    } else if (rec.getAction() instanceof LRParserAction.Accept<?>) {
+      return LRParserAction.accept();
+    } else if (rec.getAction() instanceof LRParserAction.Error<?>) {
+      return LRParserAction.error();
+    } else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Generates states without building a table, so grammars with unresolved conflicts can be inspected too
+   */
+  public LRTableStats getStats() {
+    checkGrammar();
+
+    List<LRState<ItemT>> states = generateStates();
+    List<String> conflicts = new ArrayList<>();
+    for (LRState<ItemT> state : states) {
+      for (Terminal t : grammar().getTerminals()) {
+        if (state.hasRecords(t) && state.hasAmbiguity(t)) {
+          conflicts.add(state.getName() + " on " + t + " : " + state.getMergedRecords(t));
+        }
+      }
+    }
+    return new LRTableStats(states.size(), conflicts);
+  }
+
   private Set<ItemT> getClosure(Set<ItemT> items) {
     Set<ItemT> result = myClosureCache.get(items);
     if (result != null) {
@@ -171,7 +244,7 @@ public abstract class BaseLRTableGenerator<ItemT extends LRItem<ItemT>> {
     return result;
   }
 
-  private Set<ItemT> closure(Set<ItemT> items) {
+  Set<ItemT> closure(Set<ItemT> items) {
     Set<ItemT> result = new LinkedHashSet<>();
     result.addAll(items);
     boolean hasChanges = true;
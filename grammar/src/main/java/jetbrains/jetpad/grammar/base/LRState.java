@@ -115,7 +115,7 @@ public class LRState<ItemT extends LRItem<ItemT>> {
 
   public void addRecord(Symbol s, LRActionRecord<ItemT> rec) {
     if (!myActionRecords.containsKey(s)) {
-      myActionRecords.put(s, new HashSet<LRActionRecord<ItemT>>());
+      myActionRecords.put(s, new LinkedHashSet<LRActionRecord<ItemT>>());
     }
     myActionRecords.get(s).add(rec);
   }
@@ -132,7 +132,7 @@ public class LRState<ItemT extends LRItem<ItemT>> {
   }
 
   private Set<LRActionRecord<ItemT>> mergeActions(Set<LRActionRecord<ItemT>> records) {
-    Set<LRActionRecord<ItemT>> result = new HashSet<>();
+    Set<LRActionRecord<ItemT>> result = new LinkedHashSet<>();
     Map<LRParserAction<LRState<ItemT>>, LRActionRecord<ItemT>> actions = new HashMap<>();
 
     for (LRActionRecord<ItemT> r : records) {
@@ -160,7 +160,7 @@ public class LRState<ItemT extends LRItem<ItemT>> {
       }
     }
 
-    Set<LRActionRecord<ItemT>> result = new HashSet<>();
+    Set<LRActionRecord<ItemT>> result = new LinkedHashSet<>();
     for (LRActionRecord<ItemT> rec : records) {
       Integer currentPriority = rec.getItem().getRule().getPriority();
       if (com.google.common.base.Objects.equal(currentPriority, highestPriority)) {
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.base;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class LRTableStats {
+  private final int myStateCount;
+  private final List<String> myConflicts;
+
+  LRTableStats(int stateCount, List<String> conflicts) {
+    myStateCount = stateCount;
+    myConflicts = Collections.unmodifiableList(conflicts);
+  }
+
+  public int getStateCount() {
+    return myStateCount;
+  }
+
+  /**
+   * Conflicts which can't be resolved with priorities and associativity
+   */
+  public List<String> getConflicts() {
+    return myConflicts;
+  }
+
+  @Override
+  public String toString() {
+    return "states=" + myStateCount + ", conflicts=" + myConflicts.size();
+  }
+}
@@ -17,7 +17,7 @@ package jetbrains.jetpad.grammar.base;
 
 import jetbrains.jetpad.grammar.Symbol;
 
-class LRTransition<ItemT extends LRItem<ItemT>> {
+public class LRTransition<ItemT extends LRItem<ItemT>> {
   private LRState<ItemT> myTarget;
   private Symbol mySymbol;
 
@@ -26,11 +26,11 @@ class LRTransition<ItemT extends LRItem<ItemT>> {
     mySymbol = symbol;
   }
 
-  LRState<ItemT> getTarget() {
+  public LRState<ItemT> getTarget() {
     return myTarget;
   }
 
-  Symbol getSymbol() {
+  public Symbol getSymbol() {
     return mySymbol;
   }
 
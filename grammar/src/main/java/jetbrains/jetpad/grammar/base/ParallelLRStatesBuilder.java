@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.base;
+
+import jetbrains.jetpad.grammar.Symbol;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds states level by level, where a level is the set of states first reached from the previous one.
+ * Splitting states of a level by the next symbol and computing closures of the resulting kernels is done
+ * in parallel, while states are numbered sequentially in the same order as {@link BaseLRTableGenerator} does,
+ * so the result doesn't depend on scheduling.
+ *
+ * A closure is computed once for each distinct kernel, from the first occurrence of the kernel in that order.
+ */
+public class ParallelLRStatesBuilder implements LRStatesBuilder {
+  private static final int SEQUENTIAL_THRESHOLD = 16;
+
+  private final ForkJoinPool myPool;
+
+  public ParallelLRStatesBuilder() {
+    this(new ForkJoinPool());
+  }
+
+  public ParallelLRStatesBuilder(ForkJoinPool pool) {
+    myPool = pool;
+  }
+
+  @Override
+  public <ItemT extends LRItem<ItemT>> List<LRState<ItemT>> build(final BaseLRTableGenerator<ItemT> generator) {
+    //grammar data is computed lazily, so it has to be computed before closures are computed in parallel
+    generator.grammar().getStart().isNullable();
+
+    final ConcurrentMap<Set<ItemT>, Set<ItemT>> closures = new ConcurrentHashMap<>();
+    Map<Set<ItemT>, LRState<ItemT>> states = new LinkedHashMap<>();
+    LRState<ItemT> init = generator.initialState();
+    states.put(init.getItems(), init);
+
+    List<LRState<ItemT>> level = Collections.singletonList(init);
+    while (!level.isEmpty()) {
+      final List<LRState<ItemT>> current = level;
+      final List<Map<Symbol, Set<ItemT>>> splits = new ArrayList<>(Collections.<Map<Symbol, Set<ItemT>>>nCopies(current.size(), null));
+      myPool.invoke(new ForEach(0, current.size(), new IndexTask() {
+        @Override
+        public void run(int index) {
+          splits.set(index, generator.splitSet(current.get(index).getItems()));
+        }
+      }));
+
+      final List<Set<ItemT>> kernels = new ArrayList<>();
+      Set<Set<ItemT>> newKernels = new HashSet<>();
+      for (Map<Symbol, Set<ItemT>> split : splits) {
+        for (Set<ItemT> kernel : split.values()) {
+          if (!closures.containsKey(kernel) && newKernels.add(kernel)) {
+            kernels.add(kernel);
+          }
+        }
+      }
+      myPool.invoke(new ForEach(0, kernels.size(), new IndexTask() {
+        @Override
+        public void run(int index) {
+          Set<ItemT> kernel = kernels.get(index);
+          closures.put(kernel, generator.closure(kernel));
+        }
+      }));
+
+      List<LRState<ItemT>> next = new ArrayList<>();
+      for (int i = 0; i < current.size(); i++) {
+        LRState<ItemT> state = current.get(i);
+        for (Map.Entry<Symbol, Set<ItemT>> e : splits.get(i).entrySet()) {
+          Set<ItemT> nextItems = closures.get(e.getValue());
+          LRState<ItemT> target = states.get(nextItems);
+          if (target == null) {
+            target = new LRState<>(states.size(), nextItems);
+            states.put(nextItems, target);
+            next.add(target);
+          }
+          state.addTransition(new LRTransition<>(target, e.getKey()));
+        }
+      }
+      level = next;
+    }
+
+    return new ArrayList<>(states.values());
+  }
+
+  private interface IndexTask {
+    void run(int index);
+  }
+
+  private static class ForEach extends RecursiveAction {
+    private final int myFrom;
+    private final int myTo;
+    private final IndexTask myTask;
+
+    private ForEach(int from, int to, IndexTask task) {
+      myFrom = from;
+      myTo = to;
+      myTask = task;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom <= SEQUENTIAL_THRESHOLD) {
+        for (int i = myFrom; i < myTo; i++) {
+          myTask.run(i);
+        }
+        return;
+      }
+      int middle = (myFrom + myTo) >>> 1;
+      invokeAll(new ForEach(myFrom, middle, myTask), new ForEach(middle, myTo, myTask));
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lalr;
+
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.base.BaseLRTableGenerator;
+import jetbrains.jetpad.grammar.base.LRActionRecord;
+import jetbrains.jetpad.grammar.base.LRState;
+import jetbrains.jetpad.grammar.base.LRTransition;
+import jetbrains.jetpad.grammar.parser.LRParserAction;
+import jetbrains.jetpad.grammar.slr.SLRItem;
+
+import java.util.*;
+
+/**
+ * LALR(1) table generator. States are sets of LR(0) items, the same as in SLR, lookaheads of reductions are computed
+ * with DeRemer-Pennello relations (reads, includes and lookback) over non terminal transitions of the
+ * LR(0) automaton. Gives as many states as SLR and resolves conflicts almost as well as LR(1).
+ */
+public class LALRTableGenerator extends BaseLRTableGenerator<SLRItem> {
+  private Terminal[] myTerminals;
+  private Map<LRState<SLRItem>, Map<Rule, long[]>> myLookAheads;
+
+  public LALRTableGenerator(Grammar grammar) {
+    super(grammar);
+  }
+
+  @Override
+  public String getKind() {
+    return "LALR";
+  }
+
+  @Override
+  protected SLRItem initialItem() {
+    NonTerminal initial = grammar().getStart();
+    return new SLRItem(initial.getFirstRule(), 0);
+  }
+
+  @Override
+  protected boolean closure(Set<SLRItem> result, SLRItem item) {
+    if (item.isFinal()) return false;
+    if (!(item.getNextSymbol() instanceof NonTerminal)) return false;
+
+    boolean changed = false;
+    NonTerminal currentNonTerminal = (NonTerminal) item.getNextSymbol();
+    for (Rule rule : currentNonTerminal.getRules()) {
+      if (result.add(new SLRItem(rule, 0))) {
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  @Override
+  protected void statesGenerated(List<LRState<SLRItem>> states) {
+    myTerminals = grammar().getTerminals().toArray(new Terminal[0]);
+    myLookAheads = new HashMap<>();
+    new LookAheadCalculator(states).calculate();
+  }
+
+  @Override
+  protected void addFinal(LRState<SLRItem> state, SLRItem item) {
+    Rule rule = item.getRule();
+    if (rule.getHead() == grammar().getStart()) {
+      Terminal end = grammar().getEnd();
+      state.addRecord(end, new LRActionRecord<>(item, LRParserAction.<LRState<SLRItem>>accept()));
+      return;
+    }
+
+    Map<Rule, long[]> stateLookAheads = myLookAheads.get(state);
+    long[] lookAheads = stateLookAheads != null ? stateLookAheads.get(rule) : null;
+    if (lookAheads == null) return;
+
+    for (int i = 0; i < myTerminals.length; i++) {
+      if ((lookAheads[i >> 6] & (1L << i)) != 0) {
+        state.addRecord(myTerminals[i], new LRActionRecord<>(item, LRParserAction.<LRState<SLRItem>>reduce(rule)));
+      }
+    }
+  }
+
+  private class LookAheadCalculator {
+    private final List<LRState<SLRItem>> myStates;
+    private final List<Map<Symbol, LRState<SLRItem>>> myGotos = new ArrayList<>();
+    private final int myWords;
+
+    private final List<LRState<SLRItem>> myTransitionStates = new ArrayList<>();
+    private final List<NonTerminal> myTransitionSymbols = new ArrayList<>();
+    private final int[][] myTransitionIndex;
+
+    private LookAheadCalculator(List<LRState<SLRItem>> states) {
+      myStates = states;
+      myWords = (myTerminals.length + 63) >> 6;
+
+      myTransitionIndex = new int[states.size()][grammar().getNonTerminals().size()];
+      for (LRState<SLRItem> state : states) {
+        Map<Symbol, LRState<SLRItem>> gotos = new HashMap<>();
+        Arrays.fill(myTransitionIndex[state.getNumber()], -1);
+        for (LRTransition<SLRItem> t : state.getTransitions()) {
+          gotos.put(t.getSymbol(), t.getTarget());
+          if (t.getSymbol() instanceof NonTerminal) {
+            NonTerminal nt = (NonTerminal) t.getSymbol();
+            myTransitionIndex[state.getNumber()][nt.getIndex()] = myTransitionStates.size();
+            myTransitionStates.add(state);
+            myTransitionSymbols.add(nt);
+          }
+        }
+        myGotos.add(gotos);
+      }
+    }
+
+    private LRState<SLRItem> go(LRState<SLRItem> state, Symbol symbol) {
+      return myGotos.get(state.getNumber()).get(symbol);
+    }
+
+    private int transition(LRState<SLRItem> state, NonTerminal nt) {
+      return myTransitionIndex[state.getNumber()][nt.getIndex()];
+    }
+
+    void calculate() {
+      int count = myTransitionStates.size();
+      long[][] directReads = new long[count][myWords];
+      Relation reads = new Relation(count);
+      NonTerminal startSymbol = (NonTerminal) grammar().getStart().getFirstRule().getSymbols().get(0);
+
+      for (int x = 0; x < count; x++) {
+        LRState<SLRItem> target = go(myTransitionStates.get(x), myTransitionSymbols.get(x));
+        for (LRTransition<SLRItem> t : target.getTransitions()) {
+          Symbol s = t.getSymbol();
+          if (s instanceof Terminal) {
+            TerminalBits.add(directReads[x], ((Terminal) s).getIndex());
+          } else if (((NonTerminal) s).isNullable()) {
+            reads.add(x, transition(target, (NonTerminal) s));
+          }
+        }
+        if (myTransitionStates.get(x) == myStates.get(0) && myTransitionSymbols.get(x) == startSymbol) {
+          TerminalBits.add(directReads[x], grammar().getEnd().getIndex());
+        }
+      }
+      long[][] follow = reads.digraph(directReads);
+
+      Relation includes = new Relation(count);
+      List<Lookback> lookbacks = new ArrayList<>();
+      for (int x = 0; x < count; x++) {
+        LRState<SLRItem> from = myTransitionStates.get(x);
+        for (Rule rule : myTransitionSymbols.get(x).getRules()) {
+          List<Symbol> symbols = rule.getSymbols();
+          boolean[] nullableSuffix = new boolean[symbols.size() + 1];
+          nullableSuffix[symbols.size()] = true;
+          for (int i = symbols.size() - 1; i >= 0; i--) {
+            Symbol s = symbols.get(i);
+            nullableSuffix[i] = nullableSuffix[i + 1] && s instanceof NonTerminal && ((NonTerminal) s).isNullable();
+          }
+
+          LRState<SLRItem> state = from;
+          for (int i = 0; i < symbols.size(); i++) {
+            Symbol s = symbols.get(i);
+            if (s instanceof NonTerminal && nullableSuffix[i + 1]) {
+              includes.add(transition(state, (NonTerminal) s), x);
+            }
+            state = go(state, s);
+          }
+          lookbacks.add(new Lookback(state, rule, x));
+        }
+      }
+      follow = includes.digraph(follow);
+
+      for (Lookback lookback : lookbacks) {
+        Map<Rule, long[]> stateLookAheads = myLookAheads.get(lookback.state);
+        if (stateLookAheads == null) {
+          stateLookAheads = new HashMap<>();
+          myLookAheads.put(lookback.state, stateLookAheads);
+        }
+        long[] lookAheads = stateLookAheads.get(lookback.rule);
+        if (lookAheads == null) {
+          lookAheads = new long[myWords];
+          stateLookAheads.put(lookback.rule, lookAheads);
+        }
+        TerminalBits.addAll(lookAheads, follow[lookback.transition]);
+      }
+    }
+  }
+
+  private static class Lookback {
+    final LRState<SLRItem> state;
+    final Rule rule;
+    final int transition;
+
+    Lookback(LRState<SLRItem> state, Rule rule, int transition) {
+      this.state = state;
+      this.rule = rule;
+      this.transition = transition;
+    }
+  }
+
+  /**
+   * Relation over non terminal transitions stored as adjacency lists in arrays
+   */
+  private static class Relation {
+    private final int[] myFirstEdge;
+    private int[] myTargets = new int[16];
+    private int[] myNextEdges = new int[16];
+    private int myEdgeCount;
+
+    Relation(int size) {
+      myFirstEdge = new int[size];
+      Arrays.fill(myFirstEdge, -1);
+    }
+
+    void add(int from, int to) {
+      if (myEdgeCount == myTargets.length) {
+        myTargets = Arrays.copyOf(myTargets, myEdgeCount * 2);
+        myNextEdges = Arrays.copyOf(myNextEdges, myEdgeCount * 2);
+      }
+      myTargets[myEdgeCount] = to;
+      myNextEdges[myEdgeCount] = myFirstEdge[from];
+      myFirstEdge[from] = myEdgeCount++;
+    }
+
+    /**
+     * F(x) = initial(x) | union of F(y) for all y reachable from x, computed with DeRemer-Pennello
+     * digraph algorithm which handles strongly connected components in one pass
+     */
+    long[][] digraph(long[][] initial) {
+      int size = myFirstEdge.length;
+      long[][] result = new long[size][];
+      for (int i = 0; i < size; i++) {
+        result[i] = initial[i].clone();
+      }
+      int[] depth = new int[size];
+      int[] stack = new int[size];
+      int[] top = new int[1];
+      for (int x = 0; x < size; x++) {
+        if (depth[x] == 0) {
+          traverse(x, depth, stack, top, result);
+        }
+      }
+      return result;
+    }
+
+    private void traverse(int x, int[] depth, int[] stack, int[] top, long[][] result) {
+      stack[top[0]++] = x;
+      int d = top[0];
+      depth[x] = d;
+      for (int e = myFirstEdge[x]; e != -1; e = myNextEdges[e]) {
+        int y = myTargets[e];
+        if (depth[y] == 0) {
+          traverse(y, depth, stack, top, result);
+        }
+        depth[x] = Math.min(depth[x], depth[y]);
+        TerminalBits.addAll(result[x], result[y]);
+      }
+      if (depth[x] == d) {
+        while (true) {
+          int z = stack[--top[0]];
+          depth[z] = Integer.MAX_VALUE;
+          if (z == x) break;
+          result[z] = result[x].clone();
+        }
+      }
+    }
+  }
+}
@@ -15,7 +15,6 @@
  */
 package jetbrains.jetpad.grammar.lr1;
 
-import com.sun.org.apache.xalan.internal.xsltc.compiler.sym;
 import jetbrains.jetpad.grammar.*;
 import jetbrains.jetpad.grammar.base.*;
 import jetbrains.jetpad.grammar.parser.LRParserAction;
@@ -31,6 +30,11 @@ public class LR1TableGenerator extends BaseLRTableGenerator<LR1Item> {
     super(grammar);
   }
 
+  @Override
+  public String getKind() {
+    return "LR1";
+  }
+
   @Override
   protected LR1Item initialItem() {
     NonTerminal initial = grammar().getStart();
@@ -58,11 +62,11 @@ public class LR1TableGenerator extends BaseLRTableGenerator<LR1Item> {
 
     NonTerminal currentNonTerminal = (NonTerminal) item.getNextSymbol();
     List<Symbol> rightPart = item.getRule().getSymbols();
-    Set<Terminal> first = first(rightPart.subList(item.getIndex() + 1, rightPart.size()), item.getLookAhead());
+    long[] first = first(rightPart.subList(item.getIndex() + 1, rightPart.size()), item.getLookAhead());
     boolean changed = false;
     for (Rule rule : currentNonTerminal.getRules()) {
-      for (Terminal t : first) {
-        LR1Item newItem = new LR1Item(rule, 0, t);
+      for (int t = TerminalBits.next(first, 0); t != -1; t = TerminalBits.next(first, t + 1)) {
+        LR1Item newItem = new LR1Item(rule, 0, grammar().getTerminal(t));
         if (result.add(newItem)) {
           changed = true;
         }
@@ -71,19 +75,19 @@ public class LR1TableGenerator extends BaseLRTableGenerator<LR1Item> {
     return changed;
   }
 
-  private Set<Terminal> first(List<Symbol> symbols, Terminal lookAhead) {
-    Set<Terminal> result = new HashSet<>();
+  private long[] first(List<Symbol> symbols, Terminal lookAhead) {
+    long[] result = TerminalBits.create(grammar());
     for (Symbol s : symbols) {
       if (s instanceof Terminal) {
-        result.add((Terminal) s);
+        TerminalBits.add(result, s.getIndex());
         return result;
       } else if (s instanceof NonTerminal) {
         NonTerminal nt = (NonTerminal) s;
-        result.addAll(nt.getFirst());
+        nt.addFirstTo(result);
         if (!nt.isNullable()) return result;
       }
     }
-    result.add(lookAhead);
+    TerminalBits.add(result, lookAhead.getIndex());
     return result;
   }
-}
\ No newline at end of file
+}
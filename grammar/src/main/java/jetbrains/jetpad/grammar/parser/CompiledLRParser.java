@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table driven parser which works on {@link CompiledLRParserTable}. Produces the same results as {@link LRParser}
+ * but keeps its stack in primitive arrays and doesn't do any hash lookups during parsing.
+ *
+ * A parser is a reusable session: the stack is kept between parses, and handlers get the same {@link RuleContext}
+ * which is a view of the top of the value stack. So a context is valid only during a handler call, and a parser
+ * can't be used from several threads or reentrantly from its own handlers.
+ */
+public class CompiledLRParser {
+  private static final int INITIAL_STACK_SIZE = 32;
+
+  private static final Function<Rule, RuleHandler> RULE_HANDLERS = new Function<Rule, RuleHandler>() {
+    @Override
+    public RuleHandler apply(Rule rule) {
+      return rule.getHandler();
+    }
+  };
+
+  private CompiledLRParserTable myTable;
+  private ParserParameters myParameters;
+
+  private int[] myStates = new int[INITIAL_STACK_SIZE];
+  private int[] myStarts = new int[INITIAL_STACK_SIZE];
+  private Object[] myValues = new Object[INITIAL_STACK_SIZE];
+  private final SliceRuleContext myContext = new SliceRuleContext();
+
+  public CompiledLRParser(CompiledLRParserTable table) {
+    this(table, ParserParameters.EMPTY);
+  }
+
+  public CompiledLRParser(CompiledLRParserTable table, ParserParameters params) {
+    myTable = table;
+    myParameters = params;
+  }
+
+  public boolean parse(Terminal... input) {
+    List<Lexeme> lexemes = new ArrayList<>();
+    for (Terminal t : input) {
+      lexemes.add(new Lexeme(t, t.toString()));
+    }
+    return parse(lexemes) != null;
+  }
+
+  public Object parse(Lexeme... input) {
+    return parse(Arrays.asList(input));
+  }
+
+  public Object parse(List<Lexeme> input) {
+    return parse(input, RULE_HANDLERS);
+  }
+
+  public Object parse(List<Lexeme> input, Function<Rule, RuleHandler> handlerProvider) {
+    int top = 0;
+    try {
+      myStates[0] = myTable.getInitialState();
+      myStarts[0] = -1;
+
+      int end = myTable.getGrammar().getEnd().getIndex();
+      int pos = 0;
+      while (true) {
+        Lexeme lexeme = pos < input.size() ? input.get(pos) : null;
+        int current = lexeme != null ? lexeme.getTerminal().getIndex() : end;
+        int action = myTable.getAction(myStates[top], current);
+        switch (CompiledLRParserTable.kind(action)) {
+          case CompiledLRParserTable.SHIFT:
+            top = push(top, CompiledLRParserTable.argument(action), pos, lexeme);
+            pos++;
+            break;
+
+          case CompiledLRParserTable.REDUCE:
+            int rule = CompiledLRParserTable.argument(action);
+            int length = myTable.getRuleLength(rule);
+            int bottom = top - length + 1;
+            int startOffset = length > 0 ? myStarts[bottom] : pos;
+
+            RuleHandler handler = handlerProvider.apply(myTable.getRule(rule));
+            Object result;
+            if (handler != null) {
+              myContext.set(bottom, length, startOffset, pos);
+              try {
+                result = handler.handle(myContext);
+              } finally {
+                myContext.set(0, 0, 0, 0);
+              }
+            } else {
+              result = new ArrayList<>(Arrays.asList(myValues).subList(bottom, top + 1));
+            }
+            Arrays.fill(myValues, bottom, top + 1, null);
+            top -= length;
+
+            int nextState = myTable.getNextState(myStates[top], myTable.getRuleHead(rule));
+            top = push(top, nextState, startOffset, result);
+            break;
+
+          case CompiledLRParserTable.ACCEPT:
+            return myValues[top];
+
+          default:
+            return null;
+        }
+      }
+    } finally {
+      Arrays.fill(myValues, 0, top + 1, null);
+    }
+  }
+
+  private int push(int top, int state, int start, Object value) {
+    if (++top == myStates.length) {
+      int newLength = myStates.length * 2;
+      myStates = Arrays.copyOf(myStates, newLength);
+      myStarts = Arrays.copyOf(myStarts, newLength);
+      myValues = Arrays.copyOf(myValues, newLength);
+    }
+    myStates[top] = state;
+    myStarts[top] = start;
+    myValues[top] = value;
+    return top;
+  }
+
+  private class SliceRuleContext implements RuleContext {
+    private int myBottom;
+    private int myLength;
+    private int myStart;
+    private int myEnd;
+
+    private void set(int bottom, int length, int start, int end) {
+      myBottom = bottom;
+      myLength = length;
+      myStart = start;
+      myEnd = end;
+    }
+
+    @Override
+    public ParserParameters getParams() {
+      return myParameters;
+    }
+
+    @Override
+    public <ValueT> ValueT get(ParserParameter<ValueT> key) {
+      return myParameters.get(key);
+    }
+
+    @Override
+    public Object get(int index) {
+      if (index < 0 || index >= myLength) {
+        throw new IndexOutOfBoundsException("" + index);
+      }
+      return myValues[myBottom + index];
+    }
+
+    @Override
+    public int getValueCount() {
+      return myLength;
+    }
+
+    @Override
+    public Range<Integer> getRange() {
+      return Range.closed(myStart, myEnd);
+    }
+  }
+}
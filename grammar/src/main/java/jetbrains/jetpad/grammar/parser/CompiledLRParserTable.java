@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import jetbrains.jetpad.grammar.Grammar;
+import jetbrains.jetpad.grammar.NonTerminal;
+import jetbrains.jetpad.grammar.Rule;
+import jetbrains.jetpad.grammar.Terminal;
+
+import java.util.*;
+
+/**
+ * Packed form of {@link LRParserTable}. States, terminals, non terminals and rules are referred to
+ * by their indices, ACTION and GOTO are stored as comb vectors (row displacement compression):
+ * a cell (row, column) lives at next[base[row] + column] if check[base[row] + column] == row.
+ *
+ * An action is encoded as (argument << 2) | kind where argument is a target state for shift and
+ * a rule index for reduce.
+ */
+public final class CompiledLRParserTable {
+  static final int ERROR = 0;
+  static final int SHIFT = 1;
+  static final int REDUCE = 2;
+  static final int ACCEPT = 3;
+
+  static int kind(int action) {
+    return action & 3;
+  }
+
+  static int argument(int action) {
+    return action >>> 2;
+  }
+
+  static int encode(LRParserAction<LRParserState> action) {
+    if (action instanceof LRParserAction.Shift) {
+      return (((LRParserAction.Shift<LRParserState>) action).getState().getIndex() << 2) | SHIFT;
+    } else if (action instanceof LRParserAction.Reduce) {
+      return (((LRParserAction.Reduce<LRParserState>) action).getRule().getIndex() << 2) | REDUCE;
+    } else if (action instanceof LRParserAction.Accept) {
+      return ACCEPT;
+    } else {
+      return ERROR;
+    }
+  }
+
+  private final Grammar myGrammar;
+  private final int myStateCount;
+  private final int myTerminalCount;
+  private final int myNonTerminalCount;
+
+  private final Rule[] myRules;
+  private final int[] myRuleLength;
+  private final int[] myRuleHead;
+
+  private final CombVector myActions;
+  private final CombVector myGotos;
+
+  public CompiledLRParserTable(LRParserTable table) {
+    if (table.hasConflicts()) {
+      throw new IllegalArgumentException("Tables with conflicts can't be compiled");
+    }
+    myGrammar = table.getGrammar();
+    myStateCount = table.getStates().size();
+    myTerminalCount = myGrammar.getTerminals().size();
+    myNonTerminalCount = myGrammar.getNonTerminals().size();
+
+    Set<Rule> rules = myGrammar.getRules();
+    myRules = new Rule[rules.size()];
+    myRuleLength = new int[rules.size()];
+    myRuleHead = new int[rules.size()];
+    for (Rule rule : rules) {
+      myRules[rule.getIndex()] = rule;
+      myRuleLength[rule.getIndex()] = rule.getSymbols().size();
+      myRuleHead[rule.getIndex()] = rule.getHead().getIndex();
+    }
+
+    int[][] actionColumns = new int[myStateCount][];
+    int[][] actionValues = new int[myStateCount][];
+    int[][] gotoColumns = new int[myStateCount][];
+    int[][] gotoValues = new int[myStateCount][];
+    for (LRParserState state : table.getStates()) {
+      int row = state.getIndex();
+
+      Map<Terminal, LRParserAction<LRParserState>> actions = state.getActions();
+      actionColumns[row] = new int[actions.size()];
+      actionValues[row] = new int[actions.size()];
+      int i = 0;
+      for (Map.Entry<Terminal, LRParserAction<LRParserState>> e : actions.entrySet()) {
+        actionColumns[row][i] = e.getKey().getIndex();
+        actionValues[row][i] = encode(e.getValue());
+        i++;
+      }
+
+      Map<NonTerminal, LRParserState> nextStates = state.getNextStates();
+      gotoColumns[row] = new int[nextStates.size()];
+      gotoValues[row] = new int[nextStates.size()];
+      i = 0;
+      for (Map.Entry<NonTerminal, LRParserState> e : nextStates.entrySet()) {
+        gotoColumns[row][i] = e.getKey().getIndex();
+        gotoValues[row][i] = e.getValue().getIndex();
+        i++;
+      }
+    }
+
+    myActions = new CombVector(actionColumns, actionValues, ERROR);
+    myGotos = new CombVector(gotoColumns, gotoValues, -1);
+  }
+
+  public Grammar getGrammar() {
+    return myGrammar;
+  }
+
+  public int getStateCount() {
+    return myStateCount;
+  }
+
+  int getInitialState() {
+    return 0;
+  }
+
+  int getAction(int state, int terminal) {
+    return myActions.get(state, terminal);
+  }
+
+  int getNextState(int state, int nonTerminal) {
+    int result = myGotos.get(state, nonTerminal);
+    if (result == -1) {
+      throw new IllegalStateException();
+    }
+    return result;
+  }
+
+  Rule getRule(int rule) {
+    return myRules[rule];
+  }
+
+  int getRuleLength(int rule) {
+    return myRuleLength[rule];
+  }
+
+  int getRuleHead(int rule) {
+    return myRuleHead[rule];
+  }
+
+  /**
+   * Approximate memory used by packed ACTION table, in bytes
+   */
+  public int getActionTableSize() {
+    return myActions.getSize();
+  }
+
+  /**
+   * Approximate memory used by packed GOTO table, in bytes
+   */
+  public int getGotoTableSize() {
+    return myGotos.getSize();
+  }
+
+  public int getSize() {
+    return getActionTableSize() + getGotoTableSize() + 4 * (myRuleLength.length + myRuleHead.length + myRules.length);
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledLRParserTable[states=" + myStateCount + ", terminals=" + myTerminalCount + ", nonTerminals=" + myNonTerminalCount
+      + ", action=" + getActionTableSize() + "b (dense " + 4 * myStateCount * myTerminalCount + "b)"
+      + ", goto=" + getGotoTableSize() + "b (dense " + 4 * myStateCount * myNonTerminalCount + "b)]";
+  }
+
+  private static class CombVector {
+    private final int[] myBase;
+    private final int[] myNext;
+    private final int[] myCheck;
+    private final int myDefault;
+
+    CombVector(final int[][] columns, int[][] values, int defaultValue) {
+      int rowCount = columns.length;
+      myDefault = defaultValue;
+      myBase = new int[rowCount];
+
+      Integer[] order = new Integer[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer r1, Integer r2) {
+          int d = columns[r2].length - columns[r1].length;
+          if (d != 0) return d;
+          return r1 - r2;
+        }
+      });
+
+      int[] next = new int[16];
+      int[] check = new int[16];
+      Arrays.fill(check, -1);
+      int size = 0;
+      for (int row : order) {
+        int[] cols = columns[row];
+        if (cols.length == 0) {
+          myBase[row] = 0;
+          continue;
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int c : cols) {
+          min = Math.min(min, c);
+          max = Math.max(max, c);
+        }
+
+        int base = -min;
+        while (true) {
+          if (base + max >= check.length) {
+            int newLength = Math.max(check.length * 2, base + max + 1);
+            next = Arrays.copyOf(next, newLength);
+            int oldLength = check.length;
+            check = Arrays.copyOf(check, newLength);
+            Arrays.fill(check, oldLength, newLength, -1);
+          }
+          boolean fits = true;
+          for (int c : cols) {
+            if (check[base + c] != -1) {
+              fits = false;
+              break;
+            }
+          }
+          if (fits) break;
+          base++;
+        }
+
+        myBase[row] = base;
+        for (int i = 0; i < cols.length; i++) {
+          next[base + cols[i]] = values[row][i];
+          check[base + cols[i]] = row;
+        }
+        size = Math.max(size, base + max + 1);
+      }
+
+      myNext = Arrays.copyOf(next, size);
+      myCheck = Arrays.copyOf(check, size);
+    }
+
+    int get(int row, int column) {
+      int index = myBase[row] + column;
+      if (index < 0 || index >= myCheck.length || myCheck[index] != row) return myDefault;
+      return myNext[index];
+    }
+
+    int getSize() {
+      return 4 * (myBase.length + myNext.length + myCheck.length);
+    }
+  }
+}
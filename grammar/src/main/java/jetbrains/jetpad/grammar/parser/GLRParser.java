@@ -0,0 +1,303 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+
+import java.util.*;
+
+/**
+ * Generalized LR parser which works on tables with conflicts, such as ones produced by
+ * {@link jetbrains.jetpad.grammar.base.BaseLRTableGenerator#generateGLRTable()}.
+ *
+ * All parses are done simultaneously on a graph structured stack. Stack links are labeled with nodes of
+ * a packed parse forest, so derivations of the same symbol from the same part of input are shared. When a derivation
+ * is packed into an existing node, priorities and associativity of rules decide which one is used to produce a value,
+ * see {@link ParseForestNode}.
+ *
+ * If a table has no conflicts, {@link #parse(List)} is delegated to {@link LRParser}. Cyclic grammars,
+ * i.e. ones where a non terminal can derive itself, aren't supported.
+ */
+public class GLRParser {
+  private LRParserTable myTable;
+  private ParserParameters myParameters;
+  private boolean myDeterministic;
+
+  public GLRParser(LRParserTable table) {
+    this(table, ParserParameters.EMPTY);
+  }
+
+  public GLRParser(LRParserTable table, ParserParameters params) {
+    myTable = table;
+    myParameters = params;
+    myDeterministic = !table.hasConflicts();
+  }
+
+  public boolean parse(Terminal... input) {
+    List<Lexeme> lexemes = new ArrayList<>();
+    for (Terminal t : input) {
+      lexemes.add(new Lexeme(t, t.toString()));
+    }
+    return parseForest(lexemes) != null;
+  }
+
+  public Object parse(Lexeme... input) {
+    return parse(Arrays.asList(input));
+  }
+
+  public Object parse(List<Lexeme> input) {
+    return parse(input, new Function<Rule, RuleHandler>() {
+      @Override
+      public RuleHandler apply(Rule rule) {
+        return rule.getHandler();
+      }
+    });
+  }
+
+  public Object parse(List<Lexeme> input, Function<Rule, RuleHandler> handlerProvider) {
+    if (myDeterministic) {
+      return new LRParser(myTable, myParameters).parse(input, handlerProvider);
+    }
+    ParseForestNode root = parseForest(input);
+    if (root == null) return null;
+    return evaluate(root, handlerProvider, new HashSet<ParseForestNode>());
+  }
+
+  /**
+   * @return the forest node for the non terminal derived from the start symbol, or null if input can't be parsed
+   */
+  public ParseForestNode parseForest(List<Lexeme> input) {
+    Terminal end = myTable.getGrammar().getEnd();
+    Map<LRParserState, StackNode> level = new LinkedHashMap<>();
+    level.put(myTable.getInitialState(), new StackNode(myTable.getInitialState(), 0));
+
+    int pos = 0;
+    while (true) {
+      Lexeme lexeme = pos < input.size() ? input.get(pos) : null;
+      Terminal current = lexeme != null ? lexeme.getTerminal() : end;
+
+      new Reducer(level, current, pos).reduce();
+
+      Map<LRParserState, StackNode> next = new LinkedHashMap<>();
+      ParseForestNode leaf = null;
+      for (StackNode node : level.values()) {
+        for (LRParserAction<LRParserState> action : node.state.getActions(current)) {
+          if (action instanceof LRParserAction.Accept) {
+            return node.links.get(0).node;
+          }
+          if (!(action instanceof LRParserAction.Shift)) continue;
+
+          LRParserState target = ((LRParserAction.Shift<LRParserState>) action).getState();
+          StackNode shifted = next.get(target);
+          if (shifted == null) {
+            shifted = new StackNode(target, pos + 1);
+            next.put(target, shifted);
+          }
+          if (leaf == null) {
+            leaf = new ParseForestNode(current, pos, pos + 1, lexeme);
+          }
+          shifted.links.add(new Link(node, leaf));
+        }
+      }
+
+      if (next.isEmpty()) return null;
+      level = next;
+      pos++;
+    }
+  }
+
+  private Object evaluate(ParseForestNode node, Function<Rule, RuleHandler> handlerProvider, Set<ParseForestNode> evaluating) {
+    if (node.getLexeme() != null) {
+      return node.getLexeme();
+    }
+    if (!evaluating.add(node)) {
+      throw new IllegalStateException("Cyclic derivation of " + node.getSymbol());
+    }
+
+    ParseForestNode.Derivation derivation = node.getPreferred();
+    List<Object> handlerInput = new ArrayList<>();
+    for (ParseForestNode child : derivation.getChildren()) {
+      handlerInput.add(evaluate(child, handlerProvider, evaluating));
+    }
+    evaluating.remove(node);
+
+    RuleContext ruleContext = new MyRuleContext(node.getRange(), handlerInput);
+    RuleHandler handler = handlerProvider.apply(derivation.getRule());
+    return handler != null ? handler.handle(ruleContext) : handlerInput;
+  }
+
+  /**
+   * Performs all reductions on the current level. When a link is added to an existing stack node, reductions
+   * from all nodes of the level are repeated for paths going through this link.
+   */
+  private static class Reducer {
+    private final Map<LRParserState, StackNode> myLevel;
+    private final Terminal myCurrent;
+    private final int myPos;
+    private final Map<Symbol, Map<Integer, ParseForestNode>> myNodes = new HashMap<>();
+    private final Queue<Reduction> myQueue = new LinkedList<>();
+
+    private Reducer(Map<LRParserState, StackNode> level, Terminal current, int pos) {
+      myLevel = level;
+      myCurrent = current;
+      myPos = pos;
+    }
+
+    void reduce() {
+      for (StackNode node : myLevel.values()) {
+        addReductions(node, null);
+      }
+
+      while (!myQueue.isEmpty()) {
+        Reduction reduction = myQueue.poll();
+        int length = reduction.rule.getSymbols().size();
+        ParseForestNode[] children = new ParseForestNode[length];
+        reducePaths(reduction, reduction.node, length, children, reduction.via == null);
+      }
+    }
+
+    private void reducePaths(Reduction reduction, StackNode node, int length, ParseForestNode[] children, boolean viaPassed) {
+      if (length == 0) {
+        if (viaPassed) {
+          reduce(node, reduction.rule, children.clone());
+        }
+        return;
+      }
+      for (Link link : new ArrayList<>(node.links)) {
+        children[length - 1] = link.node;
+        reducePaths(reduction, link.target, length - 1, children, viaPassed || link == reduction.via);
+      }
+    }
+
+    private void reduce(StackNode start, Rule rule, ParseForestNode[] children) {
+      NonTerminal head = rule.getHead();
+      LRParserState state = start.state.getNextState(head);
+      ParseForestNode forestNode = forestNode(head, start.level);
+      forestNode.addDerivation(rule, children);
+
+      StackNode node = myLevel.get(state);
+      if (node == null) {
+        node = new StackNode(state, myPos);
+        node.links.add(new Link(start, forestNode));
+        myLevel.put(state, node);
+        addReductions(node, null);
+        return;
+      }
+
+      for (Link link : node.links) {
+        if (link.target == start) return;
+      }
+      Link link = new Link(start, forestNode);
+      node.links.add(link);
+      for (StackNode n : myLevel.values()) {
+        addReductions(n, link);
+      }
+    }
+
+    private void addReductions(StackNode node, Link via) {
+      for (LRParserAction<LRParserState> action : node.state.getActions(myCurrent)) {
+        if (!(action instanceof LRParserAction.Reduce)) continue;
+        Rule rule = ((LRParserAction.Reduce<LRParserState>) action).getRule();
+        if (via != null && rule.getSymbols().isEmpty()) continue;
+        myQueue.add(new Reduction(node, rule, via));
+      }
+    }
+
+    private ParseForestNode forestNode(NonTerminal head, int start) {
+      Map<Integer, ParseForestNode> nodes = myNodes.get(head);
+      if (nodes == null) {
+        nodes = new HashMap<>();
+        myNodes.put(head, nodes);
+      }
+      ParseForestNode result = nodes.get(start);
+      if (result == null) {
+        result = new ParseForestNode(head, start, myPos, null);
+        nodes.put(start, result);
+      }
+      return result;
+    }
+  }
+
+  private static class StackNode {
+    final LRParserState state;
+    final int level;
+    final List<Link> links = new ArrayList<>(1);
+
+    StackNode(LRParserState state, int level) {
+      this.state = state;
+      this.level = level;
+    }
+  }
+
+  private static class Link {
+    final StackNode target;
+    final ParseForestNode node;
+
+    Link(StackNode target, ParseForestNode node) {
+      this.target = target;
+      this.node = node;
+    }
+  }
+
+  private static class Reduction {
+    final StackNode node;
+    final Rule rule;
+    final Link via;
+
+    Reduction(StackNode node, Rule rule, Link via) {
+      this.node = node;
+      this.rule = rule;
+      this.via = via;
+    }
+  }
+
+  private class MyRuleContext implements RuleContext {
+    private List<Object> myValues;
+    private Range<Integer> myRange;
+
+    private MyRuleContext(Range<Integer> range, List<Object> values) {
+      myValues = values;
+      myRange = range;
+    }
+
+    @Override
+    public ParserParameters getParams() {
+      return myParameters;
+    }
+
+    @Override
+    public <ValueT> ValueT get(ParserParameter<ValueT> key) {
+      return myParameters.get(key);
+    }
+
+    @Override
+    public Object get(int index) {
+      return myValues.get(index);
+    }
+
+    @Override
+    public int getValueCount() {
+      return myValues.size();
+    }
+
+    @Override
+    public Range<Integer> getRange() {
+      return myRange;
+    }
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LR parser which remembers the previous parse and reuses it when parsing an edited input.
+ *
+ * Parsing is restarted from a snapshot of the stack taken right after the last unchanged token of the
+ * common prefix. When the parser gets into the unchanged suffix, it looks for a subtree of the previous parse
+ * which started at the same position with the same state on top of the stack. If there's one,
+ * the parser would perform exactly the same actions, so the subtree is pushed as a whole instead.
+ *
+ * Values returned by handlers for unchanged subtrees can be reused as well, so handlers are invoked
+ * only for the changed part of the tree, see {@link #setReuseValues(boolean)}. Handlers get the
+ * same {@link RuleContext} instance, so a context is valid only during a handler call.
+ */
+public class IncrementalLRParser {
+  private CompiledLRParserTable myTable;
+  private ParserParameters myParameters;
+  private boolean myReuseValues;
+
+  private ParseState myState = new ParseState();
+  private ParseState mySpare = new ParseState();
+
+  private int myReparsedCount;
+  private final MyRuleContext myContext = new MyRuleContext();
+
+  public IncrementalLRParser(CompiledLRParserTable table) {
+    this(table, ParserParameters.EMPTY);
+  }
+
+  public IncrementalLRParser(CompiledLRParserTable table, ParserParameters params) {
+    myTable = table;
+    myParameters = params;
+    myState.snapshots[0] = new StackItem(myTable.getInitialState(), null, null);
+  }
+
+  /**
+   * If set, values returned by handlers are reused for unchanged subtrees, so handlers are invoked only for
+   * the changed part of the tree. This is possible only if values can be shared between parse results and
+   * don't depend on {@link RuleContext#getRange()}, e.g. it isn't possible if a value can have only one parent.
+   * In this mode, lexemes with the same terminal and different values are considered different.
+   * By default, handlers are invoked for the whole tree on every parse.
+   */
+  public IncrementalLRParser setReuseValues(boolean reuseValues) {
+    if (myReuseValues != reuseValues) {
+      myReuseValues = reuseValues;
+      myState.reset(0);
+    }
+    return this;
+  }
+
+  /**
+   * Number of tokens which were processed by the parser during the last parse, i.e. weren't reused
+   */
+  public int getReparsedCount() {
+    return myReparsedCount;
+  }
+
+  public Object parse(List<Lexeme> input) {
+    return parse(input, new Function<Rule, RuleHandler>() {
+      @Override
+      public RuleHandler apply(Rule rule) {
+        return rule.getHandler();
+      }
+    });
+  }
+
+  public Object parse(List<Lexeme> input, Function<Rule, RuleHandler> handlerProvider) {
+    int end = myTable.getGrammar().getEnd().getIndex();
+    int length = input.size();
+    ParseState old = myState;
+    ParseState state = mySpare;
+    state.reset(length);
+    int[] terminals = state.terminals;
+    Object[] values = myReuseValues ? state.values : null;
+    for (int i = 0; i < length; i++) {
+      Lexeme lexeme = input.get(i);
+      terminals[i] = lexeme.getTerminal().getIndex();
+      if (values != null) {
+        values[i] = lexeme.getValue();
+      }
+    }
+
+    int oldLength = old.length;
+    int prefix = 0;
+    while (prefix < length && prefix < oldLength && isSame(old, terminals, values, prefix, prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < length - prefix && suffix < oldLength - prefix && isSame(old, terminals, values, length - 1 - suffix, oldLength - 1 - suffix)) {
+      suffix++;
+    }
+    int suffixStart = length - suffix;
+    int delta = length - oldLength;
+
+    int restart = prefix;
+    while (old.snapshots[restart] == null) {
+      restart--;
+    }
+
+    StackItem[] snapshots = state.snapshots;
+    System.arraycopy(old.snapshots, 0, snapshots, 0, restart + 1);
+    Arrays.fill(snapshots, restart + 1, length + 1, null);
+    ReuseEntry[] entries = state.entries;
+    System.arraycopy(old.entries, 0, entries, 0, restart);
+    Arrays.fill(entries, restart, length + 1, null);
+    int[] limits = state.limits;
+    for (int i = 0; i < restart; i++) {
+      limits[i] = Math.min(old.limits[i], restart);
+    }
+    Arrays.fill(limits, restart, length + 1, length + 1);
+
+    ReuseEntry[] oldEntries = old.entries;
+    int[] oldLimits = old.limits;
+    myState = state;
+    mySpare = old;
+    myReparsedCount = 0;
+
+    StackItem stack = snapshots[restart];
+    int pos = restart;
+    while (true) {
+      if (pos >= suffixStart && pos < length) {
+        int oldPos = pos - delta;
+        ReuseEntry reused = findEntry(oldEntries[oldPos], oldPos, oldLimits[oldPos], stack.state);
+        if (reused != null) {
+          Node node = reused.node;
+          int nodeEnd = pos + node.length;
+          for (int i = pos; i < nodeEnd; i++) {
+            entries[i] = oldEntries[i - delta];
+            limits[i] = Math.min(oldLimits[i - delta] + delta, nodeEnd + 1);
+          }
+          pos = nodeEnd;
+          stack = new StackItem(myTable.getNextState(stack.state, myTable.getRuleHead(node.rule)), node, stack);
+          continue;
+        }
+      }
+
+      int current = pos < length ? terminals[pos] : end;
+      int action = myTable.getAction(stack.state, current);
+      switch (CompiledLRParserTable.kind(action)) {
+        case CompiledLRParserTable.SHIFT:
+          stack = new StackItem(CompiledLRParserTable.argument(action), new Node(-1, null, 1), stack);
+          pos++;
+          snapshots[pos] = stack;
+          myReparsedCount++;
+          break;
+
+        case CompiledLRParserTable.REDUCE:
+          int rule = CompiledLRParserTable.argument(action);
+          int ruleLength = myTable.getRuleLength(rule);
+          Node[] children = new Node[ruleLength];
+          int nodeLength = 0;
+          for (int i = ruleLength - 1; i >= 0; i--) {
+            children[i] = stack.node;
+            nodeLength += stack.node.length;
+            stack = stack.prev;
+          }
+          Node node = new Node(rule, children, nodeLength);
+          if (nodeLength > 0) {
+            addEntry(pos - nodeLength, stack.state, node);
+          }
+          stack = new StackItem(myTable.getNextState(stack.state, myTable.getRuleHead(rule)), node, stack);
+          break;
+
+        case CompiledLRParserTable.ACCEPT:
+          return evaluate(stack.node, pos - stack.node.length, input, handlerProvider);
+
+        default:
+          return null;
+      }
+    }
+  }
+
+  private boolean isSame(ParseState old, int[] terminals, Object[] values, int index, int oldIndex) {
+    if (terminals[index] != old.terminals[oldIndex]) return false;
+    return values == null || Objects.equal(values[index], old.values[oldIndex]);
+  }
+
+  /**
+   * Entries at a position form a list ordered from the latest to the earliest, so in case of chain rules
+   * the outermost node wins. An entry is valid only if its node ends before the position's limit, i.e.
+   * neither tokens of the node nor the lookahead after it were changed since the entry was created.
+   */
+  private ReuseEntry findEntry(ReuseEntry entries, int start, int limit, int state) {
+    ReuseEntry result = null;
+    for (ReuseEntry e = entries; e != null; e = e.next) {
+      if (e.state == state && start + e.node.length < limit && (result == null || e.node.length > result.node.length)) {
+        result = e;
+      }
+    }
+    return result;
+  }
+
+  private void addEntry(int start, int state, Node node) {
+    ReuseEntry[] entries = myState.entries;
+    int[] limits = myState.limits;
+    int noLimit = myState.length + 1;
+    if (limits[start] != noLimit) {
+      ReuseEntry valid = null;
+      for (ReuseEntry e = entries[start]; e != null; e = e.next) {
+        if (start + e.node.length < limits[start]) {
+          valid = new ReuseEntry(e.state, e.node, valid);
+        }
+      }
+      ReuseEntry reversed = null;
+      for (ReuseEntry e = valid; e != null; e = e.next) {
+        reversed = new ReuseEntry(e.state, e.node, reversed);
+      }
+      entries[start] = reversed;
+      limits[start] = noLimit;
+    }
+    entries[start] = new ReuseEntry(state, node, entries[start]);
+  }
+
+  private Object evaluate(Node root, int rootStart, List<Lexeme> input, Function<Rule, RuleHandler> handlerProvider) {
+    if (root.rule == -1) {
+      return input.get(rootStart);
+    }
+    if (myReuseValues && root.evaluated) {
+      return root.value;
+    }
+
+    List<Frame> frames = new ArrayList<>();
+    frames.add(new Frame(root, rootStart));
+    Object result = null;
+    while (!frames.isEmpty()) {
+      Frame frame = frames.get(frames.size() - 1);
+      Node node = frame.node;
+      if (frame.child < node.children.length) {
+        Node child = node.children[frame.child++];
+        if (child.rule == -1) {
+          frame.values.add(input.get(frame.offset));
+        } else if (myReuseValues && child.evaluated) {
+          frame.values.add(child.value);
+        } else {
+          frames.add(new Frame(child, frame.offset));
+        }
+        frame.offset += child.length;
+        continue;
+      }
+
+      frames.remove(frames.size() - 1);
+      int start = frame.offset - node.length;
+      RuleHandler handler = handlerProvider.apply(myTable.getRule(node.rule));
+      Object value;
+      if (handler != null) {
+        myContext.set(start, frame.offset, frame.values);
+        try {
+          value = handler.handle(myContext);
+        } finally {
+          myContext.set(0, 0, null);
+        }
+      } else {
+        value = frame.values;
+      }
+      if (myReuseValues) {
+        node.value = value;
+        node.evaluated = true;
+      }
+      if (frames.isEmpty()) {
+        result = value;
+      } else {
+        frames.get(frames.size() - 1).values.add(value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Per position data of a parse. The parser keeps the state of the previous parse and a spare one, which is
+   * filled by the next parse, so arrays are allocated only when the input grows.
+   */
+  private static class ParseState {
+    int length;
+    int[] terminals = new int[0];
+    Object[] values = new Object[0];
+    StackItem[] snapshots = new StackItem[1];
+    ReuseEntry[] entries = new ReuseEntry[1];
+    int[] limits = new int[] { 1 };
+
+    void reset(int newLength) {
+      if (terminals.length < newLength) {
+        int capacity = Math.max(newLength, terminals.length + (terminals.length >> 1));
+        terminals = new int[capacity];
+        values = new Object[capacity];
+        StackItem[] newSnapshots = new StackItem[capacity + 1];
+        newSnapshots[0] = snapshots[0];
+        snapshots = newSnapshots;
+        entries = new ReuseEntry[capacity + 1];
+        limits = new int[capacity + 1];
+      } else if (newLength < length) {
+        //values and nodes of an older parse shouldn't be retained
+        Arrays.fill(values, newLength, length, null);
+        Arrays.fill(snapshots, newLength + 1, length + 1, null);
+        Arrays.fill(entries, newLength, length + 1, null);
+      }
+      length = newLength;
+    }
+  }
+
+  private static class Node {
+    final int rule;
+    final Node[] children;
+    final int length;
+    Object value;
+    boolean evaluated;
+
+    Node(int rule, Node[] children, int length) {
+      this.rule = rule;
+      this.children = children;
+      this.length = length;
+    }
+  }
+
+  private static class StackItem {
+    final int state;
+    final Node node;
+    final StackItem prev;
+
+    StackItem(int state, Node node, StackItem prev) {
+      this.state = state;
+      this.node = node;
+      this.prev = prev;
+    }
+  }
+
+  private static class ReuseEntry {
+    final int state;
+    final Node node;
+    final ReuseEntry next;
+
+    ReuseEntry(int state, Node node, ReuseEntry next) {
+      this.state = state;
+      this.node = node;
+      this.next = next;
+    }
+  }
+
+  private static class Frame {
+    final Node node;
+    final List<Object> values;
+    int offset;
+    int child;
+
+    Frame(Node node, int offset) {
+      this.node = node;
+      this.offset = offset;
+      values = new ArrayList<>(node.children.length);
+    }
+  }
+
+  private class MyRuleContext implements RuleContext {
+    private List<Object> myValues;
+    private int myStart;
+    private int myEnd;
+
+    private void set(int start, int end, List<Object> values) {
+      myStart = start;
+      myEnd = end;
+      myValues = values;
+    }
+
+    @Override
+    public ParserParameters getParams() {
+      return myParameters;
+    }
+
+    @Override
+    public <ValueT> ValueT get(ParserParameter<ValueT> key) {
+      return myParameters.get(key);
+    }
+
+    @Override
+    public Object get(int index) {
+      return myValues.get(index);
+    }
+
+    @Override
+    public int getValueCount() {
+      return myValues.size();
+    }
+
+    @Override
+    public Range<Integer> getRange() {
+      return Range.closed(myStart, myEnd);
+    }
+  }
+}
@@ -18,16 +18,30 @@ package jetbrains.jetpad.grammar.parser;
 import jetbrains.jetpad.grammar.NonTerminal;
 import jetbrains.jetpad.grammar.Terminal;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 public class LRParserState {
   private String myName;
+  private int myIndex;
   private Map<Terminal, LRParserAction<LRParserState>> myActions = new HashMap<>();
+  private Map<Terminal, List<LRParserAction<LRParserState>>> myConflicts = new HashMap<>();
   private Map<NonTerminal, LRParserState> myNextStates = new HashMap<>();
 
-  LRParserState(String name) {
+  LRParserState(String name, int index) {
     myName = name;
+    myIndex = index;
+  }
+
+  int getIndex() {
+    return myIndex;
+  }
+
+  Map<Terminal, LRParserAction<LRParserState>> getActions() {
+    return Collections.unmodifiableMap(myActions);
+  }
+
+  Map<NonTerminal, LRParserState> getNextStates() {
+    return Collections.unmodifiableMap(myNextStates);
   }
 
   public LRParserAction<LRParserState> getAction(Terminal terminal) {
@@ -36,6 +50,21 @@ public class LRParserState {
     return LRParserAction.error();
   }
 
+  /**
+   * @return all actions on a terminal, there might be several of them only in tables generated for {@link GLRParser}
+   */
+  public List<LRParserAction<LRParserState>> getActions(Terminal terminal) {
+    List<LRParserAction<LRParserState>> conflicts = myConflicts.get(terminal);
+    if (conflicts != null) return conflicts;
+    LRParserAction<LRParserState> action = myActions.get(terminal);
+    if (action == null) return Collections.emptyList();
+    return Collections.singletonList(action);
+  }
+
+  public boolean hasConflicts() {
+    return !myConflicts.isEmpty();
+  }
+
   public LRParserState getNextState(NonTerminal nonTerminal) {
     LRParserState result = myNextStates.get(nonTerminal);
     if (result == null) {
@@ -45,12 +74,22 @@ public class LRParserState {
   }
 
   public void addAction(Terminal terminal, LRParserAction<LRParserState> action) {
-    if (myActions.containsKey(terminal)) {
+    if (myActions.containsKey(terminal) || myConflicts.containsKey(terminal)) {
       throw new IllegalStateException();
     }
     myActions.put(terminal, action);
   }
 
+  /**
+   * Adds a cell with several actions. Deterministic parsers treat such a cell as an error.
+   */
+  public void addConflictingActions(Terminal terminal, List<LRParserAction<LRParserState>> actions) {
+    if (myActions.containsKey(terminal) || myConflicts.containsKey(terminal)) {
+      throw new IllegalStateException();
+    }
+    myConflicts.put(terminal, Collections.unmodifiableList(new ArrayList<>(actions)));
+  }
+
   public void addNextState(NonTerminal nonTerminal, LRParserState state) {
     if (myNextStates.containsKey(nonTerminal)) {
       throw new IllegalStateException();
@@ -18,16 +18,22 @@ package jetbrains.jetpad.grammar.parser;
 import jetbrains.jetpad.grammar.Grammar;
 
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public final class LRParserTable {
   private Grammar myGrammar;
+  private String myKind;
   private LRParserState myInitialState;
-  private Set<LRParserState> myStates = new HashSet<>();
+  private Set<LRParserState> myStates = new LinkedHashSet<>();
 
   public LRParserTable(Grammar grammar) {
+    this(grammar, null);
+  }
+
+  public LRParserTable(Grammar grammar, String kind) {
     myGrammar = grammar;
+    myKind = kind;
     myInitialState = newState("S0");
   }
 
@@ -35,6 +41,13 @@ public final class LRParserTable {
     return myGrammar;
   }
 
+  /**
+   * Kind of the generator which produced this table, or null if it was built by hand
+   */
+  public String getKind() {
+    return myKind;
+  }
+
   public LRParserState getInitialState() {
     return myInitialState;
   }
@@ -43,8 +56,15 @@ public final class LRParserTable {
     return Collections.unmodifiableSet(myStates);
   }
 
+  public boolean hasConflicts() {
+    for (LRParserState state : myStates) {
+      if (state.hasConflicts()) return true;
+    }
+    return false;
+  }
+
   public LRParserState newState(String name) {
-    LRParserState result = new LRParserState(name);
+    LRParserState result = new LRParserState(name, myStates.size());
     myStates.add(result);
     return result;
   }
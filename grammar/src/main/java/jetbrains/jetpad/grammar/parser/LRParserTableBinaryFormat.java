@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.grammar.Grammar;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of {@link LRParserTable} for JVM environments. The layout is the same as
+ * in {@link LRParserTableFormat}, but numbers are written as variable length integers.
+ * Truncated or malformed input is treated as a stale table.
+ */
+public final class LRParserTableBinaryFormat {
+  public static void write(LRParserTable table, OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeUTF(LRParserTableFormat.HEADER);
+    data.writeUTF(LRParserTableFormat.fingerprint(table.getGrammar(), table.getKind()));
+    int[] values = LRParserTableFormat.encode(table);
+    writeVarInt(data, values.length);
+    for (int value : values) {
+      writeVarInt(data, value);
+    }
+    data.flush();
+  }
+
+  /**
+   * @return the table stored in the stream or null if it was generated for another version of the grammar,
+   * by another kind of generator or if the stream is malformed
+   */
+  public static LRParserTable read(Grammar grammar, String kind, InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    try {
+      if (!LRParserTableFormat.HEADER.equals(data.readUTF())) return null;
+      if (!LRParserTableFormat.fingerprint(grammar, kind).equals(data.readUTF())) return null;
+      int length = readVarInt(data);
+      int[] values = new int[Math.min(length, 1024)];
+      for (int i = 0; i < length; i++) {
+        if (i == values.length) {
+          values = Arrays.copyOf(values, Math.min(length, 2 * values.length));
+        }
+        values[i] = readVarInt(data);
+      }
+      return LRParserTableFormat.decode(grammar, kind, values);
+    } catch (EOFException | UTFDataFormatException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public static LRParserTable load(Grammar grammar, String kind, InputStream in, Supplier<? extends LRParserTable> generator) {
+    LRParserTable result = null;
+    if (in != null) {
+      try {
+        result = read(grammar, kind, in);
+      } catch (IOException e) {
+        result = null;
+      }
+    }
+    if (result != null) return result;
+    return generator.get();
+  }
+
+  private static void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInput in) throws IOException {
+    int result = 0;
+    int shift = 0;
+    while (true) {
+      int b = in.readUnsignedByte();
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (result < 0) {
+          throw new IllegalArgumentException("Malformed parser table");
+        }
+        return result;
+      }
+      shift += 7;
+      if (shift > 28) {
+        throw new IllegalArgumentException("Malformed parser table");
+      }
+    }
+  }
+
+  private LRParserTableBinaryFormat() {
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Supplier;
+
+import java.io.*;
+
+/**
+ * Build time entry point which precompiles parser tables. Arguments are an output directory followed by
+ * names of classes which implement Supplier&lt;LRParserTable&gt; and have a public no-arg constructor.
+ * For each of them &lt;SimpleName&gt;.lrt (binary) and &lt;SimpleName&gt;.lrt.txt (text, usable from GWT) are written.
+ */
+public class LRParserTableCompiler {
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      throw new IllegalArgumentException("Usage: LRParserTableCompiler <output dir> <table supplier class>...");
+    }
+
+    File outputDir = new File(args[0]);
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Can't create " + outputDir);
+    }
+
+    for (int i = 1; i < args.length; i++) {
+      Class<?> supplierClass = Class.forName(args[i]);
+      Object supplier = supplierClass.newInstance();
+      if (!(supplier instanceof Supplier)) {
+        throw new IllegalArgumentException(args[i] + " doesn't implement Supplier");
+      }
+      Object supplied = ((Supplier<?>) supplier).get();
+      if (!(supplied instanceof LRParserTable)) {
+        throw new IllegalArgumentException(args[i] + " doesn't supply an LRParserTable");
+      }
+      LRParserTable table = (LRParserTable) supplied;
+
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(outputDir, supplierClass.getSimpleName() + ".lrt")))) {
+        LRParserTableBinaryFormat.write(table, out);
+      }
+      try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(outputDir, supplierClass.getSimpleName() + ".lrt.txt")), "UTF-8")) {
+        out.write(LRParserTableFormat.toText(table));
+      }
+    }
+  }
+}
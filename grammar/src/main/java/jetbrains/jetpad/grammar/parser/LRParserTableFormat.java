@@ -0,0 +1,214 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.grammar.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text form of {@link LRParserTable} which can be used both on JVM and in GWT. A table is stored together with
+ * a fingerprint of the grammar and of the kind of the generator it was generated with, so a stale table or a table
+ * of another generator is detected and regenerated when loaded. Malformed input is treated as a stale table.
+ *
+ * Handlers aren't a part of a table, they are taken from the grammar's rules at load time.
+ */
+public final class LRParserTableFormat {
+  static final String HEADER = "LRT1";
+
+  public static String fingerprint(Grammar grammar, String kind) {
+    StringBuilder text = new StringBuilder();
+    text.append("K ").append(kind).append(';');
+    for (Terminal t : grammar.getTerminals()) {
+      text.append("T ").append(t).append(';');
+    }
+    for (NonTerminal nt : grammar.getNonTerminals()) {
+      text.append("N ").append(nt).append(';');
+    }
+    for (Rule rule : grammar.getRules()) {
+      text.append("R ").append(rule.getHead()).append(" :");
+      for (Symbol s : rule.getSymbols()) {
+        text.append(' ').append(s);
+      }
+      text.append(" p=").append(rule.getPriority()).append(" a=").append(rule.getAssociativity()).append(';');
+    }
+
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash ^= text.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    String hex = Long.toHexString(hash);
+    while (hex.length() < 16) {
+      hex = "0" + hex;
+    }
+    return hex;
+  }
+
+  public static String toText(LRParserTable table) {
+    StringBuilder result = new StringBuilder();
+    result.append(HEADER).append(' ').append(fingerprint(table.getGrammar(), table.getKind()));
+    for (int value : encode(table)) {
+      result.append(' ').append(Integer.toString(value, 36));
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return the table stored in text or null if it was generated for another version of the grammar,
+   * by another kind of generator or if the text is malformed
+   */
+  public static LRParserTable fromText(Grammar grammar, String kind, String text) {
+    String[] parts = text.trim().split("\\s+");
+    if (parts.length < 2 || !HEADER.equals(parts[0]) || !fingerprint(grammar, kind).equals(parts[1])) return null;
+
+    try {
+      int[] data = new int[parts.length - 2];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = Integer.parseInt(parts[i + 2], 36);
+      }
+      return decode(grammar, kind, data);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public static LRParserTable load(Grammar grammar, String kind, String text, Supplier<? extends LRParserTable> generator) {
+    LRParserTable result = text != null ? fromText(grammar, kind, text) : null;
+    if (result != null) return result;
+    return generator.get();
+  }
+
+  static int[] encode(LRParserTable table) {
+    if (table.hasConflicts()) {
+      throw new IllegalArgumentException("Tables with conflicts can't be stored");
+    }
+    List<Integer> result = new ArrayList<>();
+    result.add(table.getStates().size());
+    for (LRParserState state : table.getStates()) {
+      Map<Terminal, LRParserAction<LRParserState>> actions = state.getActions();
+      result.add(actions.size());
+      for (Map.Entry<Terminal, LRParserAction<LRParserState>> e : actions.entrySet()) {
+        result.add(e.getKey().getIndex());
+        result.add(CompiledLRParserTable.encode(e.getValue()));
+      }
+
+      Map<NonTerminal, LRParserState> nextStates = state.getNextStates();
+      result.add(nextStates.size());
+      for (Map.Entry<NonTerminal, LRParserState> e : nextStates.entrySet()) {
+        result.add(e.getKey().getIndex());
+        result.add(e.getValue().getIndex());
+      }
+    }
+
+    int[] data = new int[result.size()];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = result.get(i);
+    }
+    return data;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the data is malformed
+   */
+  static LRParserTable decode(Grammar grammar, String kind, int[] data) {
+    Terminal[] terminals = grammar.getTerminals().toArray(new Terminal[0]);
+    NonTerminal[] nonTerminals = grammar.getNonTerminals().toArray(new NonTerminal[0]);
+    Rule[] rules = grammar.getRules().toArray(new Rule[0]);
+
+    DataReader reader = new DataReader(data);
+    int stateCount = reader.next(data.length + 1);
+    if (stateCount == 0) {
+      throw new IllegalArgumentException("Malformed parser table");
+    }
+    LRParserTable table = new LRParserTable(grammar, kind);
+    LRParserState[] states = new LRParserState[stateCount];
+    states[0] = table.getInitialState();
+    for (int i = 1; i < stateCount; i++) {
+      states[i] = table.newState("S" + i);
+    }
+
+    for (LRParserState state : states) {
+      int actionCount = reader.next(terminals.length + 1);
+      for (int i = 0; i < actionCount; i++) {
+        Terminal terminal = terminals[reader.next(terminals.length)];
+        int action = reader.next();
+        int argument = CompiledLRParserTable.argument(action);
+        switch (CompiledLRParserTable.kind(action)) {
+          case CompiledLRParserTable.SHIFT:
+            state.addAction(terminal, LRParserAction.shift(states[check(argument, stateCount)]));
+            break;
+          case CompiledLRParserTable.REDUCE:
+            state.addAction(terminal, LRParserAction.<LRParserState>reduce(rules[check(argument, rules.length)]));
+            break;
+          case CompiledLRParserTable.ACCEPT:
+            state.addAction(terminal, LRParserAction.<LRParserState>accept());
+            break;
+          default:
+            state.addAction(terminal, LRParserAction.<LRParserState>error());
+        }
+      }
+
+      int gotoCount = reader.next(nonTerminals.length + 1);
+      for (int i = 0; i < gotoCount; i++) {
+        NonTerminal nonTerminal = nonTerminals[reader.next(nonTerminals.length)];
+        state.addNextState(nonTerminal, states[reader.next(stateCount)]);
+      }
+    }
+
+    if (!reader.isAtEnd()) {
+      throw new IllegalArgumentException("Malformed parser table");
+    }
+    return table;
+  }
+
+  private static int check(int value, int bound) {
+    if (value < 0 || value >= bound) {
+      throw new IllegalArgumentException("Malformed parser table");
+    }
+    return value;
+  }
+
+  private static class DataReader {
+    private final int[] myData;
+    private int myPos;
+
+    private DataReader(int[] data) {
+      myData = data;
+    }
+
+    int next() {
+      if (myPos >= myData.length) {
+        throw new IllegalArgumentException("Malformed parser table");
+      }
+      return myData[myPos++];
+    }
+
+    int next(int bound) {
+      return check(next(), bound);
+    }
+
+    boolean isAtEnd() {
+      return myPos == myData.length;
+    }
+  }
+
+  private LRParserTableFormat() {
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.Associativity;
+import jetbrains.jetpad.grammar.Rule;
+import jetbrains.jetpad.grammar.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of a packed parse forest built by {@link GLRParser}. There's one node for each symbol and range of input,
+ * all derivations of the symbol from this range are packed into it. One of them is preferred: when a derivation
+ * is added, it's compared with the preferred one using priorities and associativity of their rules.
+ */
+public final class ParseForestNode {
+  private final Symbol mySymbol;
+  private final int myStart;
+  private final int myEnd;
+  private final Lexeme myLexeme;
+  private final List<Derivation> myDerivations = new ArrayList<>(1);
+  private Derivation myPreferred;
+  private boolean myAmbiguous;
+
+  ParseForestNode(Symbol symbol, int start, int end, Lexeme lexeme) {
+    mySymbol = symbol;
+    myStart = start;
+    myEnd = end;
+    myLexeme = lexeme;
+  }
+
+  public Symbol getSymbol() {
+    return mySymbol;
+  }
+
+  /**
+   * Range of lexeme indices which this node covers
+   */
+  public Range<Integer> getRange() {
+    return Range.closed(myStart, myEnd);
+  }
+
+  /**
+   * @return a lexeme for terminal nodes, null otherwise
+   */
+  public Lexeme getLexeme() {
+    return myLexeme;
+  }
+
+  public List<Derivation> getDerivations() {
+    return Collections.unmodifiableList(myDerivations);
+  }
+
+  public Derivation getPreferred() {
+    return myPreferred;
+  }
+
+  /**
+   * @return whether there are derivations which can't be told apart with priorities and associativity
+   */
+  public boolean isAmbiguous() {
+    return myAmbiguous;
+  }
+
+  int getStart() {
+    return myStart;
+  }
+
+  int getEnd() {
+    return myEnd;
+  }
+
+  boolean addDerivation(Rule rule, ParseForestNode[] children) {
+    for (Derivation d : myDerivations) {
+      if (d.myRule == rule && Arrays.equals(d.myChildren, children)) return false;
+    }
+
+    Derivation derivation = new Derivation(rule, children);
+    myDerivations.add(derivation);
+    if (myPreferred == null) {
+      myPreferred = derivation;
+    } else {
+      Derivation preferred = prefer(myPreferred, derivation);
+      if (preferred == null) {
+        myAmbiguous = true;
+      } else {
+        myPreferred = preferred;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Operator with the lowest priority should be at the top. Among operators with the same priority and
+   * associativity, the one which splits input further to the right wins for left associativity, and
+   * further to the left for right associativity.
+   */
+  private static Derivation prefer(Derivation d1, Derivation d2) {
+    Integer p1 = d1.myRule.getPriority();
+    Integer p2 = d2.myRule.getPriority();
+    if (p1 == null || p2 == null) return null;
+    if (!p1.equals(p2)) {
+      return p1 < p2 ? d1 : d2;
+    }
+
+    Associativity assoc = d1.myRule.getAssociativity();
+    if (assoc == null || assoc != d2.myRule.getAssociativity()) return null;
+    if (d1.myChildren.length == 0 || d2.myChildren.length == 0) return null;
+
+    if (assoc == Associativity.LEFT) {
+      int s1 = d1.myChildren[d1.myChildren.length - 1].myStart;
+      int s2 = d2.myChildren[d2.myChildren.length - 1].myStart;
+      if (s1 == s2) return null;
+      return s1 > s2 ? d1 : d2;
+    } else {
+      int e1 = d1.myChildren[0].myEnd;
+      int e2 = d2.myChildren[0].myEnd;
+      if (e1 == e2) return null;
+      return e1 < e2 ? d1 : d2;
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (myLexeme != null) {
+      return "" + myLexeme;
+    }
+    return mySymbol + (myPreferred == null ? "[]" : Arrays.toString(myPreferred.myChildren));
+  }
+
+  public static final class Derivation {
+    private final Rule myRule;
+    private final ParseForestNode[] myChildren;
+
+    private Derivation(Rule rule, ParseForestNode[] children) {
+      myRule = rule;
+      myChildren = children;
+    }
+
+    public Rule getRule() {
+      return myRule;
+    }
+
+    public List<ParseForestNode> getChildren() {
+      return Collections.unmodifiableList(Arrays.asList(myChildren));
+    }
+  }
+}
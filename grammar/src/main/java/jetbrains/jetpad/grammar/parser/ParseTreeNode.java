@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.Symbol;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of a tree built by {@link RecoveringLRParser}. Terminal nodes hold lexemes, non terminal nodes hold values
+ * returned by rule handlers. Error nodes hold the parts of input which were discarded during error recovery.
+ */
+public final class ParseTreeNode {
+  private final Symbol mySymbol;
+  private final Object myValue;
+  private final int myStart;
+  private final int myEnd;
+  private final boolean myError;
+  private final List<ParseTreeNode> myChildren;
+  private ParseTreeNode myParent;
+
+  ParseTreeNode(Symbol symbol, Object value, int start, int end, boolean error, List<ParseTreeNode> children) {
+    mySymbol = symbol;
+    myValue = value;
+    myStart = start;
+    myEnd = end;
+    myError = error;
+    myChildren = Collections.unmodifiableList(children);
+    for (ParseTreeNode child : children) {
+      child.myParent = this;
+    }
+  }
+
+  public Symbol getSymbol() {
+    return mySymbol;
+  }
+
+  public Object getValue() {
+    return myValue;
+  }
+
+  /**
+   * Range of lexeme indices which this node covers
+   */
+  public Range<Integer> getRange() {
+    return Range.closed(myStart, myEnd);
+  }
+
+  public boolean isError() {
+    return myError;
+  }
+
+  public List<ParseTreeNode> getChildren() {
+    return myChildren;
+  }
+
+  public ParseTreeNode getParent() {
+    return myParent;
+  }
+
+  int getStart() {
+    return myStart;
+  }
+
+  int getEnd() {
+    return myEnd;
+  }
+
+  @Override
+  public String toString() {
+    if (myChildren.isEmpty()) {
+      return myError ? "<error>" : "" + myValue;
+    }
+    return (myError ? "<error>" : "" + mySymbol) + myChildren;
+  }
+}
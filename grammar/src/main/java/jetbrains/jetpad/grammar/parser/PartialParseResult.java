@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.collect.Range;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class PartialParseResult {
+  private final ParseTreeNode myTree;
+  private final boolean myAccepted;
+  private final List<Range<Integer>> myErrors;
+
+  PartialParseResult(ParseTreeNode tree, boolean accepted, List<Range<Integer>> errors) {
+    myTree = tree;
+    myAccepted = accepted;
+    myErrors = Collections.unmodifiableList(errors);
+  }
+
+  /**
+   * Root of the parse tree. If input couldn't be accepted even after recovery, it's an error node
+   * whose children are the subtrees which were parsed.
+   */
+  public ParseTreeNode getTree() {
+    return myTree;
+  }
+
+  /**
+   * @return the value of the start symbol or null if input wasn't accepted
+   */
+  public Object getValue() {
+    return myAccepted ? myTree.getValue() : null;
+  }
+
+  public boolean isAccepted() {
+    return myAccepted;
+  }
+
+  /**
+   * Ranges of lexemes which were discarded or at which missing input was assumed, in input order
+   */
+  public List<Range<Integer>> getErrors() {
+    return myErrors;
+  }
+
+  public boolean hasErrors() {
+    return !myErrors.isEmpty();
+  }
+}
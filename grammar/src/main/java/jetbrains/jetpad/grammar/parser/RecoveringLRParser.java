@@ -0,0 +1,255 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LR parser which doesn't stop at the first syntax error. It uses panic mode recovery in yacc style:
+ * when an error is found, the stack is popped until a state which can shift the error terminal, the error
+ * terminal is shifted and lexemes are discarded until one of them can be handled. If no state on the stack
+ * can shift the error terminal, the offending lexeme is deleted. A deleted lexeme stays in the tree as an error
+ * leaf, it becomes a child of the innermost node which covers its position, so the tree covers all the lexemes.
+ *
+ * The value of a shifted error terminal is a {@link Lexeme} whose value is the list of discarded values,
+ * so rules like E -> error can build placeholders for broken parts of input.
+ */
+public class RecoveringLRParser {
+  private LRParserTable myTable;
+  private Terminal myError;
+  private ParserParameters myParameters;
+
+  public RecoveringLRParser(LRParserTable table, Terminal error) {
+    this(table, error, ParserParameters.EMPTY);
+  }
+
+  public RecoveringLRParser(LRParserTable table, Terminal error, ParserParameters params) {
+    if (error.getGrammar() != table.getGrammar()) {
+      throw new IllegalArgumentException();
+    }
+    myTable = table;
+    myError = error;
+    myParameters = params;
+  }
+
+  public PartialParseResult parse(Lexeme... input) {
+    return parse(Arrays.asList(input));
+  }
+
+  public PartialParseResult parse(List<Lexeme> input) {
+    return parse(input, new Function<Rule, RuleHandler>() {
+      @Override
+      public RuleHandler apply(Rule rule) {
+        return rule.getHandler();
+      }
+    });
+  }
+
+  public PartialParseResult parse(List<Lexeme> input, Function<Rule, RuleHandler> handlerProvider) {
+    Terminal end = myTable.getGrammar().getEnd();
+    List<StackItem> stack = new ArrayList<>();
+    stack.add(new StackItem(myTable.getInitialState(), null));
+    List<Range<Integer>> errors = new ArrayList<>();
+    List<ParseTreeNode> deleted = new ArrayList<>();
+    int recoveredAt = -1;
+    int pos = 0;
+    while (true) {
+      Lexeme lexeme = pos < input.size() ? input.get(pos) : null;
+      Terminal current = lexeme != null ? lexeme.getTerminal() : end;
+      LRParserAction<LRParserState> action = top(stack).state.getAction(current);
+      if (action instanceof LRParserAction.Shift) {
+        LRParserState next = ((LRParserAction.Shift<LRParserState>) action).getState();
+        stack.add(new StackItem(next, new ParseTreeNode(current, lexeme, pos, pos + 1, false, Collections.<ParseTreeNode>emptyList())));
+        pos++;
+      } else if (action instanceof LRParserAction.Reduce) {
+        Rule rule = ((LRParserAction.Reduce<LRParserState>) action).getRule();
+        int length = rule.getSymbols().size();
+        List<StackItem> popped = stack.subList(stack.size() - length, stack.size());
+        List<ParseTreeNode> children = new ArrayList<>(length);
+        List<Object> handlerInput = new ArrayList<>(length);
+        for (StackItem item : popped) {
+          children.add(item.node);
+          handlerInput.add(item.node.getValue());
+        }
+        popped.clear();
+
+        int start = length > 0 ? children.get(0).getStart() : pos;
+        if (length > 0) {
+          children = withDeleted(children, deleted, start);
+        }
+        RuleContext ruleContext = new MyRuleContext(Range.closed(start, pos), handlerInput);
+        RuleHandler handler = handlerProvider.apply(rule);
+        Object result = handler != null ? handler.handle(ruleContext) : handlerInput;
+
+        LRParserState next = top(stack).state.getNextState(rule.getHead());
+        stack.add(new StackItem(next, new ParseTreeNode(rule.getHead(), result, start, pos, false, children)));
+      } else if (action instanceof LRParserAction.Accept) {
+        return new PartialParseResult(withDeleted(top(stack).node, deleted), true, errors);
+      } else {
+        if (pos > recoveredAt) {
+          int errorDepth = stack.size() - 1;
+          while (errorDepth >= 0 && !(stack.get(errorDepth).state.getAction(myError) instanceof LRParserAction.Shift)) {
+            errorDepth--;
+          }
+
+          if (errorDepth >= 0) {
+            List<StackItem> popped = stack.subList(errorDepth + 1, stack.size());
+            List<ParseTreeNode> discarded = new ArrayList<>();
+            for (StackItem item : popped) {
+              discarded.add(item.node);
+            }
+            popped.clear();
+
+            LRParserState errorState = ((LRParserAction.Shift<LRParserState>) top(stack).state.getAction(myError)).getState();
+            int start = discarded.isEmpty() ? pos : discarded.get(0).getStart();
+            while (pos < input.size() && input.get(pos).getTerminal() != end && errorState.getAction(input.get(pos).getTerminal()) instanceof LRParserAction.Error) {
+              Lexeme skipped = input.get(pos);
+              discarded.add(new ParseTreeNode(skipped.getTerminal(), skipped, pos, pos + 1, false, Collections.<ParseTreeNode>emptyList()));
+              pos++;
+            }
+
+            discarded = withDeleted(discarded, deleted, start);
+            List<Object> discardedValues = new ArrayList<>(discarded.size());
+            for (ParseTreeNode node : discarded) {
+              discardedValues.add(node.getValue());
+            }
+            Lexeme errorLexeme = new Lexeme(myError, Collections.unmodifiableList(discardedValues));
+            stack.add(new StackItem(errorState, new ParseTreeNode(myError, errorLexeme, start, pos, true, discarded)));
+            addError(errors, start, pos);
+            recoveredAt = pos;
+            continue;
+          }
+        }
+
+        if (current == end) {
+          return failure(stack, deleted, errors, pos);
+        }
+        deleted.add(new ParseTreeNode(current, lexeme, pos, pos + 1, true, Collections.<ParseTreeNode>emptyList()));
+        addError(errors, pos, pos + 1);
+        pos++;
+      }
+    }
+  }
+
+  private PartialParseResult failure(List<StackItem> stack, List<ParseTreeNode> deleted, List<Range<Integer>> errors, int pos) {
+    List<ParseTreeNode> fragments = new ArrayList<>();
+    for (StackItem item : stack.subList(1, stack.size())) {
+      fragments.add(item.node);
+    }
+    fragments = withDeleted(fragments, deleted, 0);
+    addError(errors, pos, pos);
+    ParseTreeNode root = new ParseTreeNode(myTable.getGrammar().getStart(), null, 0, pos, true, fragments);
+    return new PartialParseResult(root, false, errors);
+  }
+
+  /**
+   * Merges deleted lexemes at positions starting from start into the nodes, in input order
+   */
+  private List<ParseTreeNode> withDeleted(List<ParseTreeNode> nodes, List<ParseTreeNode> deleted, int start) {
+    int from = deleted.size();
+    while (from > 0 && deleted.get(from - 1).getStart() >= start) {
+      from--;
+    }
+    if (from == deleted.size()) return nodes;
+
+    List<ParseTreeNode> taken = deleted.subList(from, deleted.size());
+    List<ParseTreeNode> result = new ArrayList<>(nodes.size() + taken.size());
+    int i = 0;
+    for (ParseTreeNode node : nodes) {
+      while (i < taken.size() && taken.get(i).getStart() < node.getStart()) {
+        result.add(taken.get(i++));
+      }
+      result.add(node);
+    }
+    result.addAll(taken.subList(i, taken.size()));
+    taken.clear();
+    return result;
+  }
+
+  private ParseTreeNode withDeleted(ParseTreeNode root, List<ParseTreeNode> deleted) {
+    if (deleted.isEmpty()) return root;
+    int start = Math.min(root.getStart(), deleted.get(0).getStart());
+    int end = Math.max(root.getEnd(), deleted.get(deleted.size() - 1).getEnd());
+    return new ParseTreeNode(root.getSymbol(), root.getValue(), start, end, root.isError(), withDeleted(root.getChildren(), deleted, 0));
+  }
+
+  private void addError(List<Range<Integer>> errors, int start, int end) {
+    if (!errors.isEmpty()) {
+      Range<Integer> last = errors.get(errors.size() - 1);
+      if (last.upperEndpoint() >= start) {
+        errors.set(errors.size() - 1, Range.closed(Math.min(last.lowerEndpoint(), start), Math.max(last.upperEndpoint(), end)));
+        return;
+      }
+    }
+    errors.add(Range.closed(start, end));
+  }
+
+  private StackItem top(List<StackItem> stack) {
+    return stack.get(stack.size() - 1);
+  }
+
+  private static class StackItem {
+    final LRParserState state;
+    final ParseTreeNode node;
+
+    StackItem(LRParserState state, ParseTreeNode node) {
+      this.state = state;
+      this.node = node;
+    }
+  }
+
+  private class MyRuleContext implements RuleContext {
+    private List<Object> myValues;
+    private Range<Integer> myRange;
+
+    private MyRuleContext(Range<Integer> range, List<Object> values) {
+      myValues = values;
+      myRange = range;
+    }
+
+    @Override
+    public ParserParameters getParams() {
+      return myParameters;
+    }
+
+    @Override
+    public <ValueT> ValueT get(ParserParameter<ValueT> key) {
+      return myParameters.get(key);
+    }
+
+    @Override
+    public Object get(int index) {
+      return myValues.get(index);
+    }
+
+    @Override
+    public int getValueCount() {
+      return myValues.size();
+    }
+
+    @Override
+    public Range<Integer> getRange() {
+      return myRange;
+    }
+  }
+}
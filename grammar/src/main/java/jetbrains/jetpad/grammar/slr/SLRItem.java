@@ -21,11 +21,14 @@ import jetbrains.jetpad.grammar.base.LRItem;
 
 import java.util.List;
 
-class SLRItem implements LRItem<SLRItem> {
+/**
+ * LR(0) item, it's used by {@link SLRTableGenerator} and {@link jetbrains.jetpad.grammar.lalr.LALRTableGenerator}
+ */
+public class SLRItem implements LRItem<SLRItem> {
   private Rule myRule;
   private int myIndex;
 
-  SLRItem(Rule rule, int index) {
+  public SLRItem(Rule rule, int index) {
     if (index < 0 || index > rule.getSymbols().size()) {
       throw new IllegalArgumentException();
     }
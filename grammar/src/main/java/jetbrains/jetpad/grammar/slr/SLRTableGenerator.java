@@ -32,6 +32,11 @@ public class SLRTableGenerator extends BaseLRTableGenerator<SLRItem> {
     super(grammar);
   }
 
+  @Override
+  public String getKind() {
+    return "SLR";
+  }
+
   @Override
   protected SLRItem initialItem() {
     NonTerminal initial = grammar().getStart();
@@ -144,6 +144,51 @@ public class GrammarTest {
     assertEquals(Sets.newHashSet(x, g.getEnd()), expr.getFollow());
   }
 
+  @Test
+  public void nullabilityThroughChain() {
+    Grammar g = new Grammar();
+    NonTerminal a = g.newNonTerminal("A");
+    NonTerminal b = g.newNonTerminal("B");
+    NonTerminal c = g.newNonTerminal("C");
+    g.newRule(g.getStart(), a, b);
+    g.newRule(a, b, c);
+    g.newRule(b, c);
+    g.newRule(c);
+
+    assertTrue(g.getStart().isNullable());
+    assertTrue(a.isNullable());
+  }
+
+  @Test
+  public void setsWithManyTerminals() {
+    Grammar g = new Grammar();
+    NonTerminal list = g.newNonTerminal("L");
+    NonTerminal item = g.newNonTerminal("I");
+    g.newRule(g.getStart(), list);
+    g.newRule(list);
+    g.newRule(list, list, item);
+
+    Set<Terminal> terminals = Sets.newHashSet();
+    for (int i = 0; i < 100; i++) {
+      Terminal t = g.newTerminal("t" + i);
+      terminals.add(t);
+      g.newRule(item, t);
+    }
+
+    assertEquals(terminals, item.getFirst());
+    assertEquals(terminals, list.getFirst());
+
+    Set<Terminal> follow = Sets.newHashSet(terminals);
+    follow.add(g.getEnd());
+    assertEquals(follow, list.getFollow());
+    assertEquals(follow, item.getFollow());
+
+    long[] bits = TerminalBits.create(g);
+    item.addFirstTo(bits);
+    assertFalse(TerminalBits.contains(bits, g.getEnd().getIndex()));
+    assertEquals(terminals, TerminalBits.toSet(g, bits));
+  }
+
   @Test
   public void endToEndTest() {
     Grammar g = new Grammar();
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.grammar.base.BaseLRTableGenerator;
+import jetbrains.jetpad.grammar.base.LRTableStats;
+import jetbrains.jetpad.grammar.lalr.LALRTableGenerator;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports state counts, unresolved conflicts and generation time of SLR, LALR and LR(1) tables for a grammar.
+ * Arguments are names of classes which implement Supplier&lt;Grammar&gt; and have a public no-arg constructor.
+ */
+public class TableGeneratorComparison {
+  private static final int RUNS = 5;
+  private static final int MAX_REPORTED_CONFLICTS = 5;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      throw new IllegalArgumentException("Usage: TableGeneratorComparison <grammar supplier class>...");
+    }
+
+    for (String className : args) {
+      Object grammar = ((Supplier<?>) Class.forName(className).newInstance()).get();
+      System.out.println(className);
+      System.out.println(compare((Grammar) grammar, RUNS));
+    }
+  }
+
+  public static String compare(Grammar grammar, int runs) {
+    Map<String, BaseLRTableGenerator<?>> generators = new LinkedHashMap<>();
+    generators.put("SLR", new SLRTableGenerator(grammar));
+    generators.put("LALR", new LALRTableGenerator(grammar));
+    generators.put("LR(1)", new LR1TableGenerator(grammar));
+
+    StringBuilder result = new StringBuilder();
+    for (Map.Entry<String, BaseLRTableGenerator<?>> e : generators.entrySet()) {
+      LRTableStats stats = null;
+      long bestTime = Long.MAX_VALUE;
+      for (int i = 0; i < runs; i++) {
+        long start = System.nanoTime();
+        stats = e.getValue().getStats();
+        bestTime = Math.min(bestTime, System.nanoTime() - start);
+      }
+
+      result.append(String.format("%-6s states=%-6d conflicts=%-4d time=%.2fms%n",
+        e.getKey(), stats.getStateCount(), stats.getConflicts().size(), bestTime / 1e6));
+      int reported = 0;
+      for (String conflict : stats.getConflicts()) {
+        if (reported++ == MAX_REPORTED_CONFLICTS) {
+          result.append("         ...").append(String.format("%n"));
+          break;
+        }
+        result.append("         ").append(conflict).append(String.format("%n"));
+      }
+    }
+    return result.toString();
+  }
+}
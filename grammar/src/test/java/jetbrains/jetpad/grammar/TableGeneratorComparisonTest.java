@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.grammar.lalr.LALRTableGenerator;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TableGeneratorComparisonTest {
+  @Test
+  public void reportForAllGenerators() {
+    String report = TableGeneratorComparison.compare(new OperatorGrammar().get(), 1);
+
+    assertTrue(report.contains("SLR "));
+    assertTrue(report.contains("LALR "));
+    assertTrue(report.contains("LR(1) "));
+  }
+
+  @Test
+  public void lalrHasNoConflictsOnOperatorGrammar() {
+    Grammar g = new OperatorGrammar().get();
+
+    assertTrue(new LALRTableGenerator(g).getStats().getConflicts().isEmpty());
+    assertTrue(new LALRTableGenerator(g).getStats().getStateCount() < new LR1TableGenerator(g).getStats().getStateCount());
+  }
+
+  /**
+   * Expression grammar with 40 binary operators on 10 priority levels, prefix and postfix operators, calls and parentheses
+   */
+  public static class OperatorGrammar implements Supplier<Grammar> {
+    @Override
+    public Grammar get() {
+      Grammar g = new Grammar();
+      NonTerminal expr = g.newNonTerminal("E");
+      Terminal id = g.newTerminal("id");
+      Terminal number = g.newTerminal("number");
+      Terminal lp = g.newTerminal("(");
+      Terminal rp = g.newTerminal(")");
+      Terminal comma = g.newTerminal(",");
+
+      g.newRule(g.getStart(), expr);
+      g.newRule(expr, id);
+      g.newRule(expr, number);
+      g.newRule(expr, lp, expr, rp);
+      g.newRule(expr, id, lp, GrammarSugar.separated(expr, comma), rp);
+      for (int i = 0; i < 40; i++) {
+        Terminal op = g.newTerminal("op" + i);
+        g.newRule(expr, expr, op, expr).setPriority(i / 4).setAssociativity(i % 2 == 0 ? Associativity.LEFT : Associativity.RIGHT);
+      }
+      g.newRule(expr, g.newTerminal("-"), expr).setPriority(10);
+      g.newRule(expr, expr, g.newTerminal("++")).setPriority(11);
+      return g;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.base;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.grammar.Grammar;
+import jetbrains.jetpad.grammar.TableGeneratorComparisonTest;
+import jetbrains.jetpad.grammar.lalr.LALRTableGenerator;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.parser.LRParserTableFormat;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelLRStatesBuilderTest {
+  private final Supplier<Grammar> grammar = new TableGeneratorComparisonTest.OperatorGrammar();
+  private final ParallelLRStatesBuilder builder = new ParallelLRStatesBuilder(new ForkJoinPool(4));
+
+  @Test
+  public void slrStatesAreTheSame() {
+    assertSameStates(new SLRTableGenerator(grammar.get()), new SLRTableGenerator(grammar.get()));
+  }
+
+  @Test
+  public void lr1StatesAreTheSame() {
+    assertSameStates(new LR1TableGenerator(grammar.get()), new LR1TableGenerator(grammar.get()));
+  }
+
+  @Test
+  public void lalrTablesAreTheSame() {
+    Grammar g = grammar.get();
+    LALRTableGenerator sequential = new LALRTableGenerator(g);
+    LALRTableGenerator parallel = new LALRTableGenerator(g);
+    parallel.setStatesBuilder(builder);
+
+    assertEquals(LRParserTableFormat.toText(sequential.generateTable()), LRParserTableFormat.toText(parallel.generateTable()));
+  }
+
+  private <ItemT extends LRItem<ItemT>> void assertSameStates(BaseLRTableGenerator<ItemT> sequential, BaseLRTableGenerator<ItemT> parallel) {
+    parallel.setStatesBuilder(builder);
+
+    List<LRState<ItemT>> expected = sequential.generateStates();
+    List<LRState<ItemT>> actual = parallel.generateStates();
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getNumber(), actual.get(i).getNumber());
+      assertEquals("" + expected.get(i).getItems(), "" + actual.get(i).getItems());
+      assertEquals(transitions(expected.get(i)), transitions(actual.get(i)));
+    }
+  }
+
+  private <ItemT extends LRItem<ItemT>> List<String> transitions(LRState<ItemT> state) {
+    List<String> result = new ArrayList<>();
+    for (LRTransition<ItemT> t : state.getTransitions()) {
+      result.add(t.getSymbol() + " -> " + t.getTarget().getName());
+    }
+    return result;
+  }
+}
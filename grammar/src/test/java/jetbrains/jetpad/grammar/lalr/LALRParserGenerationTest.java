@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lalr;
+
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.base.LRTableStats;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.parser.LRParser;
+import jetbrains.jetpad.grammar.parser.LRParserTable;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LALRParserGenerationTest extends BaseParserGenerationTest {
+  @Override
+  protected LRParserTable generateTable(Grammar g) {
+    return new LALRTableGenerator(g).generateTable();
+  }
+
+  @Test
+  public void grammarWhichIsLALRButNotSLR() {
+    Grammar g = new Grammar();
+    NonTerminal s = g.newNonTerminal("S");
+    NonTerminal l = g.newNonTerminal("L");
+    NonTerminal r = g.newNonTerminal("R");
+    Terminal eq = g.newTerminal("=");
+    Terminal star = g.newTerminal("*");
+    Terminal id = g.newTerminal("id");
+
+    g.newRule(g.getStart(), s);
+    g.newRule(s, l, eq, r);
+    g.newRule(s, r);
+    g.newRule(l, star, r);
+    g.newRule(l, id);
+    g.newRule(r, l);
+
+    assertFalse(new SLRTableGenerator(g).getStats().getConflicts().isEmpty());
+
+    LRTableStats stats = new LALRTableGenerator(g).getStats();
+    assertTrue(stats.getConflicts().isEmpty());
+    assertEquals(new SLRTableGenerator(g).getStats().getStateCount(), stats.getStateCount());
+    assertTrue(stats.getStateCount() < new LR1TableGenerator(g).getStats().getStateCount());
+
+    LRParser parser = new LRParser(generateTable(g));
+    assertTrue(parser.parse(star, id, eq, id));
+    assertTrue(parser.parse(id));
+    assertFalse(parser.parse(id, eq));
+  }
+
+  @Test
+  public void grammarWhichIsLR1ButNotLALR() {
+    Grammar g = new Grammar();
+    NonTerminal s = g.newNonTerminal("S");
+    NonTerminal a = g.newNonTerminal("A");
+    NonTerminal b = g.newNonTerminal("B");
+    Terminal ta = g.newTerminal("a");
+    Terminal tb = g.newTerminal("b");
+    Terminal tc = g.newTerminal("c");
+    Terminal td = g.newTerminal("d");
+    Terminal te = g.newTerminal("e");
+
+    g.newRule(g.getStart(), s);
+    g.newRule(s, ta, a, td);
+    g.newRule(s, tb, b, td);
+    g.newRule(s, ta, b, te);
+    g.newRule(s, tb, a, te);
+    g.newRule(a, tc);
+    g.newRule(b, tc);
+
+    assertTrue(new LR1TableGenerator(g).getStats().getConflicts().isEmpty());
+    assertEquals(2, new LALRTableGenerator(g).getStats().getConflicts().size());
+  }
+
+  @Test
+  public void nullableNonTerminals() {
+    Grammar g = new Grammar();
+    NonTerminal list = g.newNonTerminal("List");
+    NonTerminal opt = g.newNonTerminal("Opt");
+    Terminal id = g.newTerminal("id");
+    Terminal comma = g.newTerminal(",");
+    Terminal semi = g.newTerminal(";");
+
+    g.newRule(g.getStart(), list);
+    g.newRule(list, id, opt);
+    g.newRule(list, list, comma, id, opt);
+    g.newRule(opt);
+    g.newRule(opt, semi);
+
+    LRParser parser = new LRParser(generateTable(g));
+    assertTrue(parser.parse(id));
+    assertTrue(parser.parse(id, semi, comma, id));
+    assertTrue(parser.parse(id, comma, id, semi));
+    assertFalse(parser.parse(id, semi, semi));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import static jetbrains.jetpad.grammar.GrammarSugar.separated;
+import static jetbrains.jetpad.grammar.GrammarTestUtil.asTokens;
+import static org.junit.Assert.*;
+
+public class CompiledLRParserTest {
+  private final Grammar g = new Grammar();
+  private final NonTerminal expr = g.newNonTerminal("E");
+  private final Terminal id = g.newTerminal("id");
+  private final Terminal plus = g.newTerminal("+");
+  private final Terminal mul = g.newTerminal("*");
+  private final Terminal lp = g.newTerminal("(");
+  private final Terminal rp = g.newTerminal(")");
+  private final Terminal comma = g.newTerminal(",");
+
+  {
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, id).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return "id" + ctx.getRange();
+      }
+    });
+    g.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT).setHandler(new BinOpHandler());
+    g.newRule(expr, expr, mul, expr).setPriority(1).setAssociativity(Associativity.LEFT).setHandler(new BinOpHandler());
+    g.newRule(expr, lp, expr, rp).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return ctx.get(1);
+      }
+    });
+    g.newRule(expr, id, lp, separated(expr, comma), rp);
+  }
+
+  @Test
+  public void sameResultsAsLRParserForSLR() {
+    assertSameResults(new SLRTableGenerator(g).generateTable());
+  }
+
+  @Test
+  public void sameResultsAsLRParserForLR1() {
+    assertSameResults(new LR1TableGenerator(g).generateTable());
+  }
+
+  @Test
+  public void positions() {
+    CompiledLRParser parser = new CompiledLRParser(new CompiledLRParserTable(new SLRTableGenerator(g).generateTable()));
+
+    assertEquals("(id" + Range.closed(0, 1) + " + id" + Range.closed(2, 3) + ")" + Range.closed(0, 3),
+      parser.parse(asTokens(id, plus, id)));
+  }
+
+  @Test
+  public void terminalDeclaredAfterCompilationIsError() {
+    CompiledLRParserTable table = new CompiledLRParserTable(new SLRTableGenerator(g).generateTable());
+    Terminal unknown = g.newTerminal("unknown");
+
+    assertFalse(new CompiledLRParser(table).parse(id, unknown));
+  }
+
+  @Test
+  public void tableIsPacked() {
+    LRParserTable table = new LR1TableGenerator(g).generateTable();
+    CompiledLRParserTable compiled = new CompiledLRParserTable(table);
+
+    int denseActions = 4 * table.getStates().size() * g.getTerminals().size();
+    assertEquals(table.getStates().size(), compiled.getStateCount());
+    assertTrue(compiled.getActionTableSize() < denseActions);
+  }
+
+  private void assertSameResults(LRParserTable table) {
+    LRParser parser = new LRParser(table);
+    CompiledLRParser compiledParser = new CompiledLRParser(new CompiledLRParserTable(table));
+
+    Terminal[][] inputs = new Terminal[][] {
+      {},
+      {id},
+      {id, plus},
+      {id, plus, id},
+      {id, plus, id, mul, id},
+      {id, mul, id, plus, id},
+      {lp, id, plus, id, rp, mul, id},
+      {id, lp, rp},
+      {id, lp, id, comma, id, plus, id, rp},
+      {id, lp, id, comma, rp},
+      {rp, id},
+    };
+
+    for (Terminal[] input : inputs) {
+      assertEquals("" + parser.parse(asTokens(input)), "" + compiledParser.parse(asTokens(input)));
+    }
+  }
+
+  private class BinOpHandler implements RuleHandler {
+    @Override
+    public Object handle(RuleContext ctx) {
+      Lexeme sign = (Lexeme) ctx.get(1);
+      return "(" + ctx.get(0) + " " + sign.getTerminal() + " " + ctx.get(2) + ")" + ctx.getRange();
+    }
+  }
+}
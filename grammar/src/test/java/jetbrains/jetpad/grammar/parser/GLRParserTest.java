@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static jetbrains.jetpad.grammar.GrammarTestUtil.asTokens;
+import static org.junit.Assert.*;
+
+public class GLRParserTest {
+  private final Grammar g = new Grammar();
+  private final NonTerminal expr = g.newNonTerminal("E");
+  private final Terminal id = g.newTerminal("id");
+  private final Terminal plus = g.newTerminal("+");
+  private final Terminal mul = g.newTerminal("*");
+
+  @Test
+  public void deterministicTableIsParsedAsWithLRParser() {
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, id).setHandler(new ValueHandler("id"));
+    g.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT).setHandler(new BinOpHandler());
+    g.newRule(expr, expr, mul, expr).setPriority(1).setAssociativity(Associativity.LEFT).setHandler(new BinOpHandler());
+    LRParserTable table = new SLRTableGenerator(g).generateGLRTable();
+
+    assertFalse(table.hasConflicts());
+    assertEquals("(id + (id * id))", new GLRParser(table).parse(asTokens(id, plus, id, mul, id)));
+  }
+
+  @Test
+  public void conflictsAreKept() {
+    ambiguousExpressions();
+    LRParserTable table = new SLRTableGenerator(g).generateGLRTable();
+
+    assertTrue(table.hasConflicts());
+    assertTrue(new GLRParser(table).parse(id, plus, id, mul, id));
+    assertFalse(new GLRParser(table).parse(id, plus, mul, id));
+  }
+
+  @Test
+  public void ambiguityIsPacked() {
+    ambiguousExpressions();
+    GLRParser parser = new GLRParser(new LR1TableGenerator(g).generateGLRTable());
+
+    ParseForestNode root = parser.parseForest(Arrays.asList(asTokens(id, plus, id, mul, id)));
+
+    assertSame(expr, root.getSymbol());
+    assertEquals(2, root.getDerivations().size());
+    assertTrue(root.isAmbiguous());
+    assertNotNull(parser.parse(asTokens(id, plus, id, mul, id)));
+  }
+
+  @Test
+  public void sharedSubtrees() {
+    ambiguousExpressions();
+    GLRParser parser = new GLRParser(new SLRTableGenerator(g).generateGLRTable());
+
+    ParseForestNode root = parser.parseForest(Arrays.asList(asTokens(id, plus, id, plus, id, plus, id)));
+
+    assertEquals(3, root.getDerivations().size());
+    assertEquals(5, countTrees(root));
+  }
+
+  @Test
+  public void notLR1Grammar() {
+    NonTerminal a = g.newNonTerminal("A");
+    NonTerminal b = g.newNonTerminal("B");
+    Terminal x = g.newTerminal("x");
+    Terminal c = g.newTerminal("c");
+    Terminal d = g.newTerminal("d");
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, a, x, c).setHandler(new ValueHandler("A"));
+    g.newRule(expr, b, x, d).setHandler(new ValueHandler("B"));
+    g.newRule(a, id);
+    g.newRule(b, id);
+    GLRParser parser = new GLRParser(new LR1TableGenerator(g).generateGLRTable());
+
+    assertEquals("A", parser.parse(asTokens(id, x, c)));
+    assertEquals("B", parser.parse(asTokens(id, x, d)));
+    assertNull(parser.parse(asTokens(id, x)));
+  }
+
+  @Test
+  public void hiddenLeftRecursion() {
+    NonTerminal empty = g.newNonTerminal("N");
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, empty, expr, plus);
+    g.newRule(expr, id);
+    g.newRule(empty);
+    GLRParser parser = new GLRParser(new SLRTableGenerator(g).generateGLRTable());
+
+    assertTrue(parser.parse(id));
+    assertTrue(parser.parse(id, plus, plus));
+    assertFalse(parser.parse(plus));
+  }
+
+  @Test
+  public void lowerPriorityIsPreferredAtTop() {
+    Rule add = g.newRule(expr, expr, plus, expr).setPriority(0);
+    Rule multiply = g.newRule(expr, expr, mul, expr).setPriority(1);
+    ParseForestNode[] leaves = leaves(5);
+    ParseForestNode sum = node(add, leaves[0], leaves[1], leaves[2]);
+    ParseForestNode product = node(multiply, leaves[2], leaves[3], leaves[4]);
+
+    ParseForestNode root = new ParseForestNode(expr, 0, 5, null);
+    root.addDerivation(multiply, new ParseForestNode[] {sum, leaves[3], leaves[4]});
+    root.addDerivation(add, new ParseForestNode[] {leaves[0], leaves[1], product});
+
+    assertSame(add, root.getPreferred().getRule());
+    assertFalse(root.isAmbiguous());
+  }
+
+  @Test
+  public void associativityIsUsedForSamePriority() {
+    Rule left = g.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT);
+    ParseForestNode[] leaves = leaves(5);
+    ParseForestNode first = node(left, leaves[0], leaves[1], leaves[2]);
+    ParseForestNode last = node(left, leaves[2], leaves[3], leaves[4]);
+
+    ParseForestNode root = new ParseForestNode(expr, 0, 5, null);
+    root.addDerivation(left, new ParseForestNode[] {leaves[0], leaves[1], last});
+    root.addDerivation(left, new ParseForestNode[] {first, leaves[3], leaves[4]});
+
+    assertSame(first, root.getPreferred().getChildren().get(0));
+    assertFalse(root.isAmbiguous());
+  }
+
+  private void ambiguousExpressions() {
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, id).setHandler(new ValueHandler("id"));
+    g.newRule(expr, expr, plus, expr).setHandler(new BinOpHandler());
+    g.newRule(expr, expr, mul, expr).setHandler(new BinOpHandler());
+  }
+
+  private int countTrees(ParseForestNode node) {
+    if (node.getLexeme() != null) return 1;
+    int result = 0;
+    for (ParseForestNode.Derivation d : node.getDerivations()) {
+      int trees = 1;
+      for (ParseForestNode child : d.getChildren()) {
+        trees *= countTrees(child);
+      }
+      result += trees;
+    }
+    return result;
+  }
+
+  private ParseForestNode[] leaves(int count) {
+    ParseForestNode[] result = new ParseForestNode[count];
+    for (int i = 0; i < count; i++) {
+      Terminal t = i % 2 == 0 ? id : plus;
+      result[i] = new ParseForestNode(t, i, i + 1, new Lexeme(t, "" + t));
+    }
+    return result;
+  }
+
+  private ParseForestNode node(Rule rule, ParseForestNode... children) {
+    ParseForestNode result = new ParseForestNode(rule.getHead(), children[0].getStart(), children[children.length - 1].getEnd(), null);
+    result.addDerivation(rule, children);
+    return result;
+  }
+
+  private static class ValueHandler implements RuleHandler {
+    private final String myValue;
+
+    private ValueHandler(String value) {
+      myValue = value;
+    }
+
+    @Override
+    public Object handle(RuleContext ctx) {
+      return myValue;
+    }
+  }
+
+  private static class BinOpHandler implements RuleHandler {
+    @Override
+    public Object handle(RuleContext ctx) {
+      Lexeme sign = (Lexeme) ctx.get(1);
+      return "(" + ctx.get(0) + " " + sign.getTerminal() + " " + ctx.get(2) + ")";
+    }
+  }
+}
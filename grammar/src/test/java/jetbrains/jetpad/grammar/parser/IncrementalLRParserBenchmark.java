@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares full reparse with incremental reparse of a long expression on two kinds of edits:
+ * replacement of a random operator and typing at the end.
+ * Run with: java ... IncrementalLRParserBenchmark [tokenCount] [editCount]
+ */
+public class IncrementalLRParserBenchmark {
+  public static void main(String[] args) {
+    int tokenCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int editCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+    Grammar g = new Grammar();
+    NonTerminal expr = g.newNonTerminal("E");
+    final Terminal id = g.newTerminal("id");
+    final Terminal plus = g.newTerminal("+");
+    final Terminal mul = g.newTerminal("*");
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, id);
+    g.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT);
+    g.newRule(expr, expr, mul, expr).setPriority(1).setAssociativity(Associativity.LEFT);
+
+    final LRParserTable table = new LR1TableGenerator(g).generateTable();
+    final CompiledLRParserTable compiledTable = new CompiledLRParserTable(table);
+
+    List<Parse> parsers = new ArrayList<>();
+    parsers.add(new Parse("full") {
+      @Override
+      Object parse(List<Lexeme> input) {
+        return new LRParser(table).parse(input);
+      }
+    });
+    parsers.add(new Parse("compiled") {
+      @Override
+      Object parse(List<Lexeme> input) {
+        return new CompiledLRParser(compiledTable).parse(input);
+      }
+    });
+    parsers.add(new Parse("incremental") {
+      private IncrementalLRParser myParser = new IncrementalLRParser(compiledTable);
+
+      @Override
+      Object parse(List<Lexeme> input) {
+        return myParser.parse(input);
+      }
+    });
+    parsers.add(new Parse("incremental with value reuse") {
+      private IncrementalLRParser myParser = new IncrementalLRParser(compiledTable).setReuseValues(true);
+
+      @Override
+      Object parse(List<Lexeme> input) {
+        return myParser.parse(input);
+      }
+    });
+
+    final Random random = new Random(239);
+    for (int round = 0; round < 3; round++) {
+      System.out.println("Round " + round);
+      for (Parse parse : parsers) {
+        final List<Lexeme> input = expression(tokenCount, id, plus);
+        parse.parse(input);
+
+        long replace = measure(editCount, parse, input, new Runnable() {
+          @Override
+          public void run() {
+            int pos = 2 * random.nextInt(input.size() / 2 - 1) + 1;
+            Terminal old = input.get(pos).getTerminal();
+            input.set(pos, new Lexeme(old == plus ? mul : plus, "op"));
+          }
+        });
+
+        long type = measure(editCount, parse, input, new Runnable() {
+          @Override
+          public void run() {
+            if (input.get(input.size() - 1).getTerminal() == id) {
+              input.add(new Lexeme(plus, "+"));
+            } else {
+              input.add(new Lexeme(id, "x"));
+            }
+          }
+        });
+
+        System.out.println("  " + parse.myName + ": tokens=" + tokenCount + " edits=" + editCount
+          + " replace operator=" + replace / 1000000 + "ms type at end=" + type / 1000000 + "ms");
+      }
+    }
+  }
+
+  private static List<Lexeme> expression(int tokenCount, Terminal id, Terminal plus) {
+    List<Lexeme> input = new ArrayList<>();
+    for (int i = 0; i < tokenCount / 2; i++) {
+      if (i > 0) {
+        input.add(new Lexeme(plus, "+"));
+      }
+      input.add(new Lexeme(id, "x" + i));
+    }
+    return input;
+  }
+
+  private static long measure(int editCount, Parse parse, List<Lexeme> input, Runnable edit) {
+    long start = System.nanoTime();
+    for (int i = 0; i < editCount; i++) {
+      edit.run();
+      parse.parse(input);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static abstract class Parse {
+    private final String myName;
+
+    Parse(String name) {
+      myName = name;
+    }
+
+    abstract Object parse(List<Lexeme> input);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Function;
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static jetbrains.jetpad.grammar.GrammarSugar.separated;
+import static jetbrains.jetpad.grammar.GrammarTestUtil.asTokens;
+import static org.junit.Assert.*;
+
+public class IncrementalLRParserTest {
+  private final Grammar g = new Grammar();
+  private final NonTerminal expr = g.newNonTerminal("E");
+  private final Terminal id = g.newTerminal("id");
+  private final Terminal plus = g.newTerminal("+");
+  private final Terminal mul = g.newTerminal("*");
+  private final Terminal lp = g.newTerminal("(");
+  private final Terminal rp = g.newTerminal(")");
+  private final Terminal comma = g.newTerminal(",");
+
+  {
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, id).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return "" + ((Lexeme) ctx.get(0)).getValue();
+      }
+    });
+    g.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT);
+    g.newRule(expr, expr, mul, expr).setPriority(1).setAssociativity(Associativity.LEFT);
+    g.newRule(expr, lp, expr, rp);
+    g.newRule(expr, id, lp, separated(expr, comma), rp);
+  }
+
+  @Test
+  public void singleTokenEdits() {
+    List<Lexeme> input = lexemes(id, plus, id, mul, id, plus, id);
+    IncrementalLRParser parser = incrementalParser();
+    assertSameResult(parser, input);
+
+    input.set(3, new Lexeme(plus, "+"));
+    assertSameResult(parser, input);
+
+    input.add(4, new Lexeme(lp, "("));
+    input.add(6, new Lexeme(rp, ")"));
+    assertSameResult(parser, input);
+
+    input.remove(0);
+    assertNull(parser.parse(input));
+
+    input.add(0, new Lexeme(id, "x"));
+    assertSameResult(parser, input);
+  }
+
+  @Test
+  public void onlyEditedPartIsReparsed() {
+    List<Lexeme> input = new ArrayList<>();
+    input.add(new Lexeme(id, "f"));
+    input.add(new Lexeme(lp, "("));
+    for (int i = 0; i < 200; i++) {
+      if (i > 0) {
+        input.add(new Lexeme(comma, ","));
+      }
+      input.addAll(lexemes(id, plus, id));
+    }
+    input.add(new Lexeme(rp, ")"));
+
+    IncrementalLRParser parser = incrementalParser();
+    assertSameResult(parser, input);
+    assertEquals(input.size(), parser.getReparsedCount());
+
+    input.set(301, new Lexeme(mul, "*"));
+    assertSameResult(parser, input);
+    assertTrue(parser.getReparsedCount() < 20);
+  }
+
+  @Test
+  public void randomEdits() {
+    randomEdits(false, new Function<Rule, RuleHandler>() {
+      @Override
+      public RuleHandler apply(Rule rule) {
+        return new RuleHandler() {
+          @Override
+          public Object handle(RuleContext ctx) {
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < ctx.getValueCount(); i++) {
+              values.add(ctx.get(i));
+            }
+            return values + "" + ctx.getRange();
+          }
+        };
+      }
+    });
+  }
+
+  @Test
+  public void randomEditsWithValueReuse() {
+    randomEdits(true, new Function<Rule, RuleHandler>() {
+      @Override
+      public RuleHandler apply(Rule rule) {
+        return rule.getHandler();
+      }
+    });
+  }
+
+  @Test
+  public void valuesOfUnchangedSubtreesAreReused() {
+    IncrementalLRParser parser = incrementalParser().setReuseValues(true);
+    List<Lexeme> input = lexemes(id, plus, lp, id, mul, id, rp);
+
+    List<?> first = (List<?>) parser.parse(input);
+    input.set(0, new Lexeme(id, "x"));
+    List<?> second = (List<?>) parser.parse(input);
+
+    assertNotSame(first.get(0), second.get(0));
+    assertSame(first.get(2), second.get(2));
+  }
+
+  @Test
+  public void valuesAreNotReusedByDefault() {
+    IncrementalLRParser parser = incrementalParser();
+    List<Lexeme> input = lexemes(id, plus, lp, id, mul, id, rp);
+
+    List<?> first = (List<?>) parser.parse(input);
+    input.set(0, new Lexeme(id, "x"));
+    List<?> second = (List<?>) parser.parse(input);
+
+    assertNotSame(first.get(2), second.get(2));
+    assertEquals(first.get(2), second.get(2));
+  }
+
+  private void randomEdits(boolean reuseValues, Function<Rule, RuleHandler> handlers) {
+    Terminal[] terminals = {id, id, id, plus, mul, lp, rp, comma};
+    Random random = new Random(239);
+    for (LRParserTable table : Arrays.asList(new SLRTableGenerator(g).generateTable(), new LR1TableGenerator(g).generateTable())) {
+      IncrementalLRParser parser = new IncrementalLRParser(new CompiledLRParserTable(table)).setReuseValues(reuseValues);
+      LRParser fullParser = new LRParser(table);
+      List<Lexeme> input = lexemes(id, lp, id, plus, id, comma, id, rp, mul, id);
+      for (int i = 0; i < 2000; i++) {
+        int kind = random.nextInt(3);
+        int pos = random.nextInt(input.size() + 1);
+        Lexeme lexeme = new Lexeme(terminals[random.nextInt(terminals.length)], "t" + random.nextInt(3));
+        if (kind == 0 || input.isEmpty()) {
+          input.add(pos, lexeme);
+        } else if (pos < input.size()) {
+          if (kind == 1) {
+            input.set(pos, lexeme);
+          } else {
+            input.remove(pos);
+          }
+        }
+        assertEquals("" + fullParser.parse(input, handlers), "" + parser.parse(input, handlers));
+      }
+    }
+  }
+
+  private IncrementalLRParser incrementalParser() {
+    return new IncrementalLRParser(new CompiledLRParserTable(new LR1TableGenerator(g).generateTable()));
+  }
+
+  private void assertSameResult(IncrementalLRParser parser, List<Lexeme> input) {
+    Object expected = new LRParser(new LR1TableGenerator(g).generateTable()).parse(input);
+    assertTrue(expected != null);
+    assertEquals("" + expected, "" + parser.parse(input));
+  }
+
+  private List<Lexeme> lexemes(Terminal... terminals) {
+    return new ArrayList<>(Arrays.asList(asTokens(terminals)));
+  }
+}
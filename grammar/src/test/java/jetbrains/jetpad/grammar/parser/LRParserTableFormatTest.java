@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static jetbrains.jetpad.grammar.GrammarTestUtil.asTokens;
+import static org.junit.Assert.*;
+
+public class LRParserTableFormatTest {
+  @Test
+  public void textRoundTrip() {
+    ExprGrammar g = new ExprGrammar();
+    LRParserTable table = new LR1TableGenerator(g.grammar).generateTable();
+
+    LRParserTable loaded = LRParserTableFormat.fromText(g.grammar, "LR1", LRParserTableFormat.toText(table));
+
+    assertEquals(table.getStates().size(), loaded.getStates().size());
+    assertSameResults(g, table, loaded);
+  }
+
+  @Test
+  public void binaryRoundTrip() throws IOException {
+    ExprGrammar g = new ExprGrammar();
+    LRParserTable table = new LR1TableGenerator(g.grammar).generateTable();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LRParserTableBinaryFormat.write(table, out);
+    LRParserTable loaded = LRParserTableBinaryFormat.read(g.grammar, "LR1", new ByteArrayInputStream(out.toByteArray()));
+
+    assertSameResults(g, table, loaded);
+  }
+
+  @Test
+  public void fingerprintDependsOnGrammar() {
+    ExprGrammar g1 = new ExprGrammar();
+    ExprGrammar g2 = new ExprGrammar();
+    assertEquals(LRParserTableFormat.fingerprint(g1.grammar, "LR1"), LRParserTableFormat.fingerprint(g2.grammar, "LR1"));
+
+    g2.plusRule.setPriority(2);
+    assertFalse(LRParserTableFormat.fingerprint(g1.grammar, "LR1").equals(LRParserTableFormat.fingerprint(g2.grammar, "LR1")));
+  }
+
+  @Test
+  public void fingerprintDependsOnGeneratorKind() {
+    ExprGrammar g = new ExprGrammar();
+    assertFalse(LRParserTableFormat.fingerprint(g.grammar, "LR1").equals(LRParserTableFormat.fingerprint(g.grammar, "SLR")));
+  }
+
+  @Test
+  public void tableOfAnotherGeneratorIsIgnored() {
+    ExprGrammar g = new ExprGrammar();
+    String text = LRParserTableFormat.toText(new SLRTableGenerator(g.grammar).generateTable());
+
+    assertNotNull(LRParserTableFormat.fromText(g.grammar, "SLR", text));
+    assertNull(LRParserTableFormat.fromText(g.grammar, "LR1", text));
+  }
+
+  @Test
+  public void malformedTextIsIgnored() {
+    ExprGrammar g = new ExprGrammar();
+    String text = LRParserTableFormat.toText(new LR1TableGenerator(g.grammar).generateTable());
+
+    assertNull(LRParserTableFormat.fromText(g.grammar, "LR1", text + " !"));
+    assertNull(LRParserTableFormat.fromText(g.grammar, "LR1", text.substring(0, text.lastIndexOf(' '))));
+    assertNull(LRParserTableFormat.fromText(g.grammar, "LR1", text + " zzzz"));
+  }
+
+  @Test
+  public void truncatedBinaryIsRegenerated() throws IOException {
+    final ExprGrammar g = new ExprGrammar();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LRParserTableBinaryFormat.write(new LR1TableGenerator(g.grammar).generateTable(), out);
+    byte[] bytes = out.toByteArray();
+
+    for (int length : new int[] {0, 3, bytes.length / 2, bytes.length - 1}) {
+      byte[] truncated = Arrays.copyOf(bytes, length);
+      assertNull(LRParserTableBinaryFormat.read(g.grammar, "LR1", new ByteArrayInputStream(truncated)));
+
+      LRParserTable table = LRParserTableBinaryFormat.load(g.grammar, "LR1", new ByteArrayInputStream(truncated), new Supplier<LRParserTable>() {
+        @Override
+        public LRParserTable get() {
+          return new LR1TableGenerator(g.grammar).generateTable();
+        }
+      });
+      assertTrue(new LRParser(table).parse(g.id, g.plus, g.id));
+    }
+  }
+
+  @Test
+  public void corruptBinaryIsIgnored() throws IOException {
+    ExprGrammar g = new ExprGrammar();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LRParserTableBinaryFormat.write(new LR1TableGenerator(g.grammar).generateTable(), out);
+    byte[] bytes = out.toByteArray();
+    Arrays.fill(bytes, bytes.length - 8, bytes.length, (byte) 0xFF);
+
+    assertNull(LRParserTableBinaryFormat.read(g.grammar, "LR1", new ByteArrayInputStream(bytes)));
+  }
+
+  @Test
+  public void staleTableIsRegenerated() {
+    final ExprGrammar g = new ExprGrammar();
+    String text = LRParserTableFormat.toText(new LR1TableGenerator(g.grammar).generateTable());
+    Terminal minus = g.grammar.newTerminal("-");
+    g.grammar.newRule(g.expr, g.expr, minus, g.expr).setPriority(0).setAssociativity(Associativity.LEFT);
+
+    assertNull(LRParserTableFormat.fromText(g.grammar, "LR1", text));
+
+    LRParserTable table = LRParserTableFormat.load(g.grammar, "LR1", text, new Supplier<LRParserTable>() {
+      @Override
+      public LRParserTable get() {
+        return new LR1TableGenerator(g.grammar).generateTable();
+      }
+    });
+    assertTrue(new LRParser(table).parse(g.id, minus, g.id));
+  }
+
+  private void assertSameResults(ExprGrammar g, LRParserTable expected, LRParserTable actual) {
+    Terminal[][] inputs = new Terminal[][] {
+      {g.id},
+      {g.id, g.plus},
+      {g.id, g.plus, g.id, g.mul, g.id},
+      {g.id, g.mul, g.id, g.plus, g.id},
+    };
+
+    for (Terminal[] input : inputs) {
+      assertEquals("" + new LRParser(expected).parse(asTokens(input)), "" + new LRParser(actual).parse(asTokens(input)));
+    }
+  }
+
+  private static class ExprGrammar {
+    final Grammar grammar = new Grammar();
+    final NonTerminal expr = grammar.newNonTerminal("E");
+    final Terminal id = grammar.newTerminal("id");
+    final Terminal plus = grammar.newTerminal("+");
+    final Terminal mul = grammar.newTerminal("*");
+
+    final Rule startRule = grammar.newRule(grammar.getStart(), expr);
+    final Rule idRule = grammar.newRule(expr, id);
+    final Rule plusRule = grammar.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT);
+    final Rule mulRule = grammar.newRule(expr, expr, mul, expr).setPriority(1).setAssociativity(Associativity.LEFT);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.parser;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static jetbrains.jetpad.grammar.GrammarTestUtil.asTokens;
+import static org.junit.Assert.*;
+
+public class RecoveringLRParserTest {
+  private final Grammar g = new Grammar();
+  private final NonTerminal expr = g.newNonTerminal("E");
+  private final Terminal id = g.newTerminal("id");
+  private final Terminal plus = g.newTerminal("+");
+  private final Terminal lp = g.newTerminal("(");
+  private final Terminal rp = g.newTerminal(")");
+  private final Terminal error = g.newTerminal("error");
+
+  {
+    g.newRule(g.getStart(), expr);
+    g.newRule(expr, id).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return "id";
+      }
+    });
+    g.newRule(expr, expr, plus, expr).setPriority(0).setAssociativity(Associativity.LEFT).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return "(" + ctx.get(0) + " + " + ctx.get(2) + ")";
+      }
+    });
+    g.newRule(expr, lp, expr, rp).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return ctx.get(1);
+      }
+    });
+  }
+
+  @Test
+  public void validInput() {
+    PartialParseResult result = parser().parse(asTokens(id, plus, id));
+
+    assertTrue(result.isAccepted());
+    assertFalse(result.hasErrors());
+    assertEquals("(id + id)", result.getValue());
+    assertEquals(Range.closed(0, 3), result.getTree().getRange());
+  }
+
+  @Test
+  public void deletion() {
+    PartialParseResult result = parser().parse(asTokens(id, rp, plus, id));
+
+    assertEquals("(id + id)", result.getValue());
+    assertEquals(Collections.singletonList(Range.closed(1, 2)), result.getErrors());
+  }
+
+  @Test
+  public void deletedLexemeKeptAsErrorLeaf() {
+    Lexeme[] input = asTokens(id, rp, plus, id);
+    PartialParseResult result = parser().parse(input);
+
+    ParseTreeNode errorNode = findError(result.getTree());
+    assertNotNull(errorNode);
+    assertSame(rp, errorNode.getSymbol());
+    assertSame(input[1], errorNode.getValue());
+    assertEquals(Range.closed(1, 2), errorNode.getRange());
+    assertEquals(Arrays.asList(input), leaves(result.getTree()));
+  }
+
+  @Test
+  public void leadingDeletedLexemeKeptInTree() {
+    Lexeme[] input = asTokens(rp, id, plus, id);
+    PartialParseResult result = parser().parse(input);
+
+    assertEquals("(id + id)", result.getValue());
+    assertEquals(Range.closed(0, 4), result.getTree().getRange());
+    assertEquals(Arrays.asList(input), leaves(result.getTree()));
+  }
+
+  @Test
+  public void unrecoverableInputKeepsParsedFragments() {
+    PartialParseResult result = parser().parse(asTokens(lp, id, plus, id));
+
+    assertFalse(result.isAccepted());
+    assertNull(result.getValue());
+    assertTrue(result.getTree().isError());
+
+    List<ParseTreeNode> fragments = result.getTree().getChildren();
+    assertEquals(2, fragments.size());
+    assertSame(lp, fragments.get(0).getSymbol());
+    assertSame(expr, fragments.get(1).getSymbol());
+    assertEquals("(id + id)", fragments.get(1).getValue());
+    assertSame(result.getTree(), fragments.get(1).getParent());
+  }
+
+  @Test
+  public void missingOperandWithErrorRule() {
+    addErrorRule();
+    PartialParseResult result = parser().parse(asTokens(id, plus));
+
+    assertEquals("(id + err)", result.getValue());
+    assertEquals(Collections.singletonList(Range.closed(2, 2)), result.getErrors());
+  }
+
+  @Test
+  public void garbageInsideParensWithErrorRule() {
+    addErrorRule();
+    PartialParseResult result = parser().parse(asTokens(lp, id, id, rp, plus, id));
+
+    assertEquals("(err + id)", result.getValue());
+    assertEquals(Collections.singletonList(Range.closed(1, 3)), result.getErrors());
+
+    ParseTreeNode errorNode = findError(result.getTree());
+    assertNotNull(errorNode);
+    assertEquals(Range.closed(1, 3), errorNode.getRange());
+    assertEquals(2, errorNode.getChildren().size());
+    assertSame(id, errorNode.getChildren().get(0).getSymbol());
+  }
+
+  @Test
+  public void errorValueContainsDiscardedValues() {
+    g.newRule(expr, error).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return ((Lexeme) ctx.get(0)).getValue();
+      }
+    });
+
+    PartialParseResult result = parser().parse(asTokens(lp, id, id, rp));
+
+    List<?> discarded = (List<?>) result.getValue();
+    assertEquals(2, discarded.size());
+    assertSame(id, ((Lexeme) discarded.get(0)).getTerminal());
+    assertSame(id, ((Lexeme) discarded.get(1)).getTerminal());
+  }
+
+  @Test
+  public void severalErrorsWithLR1() {
+    addErrorRule();
+    RecoveringLRParser parser = new RecoveringLRParser(new LR1TableGenerator(g).generateTable(), error);
+    PartialParseResult result = parser.parse(asTokens(id, plus, rp, plus, lp, id, id, rp));
+
+    assertTrue(result.isAccepted());
+    assertEquals(Arrays.asList(Range.closed(2, 3), Range.closed(5, 7)), result.getErrors());
+  }
+
+  @Test
+  public void sameResultAsLRParserOnValidInput() {
+    addErrorRule();
+    LRParserTable table = new SLRTableGenerator(g).generateTable();
+    Lexeme[] input = asTokens(lp, id, plus, id, rp, plus, id);
+
+    assertEquals(new LRParser(table).parse(input), new RecoveringLRParser(table, error).parse(input).getValue());
+  }
+
+  private void addErrorRule() {
+    g.newRule(expr, error).setHandler(new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return "err";
+      }
+    });
+  }
+
+  private RecoveringLRParser parser() {
+    return new RecoveringLRParser(new SLRTableGenerator(g).generateTable(), error);
+  }
+
+  private List<Object> leaves(ParseTreeNode node) {
+    List<Object> result = new ArrayList<>();
+    collectLeaves(node, result);
+    return result;
+  }
+
+  private void collectLeaves(ParseTreeNode node, List<Object> result) {
+    if (node.getValue() instanceof Lexeme && node.getChildren().isEmpty()) {
+      result.add(node.getValue());
+    }
+    for (ParseTreeNode child : node.getChildren()) {
+      collectLeaves(child, result);
+    }
+  }
+
+  private ParseTreeNode findError(ParseTreeNode node) {
+    if (node.isError()) return node;
+    for (ParseTreeNode child : node.getChildren()) {
+      ParseTreeNode result = findError(child);
+      if (result != null) return result;
+    }
+    return null;
+  }
+}
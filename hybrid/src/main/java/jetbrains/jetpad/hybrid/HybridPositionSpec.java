@@ -26,6 +26,12 @@ public interface HybridPositionSpec<SourceT> {
   PrettyPrinter<? super SourceT> getPrettyPrinter();
   PairSpec getPairSpec();
 
+  /**
+   * Items are requested once per spec and completion parameters and are indexed by their matching text, so they
+   * shouldn't depend on the editing context. Context dependent items belong to {@link #getAdditionalCompletion}.
+   * An item should return the result of tokenHandler from {@link jetbrains.jetpad.completion.CompletionItem#complete}.
+   * When items change, {@link HybridSynchronizer#invalidateTokenCompletion()} should be called.
+   */
   CompletionSupplier getTokenCompletion(Function<Token, Runnable> tokenHandler);
   CompletionSupplier getAdditionalCompletion(CompletionContext ctx, Completer completer);
 }
\ No newline at end of file
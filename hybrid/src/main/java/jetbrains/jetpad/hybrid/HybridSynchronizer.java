@@ -76,6 +76,7 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
   private Property<SourceT> myProperty;
   private HybridPositionSpec<SourceT> mySpec;
   private TokenListEditor<SourceT> myTokenListEditor;
+  private TokenCompletion myTokenCompletion;
   private Registration myRegistration;
   private Cell myTarget;
   private List<Cell> myTargetList;
@@ -209,7 +210,7 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
           } else {
             Range<Integer> currentRange = selection();
             if (event.is(KeyStrokeSpecs.SELECT_UP)) {
-              ParseNode parseNode = myTokenListEditor.parseNode();
+              ParseNode parseNode = structure();
               if (parseNode != null) {
                 if (!currentRange.equals(parseNode.range())) {
                   ParseNode node = ParseNodes.findForRange(parseNode, currentRange);
@@ -228,7 +229,7 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
             }
 
             if (event.is(KeyStrokeSpecs.SELECT_DOWN)) {
-              ParseNode parseNode = myTokenListEditor.parseNode();
+              ParseNode parseNode = structure();
               if (parseNode != null) {
                 ParseNode node = ParseNodes.findForRange(parseNode, currentRange);
                 ParseNode childNode = ParseNodes.nonSameRangeChild(node, myTargetList.indexOf(mySelectionSupport.currentCell()));
@@ -282,7 +283,7 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
       }
 
       private void paste(ClipboardContent content) {
-        List<Token> tokens = content.get(TOKENS_CONTENT);
+        final List<Token> tokens = content.get(TOKENS_CONTENT);
         Cell currentCell = mySelectionSupport.currentCell();
 
         int targetIndex;
@@ -293,7 +294,13 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
           targetIndex = 0;
         }
 
-        myTokenListEditor.tokens.addAll(targetIndex, tokens);
+        final int index = targetIndex;
+        batch(new Runnable() {
+          @Override
+          public void run() {
+            myTokenListEditor.tokens.addAll(index, tokens);
+          }
+        });
         myTokenListEditor.updateToPrintedTokens();
         tokenOperations().select(targetIndex + tokens.size() - 1, LAST).run();
       }
@@ -366,6 +373,8 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     return new CollectionListener<Token>() {
       @Override
       public void onItemAdded(CollectionItemEvent<? extends Token> event) {
+        if (myTokenListEditor.isInBatch()) return;
+
         if (myPlaceholder != null) {
           removePlaceholder();
         }
@@ -405,17 +414,10 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
 
       @Override
       public void onItemRemoved(CollectionItemEvent<? extends Token> event) {
+        if (myTokenListEditor.isInBatch()) return;
+
         final int index = event.getIndex();
-        Cell removedCell = myTargetList.remove(index);
-
-        if (myValueCellToMapper != null && myValueCellToMapper.containsKey(removedCell)) {
-          Mapper<?, ? extends Cell> valueMapper = myValueCellToMapper.get(removedCell);
-          myValueMappers.remove(valueMapper);
-          myValueCellToMapper.remove(removedCell);
-          if (myValueCellToMapper.isEmpty()) {
-            myValueCellToMapper = null;
-          }
-        }
+        disposeTokenCell(myTargetList.remove(index));
 
         if (myTargetList.isEmpty()) {
           addPlaceholder();
@@ -445,24 +447,98 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
           }
         }
       }
+    };
+  }
 
-      private void updateTokenCell(int index, Handler<TextTokenCell> handler) {
-        Cell cell = myTargetList.get(index);
-        if (cell instanceof TextTokenCell) {
-          TextTokenCell textTokenCell = (TextTokenCell) cell;
+  private void updateTokenCell(int index, Handler<TextTokenCell> handler) {
+    Cell cell = myTargetList.get(index);
+    if (cell instanceof TextTokenCell) {
+      TextTokenCell textTokenCell = (TextTokenCell) cell;
 
-          boolean wasNoSpaceToLeft = textTokenCell.noSpaceToLeft();
-          boolean wasNoSpaceToRight = textTokenCell.noSpaceToRight();
+      boolean wasNoSpaceToLeft = textTokenCell.noSpaceToLeft();
+      boolean wasNoSpaceToRight = textTokenCell.noSpaceToRight();
 
-          handler.handle(textTokenCell);
+      handler.handle(textTokenCell);
 
-          if ((textTokenCell.noSpaceToLeft() != wasNoSpaceToLeft) || (textTokenCell.noSpaceToRight() != wasNoSpaceToRight)) {
-            myTargetList.remove(index);
-            myTargetList.add(index, cell);
-          }
-        }
+      if ((textTokenCell.noSpaceToLeft() != wasNoSpaceToLeft) || (textTokenCell.noSpaceToRight() != wasNoSpaceToRight)) {
+        myTargetList.remove(index);
+        myTargetList.add(index, cell);
       }
-    };
+    }
+  }
+
+  private void disposeTokenCell(Cell removedCell) {
+    if (myValueCellToMapper != null && myValueCellToMapper.containsKey(removedCell)) {
+      Mapper<?, ? extends Cell> valueMapper = myValueCellToMapper.get(removedCell);
+      myValueMappers.remove(valueMapper);
+      myValueCellToMapper.remove(removedCell);
+      if (myValueCellToMapper.isEmpty()) {
+        myValueCellToMapper = null;
+      }
+    }
+  }
+
+  /**
+   * Brings token cells in sync with tokens after a batch. Only cells between the common prefix and suffix
+   * of the old and the new token lists are recreated.
+   */
+  private void updateTokenCells(List<Token> oldTokens) {
+    List<Token> newTokens = myTokenListEditor.tokens;
+
+    int prefix = 0;
+    int maxPrefix = Math.min(oldTokens.size(), newTokens.size());
+    while (prefix < maxPrefix && oldTokens.get(prefix) == newTokens.get(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    int maxSuffix = maxPrefix - prefix;
+    while (suffix < maxSuffix && oldTokens.get(oldTokens.size() - 1 - suffix) == newTokens.get(newTokens.size() - 1 - suffix)) {
+      suffix++;
+    }
+
+    int removed = oldTokens.size() - prefix - suffix;
+    final int added = newTokens.size() - prefix - suffix;
+    if (removed == 0 && added == 0) return;
+
+    if (myPlaceholder != null) {
+      removePlaceholder();
+    }
+
+    for (int i = prefix + removed - 1; i >= prefix; i--) {
+      disposeTokenCell(myTargetList.remove(i));
+    }
+    for (int i = prefix; i < prefix + added; i++) {
+      Cell tokenCell = createTokenCell(newTokens.get(i));
+      if (tokenCell instanceof TextTokenCell) {
+        TextTokenCell textTokenCell = (TextTokenCell) tokenCell;
+        textTokenCell.setFirst(i == 0);
+        textTokenCell.setNextToken(i + 1 < newTokens.size() ? newTokens.get(i + 1) : null);
+      }
+      myTargetList.add(i, tokenCell);
+    }
+
+    if (newTokens.isEmpty()) {
+      addPlaceholder();
+      return;
+    }
+
+    if (prefix == 0 && suffix > 0) {
+      updateTokenCell(added, new Handler<TextTokenCell>() {
+        @Override
+        public void handle(TextTokenCell item) {
+          item.setFirst(added == 0);
+        }
+      });
+    }
+    if (prefix > 0) {
+      final Token next = prefix < newTokens.size() ? newTokens.get(prefix) : null;
+      updateTokenCell(prefix - 1, new Handler<TextTokenCell>() {
+        @Override
+        public void handle(TextTokenCell item) {
+          item.setNextToken(next);
+        }
+      });
+    }
   }
 
   public void setMapperFactory(MapperFactory<Object, ? extends Cell> mapperFactory) {
@@ -537,12 +613,41 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     return result;
   }
 
-  public void setTokens(List<Token> tokens) {
-    myTokenListEditor.tokens.clear();
-    myTokenListEditor.tokens.addAll(tokens);
+  public void setTokens(final List<Token> tokens) {
+    batch(new Runnable() {
+      @Override
+      public void run() {
+        myTokenListEditor.replaceTokens(tokens);
+      }
+    });
     myTokenListEditor.updateToPrintedTokens();
   }
 
+  /**
+   * Runs r as a single token edit. Token changes made by r are reparsed once, and token cells are updated
+   * when r finishes, so cells shouldn't be accessed by index inside of r.
+   */
+  public void batch(final Runnable r) {
+    if (myTokenListEditor.isInBatch()) {
+      r.run();
+      return;
+    }
+
+    final List<Token> oldTokens = isAttached() ? new ArrayList<>(myTokenListEditor.tokens) : null;
+    myTokenListEditor.batch(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          r.run();
+        } finally {
+          if (oldTokens != null) {
+            updateTokenCells(oldTokens);
+          }
+        }
+      }
+    });
+  }
+
   public ObservableList<Token> tokens() {
     return new UnmodifiableObservableList<>(myTokenListEditor.tokens);
   }
@@ -563,6 +668,12 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     mySelectionSupport.select(myTargetList.get(sel.lowerEndpoint()), myTargetList.get(sel.upperEndpoint() - 1));
   }
 
+  private ParseNode structure() {
+    ParseNode result = myTokenListEditor.parseNode();
+    if (result != null) return result;
+    return myTokenListEditor.partialParseNode();
+  }
+
   public Range<Integer> rangeFor(Object object) {
     ParseNode parseNode = tokenListEditor().parseNode();
     if (parseNode == null) {
@@ -619,12 +730,17 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
       throw new IllegalStateException();
     }
 
-    int firstIndex = myTargetList.indexOf(selection.get(0));
-    int lastIndex = firstIndex + selection.size();
+    final int firstIndex = myTargetList.indexOf(selection.get(0));
+    final int lastIndex = firstIndex + selection.size();
 
     mySelectionSupport.clearSelection();
 
-    myTokenListEditor.tokens.subList(firstIndex, lastIndex).clear();
+    batch(new Runnable() {
+      @Override
+      public void run() {
+        myTokenListEditor.tokens.subList(firstIndex, lastIndex).clear();
+      }
+    });
 
     if (tokens().isEmpty()) {
       lastItemDeleted().run();
@@ -675,7 +791,19 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
   }
 
   TokenCompletion tokenCompletion() {
-    return new TokenCompletion(this);
+    if (myTokenCompletion == null) {
+      myTokenCompletion = new TokenCompletion(this);
+    }
+    return myTokenCompletion;
+  }
+
+  /**
+   * Token completion items are requested once and indexed, this method should be called when they change
+   */
+  public void invalidateTokenCompletion() {
+    if (myTokenCompletion != null) {
+      myTokenCompletion.invalidate();
+    }
   }
 
   TokenListEditor<SourceT> tokenListEditor() {
@@ -26,21 +26,31 @@ import jetbrains.jetpad.cell.completion.CompletionHelper;
 import jetbrains.jetpad.completion.CompletionController;
 import jetbrains.jetpad.completion.CompletionItem;
 import jetbrains.jetpad.completion.CompletionParameters;
+import jetbrains.jetpad.completion.CompletionIndex;
 import jetbrains.jetpad.completion.CompletionSupplier;
+import jetbrains.jetpad.completion.IndexedCompletionSupplier;
+import jetbrains.jetpad.completion.WrapperCompletionItem;
 import jetbrains.jetpad.hybrid.parser.Token;
 import jetbrains.jetpad.mapper.Mapper;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static jetbrains.jetpad.hybrid.SelectionPosition.FIRST;
 import static jetbrains.jetpad.hybrid.SelectionPosition.LAST;
 
 class TokenCompletion {
+  private static final Function<Token, Runnable> TOKEN_RESULT = new Function<Token, Runnable>() {
+    @Override
+    public Runnable apply(Token token) {
+      return new TokenResult(token);
+    }
+  };
+
   private HybridSynchronizer<?> mySync;
 
+  private HybridPositionSpec<?> myIndexedSpec;
+  private final Map<Integer, CompletionIndex> myTokenIndices = new HashMap<>();
+
   TokenCompletion(HybridSynchronizer<?> sync) {
     mySync = sync;
   }
@@ -57,15 +67,56 @@ class TokenCompletion {
     return mySync.tokenOperations();
   }
 
-  CompletionHelper completion(Function<Token, Runnable> handler) {
-    return new CompletionHelper(positionSpec().getTokenCompletion(handler), CompletionParameters.EMPTY);
+  CompletionHelper completion(final Function<Token, Runnable> handler) {
+    return new CompletionHelper(new IndexedCompletionSupplier() {
+      private final BoundItems myItems = new BoundItems(handler);
+
+      @Override
+      public List<CompletionItem> get(CompletionParameters cp) {
+        return myItems.bind(tokenIndex(cp).items());
+      }
+
+      @Override
+      public List<CompletionItem> prefixedBy(CompletionParameters cp, String prefix) {
+        return myItems.bind(tokenIndex(cp).prefixedBy(prefix));
+      }
+    }, CompletionParameters.EMPTY);
+  }
+
+  void invalidate() {
+    myIndexedSpec = null;
+    myTokenIndices.clear();
+  }
+
+  /**
+   * Token completion items are created once per position spec and completion parameters. Their handler only
+   * returns the completed token, the items are bound to a particular token handler with {@link BoundItems}.
+   */
+  private CompletionIndex tokenIndex(CompletionParameters cp) {
+    if (positionSpec() != myIndexedSpec) {
+      myIndexedSpec = positionSpec();
+      myTokenIndices.clear();
+    }
+
+    int key = (cp.isMenu() ? 1 : 0) | (cp.isEndRightTransform() ? 2 : 0);
+    CompletionIndex index = myTokenIndices.get(key);
+    if (index == null) {
+      index = new CompletionIndex(myIndexedSpec.getTokenCompletion(TOKEN_RESULT).get(cp));
+      myTokenIndices.put(key, index);
+    }
+    return index;
   }
 
   CompletionSupplier placeholderCompletion() {
     return tokenCompletion(new PlaceholderCompletionContext(), new BaseCompleter() {
       @Override
-      public Runnable complete(int selectionIndex, Token... tokens) {
-        tokenListEditor().tokens.addAll(Arrays.asList(tokens));
+      public Runnable complete(int selectionIndex, final Token... tokens) {
+        mySync.batch(new Runnable() {
+          @Override
+          public void run() {
+            tokenListEditor().tokens.addAll(Arrays.asList(tokens));
+          }
+        });
         tokenListEditor().updateToPrintedTokens();
 
         return tokenOperations().selectOnCreation(selectionIndex, LAST);
@@ -77,7 +128,7 @@ class TokenCompletion {
     final int index = mySync.tokenCells().indexOf(tokenCell);
     return tokenCompletion(new TokenCompletionContext(index), new BaseCompleter() {
       @Override
-      public Runnable complete(int selectionIndex, Token... tokens) {
+      public Runnable complete(int selectionIndex, final Token... tokens) {
         final int caretPosition;
         String oldText = null;
         SelectionPosition position = LAST;
@@ -100,11 +151,16 @@ class TokenCompletion {
         CompletionController controller = tokenCell.get(Completion.COMPLETION_CONTROLLER);
         final boolean wasCompletionActive = controller != null && controller.isActive();
 
-        tokenListEditor().tokens.remove(index);
-        int i = index;
-        for (Token t : tokens) {
-          tokenListEditor().tokens.add(i++, t);
-        }
+        mySync.batch(new Runnable() {
+          @Override
+          public void run() {
+            tokenListEditor().tokens.remove(index);
+            int i = index;
+            for (Token t : tokens) {
+              tokenListEditor().tokens.add(i++, t);
+            }
+          }
+        });
 
         tokenListEditor().updateToPrintedTokens();
 
@@ -142,11 +198,16 @@ class TokenCompletion {
       public List<CompletionItem> get(final CompletionParameters cp) {
         BaseCompleter completer = new BaseCompleter() {
           @Override
-          public Runnable complete(int selectionIndex, Token... tokens) {
-            int i = index + delta;
-            for (Token t : tokens) {
-              tokenListEditor().tokens.add(i++, t);
-            }
+          public Runnable complete(int selectionIndex, final Token... tokens) {
+            mySync.batch(new Runnable() {
+              @Override
+              public void run() {
+                int i = index + delta;
+                for (Token t : tokens) {
+                  tokenListEditor().tokens.add(i++, t);
+                }
+              }
+            });
             tokenListEditor().updateToPrintedTokens();
             Runnable result = tokenOperations().selectOnCreation(index + delta + selectionIndex, LAST);
             if (cp.isEndRightTransform()) {
@@ -166,23 +227,41 @@ class TokenCompletion {
   }
 
   private CompletionSupplier tokenCompletion(final CompletionContext ctx, final Completer completer) {
-    return new CompletionSupplier() {
+    return new IndexedCompletionSupplier() {
+      private final BoundItems myItems = new BoundItems(new Function<Token, Runnable>() {
+        @Override
+        public Runnable apply(Token input) {
+          return completer.complete(input);
+        }
+      });
+
       @Override
       public List<CompletionItem> get(CompletionParameters cp) {
         List<CompletionItem> result = new ArrayList<>();
         if (!(cp.isMenu() && mySync.isHideTokensInMenu())) {
-          result.addAll(positionSpec().getTokenCompletion(new Function<Token, Runnable>() {
-            @Override
-            public Runnable apply(Token input) {
-              return completer.complete(input);
-            }
-          }).get(cp));
+          result.addAll(myItems.bind(tokenIndex(cp).items()));
         }
         if (cp.isMenu()) {
           result.addAll(positionSpec().getAdditionalCompletion(ctx, completer).get(cp));
         }
         return result;
       }
+
+      @Override
+      public List<CompletionItem> prefixedBy(CompletionParameters cp, String prefix) {
+        List<CompletionItem> result = new ArrayList<>();
+        if (!(cp.isMenu() && mySync.isHideTokensInMenu())) {
+          result.addAll(myItems.bind(tokenIndex(cp).prefixedBy(prefix)));
+        }
+        if (cp.isMenu()) {
+          for (CompletionItem item : positionSpec().getAdditionalCompletion(ctx, completer).get(cp)) {
+            if (item.isMatchPrefix(prefix)) {
+              result.add(item);
+            }
+          }
+        }
+        return result;
+      }
     };
   }
 
@@ -215,6 +294,54 @@ class TokenCompletion {
     };
   }
 
+  /**
+   * Shared token items bound to a handler. A bound item is created once per shared one, so items returned
+   * by different queries can be compared by identity.
+   */
+  private class BoundItems {
+    private final Function<Token, Runnable> myHandler;
+    private final Map<CompletionItem, CompletionItem> myBound = new IdentityHashMap<>();
+
+    private BoundItems(Function<Token, Runnable> handler) {
+      myHandler = handler;
+    }
+
+    private List<CompletionItem> bind(List<CompletionItem> items) {
+      List<CompletionItem> result = new ArrayList<>(items.size());
+      for (CompletionItem item : items) {
+        CompletionItem bound = myBound.get(item);
+        if (bound == null) {
+          bound = new WrapperCompletionItem(item) {
+            @Override
+            public Runnable complete(String text) {
+              Runnable result = super.complete(text);
+              if (!(result instanceof TokenResult)) {
+                throw new IllegalStateException("Token completion item should return the result of its token handler");
+              }
+              return myHandler.apply(((TokenResult) result).myToken);
+            }
+          };
+          myBound.put(item, bound);
+        }
+        result.add(bound);
+      }
+      return result;
+    }
+  }
+
+  private static class TokenResult implements Runnable {
+    private final Token myToken;
+
+    private TokenResult(Token token) {
+      myToken = token;
+    }
+
+    @Override
+    public void run() {
+      throw new IllegalStateException("Token " + myToken + " isn't bound to a handler");
+    }
+  }
+
   private class PlaceholderCompletionContext implements CompletionContext {
     @Override
     public int getTargetIndex() {
@@ -16,9 +16,9 @@
 package jetbrains.jetpad.hybrid;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Range;
 import jetbrains.jetpad.hybrid.parser.prettyprint.PrettyPrinter;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
-import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.base.Registration;
@@ -26,6 +26,10 @@ import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.model.property.ReadableProperty;
 import jetbrains.jetpad.model.property.ValueProperty;
+import jetbrains.jetpad.projectional.base.util.ObservableGapList;
+import jetbrains.jetpad.hybrid.parser.ErrorRecoveringParser;
+import jetbrains.jetpad.hybrid.parser.IncrementalParser;
+import jetbrains.jetpad.hybrid.parser.Parser;
 import jetbrains.jetpad.hybrid.parser.ParsingContext;
 import jetbrains.jetpad.hybrid.parser.Token;
 import jetbrains.jetpad.hybrid.parser.ValueToken;
@@ -39,13 +43,19 @@ import java.util.List;
 class TokenListEditor<SourceT> {
   private Property<Boolean> myValid = new ValueProperty<>(true);
   private ParseNode myParseNode;
+  private ParseNode myPartialParseNode;
   private HybridPositionSpec<SourceT> mySpec;
   private boolean mySyncing;
   private List<Token> myPrintedTokens;
+  private PrettyPrinterContext<? super SourceT> myPrinted;
   private boolean myRestoringState;
   private Registration myChangeReg = Registration.EMPTY;
+  private Parser<SourceT> myParser;
+  private Parser<SourceT> myParserSession;
+  private int myBatchDepth;
+  private boolean myBatchChanged;
 
-  final ObservableList<Token> tokens = new ObservableArrayList<>();
+  final ObservableList<Token> tokens = new ObservableGapList<>();
   final Property<SourceT> value = new ValueProperty<>();
   final ReadableProperty<Boolean> valid = myValid;
 
@@ -55,6 +65,11 @@ class TokenListEditor<SourceT> {
     tokens.addHandler(new EventHandler<CollectionItemEvent<? extends Token>>() {
       @Override
       public void onEvent(CollectionItemEvent<? extends Token> event) {
+        if (mySyncing) return;
+        if (myBatchDepth > 0) {
+          myBatchChanged = true;
+          return;
+        }
         sync(new Runnable() {
           @Override
           public void run() {
@@ -81,6 +96,13 @@ class TokenListEditor<SourceT> {
     return myParseNode;
   }
 
+  /**
+   * Best effort structure of tokens which can't be parsed, null if tokens are valid or the parser can't recover
+   */
+  ParseNode partialParseNode() {
+    return myPartialParseNode;
+  }
+
   List<Object> objects() {
     if (myParseNode == null) return Collections.emptyList();
     List<Object> result = new ArrayList<>();
@@ -98,6 +120,32 @@ class TokenListEditor<SourceT> {
     }
   }
 
+  /**
+   * Runs r as a single edit: token changes made inside of it are reparsed once, when the outermost batch finishes
+   */
+  void batch(Runnable r) {
+    myBatchDepth++;
+    try {
+      r.run();
+    } finally {
+      myBatchDepth--;
+    }
+
+    if (myBatchDepth == 0 && myBatchChanged) {
+      myBatchChanged = false;
+      sync(new Runnable() {
+        @Override
+        public void run() {
+          reparse();
+        }
+      });
+    }
+  }
+
+  boolean isInBatch() {
+    return myBatchDepth > 0;
+  }
+
   private void sync(Runnable r) {
     if (mySyncing) return;
     mySyncing = true;
@@ -115,20 +163,15 @@ class TokenListEditor<SourceT> {
       value.set(null);
       myValid.set(true);
       myParseNode = null;
+      myPartialParseNode = null;
       myPrintedTokens = new ArrayList<>();
+      myPrinted = null;
       myChangeReg.remove();
       myChangeReg = Registration.EMPTY;
     } else {
-      List<Token> toParse = new ArrayList<>();
-      for (Token t : tokens) {
-        if (t instanceof ValueToken) {
-          toParse.add(((ValueToken) t).copy());
-        } else {
-          toParse.add(t);
-        }
-      }
-
-      SourceT result = mySpec.getParser().parse(new ParsingContext(toParse));
+      Parser<SourceT> parser = parser();
+      List<Token> toParse = tokensToParse(parser);
+      SourceT result = parser.parse(new ParsingContext(toParse));
       if (result != null) {
         value.set(result);
         myValid.set(true);
@@ -140,15 +183,87 @@ class TokenListEditor<SourceT> {
         myValid.set(false);
         myParseNode = null;
         myPrintedTokens = null;
+        if (parser instanceof ErrorRecoveringParser) {
+          myPartialParseNode = ((ErrorRecoveringParser<SourceT>) parser).parsePartially(new ParsingContext(toParse));
+        } else {
+          myPartialParseNode = null;
+        }
+      }
+    }
+  }
+
+  private List<Token> tokensToParse(Parser<SourceT> parser) {
+    if (parser == myParserSession) {
+      //a session copies only the value tokens which it hasn't seen yet
+      return new ArrayList<>(tokens);
+    }
+
+    List<Token> result = new ArrayList<>();
+    for (Token t : tokens) {
+      if (t instanceof ValueToken) {
+        result.add(((ValueToken) t).copy());
+      } else {
+        result.add(t);
       }
     }
+    return result;
+  }
+
+  private Parser<SourceT> parser() {
+    Parser<SourceT> parser = mySpec.getParser();
+    if (!(parser instanceof IncrementalParser)) return parser;
+    if (parser != myParser) {
+      myParser = parser;
+      myParserSession = ((IncrementalParser<SourceT>) parser).newSession();
+    }
+    return myParserSession;
   }
 
   private void update() {
     PrettyPrinterContext<? super SourceT> ctx = reprint();
     myValid.set(true);
-    tokens.clear();
-    tokens.addAll(ctx.tokens());
+    replaceTokens(ctx.tokens());
+  }
+
+  /**
+   * Reprints only a node whose change sources fired and replaces its range of tokens
+   */
+  private void update(ParseNode node) {
+    if (!myValid.get() || myPrintedTokens == null) {
+      update();
+      return;
+    }
+
+    Range<Integer> oldRange = node.range();
+    Range<Integer> newRange = myPrinted.reprint(node).range();
+    myParseNode = myPrinted.result();
+    myPartialParseNode = null;
+    replaceTokens(oldRange.lowerEndpoint(), oldRange.upperEndpoint(),
+        myPrintedTokens.subList(newRange.lowerEndpoint(), newRange.upperEndpoint()));
+  }
+
+  /**
+   * Changes tokens to newTokens touching only the part between their common prefix and suffix
+   */
+  void replaceTokens(List<Token> newTokens) {
+    replaceTokens(0, tokens.size(), newTokens);
+  }
+
+  private void replaceTokens(int start, int end, List<Token> newTokens) {
+    int prefix = 0;
+    int maxPrefix = Math.min(end - start, newTokens.size());
+    while (prefix < maxPrefix && Objects.equal(tokens.get(start + prefix), newTokens.get(prefix))) {
+      prefix++;
+    }
+
+    int suffix = 0;
+    int maxSuffix = maxPrefix - prefix;
+    while (suffix < maxSuffix && Objects.equal(tokens.get(end - 1 - suffix), newTokens.get(newTokens.size() - 1 - suffix))) {
+      suffix++;
+    }
+
+    tokens.subList(start + prefix, end - suffix).clear();
+    tokens.addAll(start + prefix, newTokens.subList(prefix, newTokens.size() - suffix));
   }
 
   private PrettyPrinterContext<? super SourceT> reprint() {
@@ -156,16 +271,18 @@ class TokenListEditor<SourceT> {
     PrettyPrinterContext<? super SourceT> ctx = new PrettyPrinterContext<>(printer);
     ctx.print(value.get());
     myParseNode = ctx.result();
+    myPartialParseNode = null;
     myPrintedTokens = ctx.tokens();
+    myPrinted = ctx;
 
     myChangeReg.remove();
-    myChangeReg = ctx.changeSource().addHandler(new EventHandler<Object>() {
+    myChangeReg = ctx.changedNodes().addHandler(new EventHandler<ParseNode>() {
       @Override
-      public void onEvent(Object event) {
+      public void onEvent(final ParseNode node) {
         sync(new Runnable() {
           @Override
           public void run() {
-            update();
+            update(node);
           }
         });
       }
@@ -199,8 +316,7 @@ class TokenListEditor<SourceT> {
     myRestoringState = true;
     try {
       if (state != null) {
-        tokens.clear();
-        tokens.addAll(state);
+        replaceTokens(state);
       } else if (!myValid.get()) {
         update();
       }
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.hybrid.parser;
+
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNode;
+
+/**
+ * Parser which can build a tree for tokens which don't form a valid expression
+ */
+public interface ErrorRecoveringParser<ResultT> extends Parser<ResultT> {
+  /**
+   * @return a best effort tree covering all tokens. Its leaves are tokens, other nodes hold values created
+   * by the parser, nodes for unparsable parts have null values.
+   */
+  ParseNode parsePartially(ParsingContext ctx);
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.hybrid.parser;
+
+/**
+ * Parser which can reuse results of the previous parse. A session remembers its last parse, so it
+ * should be created per edited token list.
+ *
+ * A session can reuse values of unchanged parts of the input, so it parses copies of {@link ValueToken}s itself,
+ * and the tokens should be passed to it as they are.
+ */
+public interface IncrementalParser<ResultT> extends Parser<ResultT> {
+  Parser<ResultT> newSession();
+}
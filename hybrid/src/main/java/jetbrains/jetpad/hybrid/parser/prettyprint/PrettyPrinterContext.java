@@ -27,6 +27,13 @@ import jetbrains.jetpad.model.property.Property;
 
 import java.util.*;
 
+/**
+ * Prints a node to a list of tokens and builds a {@link ParseNode} tree over them.
+ *
+ * Every node printed with its own {@link PrettyPrinter#print} call remembers the change sources it was appended from
+ * and its token range, so when one of them fires only this node is reprinted with {@link #reprint(ParseNode)}
+ * and spliced into the tokens and the tree, instead of printing everything again.
+ */
 public class PrettyPrinterContext<NodeT>  {
   private PrettyPrinter<NodeT> myPrettyPrinter;
 
@@ -35,6 +42,7 @@ public class PrettyPrinterContext<NodeT>  {
   public PrettyPrinterContext(PrettyPrinter<NodeT> pp) {
     this(new PrettyPrintResult(), pp);
     myResult.myStack.add(new ArrayList<BaseParseNode>());
+    myResult.mySources.add(new ArrayList<EventSource<?>>());
   }
 
   private PrettyPrinterContext(PrettyPrintResult result, PrettyPrinter<NodeT> pp) {
@@ -51,12 +59,7 @@ public class PrettyPrinterContext<NodeT>  {
       throw new IllegalStateException();
     }
 
-    print(obj, new Runnable() {
-      @Override
-      public void run() {
-        myPrettyPrinter.print(obj, PrettyPrinterContext.this);
-      }
-    });
+    printNode(obj);
 
     myResult.myPrinted = true;
   }
@@ -72,39 +75,29 @@ public class PrettyPrinterContext<NodeT>  {
   }
 
   public <ValueT> void append(Property<ValueT> prop, Function<ValueT, Token> f) {
-    myResult.myChangeSources.add(prop);
+    addChangeSource(prop);
 
     append(f.apply(prop.get()));
   }
 
   public void append(Property<? extends NodeT> prop) {
-    myResult.myChangeSources.add(prop);
+    addChangeSource(prop);
 
-    final NodeT value = prop.get();
+    NodeT value = prop.get();
     if (value == null) return;
-    print(value, new Runnable() {
-      @Override
-      public void run() {
-        myPrettyPrinter.print(value, PrettyPrinterContext.this);
-      }
-    });
+    printNode(value);
   }
 
   public void append(ObservableList<? extends NodeT> list) {
-    myResult.myChangeSources.add(list);
+    addChangeSource(list);
 
-    for (final NodeT e : list) {
-      print(e, new Runnable() {
-        @Override
-        public void run() {
-          myPrettyPrinter.print(e, PrettyPrinterContext.this);
-        }
-      });
+    for (NodeT e : list) {
+      printNode(e);
     }
   }
 
   public void append(final ObservableList<? extends NodeT> list, Token separator) {
-    myResult.myChangeSources.add(list);
+    addChangeSource(list);
     append((List<? extends NodeT>) list, separator);
   }
 
@@ -113,13 +106,7 @@ public class PrettyPrinterContext<NodeT>  {
       if (i != 0) {
         append(separator);
       }
-      final NodeT e = list.get(i);
-      print(e, new Runnable() {
-        @Override
-        public void run() {
-          myPrettyPrinter.print(e, PrettyPrinterContext.this);
-        }
-      });
+      printNode(list.get(i));
     }
   }
 
@@ -159,17 +146,27 @@ public class PrettyPrinterContext<NodeT>  {
     });
   }
 
-  private void print(NodeT obj, Runnable r) {
+  private void addChangeSource(EventSource<?> source) {
+    myResult.mySources.peek().add(source);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void printNode(NodeT obj) {
+    int start = myResult.myTokens.size();
     myResult.myStack.push(new ArrayList<BaseParseNode>());
-    r.run();
+    myResult.mySources.push(new ArrayList<EventSource<?>>());
+    myPrettyPrinter.print(obj, this);
+    List<EventSource<?>> sources = myResult.mySources.pop();
     List<BaseParseNode> nodes = myResult.myStack.pop();
 
-    BaseParseNode result;
+    PrintedParseNode result;
     if (nodes.isEmpty()) {
-      result = new EmptyParseNode(obj, myResult.myTokens.size());
+      result = new EmptyParseNode(obj, start);
     } else {
-      result = new CompositeParseNode(obj, nodes);
+      result = new CompositeParseNode(obj, nodes, start, myResult.myTokens.size() - start);
     }
+    result.myPrinter = (PrettyPrinter<Object>) (PrettyPrinter<?>) myPrettyPrinter;
+    result.mySources = sources.isEmpty() ? Collections.<EventSource<?>>emptyList() : sources;
     myResult.myStack.peek().add(result);
   }
 
@@ -180,6 +177,10 @@ public class PrettyPrinterContext<NodeT>  {
 
   public ParseNode result() {
     ensurePrinted();
+    return root();
+  }
+
+  private BaseParseNode root() {
     if (myResult.myStack.size() != 1 || myResult.myStack.peek().size() != 1) {
       throw new IllegalStateException();
     }
@@ -190,8 +191,12 @@ public class PrettyPrinterContext<NodeT>  {
     return new EventSource<Object>() {
       @Override
       public Registration addHandler(EventHandler<? super Object> handler) {
+        List<EventSource<?>> sources = new ArrayList<>(myResult.mySources.peek());
+        if (myResult.myPrinted) {
+          collectSources(root(), sources);
+        }
         CompositeRegistration reg = new CompositeRegistration();
-        for (EventSource<?> s : myResult.myChangeSources) {
+        for (EventSource<?> s : sources) {
           reg.add(s.addHandler(handler));
         }
         return reg;
@@ -199,6 +204,129 @@ public class PrettyPrinterContext<NodeT>  {
     };
   }
 
+  private void collectSources(BaseParseNode node, List<EventSource<?>> result) {
+    if (node instanceof PrintedParseNode) {
+      result.addAll(((PrintedParseNode) node).mySources);
+    }
+    if (node instanceof CompositeParseNode) {
+      for (BaseParseNode child : ((CompositeParseNode) node).myChildren) {
+        collectSources(child, result);
+      }
+    }
+  }
+
+  /**
+   * Fires a node when one of the change sources it was printed from fires. Such a node should be passed
+   * to {@link #reprint(ParseNode)}, the nodes inside of it don't fire anymore after that.
+   */
+  public EventSource<ParseNode> changedNodes() {
+    return new EventSource<ParseNode>() {
+      @Override
+      public Registration addHandler(final EventHandler<? super ParseNode> handler) {
+        ensurePrinted();
+        if (myResult.myNodeHandlers.isEmpty()) {
+          attach(root());
+        }
+        myResult.myNodeHandlers.add(handler);
+        return new Registration() {
+          @Override
+          public void remove() {
+            if (!myResult.myNodeHandlers.remove(handler)) return;
+            if (myResult.myNodeHandlers.isEmpty()) {
+              detach(root());
+            }
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Prints a node of the result again with the printer it was printed with. Its tokens are replaced in
+   * {@link #tokens()} and its subtree is replaced in {@link #result()}, the rest of the tree is kept.
+   *
+   * @return the node which replaced the given one
+   */
+  public ParseNode reprint(ParseNode node) {
+    ensurePrinted();
+    if (!(node instanceof PrintedParseNode) || !isAttached((BaseParseNode) node)) {
+      throw new IllegalArgumentException("Not a printed node of this context: " + node);
+    }
+
+    PrintedParseNode old = (PrintedParseNode) node;
+    PrettyPrintResult subResult = new PrettyPrintResult();
+    subResult.myStack.push(new ArrayList<BaseParseNode>());
+    subResult.mySources.push(new ArrayList<EventSource<?>>());
+    new PrettyPrinterContext<>(subResult, old.myPrinter).printNode(old.myValue);
+    PrintedParseNode replacement = (PrintedParseNode) subResult.myStack.peek().get(0);
+
+    int start = old.start();
+    List<Token> tokens = myResult.myTokens;
+    tokens.subList(start, start + old.length()).clear();
+    tokens.addAll(start, subResult.myTokens);
+
+    if (old.myParent == null) {
+      replacement.myOffset = old.myOffset;
+      myResult.myStack.peek().set(0, replacement);
+    } else {
+      old.myParent.replace(old, replacement);
+    }
+
+    if (!myResult.myNodeHandlers.isEmpty()) {
+      detach(old);
+      attach(replacement);
+    }
+    return replacement;
+  }
+
+  private boolean isAttached(BaseParseNode node) {
+    while (node.myParent != null) {
+      node = node.myParent;
+    }
+    return node == root();
+  }
+
+  private void attach(BaseParseNode node) {
+    if (node instanceof PrintedParseNode) {
+      final PrintedParseNode printed = (PrintedParseNode) node;
+      if (!printed.mySources.isEmpty()) {
+        EventHandler<Object> handler = new EventHandler<Object>() {
+          @Override
+          public void onEvent(Object event) {
+            for (EventHandler<? super ParseNode> h : new ArrayList<>(myResult.myNodeHandlers)) {
+              h.onEvent(printed);
+            }
+          }
+        };
+        CompositeRegistration reg = new CompositeRegistration();
+        for (EventSource<?> s : printed.mySources) {
+          reg.add(s.addHandler(handler));
+        }
+        printed.myRegistration = reg;
+      }
+    }
+    if (node instanceof CompositeParseNode) {
+      for (BaseParseNode child : ((CompositeParseNode) node).myChildren) {
+        attach(child);
+      }
+    }
+  }
+
+  private void detach(BaseParseNode node) {
+    if (node instanceof PrintedParseNode) {
+      PrintedParseNode printed = (PrintedParseNode) node;
+      if (printed.myRegistration != null) {
+        printed.myRegistration.remove();
+        printed.myRegistration = null;
+      }
+    }
+    if (node instanceof CompositeParseNode) {
+      for (BaseParseNode child : ((CompositeParseNode) node).myChildren) {
+        detach(child);
+      }
+    }
+  }
+
   private void ensurePrinted() {
     if (!myResult.myPrinted) {
       throw new IllegalStateException();
@@ -208,49 +336,100 @@ public class PrettyPrinterContext<NodeT>  {
   private static class PrettyPrintResult {
     private List<Token> myTokens = new ArrayList<>();
     private Stack<List<BaseParseNode>> myStack = new Stack<>();
+    private Stack<List<EventSource<?>>> mySources = new Stack<>();
     private boolean myPrinted;
-    private List<EventSource<?>> myChangeSources = new ArrayList<>();
+    private List<EventHandler<? super ParseNode>> myNodeHandlers = new ArrayList<>();
   }
 
   private static abstract class BaseParseNode implements ParseNode {
-    private BaseParseNode myParent;
+    CompositeParseNode myParent;
+    //relative to the parent's start, absolute for a root
+    int myOffset;
+
+    private BaseParseNode(int offset) {
+      myOffset = offset;
+    }
 
     @Override
     public ParseNode parent() {
       return myParent;
     }
+
+    int start() {
+      return myParent == null ? myOffset : myParent.start() + myOffset;
+    }
+
+    abstract int length();
+
+    @Override
+    public Range<Integer> range() {
+      int start = start();
+      return Range.closed(start, start + length());
+    }
   }
 
-  private static class CompositeParseNode extends BaseParseNode {
+  private static abstract class PrintedParseNode extends BaseParseNode {
     private Object myValue;
-    private List<ParseNode> myChildren = new ArrayList<>();
+    private PrettyPrinter<Object> myPrinter;
+    private List<EventSource<?>> mySources;
+    private Registration myRegistration;
 
-    private CompositeParseNode(Object value, List<BaseParseNode> children) {
+    private PrintedParseNode(Object value, int offset) {
+      super(offset);
       myValue = value;
+    }
+
+    @Override
+    public Object value() {
+      return myValue;
+    }
+  }
+
+  private static class CompositeParseNode extends PrintedParseNode {
+    private List<BaseParseNode> myChildren = new ArrayList<>();
+    private int myLength;
+
+    private CompositeParseNode(Object value, List<BaseParseNode> children, int offset, int length) {
+      super(value, offset);
       if (children.isEmpty()) {
         throw new IllegalArgumentException();
       }
+      myLength = length;
       for (BaseParseNode n : children) {
         n.myParent = this;
+        n.myOffset -= offset;
         myChildren.add(n);
       }
     }
 
     @Override
-    public Object value() {
-      return myValue;
+    public List<ParseNode> children() {
+      return Collections.<ParseNode>unmodifiableList(myChildren);
     }
 
     @Override
-    public List<ParseNode> children() {
-      return Collections.unmodifiableList(myChildren);
+    int length() {
+      return myLength;
     }
 
-    @Override
-    public Range<Integer> range() {
-      int start = myChildren.get(0).range().lowerEndpoint();
-      int end = myChildren.get(myChildren.size() - 1).range().upperEndpoint();
-      return Range.closed(start, end);
+    private void replace(BaseParseNode oldChild, BaseParseNode newChild) {
+      int index = myChildren.indexOf(oldChild);
+      newChild.myParent = this;
+      newChild.myOffset = oldChild.myOffset;
+      oldChild.myParent = null;
+      myChildren.set(index, newChild);
+      resize(index, newChild.length() - oldChild.length());
+    }
+
+    private void resize(int index, int delta) {
+      if (delta == 0) return;
+      for (int i = index + 1; i < myChildren.size(); i++) {
+        myChildren.get(i).myOffset += delta;
+      }
+      myLength += delta;
+      if (myParent != null) {
+        myParent.resize(myParent.myChildren.indexOf(this), delta);
+      }
     }
 
     @Override
@@ -259,18 +438,9 @@ public class PrettyPrinterContext<NodeT>  {
     }
   }
 
-  private static class EmptyParseNode extends BaseParseNode {
-    private int myOffset;
-    private Object myValue;
-
+  private static class EmptyParseNode extends PrintedParseNode {
     private EmptyParseNode(Object value, int offset) {
-      myOffset = offset;
-      myValue = value;
-    }
-
-    @Override
-    public Object value() {
-      return myValue;
+      super(value, offset);
     }
 
     @Override
@@ -279,8 +449,8 @@ public class PrettyPrinterContext<NodeT>  {
     }
 
     @Override
-    public Range<Integer> range() {
-      return Range.closed(myOffset, myOffset);
+    int length() {
+      return 0;
     }
 
     @Override
@@ -291,11 +461,10 @@ public class PrettyPrinterContext<NodeT>  {
 
   private static class TokenParseNode extends BaseParseNode {
     private Token myToken;
-    private int myOffset;
 
     private TokenParseNode(Token token, int offset) {
+      super(offset);
       myToken = token;
-      myOffset = offset;
     }
 
     @Override
@@ -309,8 +478,8 @@ public class PrettyPrinterContext<NodeT>  {
     }
 
     @Override
-    public Range<Integer> range() {
-      return Range.closed(myOffset, myOffset + 1);
+    int length() {
+      return 1;
     }
 
     @Override
@@ -318,4 +487,4 @@ public class PrettyPrinterContext<NodeT>  {
       return "" + myToken;
     }
   }
-}
\ No newline at end of file
+}
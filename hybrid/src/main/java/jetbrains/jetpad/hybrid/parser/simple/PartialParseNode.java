@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.hybrid.parser.simple;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.Terminal;
+import jetbrains.jetpad.grammar.parser.Lexeme;
+import jetbrains.jetpad.grammar.parser.ParseTreeNode;
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class PartialParseNode implements ParseNode {
+  private final ParseTreeNode myNode;
+  private final PartialParseNode myParent;
+  private final Range<Integer> myRange;
+  private List<ParseNode> myChildren;
+
+  PartialParseNode(ParseTreeNode node, PartialParseNode parent, Range<Integer> range) {
+    myNode = node;
+    myParent = parent;
+    myRange = range;
+  }
+
+  @Override
+  public ParseNode parent() {
+    return myParent;
+  }
+
+  @Override
+  public Object value() {
+    if (myNode.isError()) return null;
+    Object value = myNode.getValue();
+    if (myNode.getSymbol() instanceof Terminal && value instanceof Lexeme) {
+      return ((Lexeme) value).getValue();
+    }
+    return value;
+  }
+
+  @Override
+  public List<ParseNode> children() {
+    if (myChildren == null) {
+      List<ParseNode> children = new ArrayList<>(myNode.getChildren().size());
+      for (ParseTreeNode child : myNode.getChildren()) {
+        children.add(new PartialParseNode(child, this, child.getRange()));
+      }
+      myChildren = Collections.unmodifiableList(children);
+    }
+    return myChildren;
+  }
+
+  @Override
+  public Range<Integer> range() {
+    return myRange;
+  }
+
+  @Override
+  public String toString() {
+    return "" + myNode;
+  }
+}
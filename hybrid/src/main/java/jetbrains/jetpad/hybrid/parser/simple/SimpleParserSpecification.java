@@ -17,18 +17,27 @@ package jetbrains.jetpad.hybrid.parser.simple;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Range;
 import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.grammar.*;
 import jetbrains.jetpad.grammar.base.BaseLRTableGenerator;
 import jetbrains.jetpad.grammar.lr1.LR1TableGenerator;
-import jetbrains.jetpad.grammar.parser.LRParser;
+import jetbrains.jetpad.grammar.parser.CompiledLRParser;
+import jetbrains.jetpad.grammar.parser.CompiledLRParserTable;
+import jetbrains.jetpad.grammar.parser.IncrementalLRParser;
 import jetbrains.jetpad.grammar.parser.LRParserTable;
+import jetbrains.jetpad.grammar.parser.LRParserTableFormat;
 import jetbrains.jetpad.grammar.parser.Lexeme;
+import jetbrains.jetpad.grammar.parser.PartialParseResult;
+import jetbrains.jetpad.grammar.parser.RecoveringLRParser;
 import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
 import jetbrains.jetpad.hybrid.parser.*;
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNode;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +53,8 @@ public class SimpleParserSpecification<ExprT> {
   private Map<Predicate<Token>, Terminal> myCustomTokens = new HashMap<>();
 
   private boolean myUserFullLR;
+  private String myPrecompiledTable;
+  private boolean myReuseValues;
 
   public SimpleParserSpecification() {
     this(false);
@@ -161,7 +172,7 @@ public class SimpleParserSpecification<ExprT> {
     return result;
   }
 
-  private Lexeme getLexeme(Token token) {
+  private Terminal getTerminal(Token token) {
     Terminal terminal;
     if (token instanceof IdentifierToken) {
       terminal = myId;
@@ -184,14 +195,42 @@ public class SimpleParserSpecification<ExprT> {
     if (terminal == null) {
       terminal = myError;
     }
+    return terminal;
+  }
 
-    return new Lexeme(terminal, token);
+  /**
+   * Use a table produced by {@link LRParserTableFormat#toText(LRParserTable)} instead of generating one.
+   * If the table was generated for another version of the grammar, it's ignored and the table is generated.
+   */
+  public SimpleParserSpecification<ExprT> usePrecompiledTable(String table) {
+    myPrecompiledTable = table;
+    return this;
   }
 
-  private LRParserTable buildTable() {
+  /**
+   * Makes sessions reuse values of unchanged subtrees, so factories and handlers run only for the changed
+   * part of the input. Should be set only if values can be shared between parse results, e.g. it's not
+   * possible if a value becomes a child of the value it's passed to.
+   */
+  public SimpleParserSpecification<ExprT> setReuseValues(boolean reuseValues) {
+    myReuseValues = reuseValues;
+    return this;
+  }
+
+  public LRParserTable generateTable() {
     return createGenerator().generateTable();
   }
 
+  private LRParserTable buildTable() {
+    final BaseLRTableGenerator<?> generator = createGenerator();
+    return LRParserTableFormat.load(myGrammar, generator.getKind(), myPrecompiledTable, new Supplier<LRParserTable>() {
+      @Override
+      public LRParserTable get() {
+        return generator.generateTable();
+      }
+    });
+  }
+
   private BaseLRTableGenerator<?> createGenerator() {
     BaseLRTableGenerator<?> generator;
     if (myUserFullLR) {
@@ -208,32 +247,131 @@ public class SimpleParserSpecification<ExprT> {
 
   public Function<ParserParameters, Parser<ExprT>> buildParameterizedParser() {
     final LRParserTable table = buildTable();
+    final CompiledLRParserTable compiledTable = new CompiledLRParserTable(table);
     return new Function<ParserParameters, Parser<ExprT>>() {
       @Override
-      public Parser<ExprT> apply(final ParserParameters parserParameters) {
-        return new Parser<ExprT>() {
-          @Override
-          public ExprT parse(ParsingContext ctx) {
-            LRParser parser = new LRParser(table, parserParameters);
-            return (ExprT) parser.parse(toLexemes(ctx));
-          }
-        };
+      public Parser<ExprT> apply(ParserParameters parserParameters) {
+        return new SimpleParser(table, compiledTable, parserParameters);
       }
     };
   }
 
+  private ParseNode parsePartially(LRParserTable table, ParserParameters params, List<Lexeme> lexemes) {
+    PartialParseResult result = new RecoveringLRParser(table, myError, params).parse(lexemes);
+    return new PartialParseNode(result.getTree(), null, Range.closed(0, lexemes.size() - 1));
+  }
+
+  public Parser<ExprT> buildParser() {
+    return buildParameterizedParser().apply(ParserParameters.EMPTY);
+  }
+
   private List<Lexeme> toLexemes(ParsingContext ctx) {
-    List<Lexeme> lexemes = new ArrayList<>();
+    List<Lexeme> result = new ArrayList<>();
     while (ctx.current() != null) {
-      lexemes.add(getLexeme(ctx.current()));
+      Token token = ctx.current();
+      result.add(new Lexeme(getTerminal(token), token));
       ctx.advance();
     }
-    lexemes.add(new Lexeme(myGrammar.getEnd(), null));
-    return lexemes;
+    result.add(new Lexeme(myGrammar.getEnd(), null));
+    return result;
   }
 
-  public Parser<ExprT> buildParser() {
-    return buildParameterizedParser().apply(ParserParameters.EMPTY);
+  /**
+   * Parsers are often shared, so a parser keeps no state between calls. Lexemes and the parser stack
+   * are reused only within sessions.
+   */
+  private class SimpleParser implements IncrementalParser<ExprT>, ErrorRecoveringParser<ExprT> {
+    private final LRParserTable myTable;
+    private final CompiledLRParserTable myCompiledTable;
+    private final ParserParameters myParameters;
+
+    private SimpleParser(LRParserTable table, CompiledLRParserTable compiledTable, ParserParameters params) {
+      myTable = table;
+      myCompiledTable = compiledTable;
+      myParameters = params;
+    }
+
+    @Override
+    public ExprT parse(ParsingContext ctx) {
+      return (ExprT) new CompiledLRParser(myCompiledTable, myParameters).parse(toLexemes(ctx));
+    }
+
+    @Override
+    public ParseNode parsePartially(ParsingContext ctx) {
+      return SimpleParserSpecification.this.parsePartially(myTable, myParameters, toLexemes(ctx));
+    }
+
+    @Override
+    public Parser<ExprT> newSession() {
+      final IncrementalLRParser parser = new IncrementalLRParser(myCompiledTable, myParameters).setReuseValues(myReuseValues);
+      final LexemeCache lexemes = new LexemeCache(myReuseValues);
+      return new ErrorRecoveringParser<ExprT>() {
+        @Override
+        public ExprT parse(ParsingContext ctx) {
+          return (ExprT) parser.parse(lexemes.toLexemes(ctx));
+        }
+
+        @Override
+        public ParseNode parsePartially(ParsingContext ctx) {
+          return SimpleParserSpecification.this.parsePartially(myTable, myParameters, lexemes.toLexemes(ctx));
+        }
+      };
+    }
+  }
+
+  /**
+   * Converts tokens to lexemes reusing the lexemes of the previous conversion for the same token instances,
+   * so a terminal is looked up and a lexeme is created only for tokens which weren't there before.
+   * The returned list is valid until the next conversion, so a cache is owned by a single session.
+   *
+   * A lexeme of a {@link ValueToken} holds a copy of the token, since its value becomes a part of the result.
+   * The copy is kept while values are reused, so an unchanged value token doesn't break reuse of its subtree.
+   */
+  private class LexemeCache {
+    private final boolean myReuseValues;
+    private Map<Token, Lexeme> myLexemes = new IdentityHashMap<>();
+    private Map<Token, Lexeme> myPreviousLexemes = new IdentityHashMap<>();
+    private final List<Lexeme> myResult = new ArrayList<>();
+    private final Lexeme myEnd = new Lexeme(myGrammar.getEnd(), null);
+
+    private LexemeCache(boolean reuseValues) {
+      myReuseValues = reuseValues;
+    }
+
+    List<Lexeme> toLexemes(ParsingContext ctx) {
+      Map<Token, Lexeme> previous = myLexemes;
+      myLexemes = myPreviousLexemes;
+      myPreviousLexemes = previous;
+      myLexemes.clear();
+      myResult.clear();
+
+      while (ctx.current() != null) {
+        Token token = ctx.current();
+        Lexeme lexeme;
+        if (token instanceof ValueToken) {
+          //every occurrence needs its own copy, so a copy is taken from the previous conversion at most once
+          lexeme = myReuseValues ? myPreviousLexemes.remove(token) : null;
+          if (lexeme == null) {
+            lexeme = new Lexeme(getTerminal(token), ((ValueToken) token).copy());
+          }
+          myLexemes.put(token, lexeme);
+        } else {
+          lexeme = myLexemes.get(token);
+          if (lexeme == null) {
+            lexeme = myPreviousLexemes.get(token);
+            if (lexeme == null) {
+              lexeme = new Lexeme(getTerminal(token), token);
+            }
+            myLexemes.put(token, lexeme);
+          }
+        }
+        myResult.add(lexeme);
+        ctx.advance();
+      }
+      myResult.add(myEnd);
+      myPreviousLexemes.clear();
+      return myResult;
+    }
   }
 
   public interface SimpleGrammarContext {
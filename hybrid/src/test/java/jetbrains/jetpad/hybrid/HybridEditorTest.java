@@ -882,6 +882,43 @@ public class HybridEditorTest extends EditingTestCase {
     assertNull(sync.getPair((TextTokenCell) tokenCell(0)));
   }
 
+  @Test
+  public void batchReplacesOnlyChangedCells() {
+    setTokens(Tokens.ID, Tokens.PLUS, Tokens.ID);
+    Cell first = tokenCell(0);
+    Cell last = tokenCell(2);
+
+    sync.batch(new Runnable() {
+      @Override
+      public void run() {
+        sync.tokenListEditor().tokens.remove(1);
+        sync.tokenListEditor().tokens.add(1, Tokens.MUL);
+      }
+    });
+
+    assertTokens(Tokens.ID, Tokens.MUL, Tokens.ID);
+    assertEquals(3, sync.tokenCells().size());
+    assertSame(first, tokenCell(0));
+    assertSame(last, tokenCell(2));
+    assertTrue(container.expr.get() instanceof MulExpr);
+  }
+
+  @Test
+  public void batchRemovingAllTokens() {
+    setTokens(Tokens.ID, Tokens.PLUS, Tokens.ID);
+
+    sync.batch(new Runnable() {
+      @Override
+      public void run() {
+        sync.tokenListEditor().tokens.clear();
+      }
+    });
+
+    assertTokens();
+    assertNotNull(sync.placeholder());
+    assertNull(container.expr.get());
+  }
+
   private ValueToken createComplexToken() {
     return new ValueToken(new ComplexValueExpr(), new ComplexValueCloner());
   }
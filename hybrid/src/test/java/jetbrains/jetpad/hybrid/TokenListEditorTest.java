@@ -20,7 +20,12 @@ import jetbrains.jetpad.hybrid.testapp.mapper.Tokens;
 import jetbrains.jetpad.hybrid.testapp.model.Expr;
 import jetbrains.jetpad.hybrid.testapp.model.NumberExpr;
 import jetbrains.jetpad.hybrid.testapp.model.PlusExpr;
+import com.google.common.collect.Range;
 import jetbrains.jetpad.hybrid.parser.IntValueToken;
+import jetbrains.jetpad.hybrid.parser.Token;
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNode;
+import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -41,6 +46,47 @@ public class TokenListEditorTest {
     assertTrue(editor.valid.get());
   }
 
+  @Test
+  public void modelChangeReprintsChangedNode() {
+    PlusExpr plus = new PlusExpr();
+    plus.left.set(new NumberExpr());
+    NumberExpr right = new NumberExpr();
+    plus.right.set(right);
+    editor.value.set(plus);
+    Token left = editor.tokens.get(0);
+    ParseNode leftNode = editor.parseNode().children().get(0);
+
+    right.value.set(2);
+
+    assertEquals(Arrays.asList(new IntValueToken(0), Tokens.PLUS, new IntValueToken(2)), editor.tokens);
+    assertSame(left, editor.tokens.get(0));
+    assertSame(leftNode, editor.parseNode().children().get(0));
+    assertTrue(editor.valid.get());
+  }
+
+  @Test
+  public void nestedChangeShiftsRanges() {
+    PlusExpr plus = new PlusExpr();
+    PlusExpr left = new PlusExpr();
+    left.left.set(new NumberExpr());
+    left.right.set(new NumberExpr());
+    plus.left.set(left);
+    plus.right.set(new NumberExpr());
+    editor.value.set(plus);
+
+    PlusExpr newRight = new PlusExpr();
+    newRight.left.set(new NumberExpr());
+    newRight.right.set(new NumberExpr());
+    left.right.set(newRight);
+
+    assertEquals(7, editor.tokens.size());
+    ParseNode root = editor.parseNode();
+    assertEquals(Range.closed(0, 7), root.range());
+    assertEquals(Range.closed(0, 5), root.children().get(0).range());
+    assertEquals(Range.closed(2, 5), root.children().get(0).children().get(2).range());
+    assertEquals(Range.closed(6, 7), root.children().get(2).range());
+  }
+
   @Test
   public void errorParsing() {
     editor.tokens.add(Tokens.PLUS);
@@ -56,4 +102,28 @@ public class TokenListEditorTest {
     assertNotNull(editor.value.get());
     assertTrue(editor.valid.get());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void batchParsesOnce() {
+    final int[] changes = new int[1];
+    editor.value.addHandler(new EventHandler<PropertyChangeEvent<Expr>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<Expr> event) {
+        changes[0]++;
+      }
+    });
+
+    editor.batch(new Runnable() {
+      @Override
+      public void run() {
+        editor.tokens.add(new IntValueToken(2));
+        editor.tokens.add(Tokens.PLUS);
+        editor.tokens.add(new IntValueToken(3));
+      }
+    });
+
+    assertEquals(1, changes[0]);
+    assertTrue(editor.value.get() instanceof PlusExpr);
+    assertTrue(editor.valid.get());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.hybrid.parser.simple;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.base.Handler;
+import jetbrains.jetpad.grammar.ParserParameters;
+import jetbrains.jetpad.grammar.RuleContext;
+import jetbrains.jetpad.grammar.RuleHandler;
+import jetbrains.jetpad.grammar.parser.Lexeme;
+import jetbrains.jetpad.hybrid.parser.ErrorRecoveringParser;
+import jetbrains.jetpad.hybrid.parser.IdentifierToken;
+import jetbrains.jetpad.hybrid.parser.IncrementalParser;
+import jetbrains.jetpad.hybrid.parser.Parser;
+import jetbrains.jetpad.hybrid.parser.ParsingContext;
+import jetbrains.jetpad.hybrid.parser.Token;
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNode;
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNodes;
+import jetbrains.jetpad.hybrid.testapp.mapper.Tokens;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimpleParserSpecificationTest {
+  private final IdentifierToken a = new IdentifierToken("a");
+  private final IdentifierToken b = new IdentifierToken("b");
+  private final List<Lexeme> idLexemes = new ArrayList<>();
+
+  private final SimpleParserSpecification<String> spec = new SimpleParserSpecification<String>()
+    .addBinaryOperator(Tokens.PLUS, new BinaryExpressionFactory<String>() {
+      @Override
+      public String create(ParserParameters params, String left, String right) {
+        return "(" + left + " + " + right + ")";
+      }
+    }, 0, true)
+    .changeGrammar(new Handler<SimpleParserSpecification.SimpleGrammarContext>() {
+      @Override
+      public void handle(SimpleParserSpecification.SimpleGrammarContext ctx) {
+        ctx.grammar().newRule(ctx.expr(), ctx.id()).setHandler(new RuleHandler() {
+          @Override
+          public Object handle(RuleContext ctx) {
+            Lexeme lexeme = (Lexeme) ctx.get(0);
+            idLexemes.add(lexeme);
+            return ((IdentifierToken) lexeme.getValue()).getName();
+          }
+        });
+      }
+    });
+
+  @Test
+  public void validTokens() {
+    assertEquals("(a + b)", parse(spec.buildParser(), a, Tokens.PLUS, b));
+  }
+
+  @Test
+  public void parserIsReusable() {
+    Parser<String> parser = spec.buildParser();
+
+    assertEquals("(a + b)", parse(parser, a, Tokens.PLUS, b));
+    assertNull(parse(parser, a, Tokens.PLUS));
+    assertEquals("((a + a) + b)", parse(parser, a, Tokens.PLUS, a, Tokens.PLUS, b));
+    assertEquals("(b + a)", parse(parser, b, Tokens.PLUS, a));
+  }
+
+  @Test
+  public void sessionReusesLexemesForSameTokens() {
+    Parser<String> session = ((IncrementalParser<String>) spec.buildParser()).newSession();
+    parse(session, a, Tokens.PLUS, b);
+    parse(session, b, Tokens.PLUS, a);
+
+    assertEquals(4, idLexemes.size());
+    assertSame(idLexemes.get(0), idLexemes.get(3));
+    assertSame(idLexemes.get(1), idLexemes.get(2));
+  }
+
+  @Test
+  public void sessionReusesValuesOfUnchangedSubtreesIfTurnedOn() {
+    Parser<String> session = ((IncrementalParser<String>) spec.setReuseValues(true).buildParser()).newSession();
+    parse(session, a, Tokens.PLUS, b);
+    assertEquals("(c + b)", parse(session, new IdentifierToken("c"), Tokens.PLUS, b));
+
+    assertEquals(3, idLexemes.size());
+  }
+
+  @Test
+  public void sessionDoesNotReuseValuesByDefault() {
+    Parser<String> session = ((IncrementalParser<String>) spec.buildParser()).newSession();
+    parse(session, a, Tokens.PLUS, b);
+    assertEquals("(c + b)", parse(session, new IdentifierToken("c"), Tokens.PLUS, b));
+
+    assertEquals(4, idLexemes.size());
+  }
+
+  @Test
+  public void parserKeepsNoLexemes() {
+    Parser<String> parser = spec.buildParser();
+    parse(parser, a, Tokens.PLUS, b);
+    parse(parser, a, Tokens.PLUS, b);
+
+    assertEquals(4, idLexemes.size());
+    assertNotSame(idLexemes.get(0), idLexemes.get(2));
+  }
+
+  @Test
+  public void partialTreeCoversAllTokens() {
+    ErrorRecoveringParser<String> parser = (ErrorRecoveringParser<String>) spec.buildParser();
+    assertNull(parse(parser, a, Tokens.PLUS, Tokens.PLUS, b));
+
+    ParseNode root = parser.parsePartially(context(a, Tokens.PLUS, Tokens.PLUS, b));
+
+    assertEquals(Range.closed(0, 4), root.range());
+    assertSame(b, ParseNodes.findForRange(root, Range.closed(3, 4)).value());
+  }
+
+  @Test
+  public void partialTreeOfIncompleteExpression() {
+    ErrorRecoveringParser<String> parser = (ErrorRecoveringParser<String>) spec.buildParser();
+
+    ParseNode root = parser.parsePartially(context(a, Tokens.PLUS));
+
+    assertEquals(Range.closed(0, 2), root.range());
+    assertNull(root.value());
+    ParseNode aNode = ParseNodes.findForRange(root, Range.closed(0, 1));
+    assertSame(a, aNode.value());
+    assertEquals("a", aNode.parent().value());
+    assertSame(Tokens.PLUS, ParseNodes.findForRange(root, Range.closed(1, 2)).value());
+  }
+
+  @Test
+  public void sessionRecoversToo() {
+    Parser<String> session = ((IncrementalParser<String>) spec.buildParser()).newSession();
+
+    assertTrue(session instanceof ErrorRecoveringParser);
+    assertNotNull(((ErrorRecoveringParser<String>) session).parsePartially(context(Tokens.PLUS)));
+  }
+
+  private String parse(Parser<String> parser, Token... tokens) {
+    return parser.parse(context(tokens));
+  }
+
+  private ParsingContext context(Token... tokens) {
+    return new ParsingContext(Arrays.asList(tokens));
+  }
+}
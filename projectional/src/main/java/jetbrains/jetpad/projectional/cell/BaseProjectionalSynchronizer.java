@@ -59,6 +59,8 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
   private Function<SourceItemT, SourceItemT> myCloner;
   private Runnable myOnLastItemDeleted;
   private List<Cell> myTargetList;
+  private ListIndex<SourceItemT> mySourceIndex;
+  private ListIndex<Cell> myTargetIndex;
   private Character mySeparatorChar;
 
   BaseProjectionalSynchronizer(
@@ -71,9 +73,11 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     myTarget = target;
     myTargetList = targetList;
     myTargetCellList = new TargetViewList();
+    mySourceIndex = new ListIndex<>(new SourceList(), true);
+    myTargetIndex = new ListIndex<>(myTargetList, true);
     myRoleSynchronizer = createSubSynchronizer(myMapper, source, myTargetCellList, factory);
 
-    mySelectionSupport = new SelectionSupport<>(new SourceList(), myTarget, myTargetList);
+    mySelectionSupport = new SelectionSupport<>(new SourceList(), mySourceIndex, myTarget, myTargetList, myTargetIndex);
     mySelectedItems = mySelectionSupport.selection();
 
     mySelectedItems.addListener(new CollectionAdapter<SourceItemT>() {
@@ -151,13 +155,8 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     return myRoleSynchronizer.getMappers();
   }
 
-  private int indexOf(SourceItemT item) {
-    List<Mapper<? extends SourceItemT, ? extends Cell>> subMappers = getSubMappers();
-    for (int i = 0; i < subMappers.size(); i++) {
-      Mapper<? extends SourceItemT, ? extends Cell> m = subMappers.get(i);
-      if (m.getSource() == item) return i;
-    }
-    return -1;
+  protected int indexOf(SourceItemT item) {
+    return mySourceIndex.indexOf(item);
   }
 
   private void initChildViews() {
@@ -222,7 +221,7 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     Cell focused = myTarget.cellContainer().get().focusedCell.get();
     if (focused == null) return null;
     if (focused.getParent() == myTarget && !myTargetCellList.myHasPlaceholder) {
-      int index = myTargetList.indexOf(focused);
+      int index = myTargetIndex.indexOf(focused);
       return myRoleSynchronizer.getMappers().get(index).getSource();
     } else {
       return null;
@@ -502,6 +501,17 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
       return getList().size();
     }
 
+    @Override
+    public int indexOf(Object o) {
+      if (myHasPlaceholder) return -1;
+      return myTargetIndex.indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) != -1;
+    }
+
     @Override
     public void add(int index, Cell element) {
       if (myHasPlaceholder) {
@@ -509,6 +519,7 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
         myHasPlaceholder = false;
       }
       getList().add(index, element);
+      changed(index);
 
       registerChild(getSubMappers().get(index).getSource(), element);
     }
@@ -516,6 +527,7 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     @Override
     public Cell remove(int index) {
       Cell result = getList().remove(index);
+      changed(index);
       if (getList().isEmpty()) {
         getList().add(createPlaceholder());
         myHasPlaceholder = true;
@@ -529,6 +541,11 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
       add(index, element);
       return result;
     }
+
+    private void changed(int index) {
+      mySourceIndex.changed(index);
+      myTargetIndex.changed(index);
+    }
   }
 
   private class SourceList extends AbstractList<SourceItemT> {
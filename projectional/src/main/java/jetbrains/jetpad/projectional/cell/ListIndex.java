@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.cell;
+
+import jetbrains.jetpad.model.collections.CollectionAdapter;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.collections.list.ObservableList;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Identity index of a list's items. A change only bumps a version, positions starting from the first changed one
+ * are recomputed lazily on the next lookup, so lookups between changes are O(1).
+ *
+ * A position is checked against the list before it's returned, so a change which wasn't reported leads
+ * to a full reindexing rather than to a wrong result. An index is tracked if all the changes of its list are
+ * reported, only then a missing item is found in O(1). Otherwise a lookup of a missing item reindexes the list.
+ */
+class ListIndex<ItemT> {
+  /**
+   * Creates an index which is tracked if the list is observable
+   */
+  static <ItemT> ListIndex<ItemT> forList(List<? extends ItemT> list) {
+    ListIndex<ItemT> result = new ListIndex<>(list, list instanceof ObservableList);
+    if (list instanceof ObservableList) {
+      result.listen((ObservableList<?>) list);
+    }
+    return result;
+  }
+
+  private final List<? extends ItemT> myList;
+  private final boolean myTracked;
+  private final Map<Object, Integer> myPositions = new IdentityHashMap<>();
+  private int myVersion;
+  private int myIndexedVersion = -1;
+  private int myIndexedTo;
+
+  ListIndex(List<? extends ItemT> list, boolean tracked) {
+    myList = list;
+    myTracked = tracked;
+  }
+
+  private <T> void listen(ObservableList<T> list) {
+    list.addListener(new CollectionAdapter<T>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<? extends T> event) {
+        changed(event.getIndex());
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends T> event) {
+        changed(event.getIndex());
+      }
+    });
+  }
+
+  void changed(int index) {
+    myVersion++;
+    myIndexedTo = Math.min(myIndexedTo, index);
+  }
+
+  int indexOf(Object item) {
+    Integer position = myPositions.get(item);
+    if (position != null && position < myIndexedTo && isAt(item, position)) return position;
+
+    if (myIndexedVersion != myVersion) {
+      if (myPositions.size() > 2 * myList.size()) {
+        //drop positions of removed items
+        myPositions.clear();
+        myIndexedTo = 0;
+      }
+      reindex();
+      position = myPositions.get(item);
+      if (position != null && isAt(item, position)) return position;
+    }
+
+    //the index is up to date, so an item without a position isn't in the list
+    if (myTracked && position == null) return -1;
+
+    myPositions.clear();
+    myIndexedTo = 0;
+    reindex();
+    position = myPositions.get(item);
+    return position != null ? position : -1;
+  }
+
+  private boolean isAt(Object item, int position) {
+    return position < myList.size() && myList.get(position) == item;
+  }
+
+  private void reindex() {
+    int size = myList.size();
+    for (int i = myIndexedTo; i < size; i++) {
+      myPositions.put(myList.get(i), i);
+    }
+    myIndexedTo = size;
+    myIndexedVersion = myVersion;
+  }
+}
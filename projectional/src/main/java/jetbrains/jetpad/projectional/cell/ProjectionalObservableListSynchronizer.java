@@ -114,7 +114,7 @@ class ProjectionalObservableListSynchronizer<ContextT, SourceItemT> extends Base
           return new ItemHandler() {
             @Override
             public Runnable addEmptyAfter() {
-              int index = mySource.indexOf(child);
+              int index = indexOf(child);
               final SourceItemT newItem = newItem();
               mySource.add(index + 1, newItem);
               return selectOnCreation(index + 1);
@@ -275,7 +275,7 @@ class ProjectionalObservableListSynchronizer<ContextT, SourceItemT> extends Base
 
   @Override
   protected void clear(List<SourceItemT> items) {
-    int firstIndex = mySource.indexOf(items.get(0));
+    int firstIndex = indexOf(items.get(0));
     for (SourceItemT item : new ArrayList<>(items)) {
       mySource.remove(item);
     }
@@ -15,6 +15,7 @@
  */
 package jetbrains.jetpad.projectional.cell;
 
+import com.google.common.collect.ImmutableSet;
 import jetbrains.jetpad.base.Runnables;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.util.Cells;
@@ -25,11 +26,14 @@ import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.event.KeyEvent;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.cell.action.CellActions;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.position.Positions;
+import jetbrains.jetpad.cell.trait.CellTraitEventSpec;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 
 import java.util.List;
+import java.util.Set;
 
 public class SelectionSupport<ItemT> {
   public static final CellTraitPropertySpec<Boolean> LOGICAL_SINGLE_CELL_CONTAINER = new CellTraitPropertySpec<>("logicalSingleCellContainer", false);
@@ -39,18 +43,50 @@ public class SelectionSupport<ItemT> {
   private Direction myDirection;
   private boolean myChangingSelection;
   private List<ItemT> mySource;
+  private ListIndex<ItemT> mySourceIndex;
   private Cell myTarget;
   private List<Cell> myTargetList;
+  private ListIndex<Cell> myTargetIndex;
 
+  /**
+   * Positions of items and cells are tracked in O(1) only for observable lists. For other lists, looking up
+   * an item which isn't there reindexes the list.
+   */
   public SelectionSupport(
       List<ItemT> source,
       Cell target,
       List<Cell> targetList) {
+    this(source, ListIndex.<ItemT>forList(source), target, targetList, ListIndex.<Cell>forList(targetList));
+  }
+
+  SelectionSupport(
+      List<ItemT> source,
+      ListIndex<ItemT> sourceIndex,
+      Cell target,
+      List<Cell> targetList,
+      ListIndex<Cell> targetIndex) {
     mySource = source;
+    mySourceIndex = sourceIndex;
     myTarget = target;
     myTargetList = targetList;
+    myTargetIndex = targetIndex;
 
     myTarget.addTrait(new CellTrait() {
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return ImmutableSet.<CellEventSpec<?>>of(CellEventSpec.FOCUS_GAINED, CellEventSpec.FOCUS_LOST, CellEventSpec.KEY_PRESSED);
+      }
+
+      @Override
+      public Set<CellTraitEventSpec<?>> getHandledTraitEvents() {
+        return ImmutableSet.of();
+      }
+
+      @Override
+      public Set<CellTraitPropertySpec<?>> getHandledProperties() {
+        return ImmutableSet.<CellTraitPropertySpec<?>>of(SELECTION_SUPPORT);
+      }
+
       @Override
       public void onFocusGained(Cell cell, FocusEvent event) {
         super.onFocusGained(cell, event);
@@ -103,8 +139,8 @@ public class SelectionSupport<ItemT> {
   }
 
   public void select(ItemT from, ItemT to) {
-    final int start = mySource.indexOf(from);
-    final int end = mySource.indexOf(to);
+    final int start = mySourceIndex.indexOf(from);
+    final int end = mySourceIndex.indexOf(to);
     Cell focusedCell = myTarget.cellContainer().get().focusedCell.get();
 
     if (start == -1 || end == -1) {
@@ -117,7 +153,7 @@ public class SelectionSupport<ItemT> {
       throw new IllegalStateException();
     }
 
-    int currentIndex = myTargetList.indexOf(currentCell());
+    int currentIndex = myTargetIndex.indexOf(currentCell());
     if (currentIndex < start || currentIndex > end) {
       throw new IllegalArgumentException();
     }
@@ -153,7 +189,7 @@ public class SelectionSupport<ItemT> {
   private void handleFocusGain(FocusEvent event) {
     Cell newValue = event.getNewValue();
     Cell expanded = newValue != null ? expand(newValue) : null;
-    if (expanded == null || !myTargetList.contains(expanded)) {
+    if (expanded == null || myTargetIndex.indexOf(expanded) == -1) {
       expand(newValue);
       return;
     }
@@ -161,7 +197,7 @@ public class SelectionSupport<ItemT> {
     if (myChangingSelection) return;
 
     if (!Cells.isLeaf(newValue)) {
-      int index = myTargetList.indexOf(expanded);
+      int index = myTargetIndex.indexOf(expanded);
       select(mySource.get(index), mySource.get(index));
     } else {
       clearSelection();
@@ -178,7 +214,7 @@ public class SelectionSupport<ItemT> {
           Cell currentCell = currentCell();
           if (currentCell == null) return;
 
-          int currentIndex = myTargetList.indexOf(currentCell);
+          int currentIndex = myTargetIndex.indexOf(currentCell);
           ItemT currentItem = mySource.get(currentIndex);
           boolean consumed = false;
 
@@ -239,7 +275,7 @@ public class SelectionSupport<ItemT> {
           Cell currentCell = currentCell();
           if (currentCell == null) return;
 
-          int currentIndex = myTargetList.indexOf(currentCell);
+          int currentIndex = myTargetIndex.indexOf(currentCell);
           ItemT currentItem = mySource.get(currentIndex);
           boolean consumed = false;
 
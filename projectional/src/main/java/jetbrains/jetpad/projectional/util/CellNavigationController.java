@@ -15,12 +15,14 @@
  */
 package jetbrains.jetpad.projectional.util;
 
+import com.google.common.collect.ImmutableSet;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellContainer;
 import jetbrains.jetpad.cell.CellPropertySpec;
 import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.position.PositionHandler;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.util.Cells;
@@ -33,6 +35,7 @@ import jetbrains.jetpad.model.event.CompositeRegistration;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.*;
 
+import java.util.Set;
 import java.util.Stack;
 
 import static jetbrains.jetpad.model.composite.Composites.nextFocusable;
@@ -78,6 +81,11 @@ public class CellNavigationController {
         }
       }));
     result.add(myContainer.root.addTrait(new CellTrait() {
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return ImmutableSet.<CellEventSpec<?>>of(CellEventSpec.KEY_PRESSED, CellEventSpec.MOUSE_PRESSED);
+      }
+
       @Override
       public void onKeyPressed(Cell cell, KeyEvent event) {
         handleKeyPress(cell, event);
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.cell;
+
+import jetbrains.jetpad.model.collections.list.ObservableArrayList;
+import jetbrains.jetpad.model.collections.list.ObservableList;
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ListIndexTest {
+  private List<String> list = new ArrayList<>(Arrays.asList("a", "b", "c"));
+  private ListIndex<String> index = new ListIndex<>(list, false);
+
+  @Test
+  public void lookup() {
+    assertEquals(0, index.indexOf(list.get(0)));
+    assertEquals(2, index.indexOf(list.get(2)));
+    assertEquals(-1, index.indexOf("d"));
+  }
+
+  @Test
+  public void reportedInsert() {
+    index.indexOf(list.get(0));
+
+    list.add(1, "x");
+    index.changed(1);
+
+    assertEquals(0, index.indexOf(list.get(0)));
+    assertEquals(1, index.indexOf(list.get(1)));
+    assertEquals(3, index.indexOf(list.get(3)));
+  }
+
+  @Test
+  public void reportedRemove() {
+    String removed = list.get(1);
+    index.indexOf(removed);
+
+    list.remove(1);
+    index.changed(1);
+
+    assertEquals(-1, index.indexOf(removed));
+    assertEquals(1, index.indexOf(list.get(1)));
+  }
+
+  @Test
+  public void unreportedChange() {
+    String c = list.get(2);
+    index.indexOf(c);
+
+    list.add(0, "x");
+
+    assertEquals(3, index.indexOf(c));
+    assertEquals(0, index.indexOf(list.get(0)));
+  }
+
+  @Test
+  public void trackedIndexFindsMissingItemWithoutReindexing() {
+    CountingList counting = new CountingList(list);
+    ListIndex<String> tracked = new ListIndex<>(counting, true);
+    tracked.indexOf(list.get(0));
+    int gets = counting.myGets;
+
+    assertEquals(-1, tracked.indexOf("d"));
+    assertEquals(gets, counting.myGets);
+  }
+
+  @Test
+  public void observableListIsTracked() {
+    ObservableList<String> observable = new ObservableArrayList<>();
+    observable.addAll(list);
+    ListIndex<String> tracked = ListIndex.forList(observable);
+    tracked.indexOf(observable.get(0));
+
+    String added = new String("x");
+    observable.add(1, added);
+    String removed = observable.remove(3);
+
+    assertEquals(1, tracked.indexOf(added));
+    assertEquals(2, tracked.indexOf(observable.get(2)));
+    assertEquals(-1, tracked.indexOf(removed));
+  }
+
+  @Test
+  public void identity() {
+    list.set(1, new String("b"));
+    index.changed(1);
+
+    assertEquals(-1, index.indexOf(new String("b")));
+  }
+
+  private static class CountingList extends AbstractList<String> {
+    private final List<String> myList;
+    private int myGets;
+
+    private CountingList(List<String> list) {
+      myList = list;
+    }
+
+    @Override
+    public String get(int index) {
+      myGets++;
+      return myList.get(index);
+    }
+
+    @Override
+    public int size() {
+      return myList.size();
+    }
+  }
+}
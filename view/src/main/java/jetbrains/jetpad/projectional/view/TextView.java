@@ -98,14 +98,9 @@ public class TextView extends View {
   }
 
   public int getCaretAt(int xOffset) {
-
     String text = this.text().get();
     if (text == null) return 0;
-    for (int i = 0; i < text.length(); i++) {
-      int width = (textWidth(text.substring(0, i)) + textWidth(text.substring(0, i + 1))) / 2;
-      if (width >= xOffset) return i;
-    }
-    return text.length();
+    return container().peer().textMetrics().caretAt(font().get(), text, xOffset);
   }
 
 
@@ -114,7 +109,7 @@ public class TextView extends View {
       throw new IllegalStateException();
     }
     if (text().get() == null) return 0;
-    return textWidth(text().get().substring(0, caret));
+    return container().peer().textMetrics().caretOffset(font().get(), text().get(), caret);
   }
 
   @Override
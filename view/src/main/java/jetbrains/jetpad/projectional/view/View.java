@@ -26,12 +26,12 @@ import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.CollectionListener;
-import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.composite.*;
 import jetbrains.jetpad.model.event.*;
 import jetbrains.jetpad.model.property.*;
 import jetbrains.jetpad.model.util.ListMap;
+import jetbrains.jetpad.projectional.base.util.GapList;
 import jetbrains.jetpad.projectional.view.spi.ViewContainerPeer;
 import jetbrains.jetpad.values.Color;
 
@@ -48,8 +48,12 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
   public static final ViewPropertySpec<Color> BORDER_COLOR = new ViewPropertySpec<>("bordercolor", ViewPropertyKind.REPAINT, null);
   public static final ViewPropertySpec<Boolean> HAS_SHADOW = new ViewPropertySpec<>("hasShadow", ViewPropertyKind.REPAINT, false);
 
+  //incremented when a view with children moves or changes its parent, invalidates all cached root deltas
+  private static int ourRootDeltaEpoch;
+
   private View myParent;
-  private ObservableList<View> myChildren;
+  private int myPositionInParent = -1;
+  private List<View> myChildren;
   private ListMap<ViewPropertySpec<?>, Object> myProperties;
   private List<ViewTrait> myTraits;
   private Listeners<ViewListener> myListeners;
@@ -65,6 +69,9 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
   private int myDeltaX;
   private int myDeltaY;
   private int myDeltaListenersCount;
+  private int myRootDeltaX;
+  private int myRootDeltaY;
+  private int myRootDeltaEpoch = -1;
 
   public Property<Boolean> visible() {
     return getProp(VISIBLE);
@@ -506,15 +513,8 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
     return new BaseReadableProperty<Vector>() {
       @Override
       public Vector get() {
-        View current = View.this;
-        int x = 0;
-        int y = 0;
-        while (current != null) {
-          x += current.myDeltaX;
-          y += current.myDeltaY;
-          current = current.myParent;
-        }
-        return new Vector(x, y);
+        validateRootDelta();
+        return new Vector(myRootDeltaX, myRootDeltaY);
       }
 
       @Override
@@ -537,6 +537,37 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
     };
   }
 
+  private void validateRootDelta() {
+    if (myRootDeltaEpoch == ourRootDeltaEpoch) return;
+    int x = myDeltaX;
+    int y = myDeltaY;
+    if (myParent != null) {
+      myParent.validateRootDelta();
+      x += myParent.myRootDeltaX;
+      y += myParent.myRootDeltaY;
+    }
+    myRootDeltaX = x;
+    myRootDeltaY = y;
+    myRootDeltaEpoch = ourRootDeltaEpoch;
+  }
+
+  private void rootDeltaChanged(Vector delta) {
+    if (myChildren != null && !myChildren.isEmpty()) {
+      ourRootDeltaEpoch++;
+    } else if (myRootDeltaEpoch == ourRootDeltaEpoch) {
+      myRootDeltaX += delta.x;
+      myRootDeltaY += delta.y;
+    }
+  }
+
+  private void parentChanged() {
+    if (myChildren != null && !myChildren.isEmpty()) {
+      ourRootDeltaEpoch++;
+    } else {
+      myRootDeltaEpoch = -1;
+    }
+  }
+
   public ReadableProperty<Rectangle> bounds() {
     return new BaseReadableProperty<Rectangle>() {
       @Override
@@ -566,7 +597,7 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
     };
   }
 
-  private Rectangle localBounds() {
+  Rectangle localBounds() {
     return new Rectangle(myX, myY, myWidth, myHeight);
   }
 
@@ -577,11 +608,20 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
     myHeight = r.dimension.y;
   }
 
+  Vector delta() {
+    return new Vector(myDeltaX, myDeltaY);
+  }
+
   public int baseLine() {
     return myBaseLine;
   }
 
   public View viewAt(Vector loc) {
+    ViewSpatialIndex index = myContainer != null ? myContainer.spatialIndex() : null;
+    if (index != null && index.isIndexed(this)) {
+      return index.viewAt(this, loc);
+    }
+
     List<View> children = children();
     for (int i = children.size() - 1; i >= 0; i--) {
       View child = children.get(i);
@@ -644,6 +684,7 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
 
     myDeltaX += delta.x;
     myDeltaY += delta.y;
+    rootDeltaChanged(delta);
 
     if (getParent() != null) {
       getParent().invalidate();
@@ -808,12 +849,30 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
     return provider.apply(container().peer());
   }
 
-  private class ChildList extends ObservableArrayList<View> {
+  private class ChildList extends GapList<View> {
+    @Override
+    protected void positionChanged(View item, int position) {
+      item.myPositionInParent = position;
+    }
+
+    @Override
+    protected int positionOf(Object item) {
+      return item instanceof View ? ((View) item).myPositionInParent : -1;
+    }
+
+    @Override
+    public View set(int index, View item) {
+      View result = remove(index);
+      add(index, item);
+      return result;
+    }
+
     @Override
     public void add(final int index, final View item) {
       invalidate();
 
       item.myParent = View.this;
+      item.parentChanged();
       if (isAttached()) {
         item.attach(myContainer);
       }
@@ -842,6 +901,7 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
       }
       final View oldParent = item.myParent;
       item.myParent = null;
+      item.parentChanged();
 
       item.fire(new ListenerCaller<ViewListener>() {
         @Override
@@ -876,6 +936,17 @@ public abstract class View implements NavComposite<View>, HasFocusability, HasVi
       return myChildren.size();
     }
 
+    @Override
+    public int indexOf(Object o) {
+      if (myChildren == null) return -1;
+      return myChildren.indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) != -1;
+    }
+
     @Override
     public View set(int index, View element) {
       if (myChildren == null) {
@@ -41,6 +41,7 @@ public class ViewContainer {
   private Listeners<ViewContainerListener> myListeners = new Listeners<>();
   private boolean myInCommand;
   private View myViewUnderMouse;
+  private ViewSpatialIndex mySpatialIndex;
 
   public ViewContainer() {
     myPeer.attach(this);
@@ -75,6 +76,18 @@ public class ViewContainer {
     return myPeer.visibleRect();
   }
 
+  /**
+   * Called by peers when the visible part of the container changes, e.g. when it's scrolled or resized
+   */
+  public void visibleRectChanged() {
+    myListeners.fire(new ListenerCaller<ViewContainerListener>() {
+      @Override
+      public void call(ViewContainerListener l) {
+        l.onVisibleRectChanged();
+      }
+    });
+  }
+
   public void setPeer(ViewContainerPeer peer) {
     myPeer.detach();
     myPeer = peer;
@@ -82,6 +95,25 @@ public class ViewContainer {
     myPeer.attach(this);
   }
 
+  /**
+   * Makes hit testing independent of the number of views at the cost of rebuilding an index after their bounds change.
+   * Useful for big diagrams and documents where mouse events are frequent and layout changes are not.
+   */
+  public void setSpatialIndexEnabled(boolean enabled) {
+    if (enabled == (mySpatialIndex != null)) return;
+    mySpatialIndex = enabled ? new ViewSpatialIndex(myContentRoot) : null;
+  }
+
+  ViewSpatialIndex spatialIndex() {
+    return mySpatialIndex;
+  }
+
+  private void invalidateSpatialIndex() {
+    if (mySpatialIndex != null) {
+      mySpatialIndex.invalidate();
+    }
+  }
+
   ViewContainerPeer peer() {
     return myPeer;
   }
@@ -91,6 +123,7 @@ public class ViewContainer {
   }
 
   void boundsChanged(View view, PropertyChangeEvent<Rectangle> change) {
+    invalidateSpatialIndex();
     myPeer.boundsChanged(view, change);
   }
 
@@ -241,6 +274,9 @@ public class ViewContainer {
   }
 
   void propertyChanged(final View view, final ViewPropertySpec<?> prop, final PropertyChangeEvent<?> event) {
+    if (prop == View.VISIBLE) {
+      invalidateSpatialIndex();
+    }
     myListeners.fire(new ListenerCaller<ViewContainerListener>() {
       @Override
       public void call(ViewContainerListener l) {
@@ -250,6 +286,7 @@ public class ViewContainer {
   }
 
   void viewAttached(final View view) {
+    invalidateSpatialIndex();
     myListeners.fire(new ListenerCaller<ViewContainerListener>() {
       @Override
       public void call(ViewContainerListener l) {
@@ -259,6 +296,7 @@ public class ViewContainer {
   }
 
   void viewDetached(final View view) {
+    invalidateSpatialIndex();
     if (myFocusedView.get() == view) {
       myFocusedView.set(null);
     }
@@ -307,10 +345,11 @@ public class ViewContainer {
     @Override
     public void validate() {
       super.validate();
-      for (Runnable r : myOnValidate) {
+      List<Runnable> onValidate = new ArrayList<>(myOnValidate);
+      myOnValidate.clear();
+      for (Runnable r : onValidate) {
         r.run();
       }
-      myOnValidate.clear();
 
     }
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over absolute bounds of visible views which is used for hit testing in {@link View#viewAt(Vector)}.
+ * Views are numbered in pre-order, so the view which viewAt returns is the one with the greatest number among
+ * the views which contain a point and are reachable from a view through ancestors which contain it too.
+ *
+ * The index is rebuilt lazily after any change of bounds, visibility or structure of the view tree.
+ */
+class ViewSpatialIndex {
+  private static final int CELL_SIZE = 128;
+  private static final int MAX_CELLS_PER_VIEW = 64;
+
+  private final View myRoot;
+  private boolean myValid;
+  private final Map<View, Entry> myEntries = new HashMap<>();
+  private final Map<Integer, List<Entry>> myGrid = new HashMap<>();
+  private final List<Entry> myLarge = new ArrayList<>();
+  private int myCount;
+
+  ViewSpatialIndex(View root) {
+    myRoot = root;
+  }
+
+  void invalidate() {
+    myValid = false;
+  }
+
+  boolean isIndexed(View view) {
+    validate();
+    return myEntries.containsKey(view);
+  }
+
+  View viewAt(View view, Vector loc) {
+    validate();
+    Entry target = myEntries.get(view);
+    Entry fromGrid = find(myGrid.get(key(cell(loc.x), cell(loc.y))), target, loc);
+    Entry fromLarge = find(myLarge, target, loc);
+    Entry result = fromGrid;
+    if (fromLarge != null && (result == null || fromLarge.myIndex > result.myIndex)) {
+      result = fromLarge;
+    }
+    if (result != null) return result.myView;
+    return view.contains(loc) ? view : null;
+  }
+
+  private Entry find(List<Entry> entries, Entry target, Vector loc) {
+    if (entries == null) return null;
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      Entry e = entries.get(i);
+      if (e.myIndex <= target.myIndex) break;
+      if (e.myIndex >= target.myEnd) continue;
+      if (isReachable(e, target, loc) && e.myView.contains(loc)) return e;
+    }
+    return null;
+  }
+
+  private boolean isReachable(Entry e, Entry target, Vector loc) {
+    for (Entry current = e; current != target; current = current.myParent) {
+      if (!current.myBounds.contains(loc)) return false;
+    }
+    return true;
+  }
+
+  private void validate() {
+    if (myValid) return;
+    myEntries.clear();
+    myGrid.clear();
+    myLarge.clear();
+    myCount = 0;
+    add(myRoot, null, Vector.ZERO);
+    myValid = true;
+  }
+
+  private void add(View view, Entry parent, Vector parentDelta) {
+    Vector delta = parentDelta.add(view.delta());
+    Entry entry = new Entry(view, parent, view.localBounds().add(delta), myCount++);
+    myEntries.put(view, entry);
+    if (parent != null) {
+      put(entry);
+    }
+    for (View child : view.children()) {
+      if (!child.visible().get()) continue;
+      add(child, entry, delta);
+    }
+    entry.myEnd = myCount;
+  }
+
+  private void put(Entry entry) {
+    Rectangle bounds = entry.myBounds;
+    int x0 = cell(bounds.origin.x);
+    int y0 = cell(bounds.origin.y);
+    int x1 = cell(bounds.origin.x + bounds.dimension.x);
+    int y1 = cell(bounds.origin.y + bounds.dimension.y);
+    if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS_PER_VIEW) {
+      myLarge.add(entry);
+      return;
+    }
+    for (int x = x0; x <= x1; x++) {
+      for (int y = y0; y <= y1; y++) {
+        Integer key = key(x, y);
+        List<Entry> entries = myGrid.get(key);
+        if (entries == null) {
+          entries = new ArrayList<>();
+          myGrid.put(key, entries);
+        }
+        entries.add(entry);
+      }
+    }
+  }
+
+  private static int cell(int coord) {
+    return coord >= 0 ? coord / CELL_SIZE : -((-coord - 1) / CELL_SIZE) - 1;
+  }
+
+  private static Integer key(int x, int y) {
+    return (x << 16) ^ (y & 0xFFFF);
+  }
+
+  private static class Entry {
+    private final View myView;
+    private final Entry myParent;
+    private final Rectangle myBounds;
+    private final int myIndex;
+    private int myEnd;
+
+    private Entry(View view, Entry parent, Rectangle bounds, int index) {
+      myView = view;
+      myParent = parent;
+      myBounds = bounds;
+      myIndex = index;
+    }
+  }
+}
@@ -21,12 +21,29 @@ import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.base.animation.Animation;
 import jetbrains.jetpad.base.animation.Animations;
+import jetbrains.jetpad.projectional.domUtil.TextMetricsCache;
 import jetbrains.jetpad.values.Font;
 import jetbrains.jetpad.projectional.view.View;
 import jetbrains.jetpad.projectional.view.ViewContainer;
 
 public class NullViewContainerPeer implements ViewContainerPeer {
   private ViewContainer myContainer;
+  private final TextMetricsCache myTextMetrics = new TextMetricsCache() {
+    @Override
+    protected int measureWidth(Font font, String text) {
+      return text.length() * 5;
+    }
+
+    @Override
+    protected int measureHeight(Font font) {
+      return 10;
+    }
+
+    @Override
+    protected int measureBaseLine(Font font) {
+      return 5;
+    }
+  };
 
   @Override
   public void attach(ViewContainer container) {
@@ -62,17 +79,22 @@ public class NullViewContainerPeer implements ViewContainerPeer {
 
   @Override
   public int textHeight(Font font) {
-    return 10;
+    return myTextMetrics.height(font);
   }
 
   @Override
   public int textBaseLine(Font font) {
-    return 5;
+    return myTextMetrics.baseLine(font);
   }
 
   @Override
   public int textWidth(Font font, String text) {
-    return text.length() * 5;
+    return myTextMetrics.width(font, text);
+  }
+
+  @Override
+  public TextMetricsCache textMetrics() {
+    return myTextMetrics;
   }
 
   @Override
@@ -18,6 +18,7 @@ package jetbrains.jetpad.projectional.view.spi;
 import jetbrains.jetpad.base.edt.EventDispatchThread;
 import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.projectional.domUtil.TextMetricsCache;
 import jetbrains.jetpad.projectional.view.View;
 import jetbrains.jetpad.projectional.view.ViewContainer;
 import jetbrains.jetpad.base.animation.Animation;
@@ -37,6 +38,7 @@ public interface ViewContainerPeer {
   int textHeight(Font font);
   int textBaseLine(Font font);
   int textWidth(Font font, String text);
+  TextMetricsCache textMetrics();
 
   void requestFocus();
 
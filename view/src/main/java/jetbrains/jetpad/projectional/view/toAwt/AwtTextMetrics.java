@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.toAwt;
+
+import jetbrains.jetpad.projectional.domUtil.TextMetricsCache;
+import jetbrains.jetpad.values.Font;
+
+import java.awt.FontMetrics;
+import java.awt.Toolkit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link TextMetricsCache} which measures text with AWT font metrics. AWT fonts and their metrics are created
+ * once per {@link Font}.
+ */
+class AwtTextMetrics extends TextMetricsCache {
+  private final Map<String, FontMetrics> myFontMetrics = new HashMap<>();
+
+  java.awt.Font toAwtFont(Font font) {
+    return fontMetrics(font).getFont();
+  }
+
+  FontMetrics fontMetrics(Font font) {
+    int style = java.awt.Font.PLAIN;
+    if (font.isBold()) {
+      style |= java.awt.Font.BOLD;
+    }
+    if (font.isItalic()) {
+      style |= java.awt.Font.ITALIC;
+    }
+    String name = ViewRenderer.toFontName(font.getFamily());
+    String key = name + ":" + style + ":" + font.getSize();
+    FontMetrics result = myFontMetrics.get(key);
+    if (result == null) {
+      result = Toolkit.getDefaultToolkit().getFontMetrics(new java.awt.Font(name, style, font.getSize()));
+      myFontMetrics.put(key, result);
+    }
+    return result;
+  }
+
+  @Override
+  protected int measureWidth(Font font, String text) {
+    return fontMetrics(font).stringWidth(text);
+  }
+
+  @Override
+  protected int measureHeight(Font font) {
+    return fontMetrics(font).getHeight();
+  }
+
+  @Override
+  protected int measureBaseLine(Font font) {
+    FontMetrics fm = fontMetrics(font);
+    return fm.getLeading() + fm.getAscent();
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    myFontMetrics.clear();
+  }
+}
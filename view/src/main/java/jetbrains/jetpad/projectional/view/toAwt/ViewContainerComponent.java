@@ -20,7 +20,6 @@ import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.base.animation.Animation;
 import jetbrains.jetpad.base.animation.Animations;
-import jetbrains.jetpad.base.base64.Base64Coder;
 import jetbrains.jetpad.base.edt.AwtEventDispatchThread;
 import jetbrains.jetpad.base.edt.EventDispatchThread;
 import jetbrains.jetpad.event.*;
@@ -29,15 +28,13 @@ import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.event.CompositeRegistration;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
-import jetbrains.jetpad.projectional.base.ImageData;
+import jetbrains.jetpad.projectional.domUtil.TextMetricsCache;
 import jetbrains.jetpad.projectional.svg.SvgSvgElement;
 import jetbrains.jetpad.projectional.svg.toAwt.SvgRootDocumentMapper;
 import jetbrains.jetpad.projectional.view.*;
 import jetbrains.jetpad.projectional.view.spi.NullViewContainerPeer;
 import jetbrains.jetpad.projectional.view.spi.ViewContainerPeer;
-import jetbrains.jetpad.values.Color;
 import jetbrains.jetpad.values.Font;
-import jetbrains.jetpad.values.FontFamily;
 import org.apache.batik.bridge.BridgeContext;
 import org.apache.batik.bridge.GVTBuilder;
 import org.apache.batik.bridge.UserAgent;
@@ -46,37 +43,21 @@ import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.event.AWTEventDispatcher;
 import org.apache.batik.gvt.event.EventDispatcher;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.datatransfer.*;
 import java.awt.event.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import java.awt.geom.Arc2D;
-import java.awt.image.BufferedImage;
-import java.awt.image.ImageObserver;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URL;
 import java.util.*;
 
 import static jetbrains.jetpad.projectional.view.toAwt.AwtConverters.toAwtColor;
 
 public class ViewContainerComponent extends JComponent implements Scrollable {
-  private static final String MONOSPACED_FONT = java.awt.Font.MONOSPACED;
-
-  private static String toFontName(FontFamily fontFamily) {
-    if (fontFamily == FontFamily.MONOSPACED) {
-      return MONOSPACED_FONT;
-    } else {
-      return fontFamily.toString();
-    }
-  }
-
-  static final Color SELECTION_COLOR = Color.DARK_BLUE;
-
   private ViewContainer myContainer;
   private Registration myContainerReg = Registration.EMPTY;
 
@@ -88,9 +69,31 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
   private Timer myTimer;
   private long myLastActionTime;
   private Set<TextView> myWithCaretVisible = new HashSet<>();
+  private Set<TextView> myWithSelectionVisible = new HashSet<>();
   private MyViewContainerPeer myPeer = new MyViewContainerPeer();
 
+  private ChangeListener myViewportListener = new ChangeListener() {
+    @Override
+    public void stateChanged(ChangeEvent e) {
+      if (myContainer != null) {
+        myContainer.visibleRectChanged();
+      }
+    }
+  };
+
   private Map<View, PaintHelper<? extends View>> myViewPaintHelpers = new HashMap<>();
+  private AwtTextMetrics myTextMetrics = new AwtTextMetrics();
+  private ViewRenderer myRenderer = new ViewRenderer(myTextMetrics) {
+    @Override
+    protected void paintSvg(SvgView view, Graphics2D g) {
+      PaintHelper<SvgView> helper = (PaintHelper<SvgView>) myViewPaintHelpers.get(view);
+      if (helper == null) {
+        helper = new SvgPaintHelper(view);
+        myViewPaintHelpers.put(view, helper);
+      }
+      helper.paint(view, g);
+    }
+  };
 
   public ViewContainerComponent() {
     setFocusable(true);
@@ -340,7 +343,8 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
 
   private void repaintCarets() {
     for (TextView tv : myWithCaretVisible) {
-      myPeer.repaint(tv);
+      if (!tv.visible().get()) continue;
+      repaint(tv.bounds().get());
     }
   }
 
@@ -354,6 +358,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
       myContainerReg.remove();
       myTimer.stop();
       myContainerReg = null;
+      myRenderer.clear();
     }
 
     myContainer = container;
@@ -382,6 +387,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
         myContainer.addListener(new ViewContainerAdapter() {
           @Override
           public void onPropertySet(View view, ViewPropertySpec<?> prop, PropertyChangeEvent<?> event) {
+            myRenderer.invalidate(view);
             if (view instanceof TextView && prop == TextView.CARET_VISIBLE) {
               TextView textView = (TextView) view;
               if (textView.caretVisible().get()) {
@@ -390,24 +396,38 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
                 myWithCaretVisible.remove(textView);
               }
             }
+            if (view instanceof TextView && prop == TextView.SELECTION_VISIBLE) {
+              TextView textView = (TextView) view;
+              if (textView.selectionVisible().get()) {
+                myWithSelectionVisible.add(textView);
+              } else {
+                myWithSelectionVisible.remove(textView);
+              }
+            }
           }
 
           @Override
           public void onViewAttached(View view) {
+            myRenderer.invalidate(view);
             if (view instanceof TextView) {
               TextView textView = (TextView) view;
               if (textView.caretVisible().get()) {
                 myWithCaretVisible.add(textView);
               }
+              if (textView.selectionVisible().get()) {
+                myWithSelectionVisible.add(textView);
+              }
             }
           }
 
           @Override
           public void onViewDetached(View view) {
             myDirtyAreas.add(view.bounds().get());
+            myRenderer.invalidate(view);
             if (view instanceof TextView) {
               TextView textView = (TextView) view;
               myWithCaretVisible.remove(textView);
+              myWithSelectionVisible.remove(textView);
             }
 
             if (myViewPaintHelpers.containsKey(view)) {
@@ -457,269 +477,25 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
     g.fillRect(0, 0, getWidth(), getHeight());
 
     myContainer.root().validate();
-    paint(g, myContainer.root());
-  }
-
-  private void paint(Graphics graphics, View view) {
-    if (!view.visible().get()) return;
-    Graphics2D g = (Graphics2D) graphics;
-    java.awt.Rectangle clip = g.getClipBounds();
-    jetbrains.jetpad.geometry.Rectangle bounds = view.bounds().get();
-    if (clip != null) {
-      jetbrains.jetpad.geometry.Rectangle rect = new jetbrains.jetpad.geometry.Rectangle(clip.x, clip.y, clip.width, clip.height);
-
-      if (!rect.intersects(bounds)) return;
-    }
-    g.clipRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
-
-
-    paintContent(view, (Graphics2D) g.create());
-
-    for (View child : view.children()) {
-      paint(g.create(), child);
-    }
-  }
-
-  private void paintContent(final View view, final Graphics2D g) {
-    final jetbrains.jetpad.geometry.Rectangle bounds = view.bounds().get();
-
-    Color background = view.background().get();
-    if (!(view instanceof EllipseView) && background != null) {
-      g.setColor(toAwtColor(background));
-      g.fillRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
-    }
-    final Color border = view.border().get();
-    if (border != null) {
-      g.setColor(toAwtColor(border));
-      g.drawRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x - 1, bounds.dimension.y - 1);
-    }
-
-    if (view instanceof EllipseView) {
-      EllipseView ellipseView = (EllipseView) view;
-      g.setColor(toAwtColor(ellipseView.background().get()));
-
-      final double from = (ellipseView.from().get() * 360) / (2 * Math.PI);
-      final double to = (ellipseView.to().get() * 360) / (2 * Math.PI);
-
-      int borderWidth = ellipseView.borderWidth().get();
-      final Vector borderVec = new Vector(borderWidth / 2, borderWidth / 2);
-
-      final jetbrains.jetpad.geometry.Rectangle innerBounds = new jetbrains.jetpad.geometry.Rectangle(bounds.origin.add(borderVec), bounds.dimension.sub(borderVec.mul(2)));
-
-      g.fill(new Arc2D.Double(innerBounds.origin.x, innerBounds.origin.y, innerBounds.dimension.x - 1, innerBounds.dimension.y - 1, from, to - from, Arc2D.PIE));
-
-      if (borderWidth > 0) {
-        g.setColor(toAwtColor(ellipseView.borderColor().get()));
-        withStroke(g, new BasicStroke(borderWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER), new Runnable() {
-          @Override
-          public void run() {
-            final jetbrains.jetpad.geometry.Rectangle borderBounds = innerBounds;
-            g.draw(new Arc2D.Double(borderBounds.origin.x, borderBounds.origin.y, borderBounds.dimension.x - 1, borderBounds.dimension.y - 1, from, to - from, Arc2D.PIE));
-          }
-        });
-      }
-    }
-
-    if (view instanceof LineView) {
-      LineView lineView = (LineView) view;
-      g.setColor(toAwtColor(lineView.color().get()));
-      g.setStroke(new BasicStroke(lineView.width().get()));
-      Vector start = lineView.start().get();
-      Vector end = lineView.end().get();
-      g.drawLine(start.x, start.y, end.x, end.y);
-    }
-
-    if (view instanceof TextView) {
-      TextView textView = (TextView) view;
-      String text = textView.text().get();
-      Vector origin = bounds.origin;
-
-      java.awt.Font font = new java.awt.Font(toFontName(textView.fontFamily().get()), java.awt.Font.PLAIN, textView.fontSize().get());
-      if (textView.bold().get()) {
-        font = font.deriveFont(java.awt.Font.BOLD, font.getSize());
-      }
-      if (textView.italic().get()) {
-        font = font.deriveFont(java.awt.Font.ITALIC, font.getSize());
-      }
-      g.setFont(font);
-
-      g.setColor(toAwtColor(textView.textColor().get()));
-      g.drawString(text, origin.x, origin.y + textView.baseLine());
-
-      if (textView.selectionVisible().get()) {
-        int start = textView.selectionStart().get();
-        int end = textView.caretPosition().get();
-
-        int left = Math.min(start, end);
-        int xLeft = xOffset(g, text, left);
-        int right = Math.max(start, end);
-        int xRight = xOffset(g, text, right);
-        g.setColor(toAwtColor(SELECTION_COLOR));
-        g.fillRect(origin.x + xLeft, origin.y, xRight - xLeft - 1, bounds.dimension.y - 1);
-
-        g.setColor(toAwtColor(Color.WHITE));
-        g.drawString(text.substring(left, right), origin.x + xLeft, origin.y + textView.baseLine());
-      }
-
-      if (textView.caretVisible().get() && myCaretVisible && myFocused) {
-        int xOffset = xOffset(g, text, textView.caretPosition().get());
-        g.drawLine(origin.x + xOffset, origin.y, origin.x + xOffset, origin.y + bounds.dimension.y - 1);
-      }
-    }
-
-    if (view instanceof ScrollView) {
-      ScrollView scrollView = (ScrollView) view;
-      jetbrains.jetpad.geometry.Rectangle additionalClip = scrollView.bounds().get();
-      if (scrollView.isHorizontalScroller()) {
-        paintScroller(g, scrollView, false);
-        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(0, scrollView.xScrollWidth())));
-      }
-
-      if (scrollView.isVerticalScroller()) {
-        paintScroller(g, scrollView, true);
-        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(scrollView.yScrollWidth(), 0)));
-      }
-
-      g.clipRect(additionalClip.origin.x, additionalClip.origin.y, additionalClip.dimension.x, additionalClip.dimension.y);
-    }
-
-    if (view instanceof MultiPointView) {
-      MultiPointView multiPoint = (MultiPointView) view;
-      g.setColor(toAwtColor(multiPoint.color().get()));
-      g.setStroke(new BasicStroke(multiPoint.width().get()));
-
-      int n = multiPoint.points.size();
-      int[] xs = new int[n];
-      int[] ys = new int[n];
-
-      for (int i = 0; i < n; i++) {
-        Vector point = multiPoint.points.get(i);
-        xs[i] = point.x;
-        ys[i] = point.y;
-      }
-
-      if (!multiPoint.points.isEmpty()) {
-        if (view instanceof PolyLineView) {
-          g.drawPolyline(xs, ys, n);
-        } else {
-          g.fillPolygon(xs, ys, n);
-        }
-      }
-    }
-
-    if (view instanceof ImageView) {
-      ImageView imageView = (ImageView) view;
-      ImageData imageData = imageView.image.get();
-
-      if (imageData instanceof ImageData.EmptyImageData) {
-        //ignore
-      } else if (imageData instanceof ImageData.BinaryImageData || imageData instanceof ImageData.UrlImageData) {
-        BufferedImage image;
-        try {
-          if (imageData instanceof ImageData.BinaryImageData) {
-            ImageData.BinaryImageData data = (ImageData.BinaryImageData) imageData;
-            image = ImageIO.read(new ByteArrayInputStream(data.getData()));
-          } else {
-            String url = ((ImageData.UrlImageData) imageData).getUrl();
-            String pngPrefix = "data:image/png;base64,";
-            String jpgPrefix = "data:image/jpeg;base64,";
-            if (url.startsWith(pngPrefix) || url.startsWith(jpgPrefix)) {
-              String base64;
-              if (url.startsWith(pngPrefix)) {
-                base64 = url.substring(pngPrefix.length());
-              } else {
-                base64 = url.substring(jpgPrefix.length());
-              }
-              byte[] data = Base64Coder.decodeBytes(base64);
-              image = ImageIO.read(new ByteArrayInputStream(data));
-            } else {
-              image = ImageIO.read(new URL(url));
-            }
-          }
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-
-        g.drawImage(image, bounds.origin.x, bounds.origin.y, new ImageObserver() {
-          @Override
-          public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
-            return true;
-          }
-        });
-      } else {
-        throw new UnsupportedOperationException("Unsupported Image : " + imageData);
-      }
-    }
-
-    if (view instanceof SvgView) {
-      if (myViewPaintHelpers.containsKey(view)) {
-        ((PaintHelper<SvgView>) myViewPaintHelpers.get(view)).paint((SvgView) view, (Graphics2D) g.create());
-      } else {
-        SvgPaintHelper helper = new SvgPaintHelper((SvgView) view);
-        myViewPaintHelpers.put(view, helper);
-
-        helper.paint((SvgView) view, (Graphics2D) g.create());
-      }
-    }
+    Set<TextView> overlay = new HashSet<>(myWithCaretVisible);
+    overlay.addAll(myWithSelectionVisible);
+    myRenderer.paint((Graphics2D) g, myContainer.root(), overlay, myCaretVisible && myFocused);
   }
 
-  private void paintScroller(Graphics2D g, ScrollView scrollView, boolean vertical) {
-    jetbrains.jetpad.geometry.Rectangle bounds = scrollView.bounds().get();
-
-    Color scrollerBackground = Color.GRAY;
-    Color scrollerColor = Color.BLACK;
-
-    g.setColor(toAwtColor(scrollerBackground));
-
-    if (vertical) {
-      g.fillRect(bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(), bounds.origin.y, scrollView.yScrollWidth(), bounds.dimension.y);
-    } else {
-      g.fillRect(bounds.origin.x, bounds.origin.y + bounds.dimension.y - scrollView.xScrollWidth(), bounds.dimension.x, scrollView.xScrollWidth());
-    }
-
-    Vector intBounds = scrollView.internalsBounds();
-    Vector offset = scrollView.offset().get();
-    Vector maxDim = scrollView.maxDimension().get();
-
-    double total = vertical ? intBounds.y : intBounds.x;
-    double startPercentage = (- (vertical ? offset.y : offset.x) / total);
-    double heightPercentage = ((vertical ? maxDim.y : maxDim.x) / total);
-
-    int max = vertical ? maxDim.y : maxDim.x;
-
-    double sOffset = startPercentage * max;
-
-    g.setColor(toAwtColor(scrollerColor));
-
-
-    if (vertical) {
-      g.fillRect(
-        bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(),
-        bounds.origin.y + (int) sOffset,
-        scrollView.yScrollWidth(),
-        (int) (heightPercentage * max));
-    } else {
-      g.fillRect(
-        bounds.origin.x + (int) sOffset,
-        bounds.origin.y + bounds.dimension.x - scrollView.xScrollWidth(),
-        (int) (heightPercentage * max),
-        scrollView.xScrollWidth());
+  @Override
+  public void addNotify() {
+    super.addNotify();
+    if (getParent() instanceof JViewport) {
+      ((JViewport) getParent()).addChangeListener(myViewportListener);
     }
   }
 
-  private int xOffset(Graphics g, String text, int pos) {
-    return Math.max(0, g.getFontMetrics().stringWidth(text.substring(0, pos)));
-  }
-
-  private FontMetrics getFontMetrics(Font font) {
-    int style = java.awt.Font.PLAIN;
-    if (font.isBold()) {
-      style |= java.awt.Font.BOLD;
-    }
-    if (font.isItalic()) {
-      style |= java.awt.Font.ITALIC;
+  @Override
+  public void removeNotify() {
+    if (getParent() instanceof JViewport) {
+      ((JViewport) getParent()).removeChangeListener(myViewportListener);
     }
-    return Toolkit.getDefaultToolkit().getFontMetrics(new java.awt.Font(toFontName(font.getFamily()), style, font.getSize()));
+    super.removeNotify();
   }
 
   @Override
@@ -733,7 +509,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
   }
 
   private FontMetrics getDefaultFontMetrics() {
-    return getFontMetrics(TextView.DEFAULT_FONT);
+    return myTextMetrics.fontMetrics(TextView.DEFAULT_FONT);
   }
 
   @Override
@@ -761,16 +537,6 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
     return viewPort.getHeight() > getPreferredSize().height;
   }
 
-  private void withStroke(Graphics2D g, Stroke s, Runnable r) {
-    Stroke oldStroke = g.getStroke();
-    g.setStroke(s);
-    try {
-      r.run();
-    } finally {
-      g.setStroke(oldStroke);
-    }
-  }
-
   private class MyViewContainerPeer implements ViewContainerPeer {
     @Override
     public void attach(ViewContainer container) {
@@ -782,6 +548,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
 
     @Override
     public void repaint(View view) {
+      myRenderer.invalidate(view);
       if (!view.visible().get()) return;
 
       if (myContainer.root().valid().get()) {
@@ -818,6 +585,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
 
     @Override
     public void boundsChanged(View view, PropertyChangeEvent<jetbrains.jetpad.geometry.Rectangle> change) {
+      myRenderer.invalidate(view);
       if (!view.visible().get()) return;
 
       if (myMovedViews.contains(view)) return;
@@ -828,18 +596,22 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
 
     @Override
     public int textHeight(Font font) {
-      return getFontMetrics(font).getHeight();
+      return myTextMetrics.height(font);
     }
 
     @Override
     public int textBaseLine(Font font) {
-      FontMetrics fm = getFontMetrics(font);
-      return fm.getLeading() + fm.getAscent();
+      return myTextMetrics.baseLine(font);
     }
 
     @Override
     public int textWidth(Font font, String text) {
-      return getFontMetrics(font).stringWidth(text);
+      return myTextMetrics.width(font, text);
+    }
+
+    @Override
+    public TextMetricsCache textMetrics() {
+      return myTextMetrics;
     }
 
     @Override
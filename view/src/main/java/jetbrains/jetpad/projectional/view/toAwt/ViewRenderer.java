@@ -0,0 +1,520 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.toAwt;
+
+import jetbrains.jetpad.base.base64.Base64Coder;
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.base.ImageData;
+import jetbrains.jetpad.projectional.view.*;
+import jetbrains.jetpad.values.Color;
+import jetbrains.jetpad.values.Font;
+import jetbrains.jetpad.values.FontFamily;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.*;
+
+import static jetbrains.jetpad.projectional.view.toAwt.AwtConverters.toAwtColor;
+
+/**
+ * Paints a view tree to {@link Graphics2D} without depending on Swing. Subtrees outside of the clip are skipped.
+ * Subtrees which were painted several times without being invalidated are rasterized into images which are
+ * reused until {@link #invalidate(View)} is called for one of their views. Images are kept in device pixels, so
+ * they are as sharp as directly painted views on scaled output. Carets and selection aren't part of
+ * these images, they are painted right after their text views, so that views which follow in z-order cover them.
+ * Ancestors of a text view with a caret or selection are painted without images.
+ */
+class ViewRenderer {
+  static final Color SELECTION_COLOR = Color.DARK_BLUE;
+
+  private static final int MAX_TILE_PIXELS = 512 * 512;
+  private static final int MAX_CACHED_PIXELS = 16 * 1024 * 1024;
+  private static final int PAINTS_BEFORE_CACHING = 2;
+
+  static String toFontName(FontFamily fontFamily) {
+    if (fontFamily == FontFamily.MONOSPACED) {
+      return java.awt.Font.MONOSPACED;
+    } else {
+      return fontFamily.toString();
+    }
+  }
+
+  private final AwtTextMetrics myTextMetrics;
+  private final Map<View, Tile> myTiles = new LinkedHashMap<>(16, 0.75f, true);
+  private boolean myTilesEnabled = true;
+  private long myCachedPixels;
+  private boolean myUncacheable;
+  private Collection<TextView> myOverlay = Collections.emptySet();
+  private Set<View> myOverlayAncestors = new HashSet<>();
+  private boolean myCaretShown;
+
+  ViewRenderer() {
+    this(new AwtTextMetrics());
+  }
+
+  ViewRenderer(AwtTextMetrics textMetrics) {
+    myTextMetrics = textMetrics;
+  }
+
+  void setTilesEnabled(boolean enabled) {
+    myTilesEnabled = enabled;
+    if (!enabled) {
+      clear();
+    }
+  }
+
+  /**
+   * Drops cached images of the view and of all its ancestors
+   */
+  void invalidate(View view) {
+    for (View current = view; current != null; current = current.getParent()) {
+      Tile tile = myTiles.remove(current);
+      if (tile != null) {
+        tile.dispose();
+      }
+    }
+  }
+
+  void clear() {
+    for (Tile tile : myTiles.values()) {
+      tile.dispose();
+    }
+    myTiles.clear();
+  }
+
+  boolean isCached(View view) {
+    Tile tile = myTiles.get(view);
+    return tile != null && tile.myImage != null;
+  }
+
+  void paint(Graphics2D g, View view) {
+    paint(g, view, Collections.<TextView>emptySet(), false);
+  }
+
+  /**
+   * Paints the tree together with carets and selections of the given text views
+   */
+  void paint(Graphics2D g, View view, Collection<TextView> overlay, boolean caretShown) {
+    myOverlay = overlay;
+    myCaretShown = caretShown;
+    for (TextView textView : overlay) {
+      if (!hasOverlay(textView)) continue;
+      for (View current = textView.getParent(); current != null; current = current.getParent()) {
+        if (!myOverlayAncestors.add(current)) break;
+      }
+    }
+    try {
+      paintView(g, view);
+    } finally {
+      myOverlay = Collections.emptySet();
+      myOverlayAncestors.clear();
+      myCaretShown = false;
+    }
+  }
+
+  private void paintView(Graphics2D g, View view) {
+    if (!view.visible().get()) return;
+    Rectangle bounds = view.bounds().get();
+    java.awt.Rectangle clip = g.getClipBounds();
+    if (clip != null && !new Rectangle(clip.x, clip.y, clip.width, clip.height).intersects(bounds)) return;
+
+    if (view.children().isEmpty()) {
+      Graphics2D content = (Graphics2D) g.create();
+      try {
+        content.clipRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+        paintContent(view, content);
+        if (view instanceof TextView && myOverlay.contains(view)) {
+          paintOverlay(content, (TextView) view);
+        }
+      } finally {
+        content.dispose();
+      }
+      return;
+    }
+
+    if (myTilesEnabled && !myOverlayAncestors.contains(view) && paintTile(g, view, bounds)) return;
+
+    Graphics2D viewGraphics = (Graphics2D) g.create();
+    try {
+      viewGraphics.clipRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+      Graphics2D content = (Graphics2D) viewGraphics.create();
+      try {
+        paintContent(view, content);
+      } finally {
+        content.dispose();
+      }
+      for (View child : view.children()) {
+        paintView(viewGraphics, child);
+      }
+    } finally {
+      viewGraphics.dispose();
+    }
+  }
+
+  private boolean paintTile(Graphics2D g, View view, Rectangle bounds) {
+    AffineTransform transform = g.getTransform();
+    int scaleOnly = AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE | AffineTransform.TYPE_GENERAL_SCALE;
+    if ((transform.getType() & ~scaleOnly) != 0) return false;
+
+    double scaleX = transform.getScaleX();
+    double scaleY = transform.getScaleY();
+    int width = (int) Math.ceil(bounds.dimension.x * scaleX);
+    int height = (int) Math.ceil(bounds.dimension.y * scaleY);
+    if (width <= 0 || height <= 0) return false;
+    if ((long) width * height > MAX_TILE_PIXELS) return false;
+
+    Tile tile = myTiles.get(view);
+    if (tile == null) {
+      tile = new Tile();
+      myTiles.put(view, tile);
+    }
+    if (tile.myUncacheable) return false;
+
+    if (tile.myImage != null
+        && (!tile.myDimension.equals(bounds.dimension) || tile.myScaleX != scaleX || tile.myScaleY != scaleY)) {
+      tile.dispose();
+    }
+
+    if (tile.myImage == null) {
+      if (++tile.myPaints < PAINTS_BEFORE_CACHING) return false;
+      if (!rasterize(g, view, bounds, tile, width, height)) return false;
+    }
+
+    AffineTransform imageTransform = AffineTransform.getTranslateInstance(bounds.origin.x, bounds.origin.y);
+    imageTransform.scale(1 / tile.myScaleX, 1 / tile.myScaleY);
+    g.drawImage(tile.myImage, imageTransform, null);
+    return true;
+  }
+
+  private boolean rasterize(Graphics2D g, View view, Rectangle bounds, Tile tile, int width, int height) {
+    AffineTransform transform = g.getTransform();
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D imageGraphics = image.createGraphics();
+    boolean wasUncacheable = myUncacheable;
+    myUncacheable = false;
+    try {
+      imageGraphics.setRenderingHints(g.getRenderingHints());
+      imageGraphics.scale(transform.getScaleX(), transform.getScaleY());
+      imageGraphics.translate(-bounds.origin.x, -bounds.origin.y);
+      imageGraphics.setClip(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+      boolean enabled = myTilesEnabled;
+      myTilesEnabled = false;
+      try {
+        paintView(imageGraphics, view);
+      } finally {
+        myTilesEnabled = enabled;
+      }
+      if (myUncacheable) {
+        tile.myUncacheable = true;
+        image.flush();
+        return false;
+      }
+    } finally {
+      imageGraphics.dispose();
+      myUncacheable = wasUncacheable || myUncacheable;
+    }
+
+    tile.myImage = image;
+    tile.myDimension = bounds.dimension;
+    tile.myScaleX = transform.getScaleX();
+    tile.myScaleY = transform.getScaleY();
+    myCachedPixels += (long) image.getWidth() * image.getHeight();
+    evict(tile);
+    return true;
+  }
+
+  private void evict(Tile keep) {
+    Iterator<Tile> it = myTiles.values().iterator();
+    while (myCachedPixels > MAX_CACHED_PIXELS && it.hasNext()) {
+      Tile tile = it.next();
+      if (tile == keep || tile.myImage == null) continue;
+      tile.dispose();
+      it.remove();
+    }
+  }
+
+  private boolean hasOverlay(TextView textView) {
+    return textView.selectionVisible().get() || (myCaretShown && textView.caretVisible().get());
+  }
+
+  private void paintOverlay(Graphics2D g, TextView textView) {
+    if (!hasOverlay(textView)) return;
+
+    Rectangle bounds = textView.bounds().get();
+    String text = textView.text().get();
+    Vector origin = bounds.origin;
+    Font font = textView.font().get();
+    g.setFont(myTextMetrics.toAwtFont(font));
+
+    if (textView.selectionVisible().get()) {
+      int start = textView.selectionStart().get();
+      int end = textView.caretPosition().get();
+
+      int left = Math.min(start, end);
+      int xLeft = myTextMetrics.caretOffset(font, text, left);
+      int right = Math.max(start, end);
+      int xRight = myTextMetrics.caretOffset(font, text, right);
+      g.setColor(toAwtColor(SELECTION_COLOR));
+      g.fillRect(origin.x + xLeft, origin.y, xRight - xLeft - 1, bounds.dimension.y - 1);
+
+      g.setColor(toAwtColor(Color.WHITE));
+      g.drawString(text.substring(left, right), origin.x + xLeft, origin.y + textView.baseLine());
+    }
+
+    if (myCaretShown && textView.caretVisible().get()) {
+      g.setColor(toAwtColor(textView.textColor().get()));
+      int xOffset = myTextMetrics.caretOffset(font, text, textView.caretPosition().get());
+      g.drawLine(origin.x + xOffset, origin.y, origin.x + xOffset, origin.y + bounds.dimension.y - 1);
+    }
+  }
+
+  protected void paintSvg(SvgView view, Graphics2D g) {
+  }
+
+  private void paintContent(final View view, final Graphics2D g) {
+    final Rectangle bounds = view.bounds().get();
+
+    Color background = view.background().get();
+    if (!(view instanceof EllipseView) && background != null) {
+      g.setColor(toAwtColor(background));
+      g.fillRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+    }
+    final Color border = view.border().get();
+    if (border != null) {
+      g.setColor(toAwtColor(border));
+      g.drawRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x - 1, bounds.dimension.y - 1);
+    }
+
+    if (view instanceof EllipseView) {
+      EllipseView ellipseView = (EllipseView) view;
+      g.setColor(toAwtColor(ellipseView.background().get()));
+
+      final double from = (ellipseView.from().get() * 360) / (2 * Math.PI);
+      final double to = (ellipseView.to().get() * 360) / (2 * Math.PI);
+
+      int borderWidth = ellipseView.borderWidth().get();
+      final Vector borderVec = new Vector(borderWidth / 2, borderWidth / 2);
+
+      final Rectangle innerBounds = new Rectangle(bounds.origin.add(borderVec), bounds.dimension.sub(borderVec.mul(2)));
+
+      g.fill(new Arc2D.Double(innerBounds.origin.x, innerBounds.origin.y, innerBounds.dimension.x - 1, innerBounds.dimension.y - 1, from, to - from, Arc2D.PIE));
+
+      if (borderWidth > 0) {
+        g.setColor(toAwtColor(ellipseView.borderColor().get()));
+        withStroke(g, new BasicStroke(borderWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER), new Runnable() {
+          @Override
+          public void run() {
+            final Rectangle borderBounds = innerBounds;
+            g.draw(new Arc2D.Double(borderBounds.origin.x, borderBounds.origin.y, borderBounds.dimension.x - 1, borderBounds.dimension.y - 1, from, to - from, Arc2D.PIE));
+          }
+        });
+      }
+    }
+
+    if (view instanceof LineView) {
+      LineView lineView = (LineView) view;
+      g.setColor(toAwtColor(lineView.color().get()));
+      g.setStroke(new BasicStroke(lineView.width().get()));
+      Vector start = lineView.start().get();
+      Vector end = lineView.end().get();
+      g.drawLine(start.x, start.y, end.x, end.y);
+    }
+
+    if (view instanceof TextView) {
+      TextView textView = (TextView) view;
+      g.setFont(font(textView));
+      g.setColor(toAwtColor(textView.textColor().get()));
+      g.drawString(textView.text().get(), bounds.origin.x, bounds.origin.y + textView.baseLine());
+    }
+
+    if (view instanceof ScrollView) {
+      ScrollView scrollView = (ScrollView) view;
+      Rectangle additionalClip = scrollView.bounds().get();
+      if (scrollView.isHorizontalScroller()) {
+        paintScroller(g, scrollView, false);
+        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(0, scrollView.xScrollWidth())));
+      }
+
+      if (scrollView.isVerticalScroller()) {
+        paintScroller(g, scrollView, true);
+        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(scrollView.yScrollWidth(), 0)));
+      }
+
+      g.clipRect(additionalClip.origin.x, additionalClip.origin.y, additionalClip.dimension.x, additionalClip.dimension.y);
+    }
+
+    if (view instanceof MultiPointView) {
+      MultiPointView multiPoint = (MultiPointView) view;
+      g.setColor(toAwtColor(multiPoint.color().get()));
+      g.setStroke(new BasicStroke(multiPoint.width().get()));
+
+      int n = multiPoint.points.size();
+      int[] xs = new int[n];
+      int[] ys = new int[n];
+
+      for (int i = 0; i < n; i++) {
+        Vector point = multiPoint.points.get(i);
+        xs[i] = point.x;
+        ys[i] = point.y;
+      }
+
+      if (!multiPoint.points.isEmpty()) {
+        if (view instanceof PolyLineView) {
+          g.drawPolyline(xs, ys, n);
+        } else {
+          g.fillPolygon(xs, ys, n);
+        }
+      }
+    }
+
+    if (view instanceof ImageView) {
+      ImageView imageView = (ImageView) view;
+      ImageData imageData = imageView.image.get();
+
+      if (imageData instanceof ImageData.EmptyImageData) {
+        //ignore
+      } else if (imageData instanceof ImageData.BinaryImageData || imageData instanceof ImageData.UrlImageData) {
+        BufferedImage image;
+        try {
+          if (imageData instanceof ImageData.BinaryImageData) {
+            ImageData.BinaryImageData data = (ImageData.BinaryImageData) imageData;
+            image = ImageIO.read(new ByteArrayInputStream(data.getData()));
+          } else {
+            String url = ((ImageData.UrlImageData) imageData).getUrl();
+            String pngPrefix = "data:image/png;base64,";
+            String jpgPrefix = "data:image/jpeg;base64,";
+            if (url.startsWith(pngPrefix) || url.startsWith(jpgPrefix)) {
+              String base64;
+              if (url.startsWith(pngPrefix)) {
+                base64 = url.substring(pngPrefix.length());
+              } else {
+                base64 = url.substring(jpgPrefix.length());
+              }
+              byte[] data = Base64Coder.decodeBytes(base64);
+              image = ImageIO.read(new ByteArrayInputStream(data));
+            } else {
+              image = ImageIO.read(new URL(url));
+            }
+          }
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+
+        g.drawImage(image, bounds.origin.x, bounds.origin.y, new ImageObserver() {
+          @Override
+          public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
+            return true;
+          }
+        });
+      } else {
+        throw new UnsupportedOperationException("Unsupported Image : " + imageData);
+      }
+    }
+
+    if (view instanceof SvgView) {
+      myUncacheable = true;
+      Graphics2D svg = (Graphics2D) g.create();
+      try {
+        paintSvg((SvgView) view, svg);
+      } finally {
+        svg.dispose();
+      }
+    }
+  }
+
+  private void paintScroller(Graphics2D g, ScrollView scrollView, boolean vertical) {
+    Rectangle bounds = scrollView.bounds().get();
+
+    Color scrollerBackground = Color.GRAY;
+    Color scrollerColor = Color.BLACK;
+
+    g.setColor(toAwtColor(scrollerBackground));
+
+    if (vertical) {
+      g.fillRect(bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(), bounds.origin.y, scrollView.yScrollWidth(), bounds.dimension.y);
+    } else {
+      g.fillRect(bounds.origin.x, bounds.origin.y + bounds.dimension.y - scrollView.xScrollWidth(), bounds.dimension.x, scrollView.xScrollWidth());
+    }
+
+    Vector intBounds = scrollView.internalsBounds();
+    Vector offset = scrollView.offset().get();
+    Vector maxDim = scrollView.maxDimension().get();
+
+    double total = vertical ? intBounds.y : intBounds.x;
+    double startPercentage = (- (vertical ? offset.y : offset.x) / total);
+    double heightPercentage = ((vertical ? maxDim.y : maxDim.x) / total);
+
+    int max = vertical ? maxDim.y : maxDim.x;
+
+    double sOffset = startPercentage * max;
+
+    g.setColor(toAwtColor(scrollerColor));
+
+
+    if (vertical) {
+      g.fillRect(
+        bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(),
+        bounds.origin.y + (int) sOffset,
+        scrollView.yScrollWidth(),
+        (int) (heightPercentage * max));
+    } else {
+      g.fillRect(
+        bounds.origin.x + (int) sOffset,
+        bounds.origin.y + bounds.dimension.x - scrollView.xScrollWidth(),
+        (int) (heightPercentage * max),
+        scrollView.xScrollWidth());
+    }
+  }
+
+  private java.awt.Font font(TextView textView) {
+    return myTextMetrics.toAwtFont(textView.font().get());
+  }
+
+  private void withStroke(Graphics2D g, Stroke s, Runnable r) {
+    Stroke oldStroke = g.getStroke();
+    g.setStroke(s);
+    try {
+      r.run();
+    } finally {
+      g.setStroke(oldStroke);
+    }
+  }
+
+  private class Tile {
+    private BufferedImage myImage;
+    private Vector myDimension;
+    private double myScaleX;
+    private double myScaleY;
+    private int myPaints;
+    private boolean myUncacheable;
+
+    private void dispose() {
+      if (myImage != null) {
+        myCachedPixels -= (long) myImage.getWidth() * myImage.getHeight();
+        myImage.flush();
+        myImage = null;
+      }
+    }
+  }
+}
@@ -50,9 +50,8 @@ import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.*;
 import jetbrains.jetpad.projectional.domUtil.DomUtil;
 import jetbrains.jetpad.projectional.domUtil.Scrolling;
-import jetbrains.jetpad.projectional.domUtil.TextMetrics;
+import jetbrains.jetpad.projectional.domUtil.TextMetricsCache;
 import jetbrains.jetpad.projectional.domUtil.TextMetricsCalculator;
-import jetbrains.jetpad.projectional.view.TextView;
 import jetbrains.jetpad.projectional.view.View;
 import jetbrains.jetpad.projectional.view.ViewContainer;
 import jetbrains.jetpad.projectional.view.dom.DomView;
@@ -109,6 +108,7 @@ public class ViewContainerToElementMapper extends Mapper<ViewContainer, Element>
       @Override
       public void onResize(ResizeEvent event) {
         update();
+        getSource().visibleRectChanged();
       }
     })));
 
@@ -116,6 +116,7 @@ public class ViewContainerToElementMapper extends Mapper<ViewContainer, Element>
       @Override
       public void onWindowScroll(Window.ScrollEvent event) {
         update();
+        getSource().visibleRectChanged();
       }
     })));
 
@@ -309,10 +310,7 @@ public class ViewContainerToElementMapper extends Mapper<ViewContainer, Element>
     myRootMapper.set(myCtx.getFactory().createMapper(getSource().root()));
     myRootDiv.appendChild(myRootMapper.get().getTarget());
 
-    TextMetrics metrics = TextMetricsCalculator.calculate(TextView.DEFAULT_FONT, "x");
-    final int baseLine = metrics.baseLine();
-    final int fontWidth = metrics.dimension().x;
-    final int fontHeight = metrics.dimension().y;
+    final TextMetricsCache textMetrics = TextMetricsCalculator.cache();
 
     getSource().setPeer(new ViewContainerPeer() {
       private Registration myReg;
@@ -361,29 +359,22 @@ public class ViewContainerToElementMapper extends Mapper<ViewContainer, Element>
 
       @Override
       public int textHeight(Font font) {
-        if (font.equals(TextView.DEFAULT_FONT)) {
-          return fontHeight;
-        } else {
-          return TextMetricsCalculator.calculateAprox(font, "x").dimension().y;
-        }
+        return textMetrics.height(font);
       }
 
       @Override
       public int textBaseLine(Font font) {
-        if (font.equals(TextView.DEFAULT_FONT)) {
-          return baseLine;
-        } else {
-          return TextMetricsCalculator.calculateAprox(font, "x").baseLine();
-        }
+        return textMetrics.baseLine(font);
       }
 
       @Override
       public int textWidth(Font font, String text) {
-        if (font.equals(TextView.DEFAULT_FONT)) {
-          return text.length() * fontWidth;
-        } else {
-          return TextMetricsCalculator.calculateAprox(font, text).dimension().x;
-        }
+        return textMetrics.width(font, text);
+      }
+
+      @Override
+      public TextMetricsCache textMetrics() {
+        return textMetrics;
       }
 
       @Override
@@ -265,6 +265,30 @@ public class ViewTest {
     assertEquals(Arrays.asList(new Vector(10, 10)), origins);
   }
 
+  @Test
+  public void boundsFollowAncestorMovesAndReparenting() {
+    View grandParent = newView();
+    View parent = newView();
+    View child = newView();
+    grandParent.children().add(parent);
+    parent.children().add(child);
+
+    child.move(new Vector(1, 1));
+    assertEquals(new Vector(1, 1), child.bounds().get().origin);
+
+    grandParent.move(new Vector(10, 10));
+    assertEquals(new Vector(11, 11), child.bounds().get().origin);
+
+    parent.move(new Vector(100, 0));
+    assertEquals(new Vector(111, 11), child.bounds().get().origin);
+
+    parent.children().remove(child);
+    assertEquals(new Vector(1, 1), child.bounds().get().origin);
+
+    grandParent.children().add(child);
+    assertEquals(new Vector(11, 11), child.bounds().get().origin);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void cantFocusUnfocusable() {
     View view = newView();
@@ -382,6 +406,51 @@ public class ViewTest {
     assertTrue(container.root().viewAt(view.bounds().get().center()) != view);
   }
 
+  @Test
+  public void spatialIndexGivesSameViewAsScan() {
+    VerticalView lines = new VerticalView();
+    for (int i = 0; i < 20; i++) {
+      HorizontalView line = new HorizontalView();
+      for (int j = 0; j < 10; j++) {
+        line.children().add(new TextView("item" + i + "_" + j));
+      }
+      lines.children().add(line);
+    }
+    container.contentRoot().children().add(lines);
+    container.root().validate();
+
+    Rectangle bounds = lines.getBounds();
+    List<View> expected = new ArrayList<>();
+    for (int x = bounds.origin.x - 5; x < bounds.origin.x + bounds.dimension.x + 5; x += 7) {
+      for (int y = bounds.origin.y - 5; y < bounds.origin.y + bounds.dimension.y + 5; y += 3) {
+        expected.add(container.root().viewAt(new Vector(x, y)));
+      }
+    }
+
+    container.setSpatialIndexEnabled(true);
+    List<View> actual = new ArrayList<>();
+    for (int x = bounds.origin.x - 5; x < bounds.origin.x + bounds.dimension.x + 5; x += 7) {
+      for (int y = bounds.origin.y - 5; y < bounds.origin.y + bounds.dimension.y + 5; y += 3) {
+        actual.add(container.root().viewAt(new Vector(x, y)));
+      }
+    }
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void spatialIndexIgnoresInvisible() {
+    container.setSpatialIndexEnabled(true);
+    View view = newFocusableView();
+    container.contentRoot().children().add(view);
+    Vector center = view.bounds().get().center();
+    container.root().viewAt(center);
+
+    view.visible().set(false);
+
+    assertTrue(container.root().viewAt(center) != view);
+  }
+
   @Test
   public void onAttachEventSource() {
     View view = newFocusableView();
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.toAwt;
+
+import jetbrains.jetpad.projectional.view.*;
+import jetbrains.jetpad.values.Color;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders a document of text lines to an offscreen image: the whole document and a small damaged region
+ * (as on a caret blink or a key stroke), with and without cached subtree images.
+ * Run with: java -Djava.awt.headless=true ... ViewRendererBenchmark [lineCount] [paintCount]
+ */
+public class ViewRendererBenchmark {
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int paintCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    ViewContainer container = new ViewContainer();
+    VerticalView lines = new VerticalView();
+    for (int i = 0; i < lineCount; i++) {
+      HorizontalView line = new HorizontalView();
+      if (i % 2 == 0) {
+        line.background().set(Color.LIGHT_GRAY);
+      }
+      for (int j = 0; j < 10; j++) {
+        line.children().add(new TextView("token" + j));
+      }
+      lines.children().add(line);
+    }
+    container.contentRoot().children().add(lines);
+    container.root().validate();
+
+    jetbrains.jetpad.geometry.Rectangle bounds = container.root().bounds().get();
+    BufferedImage image = new BufferedImage(bounds.dimension.x, bounds.dimension.y, BufferedImage.TYPE_INT_ARGB);
+    jetbrains.jetpad.geometry.Rectangle line = lines.children().get(lineCount / 2).bounds().get();
+    Rectangle damaged = new Rectangle(line.origin.x, line.origin.y, line.dimension.x, line.dimension.y);
+
+    for (int round = 0; round < 3; round++) {
+      System.out.println("Round " + round);
+      for (boolean tiles : new boolean[] {false, true}) {
+        ViewRenderer renderer = new ViewRenderer();
+        renderer.setTilesEnabled(tiles);
+        long full = measure(renderer, container, image, null, paintCount);
+        long region = measure(renderer, container, image, damaged, paintCount);
+        System.out.println("  lines=" + lineCount + " paints=" + paintCount + " tiles=" + tiles
+          + " full=" + full / 1000000 + "ms damaged line=" + region / 1000000 + "ms");
+      }
+    }
+  }
+
+  private static long measure(ViewRenderer renderer, ViewContainer container, BufferedImage image, Rectangle clip, int paintCount) {
+    long start = System.nanoTime();
+    for (int i = 0; i < paintCount; i++) {
+      Graphics2D g = image.createGraphics();
+      try {
+        if (clip != null) {
+          g.setClip(clip);
+        }
+        renderer.paint(g, container.root());
+      } finally {
+        g.dispose();
+      }
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2015 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.toAwt;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.view.*;
+import jetbrains.jetpad.values.Color;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.Collections;
+
+import static jetbrains.jetpad.projectional.view.toAwt.AwtConverters.toAwtColor;
+import static org.junit.Assert.*;
+
+public class ViewRendererTest {
+  private ViewContainer container = new ViewContainer();
+  private ViewRenderer renderer = new ViewRenderer();
+  private VerticalView group = new VerticalView();
+  private RectView rect = new RectView();
+  private TextView text = new TextView("          ");
+
+  @Before
+  public void init() {
+    System.setProperty("java.awt.headless", "true");
+    rect.background().set(Color.GREEN);
+    group.children().add(rect);
+    group.children().add(text);
+    container.contentRoot().children().add(group);
+    container.root().validate();
+  }
+
+  @Test
+  public void subtreeCachedAfterRepeatedPaints() {
+    paint();
+    assertFalse(renderer.isCached(group));
+
+    paint();
+    assertTrue(renderer.isCached(group));
+  }
+
+  @Test
+  public void invalidationDropsAncestorImages() {
+    paint();
+    paint();
+
+    renderer.invalidate(rect);
+
+    assertFalse(renderer.isCached(group));
+    assertFalse(renderer.isCached(container.root()));
+  }
+
+  @Test
+  public void noCachingWhenTilesDisabled() {
+    renderer.setTilesEnabled(false);
+    paint();
+    paint();
+
+    assertFalse(renderer.isCached(group));
+  }
+
+  @Test
+  public void cachedImageMatchesDirectPaint() {
+    paint();
+    BufferedImage cached = paint();
+    assertTrue(renderer.isCached(group));
+
+    renderer.setTilesEnabled(false);
+    BufferedImage direct = paint();
+
+    for (int x = 0; x < direct.getWidth(); x++) {
+      for (int y = 0; y < direct.getHeight(); y++) {
+        assertEquals(direct.getRGB(x, y), cached.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void scaledCachedImageMatchesDirectPaint() {
+    paint(Collections.<TextView>emptySet(), 2);
+    BufferedImage cached = paint(Collections.<TextView>emptySet(), 2);
+    assertTrue(renderer.isCached(group));
+
+    renderer.setTilesEnabled(false);
+    BufferedImage direct = paint(Collections.<TextView>emptySet(), 2);
+
+    for (int x = 0; x < direct.getWidth(); x++) {
+      for (int y = 0; y < direct.getHeight(); y++) {
+        assertEquals(direct.getRGB(x, y), cached.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void scaleChangeRasterizesAgain() {
+    paint();
+    paint();
+
+    rect.background().set(Color.RED);
+    BufferedImage scaled = paint(Collections.<TextView>emptySet(), 2);
+
+    assertEquals(rgb(Color.RED), scaled.getRGB(2, 2));
+  }
+
+  @Test
+  public void changeIsPaintedAfterInvalidation() {
+    paint();
+    paint();
+
+    rect.background().set(Color.RED);
+    renderer.invalidate(rect);
+
+    assertEquals(rgb(Color.RED), paint().getRGB(1, 1));
+  }
+
+  @Test
+  public void ancestorsOfSelectionArePaintedDirectly() {
+    select();
+    paintWithSelection();
+    paintWithSelection();
+
+    assertFalse(renderer.isCached(group));
+    assertEquals(rgb(ViewRenderer.SELECTION_COLOR), paintWithSelection().getRGB(textPoint().x, textPoint().y));
+  }
+
+  @Test
+  public void selectionIsNotCached() {
+    select();
+    paint();
+    BufferedImage cached = paint();
+    assertTrue(renderer.isCached(group));
+
+    assertFalse(rgb(ViewRenderer.SELECTION_COLOR) == cached.getRGB(textPoint().x, textPoint().y));
+    assertEquals(rgb(ViewRenderer.SELECTION_COLOR), paintWithSelection().getRGB(textPoint().x, textPoint().y));
+  }
+
+  @Test
+  public void selectionCoveredByDecoration() {
+    select();
+    RectView popup = new RectView();
+    popup.background().set(Color.RED);
+    popup.dimension().set(group.bounds().get().dimension);
+    container.decorationRoot().children().add(popup);
+    container.root().validate();
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(rgb(Color.RED), paintWithSelection().getRGB(textPoint().x, textPoint().y));
+    }
+  }
+
+  private void select() {
+    text.selectionVisible().set(true);
+    text.selectionStart().set(0);
+    text.caretPosition().set(text.text().get().length());
+  }
+
+  private Vector textPoint() {
+    return text.bounds().get().origin.add(new Vector(2, 2));
+  }
+
+  private BufferedImage paint() {
+    return paint(Collections.<TextView>emptySet());
+  }
+
+  private BufferedImage paintWithSelection() {
+    return paint(Collections.singleton(text));
+  }
+
+  private BufferedImage paint(Collection<TextView> overlay) {
+    return paint(overlay, 1);
+  }
+
+  private BufferedImage paint(Collection<TextView> overlay, int scale) {
+    jetbrains.jetpad.geometry.Rectangle bounds = container.root().bounds().get();
+    BufferedImage image = new BufferedImage(bounds.dimension.x * scale, bounds.dimension.y * scale, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.scale(scale, scale);
+      renderer.paint(g, container.root(), overlay, false);
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  private int rgb(Color color) {
+    return toAwtColor(color).getRGB();
+  }
+}